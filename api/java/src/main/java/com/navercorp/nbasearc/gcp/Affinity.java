@@ -17,52 +17,37 @@
 package com.navercorp.nbasearc.gcp;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.navercorp.redis.cluster.gateway.AffinityState;
 import com.navercorp.redis.cluster.gateway.GatewayAffinity;
 
 class Affinity {
-    private AtomicReference<ConcurrentHashMap<Integer /*gwid*/, GatewayAffinity.AffinityInfo>> affinityInfo;
+    private final AtomicReference<GatewayAffinity> affinity;
 
     Affinity() {
-        affinityInfo = new AtomicReference<ConcurrentHashMap<Integer, GatewayAffinity.AffinityInfo>>();
+        affinity = new AtomicReference<GatewayAffinity>();
     }
 
-    void reload(ConcurrentHashMap<Integer, GatewayAffinity.AffinityInfo> affinityInfos) {
-        affinityInfo.set(affinityInfos);
+    void reload(GatewayAffinity gatewayAffinity) {
+        affinity.set(gatewayAffinity);
     }
     
     List<Integer> affinityGateway(int hash, AffinityState state) {
-        if (affinityInfo.get() == null) {
+        final GatewayAffinity gatewayAffinity = affinity.get();
+        if (gatewayAffinity == null) {
             return null;
         }
         
-        GatewayAffinity.AffinityInfo affinityGateways = affinityInfo.get().get(hash);
-        if (affinityGateways == null) {
-            return null;
-        }
-        
-        return affinityGateways.get(state);
+        return gatewayAffinity.get(hash, state);
     }
 
     int affinityCost(int hash, Integer gwId, AffinityState state) {
-        ConcurrentHashMap<Integer, GatewayAffinity.AffinityInfo> affinity = affinityInfo.get();
-        if (affinity == null) {
+        final List<Integer> affinityGateways = affinityGateway(hash, state);
+        if (affinityGateways == null) {
             return Integer.MAX_VALUE;
         }
 
-        GatewayAffinity.AffinityInfo affinityInfo = affinity.get(hash);
-        if (affinityInfo == null) {
-            return Integer.MAX_VALUE;
-        }
-        
-        for (Integer id : affinityInfo.get(state)) {
-            if (id == gwId) {
-                return 0;
-            }
-        }
-        return Integer.MAX_VALUE;
+        return affinityGateways.contains(gwId) ? 0 : Integer.MAX_VALUE;
     }
 }
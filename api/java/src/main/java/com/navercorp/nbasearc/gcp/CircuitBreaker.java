@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static com.navercorp.nbasearc.gcp.CircuitBreaker.State.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker of a physical connection, that is, of a gateway and an event loop.
+ * <p>
+ * It opens when at least {@link #MIN_CALLS} of the last {@link #WINDOW_SIZE} responses were received and the rate of
+ * failures among them reaches the threshold. A failure is a timeout, a connection error or a response slower than
+ * slowCallMillis. An open circuit is not selected for new requests. After openMillis it becomes half-open and gives
+ * {@link #PROBES} permits to virtual connections that are bound to it. Each permit counts a single response as a
+ * probe, so that a virtual connection that sends many requests does not close the circuit on its own. It closes if
+ * {@link #PROBES} probes succeed and opens again if a response fails.
+ * 
+ * <pre>
+ * CLOSED --failure rate--> OPEN --openMillis--> HALF_OPEN --PROBES successes--> CLOSED
+ *                           ^                       |
+ *                           +--------failure--------+
+ * </pre>
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    static final int WINDOW_SIZE = 20;
+    static final int MIN_CALLS = 10;
+    static final int PROBES = 3;
+
+    private final int failureRatePercent;
+    private final int slowCallMillis;
+    private final int openMillis;
+    private final String name; // for logs
+
+    private final boolean[] window = new boolean[WINDOW_SIZE]; // true if failed
+    private int windowIndex;
+    private int calls;
+    private int failures;
+
+    private State state = CLOSED;
+    private long stateTimestamp;
+    private int permits;
+    private int probing; // permits taken whose probe is not recorded yet
+    private int successes;
+
+    /**
+     * @param failureRatePercent the rate of failures in percent that opens the circuit
+     * @param slowCallMillis a response slower than this is a failure, 0 to ignore latency
+     * @param openMillis the time that the circuit stays open before probes are sent
+     */
+    CircuitBreaker(int failureRatePercent, int slowCallMillis, int openMillis) {
+        this(failureRatePercent, slowCallMillis, openMillis, "");
+    }
+
+    private CircuitBreaker(int failureRatePercent, int slowCallMillis, int openMillis, String name) {
+        if (failureRatePercent <= 0 || failureRatePercent > 100) {
+            throw new IllegalArgumentException(
+                    "failureRatePercent must be in (0, 100]. failureRatePercent=" + failureRatePercent);
+        }
+        if (slowCallMillis < 0 || openMillis < 0) {
+            throw new IllegalArgumentException("slowCallMillis and openMillis must not be negative. slowCallMillis="
+                    + slowCallMillis + ", openMillis=" + openMillis);
+        }
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.name = name;
+    }
+
+    /**
+     * @return a closed circuit breaker with the same settings
+     */
+    CircuitBreaker copy(String name) {
+        return new CircuitBreaker(failureRatePercent, slowCallMillis, openMillis, name);
+    }
+
+    /**
+     * Tells whether {@link #tryAcquire(long)} would succeed, without changing the state of the circuit.
+     * 
+     * @return true if a request may be sent through the circuit
+     */
+    synchronized boolean isAvailable(long now) {
+        switch (state) {
+        case CLOSED:
+            return true;
+        case OPEN:
+            return now - stateTimestamp >= openMillis;
+        case HALF_OPEN:
+            return permits > 0 || now - stateTimestamp >= openMillis;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the circuit is open and it is not the time for probes yet
+     */
+    synchronized boolean isOpen(long now) {
+        return state == OPEN && now - stateTimestamp < openMillis;
+    }
+
+    /**
+     * Takes a permit to send requests through the circuit. A half-open circuit has {@link #PROBES} permits.
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (!isAvailable(now)) {
+            return false;
+        }
+        // Give probes again if the previous ones were not used.
+        if (state == OPEN || (state == HALF_OPEN && permits == 0)) {
+            halfOpen(now);
+        }
+        if (state == HALF_OPEN) {
+            permits--;
+            probing++;
+        }
+        return true;
+    }
+
+    synchronized void record(StatusCode statusCode, long latencyMillis, long now) {
+        final boolean failed;
+        switch (statusCode) {
+        case OK:
+            failed = slowCallMillis > 0 && latencyMillis >= slowCallMillis;
+            break;
+        case TIMEOUT:
+        case CONNECTION_ERROR:
+            failed = true;
+            break;
+        default:
+            // Not a fault of the gateway
+            return;
+        }
+
+        switch (state) {
+        case CLOSED:
+            if (calls == WINDOW_SIZE) {
+                if (window[windowIndex]) {
+                    failures--;
+                }
+            } else {
+                calls++;
+            }
+            window[windowIndex] = failed;
+            windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+            if (failed) {
+                failures++;
+            }
+
+            if (calls >= MIN_CALLS && failures * 100 >= failureRatePercent * calls) {
+                open(now);
+            }
+            break;
+        case HALF_OPEN:
+            if (failed) {
+                open(now);
+            } else if (probing > 0) {
+                // Another response through the same permit is not a probe.
+                probing--;
+                if (++successes >= PROBES) {
+                    close(now);
+                }
+            }
+            break;
+        case OPEN:
+            // A late response of a request that was sent before the circuit opened.
+            break;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open(long now) {
+        log.warn("Circuit of {} opened. failures: {}/{}, state: {}", new Object[] { name, failures, calls, state });
+        setState(OPEN, now);
+    }
+
+    private void halfOpen(long now) {
+        setState(HALF_OPEN, now);
+        permits = PROBES;
+        probing = 0;
+        successes = 0;
+    }
+
+    private void close(long now) {
+        log.info("Circuit of {} closed.", name);
+        setState(CLOSED, now);
+        calls = 0;
+        failures = 0;
+        windowIndex = 0;
+    }
+
+    private void setState(State newState, long now) {
+        state = newState;
+        stateTimestamp = now;
+    }
+}
@@ -18,6 +18,9 @@ package com.navercorp.nbasearc.gcp;
 
 import static com.navercorp.nbasearc.gcp.Gateway.State.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,7 +49,15 @@ class Gateway {
     private final String ip;
     private final int port;
     private final int concnt;
-    private final PhysicalConnection[] cons;
+    /**
+     * Copied on write, so that readers need no lock.
+     */
+    private volatile PhysicalConnection[] cons;
+    /**
+     * A connection that is connected and health-checked ahead of time, null if not used. It takes the place of a
+     * connection that is lost, and the lost one becomes the standby after it reconnects.
+     */
+    private PhysicalConnection standby;
 
     private State state;
     private AtomicInteger active; // active connection count
@@ -62,12 +73,27 @@ class Gateway {
         this.active = new AtomicInteger();
     }
 
-    ListenableFuture<?> init(SingleThreadEventLoopTrunk eventLoopTrunk, int reconnectInterval) {
+    /**
+     * @param reconnectInterval the delay of the first reconnect
+     * @param reconnectMaxInterval the upper bound of the exponential reconnect backoff
+     * @param standbyUsed true to keep a standby connection
+     * @param circuitBreaker the settings of the circuit breaker of each connection, null if not used
+     */
+    ListenableFuture<?> init(SingleThreadEventLoopTrunk eventLoopTrunk, int reconnectInterval,
+            int reconnectMaxInterval, boolean standbyUsed, CircuitBreaker circuitBreaker) {
         final SettableFuture<?> sf = SettableFuture.create();
 
+        if (standbyUsed) {
+            synchronized (this) {
+                standby = PhysicalConnection.create(ip, port, eventLoopTrunk.roundrobinEventLoop(), this,
+                        reconnectInterval, reconnectMaxInterval, circuitBreaker);
+                standby.connect();
+            }
+        }
+
         for (int i = 0; i < concnt; i++) {
             cons[i] = PhysicalConnection.create(ip, port, eventLoopTrunk.roundrobinEventLoop(), this,
-                    reconnectInterval);
+                    reconnectInterval, reconnectMaxInterval, circuitBreaker);
 
             final ListenableFuture<?> conFuture = cons[i].connect();
             conFuture.addListener(new Runnable() {
@@ -89,11 +115,15 @@ class Gateway {
     }
 
     ListenableFuture<?> unuse(Set<VirtualConnection> vcConcurrentSet) {
-        state = UNUSED;
+        final List<PhysicalConnection> all;
+        synchronized (this) {
+            state = UNUSED;
+            all = allConnections();
+        }
 
         final SettableFuture<?> sf = SettableFuture.create();
-        final AtomicInteger closedConCnt = new AtomicInteger(cons.length); 
-        for (PhysicalConnection con : cons) {
+        final AtomicInteger closedConCnt = new AtomicInteger(all.size()); 
+        for (PhysicalConnection con : all) {
             con.unuse(vcConcurrentSet).addListener(new Runnable() {
                 @Override
                 public void run() {
@@ -108,7 +138,11 @@ class Gateway {
     }
 
     boolean isSafeToAbandone() {
-        for (PhysicalConnection con : cons) {
+        final List<PhysicalConnection> all;
+        synchronized (this) {
+            all = allConnections();
+        }
+        for (PhysicalConnection con : all) {
             if (con.getState() != PhysicalConnection.State.UNUSED) {
                 return false;
             }
@@ -148,9 +182,10 @@ class Gateway {
     PhysicalConnection bestPc() {
         PhysicalConnection bestPc = null;
         long bestCost = Long.MAX_VALUE;
+        final long now = System.currentTimeMillis();
         
         for (PhysicalConnection pc : cons) {
-            if (pc.getState() == PhysicalConnection.State.CONNECTED) {
+            if (pc.getState() == PhysicalConnection.State.CONNECTED && pc.isCircuitAvailable(now)) {
                 long cost = pc.busyCost();
                 
                 if (bestCost > cost) {
@@ -163,6 +198,43 @@ class Gateway {
         return bestPc;
     }
 
+    /**
+     * Called in the event loop of a connection that is lost. Swaps it with the standby connection if the standby is
+     * connected.
+     */
+    synchronized void connectionLost(PhysicalConnection pc) {
+        if (state == UNUSED || standby == null || standby.getState() != PhysicalConnection.State.CONNECTED) {
+            return;
+        }
+
+        final PhysicalConnection[] newCons = cons.clone();
+        for (int i = 0; i < newCons.length; i++) {
+            if (newCons[i] == pc) {
+                newCons[i] = standby;
+                standby = pc;
+                cons = newCons;
+                log.info("Swap a lost connection with the standby. {}", this);
+                return;
+            }
+        }
+    }
+
+    synchronized PhysicalConnection getStandby() {
+        return standby;
+    }
+
+    PhysicalConnection[] getConnections() {
+        return cons;
+    }
+
+    private List<PhysicalConnection> allConnections() {
+        final List<PhysicalConnection> all = new ArrayList<PhysicalConnection>(Arrays.asList(cons));
+        if (standby != null) {
+            all.add(standby);
+        }
+        return all;
+    }
+
     void decreaseActive() {
         active.getAndDecrement();
         log.info("decrease active {}, {}", active, this);
@@ -172,8 +244,8 @@ class Gateway {
     void increaseActive() {
         active.incrementAndGet();
         log.info("increase active {}, {}", active, this);
-        assert active.get() <= concnt : 
-            this + " active is smaller than concnt, concnt: " + concnt + ", active: " + active;
+        assert active.get() <= concnt + 1 : 
+            this + " active is smaller than concnt + standby, concnt: " + concnt + ", active: " + active;
     }
 
     int getActive() {
@@ -186,7 +258,11 @@ class Gateway {
 
     private static byte[] PING = "ping\r\n".getBytes();
     void healthCheck() {
-        for (PhysicalConnection pc : cons) {
+        final List<PhysicalConnection> all;
+        synchronized (this) {
+            all = allConnections();
+        }
+        for (PhysicalConnection pc : all) {
             if (pc.getState() == PhysicalConnection.State.CONNECTED) {
                 pc.execute(Request.systemRequest(PING, pc));
             }
@@ -36,6 +36,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.navercorp.redis.cluster.gateway.AffinityState;
 import com.navercorp.redis.cluster.gateway.GatewayAffinity;
+import com.navercorp.redis.cluster.gateway.GatewayConfig;
 
 import io.netty.util.concurrent.ScheduledFuture;
 
@@ -57,9 +58,24 @@ public class GatewayConnectionPool {
     
     private final Random random;
     private final AtomicInteger roundGatewayIndex;
+    private final SingleFlight singleFlight;
+    private volatile HedgedRead hedgedRead;
+    private volatile int reconnectMaxInterval = GatewayConfig.DEFAULT_PHYSICAL_CONNECTION_RECONNECT_MAX_INTERVAL;
+    private volatile boolean standbyUsed;
+    private volatile CircuitBreaker circuitBreaker;
 
     public GatewayConnectionPool(int threadPoolSize, boolean healthCheckUsed) {
-        this.eventLoopTrunk = new SingleThreadEventLoopTrunk(threadPoolSize);
+        this(threadPoolSize, healthCheckUsed, false);
+    }
+
+    public GatewayConnectionPool(int threadPoolSize, boolean healthCheckUsed, boolean singleFlightUsed) {
+        this(threadPoolSize, healthCheckUsed, singleFlightUsed, Transport.NIO);
+    }
+
+    public GatewayConnectionPool(int threadPoolSize, boolean healthCheckUsed, boolean singleFlightUsed,
+            Transport transport) {
+        log.info("Create event loops. transport: {}", transport);
+        this.eventLoopTrunk = new SingleThreadEventLoopTrunk(threadPoolSize, transport);
         this.gwMap = new ConcurrentHashMap<Integer, Gateway>();
         this.vcConcurrentSet = Sets.newConcurrentHashSet();
         this.closed = new AtomicBoolean();
@@ -67,6 +83,7 @@ public class GatewayConnectionPool {
         this.roundGatewayIndex = new AtomicInteger(0);
         this.gatewayList = new AtomicReference<List<Gateway>>();
         this.random = new Random(System.currentTimeMillis());
+        this.singleFlight = singleFlightUsed ? new SingleFlight() : null;
         
         if (healthCheckUsed) {
             this.eventLoopTrunk.roundrobinEventLoop().getEventLoopGroup().scheduleAtFixedRate(
@@ -184,7 +201,7 @@ public class GatewayConnectionPool {
             
             updateGatewayList();
     
-            return gw.init(eventLoopTrunk, reconnectInterval);
+            return gw.init(eventLoopTrunk, reconnectInterval, reconnectMaxInterval, standbyUsed, circuitBreaker);
         }
     }
 
@@ -240,8 +257,8 @@ public class GatewayConnectionPool {
         vcConcurrentSet.remove(vc);
     }
     
-    public void updateAffinity(ConcurrentHashMap<Integer, GatewayAffinity.AffinityInfo> affinityInfos) {
-        affinity.reload(affinityInfos);
+    public void updateAffinity(GatewayAffinity gatewayAffinity) {
+        affinity.reload(gatewayAffinity);
     }
 
     private PhysicalConnection _bestCon(int hash, AffinityState affinityState) {
@@ -299,7 +316,8 @@ public class GatewayConnectionPool {
             }
             
             synchronized (pc) {
-                if (pc.getState() == PhysicalConnection.State.CONNECTED) {
+                if (pc.getState() == PhysicalConnection.State.CONNECTED
+                        && pc.tryAcquireCircuit(System.currentTimeMillis())) {
                     pc.increaseReferenceCount();
                     return pc;
                 }
@@ -307,6 +325,101 @@ public class GatewayConnectionPool {
         }
     }
 
+    /**
+     * Sets the upper bound of the exponential reconnect backoff of gateways that are added after this call. The
+     * delay starts from the reconnect interval of addGw and doubles on each failed attempt. The default is
+     * GatewayConfig.DEFAULT_PHYSICAL_CONNECTION_RECONNECT_MAX_INTERVAL.
+     *
+     * @param reconnectMaxInterval the max delay in milliseconds, 0 to reconnect at the reconnect interval
+     */
+    public void setReconnectMaxInterval(int reconnectMaxInterval) {
+        this.reconnectMaxInterval = reconnectMaxInterval;
+    }
+
+    /**
+     * Keeps a connected standby connection per gateway that is added after this call. A lost connection is swapped
+     * with it, so that requests do not wait for a reconnect.
+     */
+    public void enableStandbyConnection() {
+        standbyUsed = true;
+    }
+
+    /**
+     * Gives a circuit breaker to each connection, that is, to each pair of a gateway and an event loop, of gateways
+     * that are added after this call. A connection whose recent requests mostly failed or were slow is not selected
+     * until a few probe requests through it succeed.
+     *
+     * @param failureRatePercent the rate of failed or slow requests in percent that opens a circuit
+     * @param slowCallMillis a request slower than this counts as a failure, 0 to count only timeouts and errors
+     * @param openMillis the time that a circuit stays open before probe requests are sent
+     */
+    public void enableCircuitBreaker(int failureRatePercent, int slowCallMillis, int openMillis) {
+        circuitBreaker = new CircuitBreaker(failureRatePercent, slowCallMillis, openMillis);
+    }
+
+    /**
+     * Duplicates reads that are slower than delayMillis to another gateway.
+     *
+     * @param delayMillis the delay before a duplicate is sent, 0 to use the p95 of recent read latencies
+     */
+    public void enableHedgedRead(int delayMillis) {
+        hedgedRead = new HedgedRead(delayMillis);
+    }
+
+    /**
+     * @return null if reads are not hedged.
+     */
+    HedgedRead getHedgedRead() {
+        return hedgedRead;
+    }
+
+    /**
+     * Finds a connection for a duplicate read on a gateway other than the one of the primary connection, preferring
+     * affinity gateways of the partition. The reference count of the connection is not changed.
+     */
+    PhysicalConnection hedgeCon(int hash, AffinityState affinityState, PhysicalConnection primary) {
+        final Gateway exclude = primary == null ? null : primary.getGateway();
+
+        List<Integer> affinityGateways = affinity.affinityGateway(hash, affinityState);
+        if (affinityGateways != null && affinityGateways.size() != 0) {
+            final int offset = random.nextInt(affinityGateways.size());
+            for (int i = 0; i < affinityGateways.size(); i++) {
+                Gateway gw = gwMap.get(affinityGateways.get((offset + i) % affinityGateways.size()));
+                if (gw != null && gw != exclude && gw.getActive() > 0) {
+                    PhysicalConnection pc = gw.bestPc();
+                    if (pc != null) {
+                        return pc;
+                    }
+                }
+            }
+        }
+
+        PhysicalConnection bestPc = null;
+        long bestCost = Long.MAX_VALUE;
+        for (Gateway gw : gatewayList.get()) {
+            if (gw == exclude || gw.getActive() <= 0) {
+                continue;
+            }
+            PhysicalConnection pc = gw.bestPc();
+            if (pc != null && pc.busyCost() < bestCost) {
+                bestCost = pc.busyCost();
+                bestPc = pc;
+            }
+        }
+        return bestPc;
+    }
+
+    /**
+     * @return null if identical reads are not coalesced.
+     */
+    SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit tu) {
+        return eventLoopTrunk.roundrobinEventLoop().getEventLoopGroup().schedule(runnable, delay, tu);
+    }
+
     ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long delay, long period, TimeUnit tu) {
         return eventLoopTrunk.roundrobinEventLoop().getEventLoopGroup().scheduleAtFixedRate(runnable, delay, period,
                 tu);
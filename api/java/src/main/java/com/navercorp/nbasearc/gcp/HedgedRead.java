@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static com.navercorp.nbasearc.gcp.StatusCode.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * Sends a duplicate of a slow read to another gateway and completes with whichever reply arrives first.
+ * <p>
+ * The duplicate is sent after a fixed delay, or after the 95th percentile of recent read latencies if the delay is
+ * 0. At most one read in {@link #BUDGET_RATIO} is duplicated, so a slow cluster is not flooded with hedges. The reply
+ * that loses the race is dropped.
+ */
+class HedgedRead {
+
+    static final int BUDGET_RATIO = 10;
+    static final int INITIAL_DELAY_MILLIS = 10;
+    static final int MAX_TRACKED_MILLIS = 1000;
+    static final int SAMPLE_SIZE = 1000;
+
+    private final int fixedDelayMillis;
+    private final AtomicLongArray histogram = new AtomicLongArray(MAX_TRACKED_MILLIS + 1);
+    private final AtomicInteger samples = new AtomicInteger();
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong hedgedCount = new AtomicLong();
+    private volatile int trackedDelayMillis = INITIAL_DELAY_MILLIS;
+
+    /**
+     * @param delayMillis the delay before a duplicate is sent, 0 to use the tracked p95 latency
+     */
+    HedgedRead(int delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis must not be negative. delayMillis=" + delayMillis);
+        }
+        this.fixedDelayMillis = delayMillis;
+    }
+
+    int delayMillis() {
+        return fixedDelayMillis > 0 ? fixedDelayMillis : trackedDelayMillis;
+    }
+
+    /**
+     * @param hash     the hash of the key, captured when the read is sent
+     * @param affinity the affinity of the key, captured when the read is sent
+     * @param primary  the connection the read is sent to
+     */
+    Hedge newHedge(RequestCallback callback, int hash, AffinityState affinity, PhysicalConnection primary) {
+        if (budget.get() < BUDGET_RATIO * BUDGET_RATIO) {
+            budget.incrementAndGet();
+        }
+        return new Hedge(callback, hash, affinity, primary);
+    }
+
+    long getHedgedCount() {
+        return hedgedCount.get();
+    }
+
+    private boolean acquireBudget() {
+        while (true) {
+            final long b = budget.get();
+            if (b < BUDGET_RATIO) {
+                return false;
+            }
+            if (budget.compareAndSet(b, b - BUDGET_RATIO)) {
+                return true;
+            }
+        }
+    }
+
+    void record(long latencyMillis) {
+        histogram.incrementAndGet((int) Math.min(Math.max(latencyMillis, 0), MAX_TRACKED_MILLIS));
+        if (samples.incrementAndGet() % SAMPLE_SIZE == 0) {
+            trackedDelayMillis = percentile(95);
+        }
+    }
+
+    /**
+     * Computes a percentile and halves every bucket, so that old samples fade away.
+     */
+    private int percentile(int p) {
+        long total = 0;
+        for (int i = 0; i < histogram.length(); i++) {
+            total += histogram.get(i);
+        }
+
+        final long rank = total * p / 100;
+        int result = -1;
+        long count = 0;
+        for (int i = 0; i < histogram.length(); i++) {
+            final long c = histogram.get(i);
+            histogram.addAndGet(i, -(c / 2));
+            count += c;
+            if (count > rank && result == -1) {
+                result = i;
+            }
+        }
+        return result == -1 ? MAX_TRACKED_MILLIS : Math.max(result, 1);
+    }
+
+    /**
+     * The state of one read and its duplicate.
+     * <p>
+     * The routing of the read is kept here rather than read from the {@link VirtualConnection} when the timer fires,
+     * because by then the virtual connection may be serving another key.
+     */
+    class Hedge {
+        private final RequestCallback callback;
+        final int hash;
+        final AffinityState affinity;
+        final PhysicalConnection primaryPc;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private volatile ScheduledFuture<?> timer;
+
+        private Hedge(RequestCallback callback, int hash, AffinityState affinity, PhysicalConnection primaryPc) {
+            this.callback = callback;
+            this.hash = hash;
+            this.affinity = affinity;
+            this.primaryPc = primaryPc;
+        }
+
+        final RequestCallback primary = new RequestCallback() {
+            @Override
+            public void onResponse(byte[] response, StatusCode statusCode) {
+                complete(response, statusCode);
+            }
+        };
+
+        final RequestCallback secondary = new RequestCallback() {
+            @Override
+            public void onResponse(byte[] response, StatusCode statusCode) {
+                complete(response, statusCode);
+            }
+        };
+
+        void schedule(GatewayConnectionPool gcp, Runnable hedgeJob) {
+            timer = gcp.schedule(hedgeJob, delayMillis(), TimeUnit.MILLISECONDS);
+            if (done.get()) {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * @return true if a duplicate may be sent
+         */
+        boolean tryHedge() {
+            if (done.get() || !acquireBudget()) {
+                return false;
+            }
+            outstanding.incrementAndGet();
+            hedgedCount.incrementAndGet();
+            return true;
+        }
+
+        private void complete(byte[] response, StatusCode statusCode) {
+            // An error waits for the other request, if there is one.
+            if (outstanding.decrementAndGet() > 0 && statusCode != OK) {
+                return;
+            }
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+
+            final ScheduledFuture<?> t = timer;
+            if (t != null) {
+                t.cancel(false);
+            }
+            if (statusCode == OK) {
+                record(System.currentTimeMillis() - startTime);
+            }
+            callback.onResponse(response, statusCode);
+        }
+    }
+}
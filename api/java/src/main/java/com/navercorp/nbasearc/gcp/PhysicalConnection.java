@@ -21,6 +21,7 @@ import static com.navercorp.nbasearc.gcp.PhysicalConnection.State.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -44,7 +45,6 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  * 
@@ -78,7 +78,8 @@ class PhysicalConnection {
     private final String ip;
     private final int port;
     private final Gateway gw;
-    private final int reconnectInterval;
+    private final ReconnectBackoff backoff;
+    private final CircuitBreaker circuitBreaker; // null if not used
 
     private boolean pendingFlush;
     private boolean channelConnected;
@@ -89,11 +90,11 @@ class PhysicalConnection {
     private volatile AtomicReference<State> state;
 
     static PhysicalConnection create(String ip, int port, SingleThreadEventLoop eventLoop, Gateway gw,
-            int reconnectInterval) {
-        final PhysicalConnection pc = new PhysicalConnection(ip, port, eventLoop, gw, reconnectInterval);
+            int reconnectInterval, int reconnectMaxInterval, CircuitBreaker circuitBreaker) {
+        final PhysicalConnection pc = new PhysicalConnection(ip, port, eventLoop, gw, reconnectInterval,
+                reconnectMaxInterval, circuitBreaker);
 
         pc.b.group(eventLoop.getEventLoopGroup())
-            .channel(NioSocketChannel.class)
             .option(ChannelOption.TCP_NODELAY, true)
             .option(ChannelOption.SO_REUSEADDR, true)
             .option(ChannelOption.SO_KEEPALIVE, true)
@@ -107,18 +108,20 @@ class PhysicalConnection {
                     ch.pipeline().addLast(pc.new PhysicalConnectionHandler());
                 }
             });
+        eventLoop.getTransport().configure(pc.b);
         
         return pc;
     }
 
     private PhysicalConnection(String ip, int port, SingleThreadEventLoop eventLoop, Gateway gw,
-            int reconnectInterval) {
+            int reconnectInterval, int reconnectMaxInterval, CircuitBreaker circuitBreaker) {
         this.ip = ip;
         this.port = port;
         this.state = new AtomicReference<State>(NONE);
         this.eventLoop = eventLoop;
         this.gw = gw;
-        this.reconnectInterval = reconnectInterval;
+        this.backoff = new ReconnectBackoff(reconnectInterval, reconnectMaxInterval, new Random());
+        this.circuitBreaker = circuitBreaker == null ? null : circuitBreaker.copy(ip + ":" + port);
 
         this.pipeline = new Pipeline(PIPELINE_SIZE, eventLoop);
 
@@ -175,9 +178,10 @@ class PhysicalConnection {
 
     private void connectionComplete(ChannelFuture cf) {
         if (cf.cause() != null) {
-            eventLoop.getEventLoopGroup().schedule(reconnectJob, reconnectInterval, TimeUnit.MILLISECONDS);
+            eventLoop.getEventLoopGroup().schedule(reconnectJob, backoff.nextDelayMillis(), TimeUnit.MILLISECONDS);
             return;
         }
+        backoff.reset();
         gw.increaseActive();
         ch = cf.channel();
         channelConnected = true;
@@ -341,6 +345,48 @@ class PhysicalConnection {
         pipeline.remove(rqst);
     }
 
+    Gateway getGateway() {
+        return gw;
+    }
+
+    /**
+     * @return false if the circuit of this connection is open, or half-open without a probe left. It does not change
+     *         the state of the circuit, so it may be used to rank connections.
+     */
+    boolean isCircuitAvailable(long now) {
+        return circuitBreaker == null || circuitBreaker.isAvailable(now);
+    }
+
+    /**
+     * @return true if the circuit of this connection is open and not yet ready for probes.
+     */
+    boolean isCircuitOpen(long now) {
+        return circuitBreaker != null && circuitBreaker.isOpen(now);
+    }
+
+    /**
+     * Takes a permit of the circuit for a virtual connection that is bound to this connection.
+     */
+    boolean tryAcquireCircuit(long now) {
+        return circuitBreaker == null || circuitBreaker.tryAcquire(now);
+    }
+
+    /**
+     * Records the outcome of a user request to the circuit of this connection.
+     */
+    void recordResponse(StatusCode statusCode, long latencyMillis, long now) {
+        if (circuitBreaker != null) {
+            circuitBreaker.record(statusCode, latencyMillis, now);
+        }
+    }
+
+    /**
+     * @return null if the circuit breaker is not used.
+     */
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     long busyCost() {
         Request rqst = pipeline.peekFirst();
         if (rqst == null) {
@@ -438,9 +484,11 @@ class PhysicalConnection {
 
                 if (getState() != UNUSED) {
                     setState(CONNECTING);
+                    gw.connectionLost(PhysicalConnection.this);
 
                     log.info("Run reconnectJob channelInactive. {}", PhysicalConnection.this);
-                    eventLoop.getEventLoopGroup().schedule(reconnectJob, 1000, TimeUnit.MILLISECONDS);
+                    eventLoop.getEventLoopGroup().schedule(reconnectJob, backoff.nextDelayMillis(),
+                            TimeUnit.MILLISECONDS);
                 }
             } catch (Exception e) {
                 log.error("Internal error", e);
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import java.util.Random;
+
+/**
+ * Exponential reconnect backoff with jitter.
+ * <p>
+ * The delay doubles from the base interval on each failed attempt, up to the max interval. Half of the delay is
+ * random, so that clients that lost a gateway at the same time do not reconnect in lockstep. It is not thread-safe
+ * and is used in the event loop of its connection.
+ */
+class ReconnectBackoff {
+
+    private final int baseMillis;
+    private final int maxMillis;
+    private final Random random;
+    private int attempts;
+
+    /**
+     * @param baseMillis the delay of the first attempt
+     * @param maxMillis the upper bound of a delay, a value smaller than baseMillis means baseMillis
+     */
+    ReconnectBackoff(int baseMillis, int maxMillis, Random random) {
+        if (baseMillis < 0) {
+            throw new IllegalArgumentException("baseMillis must not be negative. baseMillis=" + baseMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = Math.max(baseMillis, maxMillis);
+        this.random = random;
+    }
+
+    long nextDelayMillis() {
+        final long ceiling = Math.min((long) baseMillis << Math.min(attempts, 30), maxMillis);
+        attempts++;
+
+        final long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+
+    void reset() {
+        attempts = 0;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+}
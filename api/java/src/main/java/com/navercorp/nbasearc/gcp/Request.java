@@ -128,6 +128,10 @@ class Request implements Runnable, TimerCallback {
         return command;
     }
     
+    PhysicalConnection getPc() {
+        return physicalConnection;
+    }
+
     long getConnTimestamp() {
         return connTimestamp;
     }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Coalesces identical read requests that are in flight at the same time, so that they share one request and its
+ * response.
+ * <p>
+ * Every write bumps a generation of its partition when it is sent and again when its response arrives. A read joins
+ * an in-flight request only if no write to the same partition was issued in the meantime, which keeps a thread from
+ * reading a value older than its own write.
+ * <p>
+ * A joined read completes with the status of the shared request, including its timeout.
+ */
+class SingleFlight {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final ConcurrentMap<ByteBuffer, Flight> flights = new ConcurrentHashMap<ByteBuffer, Flight>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * @return null if the callback joined an in-flight request, otherwise the callback of a new request that the
+     * caller must send.
+     */
+    RequestCallback join(int hash, byte[] cmd, RequestCallback callback) {
+        final ByteBuffer key = ByteBuffer.wrap(cmd);
+        final long generation = generations.get(stripe(hash));
+
+        while (true) {
+            final Flight flight = flights.get(key);
+            if (flight != null && flight.generation == generation && flight.add(callback)) {
+                sharedCount.incrementAndGet();
+                return null;
+            }
+
+            final Flight newFlight = new Flight(key, generation, callback);
+            if (flight == null) {
+                if (flights.putIfAbsent(key, newFlight) == null) {
+                    return newFlight;
+                }
+            } else if (flights.replace(key, flight, newFlight)) {
+                return newFlight;
+            }
+        }
+    }
+
+    /**
+     * @return the callback to send with the write request.
+     */
+    RequestCallback write(final int hash, final RequestCallback callback) {
+        generations.incrementAndGet(stripe(hash));
+        return new RequestCallback() {
+            @Override
+            public void onResponse(byte[] response, StatusCode statusCode) {
+                generations.incrementAndGet(stripe(hash));
+                callback.onResponse(response, statusCode);
+            }
+        };
+    }
+
+    long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    int getInFlightCount() {
+        return flights.size();
+    }
+
+    private static int stripe(int hash) {
+        return hash & (GENERATION_STRIPES - 1);
+    }
+
+    private class Flight implements RequestCallback {
+        private final ByteBuffer key;
+        private final long generation;
+        private final List<RequestCallback> callbacks = new ArrayList<RequestCallback>(2);
+        private boolean done;
+
+        private Flight(ByteBuffer key, long generation, RequestCallback callback) {
+            this.key = key;
+            this.generation = generation;
+            this.callbacks.add(callback);
+        }
+
+        private synchronized boolean add(RequestCallback callback) {
+            if (done) {
+                return false;
+            }
+            callbacks.add(callback);
+            return true;
+        }
+
+        @Override
+        public void onResponse(byte[] response, StatusCode statusCode) {
+            flights.remove(key, this);
+
+            final List<RequestCallback> waiters;
+            synchronized (this) {
+                done = true;
+                waiters = callbacks;
+            }
+
+            for (RequestCallback callback : waiters) {
+                callback.onResponse(response, statusCode);
+            }
+        }
+    }
+}
@@ -22,14 +22,15 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 
 class SingleThreadEventLoop {
+    private final Transport transport;
     private final EventLoopGroup eventLoop;
     private final HashedTimingWheel timer;
 
-    SingleThreadEventLoop() {
-        this.eventLoop = new NioEventLoopGroup(1);
+    SingleThreadEventLoop(Transport transport) {
+        this.transport = transport;
+        this.eventLoop = transport.newEventLoopGroup();
         this.timer = new HashedTimingWheel(500, 256);
     }
 
@@ -76,4 +77,8 @@ class SingleThreadEventLoop {
     EventLoopGroup getEventLoopGroup() {
         return eventLoop;
     }
+
+    Transport getTransport() {
+        return transport;
+    }
 }
@@ -27,9 +27,13 @@ class SingleThreadEventLoopTrunk {
     private final AtomicInteger roundrobin = new AtomicInteger();
 
     SingleThreadEventLoopTrunk(int threadPoolSize) {
+        this(threadPoolSize, Transport.NIO);
+    }
+
+    SingleThreadEventLoopTrunk(int threadPoolSize, Transport transport) {
         eventLoops = new SingleThreadEventLoop[threadPoolSize];
         for (int i = 0; i < threadPoolSize; i++) {
-            eventLoops[i] = new SingleThreadEventLoop();
+            eventLoops[i] = new SingleThreadEventLoop(transport);
             eventLoops[i].init();
         }
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * The network transport of event loops and physical connections.
+ * <p>
+ * The native epoll transport is available only on Linux. It has no selected-key set to allocate, and it supports
+ * TCP_QUICKACK and the edge-triggered mode. If it is not available, {@link #epoll(boolean, boolean)} falls back to
+ * NIO.
+ */
+public class Transport {
+
+    private static final Logger log = LoggerFactory.getLogger(Transport.class);
+
+    public static final Transport NIO = new Transport(false, false, false);
+
+    private final boolean epoll;
+    private final boolean edgeTriggered;
+    private final boolean quickAck;
+
+    private Transport(boolean epoll, boolean edgeTriggered, boolean quickAck) {
+        this.epoll = epoll;
+        this.edgeTriggered = edgeTriggered;
+        this.quickAck = quickAck;
+    }
+
+    /**
+     * @param edgeTriggered true for the edge-triggered mode, false for the level-triggered mode
+     * @param quickAck true to set TCP_QUICKACK, so that acks are not delayed
+     * @return the epoll transport, or {@link #NIO} if epoll is not available
+     */
+    public static Transport epoll(boolean edgeTriggered, boolean quickAck) {
+        if (!Epoll.isAvailable()) {
+            log.warn("Epoll is not available, use NIO instead.", Epoll.unavailabilityCause());
+            return NIO;
+        }
+        return new Transport(true, edgeTriggered, quickAck);
+    }
+
+    boolean isEpoll() {
+        return epoll;
+    }
+
+    EventLoopGroup newEventLoopGroup() {
+        return epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+    }
+
+    void configure(Bootstrap b) {
+        b.channel(channelClass());
+        if (epoll) {
+            b.option(EpollChannelOption.EPOLL_MODE,
+                    edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+            if (quickAck) {
+                b.option(EpollChannelOption.TCP_QUICKACK, true);
+            }
+        }
+    }
+
+    private Class<? extends SocketChannel> channelClass() {
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    @Override
+    public String toString() {
+        if (!epoll) {
+            return "[nio]";
+        }
+        return new StringBuilder().append("[epoll, edgeTriggered: ").append(edgeTriggered).append(", quickAck: ")
+                .append(quickAck).append("]").toString();
+    }
+}
@@ -130,8 +130,59 @@ public class VirtualConnection {
     }
 
     public void request(final byte[] cmd, final int timeout, final RequestCallback requestCallback) {
-        final Request rqst = Request.userRequest(cmd, timeout, requestCallback, this);
+        final SingleFlight singleFlight = gcp.getSingleFlight();
+        if (singleFlight == null) {
+            send(Request.userRequest(cmd, timeout, requestCallback, this));
+        } else {
+            send(Request.userRequest(cmd, timeout, singleFlight.write(hash, requestCallback), this));
+        }
+    }
+
+    /**
+     * Sends a read-only command, which may share the response of an identical read already in flight or be
+     * duplicated to another gateway.
+     */
+    public void requestRead(final byte[] cmd, final int timeout, final RequestCallback requestCallback) {
+        final SingleFlight singleFlight = gcp.getSingleFlight();
+        if (singleFlight == null || pipelineMode) {
+            sendRead(cmd, timeout, requestCallback);
+            return;
+        }
+
+        final RequestCallback flight = singleFlight.join(hash, cmd, requestCallback);
+        if (flight != null) {
+            sendRead(cmd, timeout, flight);
+        }
+    }
+
+    private void sendRead(final byte[] cmd, final int timeout, final RequestCallback requestCallback) {
+        final HedgedRead hedgedRead = gcp.getHedgedRead();
+        if (hedgedRead == null || pipelineMode || affinity == AffinityState.WRITE) {
+            send(Request.userRequest(cmd, timeout, requestCallback, this));
+            return;
+        }
+
+        final PhysicalConnection primary;
+        synchronized (con) {
+            primary = con.pc;
+        }
 
+        final HedgedRead.Hedge hedge = hedgedRead.newHedge(requestCallback, hash, affinity, primary);
+        send(Request.userRequest(cmd, timeout, hedge.primary, this));
+        hedge.schedule(gcp, new Runnable() {
+            @Override
+            public void run() {
+                final PhysicalConnection pc = gcp.hedgeCon(hedge.hash, hedge.affinity, hedge.primaryPc);
+                if (pc != null && pc.tryAcquireCircuit(System.currentTimeMillis()) && hedge.tryHedge()) {
+                    final Request rqst = Request.userRequest(cmd, timeout, hedge.secondary, VirtualConnection.this);
+                    rqst.setPc(pc);
+                    pc.execute(rqst);
+                }
+            }
+        });
+    }
+
+    private void send(final Request rqst) {
         if (pipelineMode) {
             requestPipelineMode(rqst);
         } else {
@@ -196,6 +247,12 @@ public class VirtualConnection {
     }
 
     void onResponse(Request rqst, byte[] response, StatusCode statusCode) {
+        final PhysicalConnection pc = rqst.getPc();
+        if (pc != null) {
+            final long now = System.currentTimeMillis();
+            pc.recordResponse(statusCode, now - rqst.getConnTimestamp(), now);
+        }
+
         if (pipelineMode) {
             onResponsePipelineMode(rqst, response, statusCode);
         } else {
@@ -299,6 +356,10 @@ public class VirtualConnection {
                 return true;
             }
 
+            if (pc.isCircuitOpen(System.currentTimeMillis()) && hasPendingResponse() == false) {
+                return true;
+            }
+
             return false;
         }
 
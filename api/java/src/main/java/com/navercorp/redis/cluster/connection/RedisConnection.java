@@ -32,6 +32,7 @@ import com.navercorp.redis.cluster.gateway.AffinityState;
 public class RedisConnection {
 
     private RedisConnectionImpl impl;
+    private RedisCommandListener commandListener;
 
     /**
      * Gets the timeout.
@@ -67,6 +68,10 @@ public class RedisConnection {
         impl.allocPc(hash, affinity, pipelineMode);
     }
 
+    public void setCommandListener(RedisCommandListener commandListener) {
+        this.commandListener = commandListener;
+    }
+
     /**
      * Instantiates a new redis connection.
      *
@@ -105,6 +110,9 @@ public class RedisConnection {
      * @return the redis connection
      */
     protected RedisConnection sendCommand(final Command cmd, final byte[]... args) {
+        if (commandListener != null) {
+            commandListener.onCommand(cmd, args);
+        }
         impl.sendCommand(cmd, args);
         return this;
     }
@@ -116,6 +124,9 @@ public class RedisConnection {
      * @return the redis connection
      */
     protected RedisConnection sendCommand(final Command cmd) {
+        if (commandListener != null) {
+            commandListener.onCommand(cmd);
+        }
         impl.sendCommand(cmd);
         return this;
     }
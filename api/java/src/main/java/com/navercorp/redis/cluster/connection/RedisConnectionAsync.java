@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -67,6 +68,12 @@ class RedisConnectionAsync implements RedisConnectionImpl {
     private final Logger log = LoggerFactory.getLogger(RedisConnectionAsync.class);
     private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
 
+    /**
+     * Read commands whose replies may differ between identical calls, never shared with another request.
+     */
+    private static final Set<Command> UNSHAREABLE_COMMANDS = EnumSet.of(Command.PING, Command.RANDOMKEY,
+            Command.SRANDMEMBER, Command.INFO);
+
     private VirtualConnection vc;
     private RedisOutputStream outputStream;
     private ByteBuf outputBuf;
@@ -173,7 +180,7 @@ class RedisConnectionAsync implements RedisConnectionImpl {
         outputBuf.readBytes(cmdBytes);
         outputBuf.discardSomeReadBytes();
         
-        vc.request(cmdBytes, activeTimeout, new RequestCallback() {
+        final RequestCallback callback = new RequestCallback() {
             @Override
             public void onResponse(byte[] response, StatusCode statusCode) {
                 switch (statusCode) {
@@ -198,7 +205,13 @@ class RedisConnectionAsync implements RedisConnectionImpl {
                     break;
                 }
             }
-        });
+        };
+
+        if (RedisProtocol.isReadOnly(cmd) && !UNSHAREABLE_COMMANDS.contains(cmd)) {
+            vc.requestRead(cmdBytes, activeTimeout, callback);
+        } else {
+            vc.request(cmdBytes, activeTimeout, callback);
+        }
         
         pipelinedFutures.add(future);
     }
@@ -18,10 +18,12 @@ package com.navercorp.redis.cluster.connection;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,6 +90,25 @@ public final class RedisProtocol {
      */
     public static final byte COLON_BYTE = ':';
 
+    /**
+     * Commands that never modify the keyspace.
+     */
+    private static final Set<Command> READ_ONLY_COMMANDS = EnumSet.of(Command.PING, Command.GET, Command.EXISTS,
+            Command.TYPE, Command.KEYS, Command.RANDOMKEY, Command.TTL, Command.PTTL, Command.MGET, Command.SUBSTR,
+            Command.BITCOUNT, Command.BITPOS, Command.HGET, Command.HMGET, Command.HEXISTS, Command.HLEN,
+            Command.HKEYS, Command.HVALS, Command.HGETALL, Command.HSCAN, Command.HSTRLEN, Command.LLEN,
+            Command.LRANGE, Command.LINDEX, Command.SMEMBERS, Command.SCARD, Command.SISMEMBER, Command.SINTER,
+            Command.SUNION, Command.SDIFF, Command.SRANDMEMBER, Command.SSCAN, Command.ZRANGE, Command.ZLEXCOUNT,
+            Command.ZRANK, Command.ZRANGEBYLEX, Command.ZREVRANGEBYLEX, Command.ZREVRANK, Command.ZREVRANGE,
+            Command.ZCARD, Command.ZSCORE, Command.ZCOUNT, Command.ZRANGEBYSCORE, Command.ZREVRANGEBYSCORE,
+            Command.ZSCAN, Command.INFO, Command.STRLEN, Command.GETBIT, Command.GETRANGE, Command.OBJECT,
+            Command.DBSIZE, Command.DUMP, Command.SCAN, Command.CSCAN, Command.CSCANDIGEST, Command.CSCANLEN,
+            Command.PFCOUNT, Command.GEODIST, Command.GEOHASH, Command.GEOPOS, Command.GEORADIUS,
+            Command.GEORADIUSBYMEMBER, Command.TOUCH, Command.S3KEYS, Command.S3COUNT, Command.S3LGET,
+            Command.S3LMGET, Command.S3LKEYS, Command.S3LVALS, Command.S3LCOUNT, Command.S3LEXISTS, Command.S3LTTL,
+            Command.S3SGET, Command.S3SMGET, Command.S3SKEYS, Command.S3SCOUNT, Command.S3SEXISTS, Command.S3STTL,
+            Command.S3SVALS);
+
     /**
      * Instantiates a new redis protocol.
      */
@@ -95,6 +116,16 @@ public final class RedisProtocol {
         // this prevent the class from instantiation
     }
 
+    /**
+     * Checks if the command only reads data.
+     *
+     * @param cmd the command
+     * @return true, if the command does not modify any key
+     */
+    public static boolean isReadOnly(final Command cmd) {
+        return READ_ONLY_COMMANDS.contains(cmd);
+    }
+
     /**
      * Send command.
      *
@@ -31,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.navercorp.nbasearc.gcp.GatewayConnectionPool;
+import com.navercorp.nbasearc.gcp.Transport;
 import com.navercorp.redis.cluster.util.DaemonThreadFactory;
 
 /**
@@ -64,9 +65,10 @@ public class Gateway implements GatewayServerData {
      */
     private GatewayServerSelector selector;
     private NodeWatcher nodeWatcher;
-    private GatewayAffinity affinity = new GatewayAffinity();
+    private volatile GatewayAffinity affinity = new GatewayAffinity();
     
     private final GatewayConnectionPool gcp;
+    private final NearCache nearCache;
     private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
             new DaemonThreadFactory("nbase-arc-gateway-closer-", true));
 
@@ -79,7 +81,22 @@ public class Gateway implements GatewayServerData {
         this.config = config;
         log.info("[Gateway] Starting " + config);
         
-        gcp = new GatewayConnectionPool(config.getEventLoopThreadCount(), config.isHealthCheckUsed());
+        final Transport transport = config.isEpollUsed()
+                ? Transport.epoll(config.isEpollEdgeTriggered(), config.isEpollQuickAck()) : Transport.NIO;
+        gcp = new GatewayConnectionPool(config.getEventLoopThreadCount(), config.isHealthCheckUsed(),
+                config.isSingleFlightUsed(), transport);
+        if (config.isHedgedReadUsed()) {
+            gcp.enableHedgedRead(config.getHedgedReadDelayMillis());
+        }
+        gcp.setReconnectMaxInterval(config.getPhysicalConnectionReconnectMaxInterval());
+        if (config.isStandbyConnectionUsed()) {
+            gcp.enableStandbyConnection();
+        }
+        if (config.isCircuitBreakerUsed()) {
+            gcp.enableCircuitBreaker(config.getCircuitBreakerFailureRatePercent(),
+                    config.getCircuitBreakerSlowCallMillis(), config.getCircuitBreakerOpenMillis());
+        }
+        nearCache = config.isNearCacheUsed() ? new NearCache(config) : null;
 
         List<GatewayAddress> addresses = null;
         if (config.getDomainAddress() != null) {
@@ -194,7 +211,7 @@ public class Gateway implements GatewayServerData {
     @Override
     public void reload(GatewayAffinity affinity) {
         this.affinity = affinity;
-        this.gcp.updateAffinity(affinity.getTable());
+        this.gcp.updateAffinity(affinity);
     }
 
     /**
@@ -297,6 +314,13 @@ public class Gateway implements GatewayServerData {
         return selector.get(list);
     }
 
+    /**
+     * @return the near cache, or null if it is not used
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
     /*
      * @see GatewayServerData#getServers()
      */
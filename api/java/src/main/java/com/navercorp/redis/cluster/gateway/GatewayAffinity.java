@@ -17,72 +17,256 @@
 package com.navercorp.redis.cluster.gateway;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
-import com.navercorp.redis.cluster.gateway.GatewayAffinity.AffinityInfo;
-
 /**
+ * Immutable snapshot of the gateway affinity of every partition. Build a new snapshot with {@link Builder} and swap
+ * it in as a whole, so that readers never see a partially loaded affinity.
+ * <p>
+ * Partitions served by the same gateways share one {@link AffinityInfo}.
+ * <p>
+ * The deprecated {@code put} methods are kept for compatibility and rebuild the whole table on every call.
+ *
  * @author jaehong.kim
  */
 public class GatewayAffinity {
 
-    // gateway id : affinity(partition number & state)
-    private ConcurrentHashMap<Integer, AffinityInfo> table = new ConcurrentHashMap<Integer, AffinityInfo>();
+    // partition number : affinity(gateway ids by state)
+    private volatile AffinityInfo[] table;
+
+    // the runs the table was built from, kept only for the deprecated mutators
+    private final List<Run> runs;
+    private int partitionCount;
+
+    public GatewayAffinity() {
+        this(new AffinityInfo[0], new ArrayList<Run>(), 0);
+    }
+
+    private GatewayAffinity(final AffinityInfo[] table, final List<Run> runs, final int partitionCount) {
+        this.table = table;
+        this.runs = runs;
+        this.partitionCount = partitionCount;
+    }
 
     public List<Integer> get(final int partitionNumber, final AffinityState state) {
-        final AffinityInfo info = table.get(partitionNumber);
-        if (info == null) {
+        final AffinityInfo[] table = this.table;
+        if (partitionNumber < 0 || partitionNumber >= table.length || table[partitionNumber] == null) {
             // not found affinity partition
-            return new ArrayList<Integer>();
+            return Collections.emptyList();
         }
 
-        return info.get(state);
+        return table[partitionNumber].get(state);
     }
 
-    public void put(final int id, final String affinityCode) {
-        // RLE decode
-        final String affinity = RunLengthHelper.decode(affinityCode);
-        for (int i = 0; i < affinity.length(); i++) {
-            final AffinityState state = AffinityState.get(affinity.charAt(i));
-            if (state != AffinityState.NONE) {
-                put(i, id, state);
+    /**
+     * Adds the affinity of a gateway and rebuilds the whole table.
+     *
+     * @deprecated build a new snapshot with {@link Builder#put(int, String)} instead.
+     */
+    @Deprecated
+    public synchronized void put(final int id, final String affinityCode) {
+        final Builder builder = new Builder(runs, partitionCount).put(id, affinityCode);
+        partitionCount = builder.partitionCount;
+        table = builder.buildTable();
+    }
+
+    /**
+     * Adds the affinity of a gateway for one partition and rebuilds the whole table.
+     *
+     * @deprecated build a new snapshot with {@link Builder#put(int, int, AffinityState)} instead.
+     */
+    @Deprecated
+    public synchronized void put(final int partitionNumber, final int gatewayId, final AffinityState state) {
+        final Builder builder = new Builder(runs, partitionCount).put(partitionNumber, gatewayId, state);
+        partitionCount = builder.partitionCount;
+        table = builder.buildTable();
+    }
+
+    /**
+     * @return a copy of the table keyed by partition number
+     * @deprecated use {@link #get(int, AffinityState)}.
+     */
+    @Deprecated
+    ConcurrentHashMap<Integer, AffinityInfo> getTable() {
+        final AffinityInfo[] table = this.table;
+        final ConcurrentHashMap<Integer, AffinityInfo> map = new ConcurrentHashMap<Integer, AffinityInfo>();
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                map.put(i, table[i]);
             }
         }
+        return map;
     }
 
-    public void put(final int partitionNumber, final int gatewayId, final AffinityState state) {
-        AffinityInfo info = table.get(partitionNumber);
-        if (info == null) {
-            info = new AffinityInfo();
+    /**
+     * @return the number of distinct AffinityInfo instances
+     */
+    int getInfoCount() {
+        final AffinityInfo[] table = this.table;
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && (i == 0 || table[i] != table[i - 1])) {
+                count++;
+            }
         }
-        // concurrent
-        AffinityInfo prev = table.putIfAbsent(partitionNumber, info);
-        if (prev != null) {
-            info = prev;
+        return count;
+    }
+
+    public String toString() {
+        final AffinityInfo[] table = this.table;
+        final StringBuilder builder = new StringBuilder("{");
+        int start = 0;
+        for (int i = 1; i <= table.length; i++) {
+            if (i < table.length && table[i] == table[start]) {
+                continue;
+            }
+            if (table[start] != null) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(start).append("-").append(i - 1).append("=").append(table[start]);
+            }
+            start = i;
         }
-        info.put(gatewayId, state);
+        builder.append("}");
+        return builder.toString();
     }
 
-    ConcurrentHashMap<Integer, AffinityInfo> getTable() {
-        return table;
+    /**
+     * Collects the affinity of each gateway as runs of partitions and builds a snapshot with a single sweep over the
+     * sorted run boundaries. Not thread safe.
+     */
+    public static class Builder {
+        private final List<Run> runs;
+        private int partitionCount;
+
+        public Builder() {
+            this.runs = new ArrayList<Run>();
+        }
+
+        private Builder(final List<Run> runs, final int partitionCount) {
+            this.runs = runs;
+            this.partitionCount = partitionCount;
+        }
+
+        public Builder put(final int id, final String affinityCode) {
+            // RLE decode
+            final int length = RunLengthHelper.decode(affinityCode, new RunLengthHelper.RunHandler() {
+                public void run(char mark, int start, int length) {
+                    final AffinityState state = AffinityState.get(mark);
+                    if (state != AffinityState.NONE && length > 0) {
+                        runs.add(new Run(start, start + length, id, state));
+                    }
+                }
+            });
+            partitionCount = Math.max(partitionCount, length);
+            return this;
+        }
+
+        public Builder put(final int partitionNumber, final int gatewayId, final AffinityState state) {
+            if (state != AffinityState.NONE) {
+                runs.add(new Run(partitionNumber, partitionNumber + 1, gatewayId, state));
+            }
+            partitionCount = Math.max(partitionCount, partitionNumber + 1);
+            return this;
+        }
+
+        public GatewayAffinity build() {
+            return new GatewayAffinity(buildTable(), new ArrayList<Run>(runs), partitionCount);
+        }
+
+        private AffinityInfo[] buildTable() {
+            final AffinityInfo[] table = new AffinityInfo[partitionCount];
+            final Map<AffinityInfo, AffinityInfo> infos = new HashMap<AffinityInfo, AffinityInfo>();
+
+            // run indexes sorted by start and by end; the index keeps gateway ids in the order they were put.
+            final long[] starts = new long[runs.size()];
+            final long[] ends = new long[runs.size()];
+            for (int i = 0; i < runs.size(); i++) {
+                starts[i] = ((long) runs.get(i).start << 32) | i;
+                ends[i] = ((long) runs.get(i).end << 32) | i;
+            }
+            Arrays.sort(starts);
+            Arrays.sort(ends);
+
+            final TreeMap<Integer, Run> active = new TreeMap<Integer, Run>();
+            int s = 0;
+            int e = 0;
+            int from = 0;
+            while (from < partitionCount) {
+                while (e < ends.length && (int) (ends[e] >>> 32) <= from) {
+                    active.remove((int) ends[e++]);
+                }
+                while (s < starts.length && (int) (starts[s] >>> 32) <= from) {
+                    final int index = (int) starts[s++];
+                    if (runs.get(index).end > from) {
+                        active.put(index, runs.get(index));
+                    }
+                }
+
+                int to = partitionCount;
+                if (s < starts.length) {
+                    to = Math.min(to, (int) (starts[s] >>> 32));
+                }
+                if (e < ends.length) {
+                    to = Math.min(to, (int) (ends[e] >>> 32));
+                }
+
+                if (!active.isEmpty()) {
+                    final List<Integer> writeIds = new ArrayList<Integer>();
+                    final List<Integer> otherIds = new ArrayList<Integer>();
+                    for (Run run : active.values()) {
+                        if (run.state == AffinityState.ALL || run.state == AffinityState.WRITE) {
+                            // write = all or write
+                            writeIds.add(run.gatewayId);
+                        }
+                        otherIds.add(run.gatewayId);
+                    }
+
+                    AffinityInfo info = new AffinityInfo(writeIds, otherIds);
+                    final AffinityInfo shared = infos.get(info);
+                    if (shared != null) {
+                        info = shared;
+                    } else {
+                        infos.put(info, info);
+                    }
+                    Arrays.fill(table, from, to, info);
+                }
+                from = to;
+            }
+
+            return table;
+        }
     }
 
-    public String toString() {
-        return table.toString();
+    private static class Run {
+        private final int start;
+        private final int end;
+        private final int gatewayId;
+        private final AffinityState state;
+
+        private Run(int start, int end, int gatewayId, AffinityState state) {
+            this.start = start;
+            this.end = end;
+            this.gatewayId = gatewayId;
+            this.state = state;
+        }
     }
 
     static public class AffinityInfo {
         // for performance
-        private final List<Integer> writeIds = new ArrayList<Integer>();
-        private final List<Integer> otherIds = new ArrayList<Integer>();
+        private final List<Integer> writeIds;
+        private final List<Integer> otherIds;
 
-        public void put(final int id, final AffinityState state) {
-            if (state == AffinityState.ALL || state == AffinityState.WRITE) {
-                // write = all or write
-                writeIds.add(id);
-            }
-            otherIds.add(id);
+        AffinityInfo(final List<Integer> writeIds, final List<Integer> otherIds) {
+            this.writeIds = Collections.unmodifiableList(writeIds);
+            this.otherIds = Collections.unmodifiableList(otherIds);
         }
 
         public List<Integer> get(final AffinityState state) {
@@ -93,6 +277,23 @@ public class GatewayAffinity {
             return otherIds;
         }
 
+        @Override
+        public int hashCode() {
+            return writeIds.hashCode() * 31 + otherIds.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof AffinityInfo)) {
+                return false;
+            }
+            final AffinityInfo other = (AffinityInfo) obj;
+            return writeIds.equals(other.writeIds) && otherIds.equals(other.otherIds);
+        }
+
         @Override
         public String toString() {
             StringBuilder builder = new StringBuilder();
@@ -28,6 +28,8 @@ import com.navercorp.redis.cluster.async.BackgroundPool;
 import com.navercorp.redis.cluster.pipeline.RedisClusterPipeline;
 import com.navercorp.redis.cluster.triples.BinaryTriplesRedisClusterCommands;
 import com.navercorp.redis.cluster.triples.TriplesRedisClusterCommands;
+import com.navercorp.redis.cluster.util.ScanIteratorFactory;
+import com.navercorp.redis.cluster.util.ScanIteratorFactory.ClusterScanIterator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,7 @@ import redis.clients.jedis.Tuple;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.params.geo.GeoRadiusParam;
 import redis.clients.jedis.params.sortedset.ZAddParams;
+import redis.clients.util.SafeEncoder;
 
 /**
  * redis cluster<br>
@@ -106,6 +109,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
     private Gateway gateway;
     private final int maxRetry;
     private BackgroundPool backgroundPool;
+    private final NearCache nearCache;
 
     /**
      * Instantiates a new gateway client.
@@ -116,6 +120,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
         this.gateway = new Gateway(config);
         this.maxRetry = config.getMaxRetry();
         this.backgroundPool = new BackgroundPool(config.getBackgroundPoolSize());
+        this.nearCache = this.gateway.getNearCache();
     }
 
     /**
@@ -194,6 +199,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
         try {
             redis = server.getResource(); // JedisConnectionException
             redis.getConnection().allocPc(hash, action.getState(), false);
+            redis.getConnection().setCommandListener(nearCache);
             final T result = action.doInRedisCluster(redis); // JedisConnectionException, JedisDataException, JedisException or RuntimeException.
             server.returnResource(redis);
             return result;
@@ -212,7 +218,51 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
             final String message = toExecuteInfo(count, startedTime, server, redis);
             server.returnResource(redis);
             throw new GatewayException(message, ex);
+        } finally {
+            if (nearCache != null) {
+                nearCache.afterExecute();
+            }
+        }
+    }
+
+    /**
+     * execute a read through the near cache, if it is used and the key is cacheable.
+     *
+     * @param name   the command name, distinct per reply type
+     * @param key    the key
+     * @param args   the command arguments following the key
+     * @param action {@link RedisClusterCallback}
+     * @return object returned by the action or cached
+     */
+    private <T> T executeCached(final String name, final String key, final String[] args,
+                                final RedisClusterCallback<T> action) {
+        if (nearCache == null) {
+            return execute(action);
+        }
+
+        final byte[][] bargs = new byte[args.length][];
+        for (int i = 0; i < args.length; i++) {
+            bargs[i] = SafeEncoder.encode(args[i]);
+        }
+        return executeCached(name, SafeEncoder.encode(key), bargs, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T executeCached(final String name, final byte[] key, final byte[][] args,
+                                final RedisClusterCallback<T> action) {
+        if (nearCache == null || !nearCache.isCacheable(key)) {
+            return execute(action);
         }
+
+        final NearCache.Slot slot = nearCache.slot(key, name, args);
+        final Object cached = slot.get();
+        if (cached != NearCache.MISS) {
+            return (T) cached;
+        }
+
+        final T result = execute(action);
+        slot.set(result);
+        return result;
     }
 
     // time, retry, gateway server information.
@@ -659,7 +709,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see RedisClusterCommands#get(java.lang.String)
 	 */
     public String get(final String key) {
-        return this.execute(new RedisClusterCallback<String>() {
+        return executeCached("get", key, new String[0], new RedisClusterCallback<String>() {
             public String doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.get(key);
             }
@@ -678,7 +728,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see BinaryRedisClusterCommands#get(byte[])
 	 */
     public byte[] get(final byte[] key) {
-        return this.execute(new RedisClusterCallback<byte[]>() {
+        return executeCached("getBinary", key, new byte[0][], new RedisClusterCallback<byte[]>() {
             public byte[] doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.get(key);
             }
@@ -4249,7 +4299,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see RedisClusterCommands#hget(java.lang.String, java.lang.String)
 	 */
     public String hget(final String key, final String field) {
-        return this.execute(new RedisClusterCallback<String>() {
+        return executeCached("hget", key, new String[] { field }, new RedisClusterCallback<String>() {
             public String doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.hget(key, field);
             }
@@ -4268,7 +4318,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see BinaryRedisClusterCommands#hget(byte[], byte[])
 	 */
     public byte[] hget(final byte[] key, final byte[] field) {
-        return this.execute(new RedisClusterCallback<byte[]>() {
+        return executeCached("hgetBinary", key, new byte[][] { field }, new RedisClusterCallback<byte[]>() {
             public byte[] doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.hget(key, field);
             }
@@ -4740,6 +4790,17 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
             }
         });
     }
+
+    /**
+     * Scans the keys of every partition with CSCAN, using parallelism threads.
+     *
+     * @param params      MATCH and COUNT of each CSCAN
+     * @param parallelism the number of partitions scanned at the same time
+     * @return an iterator that must be closed if it is not consumed to the end
+     */
+    public ClusterScanIterator clusterScan(final ScanParams params, final int parallelism) {
+        return ScanIteratorFactory.createClusterScanIterator(this, params, parallelism);
+    }
     
     public ScanResult<String> sscan(final String key, final String cursor) {
         return this.execute(new RedisClusterCallback<ScanResult<String>>() {
@@ -4969,7 +5030,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see TriplesRedisClusterCommands#slget(java.lang.String, java.lang.String, java.lang.String)
 	 */
     public List<String> slget(final String key, final String field, final String name) {
-        return this.execute(new RedisClusterCallback<List<String>>() {
+        return executeCached("slget", key, new String[] { field, name }, new RedisClusterCallback<List<String>>() {
             public List<String> doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.slget(key, field, name);
             }
@@ -4988,7 +5049,7 @@ public class GatewayClient implements RedisClusterCommands, BinaryRedisClusterCo
 	 * @see BinaryTriplesRedisClusterCommands#slget(byte[], byte[], byte[])
 	 */
     public List<byte[]> slget(final byte[] key, final byte[] field, final byte[] name) {
-        return this.execute(new RedisClusterCallback<List<byte[]>>() {
+        return executeCached("slgetBinary", key, new byte[][] { field, name }, new RedisClusterCallback<List<byte[]>>() {
             public List<byte[]> doInRedisCluster(RedisCluster redisCluster) {
                 return redisCluster.slget(key, field, name);
             }
@@ -67,8 +67,38 @@ public class GatewayConfig {
 
     public static final int DEFAULT_PHYSICAL_CONNECTION_RECONNECT_INTERVAL = 2000;
 
+    public static final int DEFAULT_PHYSICAL_CONNECTION_RECONNECT_MAX_INTERVAL = 16000;
+
+    public static final boolean DEFAULT_STANDBY_CONNECTION_USED = false;
+
+    public static final boolean DEFAULT_EPOLL_USED = false;
+
+    public static final boolean DEFAULT_EPOLL_EDGE_TRIGGERED = true;
+
+    public static final boolean DEFAULT_EPOLL_QUICK_ACK = false;
+
+    public static final boolean DEFAULT_CIRCUIT_BREAKER_USED = false;
+
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT = 50;
+
+    public static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_MILLIS = 0;
+
+    public static final int DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS = 1000;
+
     public static final int DEFAULT_EVENT_LOOP_THREAD_COUNT = 1;
 
+    public static final boolean DEFAULT_NEAR_CACHE_USED = false;
+
+    public static final long DEFAULT_NEAR_CACHE_MAX_SIZE = 10000;
+
+    public static final long DEFAULT_NEAR_CACHE_TTL_MILLIS = 100;
+
+    public static final boolean DEFAULT_SINGLE_FLIGHT_USED = false;
+
+    public static final boolean DEFAULT_HEDGED_READ_USED = false;
+
+    public static final int DEFAULT_HEDGED_READ_DELAY_MILLIS = 0;
+
     /**
      * The ip address.
      */
@@ -139,8 +169,43 @@ public class GatewayConfig {
     
     private int physicalConnectionReconnectInterval = DEFAULT_PHYSICAL_CONNECTION_RECONNECT_INTERVAL;
     
+    private int physicalConnectionReconnectMaxInterval = DEFAULT_PHYSICAL_CONNECTION_RECONNECT_MAX_INTERVAL;
+    
+    private boolean standbyConnectionUsed = DEFAULT_STANDBY_CONNECTION_USED;
+    
+    private boolean epollUsed = DEFAULT_EPOLL_USED;
+    
+    private boolean epollEdgeTriggered = DEFAULT_EPOLL_EDGE_TRIGGERED;
+    
+    private boolean epollQuickAck = DEFAULT_EPOLL_QUICK_ACK;
+    
+    private boolean circuitBreakerUsed = DEFAULT_CIRCUIT_BREAKER_USED;
+    
+    private int circuitBreakerFailureRatePercent = DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT;
+    
+    private int circuitBreakerSlowCallMillis = DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_MILLIS;
+    
+    private int circuitBreakerOpenMillis = DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS;
+    
     private int eventLoopThreadCount = DEFAULT_EVENT_LOOP_THREAD_COUNT;
 
+    private boolean nearCacheUsed = DEFAULT_NEAR_CACHE_USED;
+
+    private long nearCacheMaxSize = DEFAULT_NEAR_CACHE_MAX_SIZE;
+
+    private long nearCacheTtlMillis = DEFAULT_NEAR_CACHE_TTL_MILLIS;
+
+    /**
+     * comma separated key prefixes, null means every key.
+     */
+    private String nearCacheKeyPrefixes;
+
+    private boolean singleFlightUsed = DEFAULT_SINGLE_FLIGHT_USED;
+
+    private boolean hedgedReadUsed = DEFAULT_HEDGED_READ_USED;
+
+    private int hedgedReadDelayMillis = DEFAULT_HEDGED_READ_DELAY_MILLIS;
+
     /**
      * Gets the ip address.
      *
@@ -397,6 +462,119 @@ public class GatewayConfig {
         this.physicalConnectionReconnectInterval = physicalConnectionReconnectInterval;
     }
 
+    public int getPhysicalConnectionReconnectMaxInterval() {
+        return physicalConnectionReconnectMaxInterval;
+    }
+
+    /**
+     * Sets the upper bound of the reconnect delay. The delay starts from physicalConnectionReconnectInterval, doubles
+     * on each failed attempt and half of it is random, so that clients do not reconnect in lockstep.
+     *
+     * @param physicalConnectionReconnectMaxInterval the max delay in milliseconds
+     */
+    public void setPhysicalConnectionReconnectMaxInterval(int physicalConnectionReconnectMaxInterval) {
+        this.physicalConnectionReconnectMaxInterval = physicalConnectionReconnectMaxInterval;
+    }
+
+    public boolean isStandbyConnectionUsed() {
+        return standbyConnectionUsed;
+    }
+
+    /**
+     * Keeps one more physical connection per gateway that is connected and health-checked ahead of time. It takes
+     * the place of a lost connection without waiting for a reconnect.
+     *
+     * @param standbyConnectionUsed true to keep a standby connection
+     */
+    public void setStandbyConnectionUsed(boolean standbyConnectionUsed) {
+        this.standbyConnectionUsed = standbyConnectionUsed;
+    }
+
+    public boolean isEpollUsed() {
+        return epollUsed;
+    }
+
+    /**
+     * Uses the native epoll transport for gateway connections instead of NIO. It falls back to NIO if epoll is not
+     * available, e.g. on a platform other than Linux.
+     *
+     * @param epollUsed true to use epoll
+     */
+    public void setEpollUsed(boolean epollUsed) {
+        this.epollUsed = epollUsed;
+    }
+
+    public boolean isEpollEdgeTriggered() {
+        return epollEdgeTriggered;
+    }
+
+    /**
+     * @param epollEdgeTriggered true for the edge-triggered mode of epoll, false for the level-triggered mode
+     */
+    public void setEpollEdgeTriggered(boolean epollEdgeTriggered) {
+        this.epollEdgeTriggered = epollEdgeTriggered;
+    }
+
+    public boolean isEpollQuickAck() {
+        return epollQuickAck;
+    }
+
+    /**
+     * @param epollQuickAck true to set TCP_QUICKACK on epoll connections, so that acks are not delayed
+     */
+    public void setEpollQuickAck(boolean epollQuickAck) {
+        this.epollQuickAck = epollQuickAck;
+    }
+
+    public boolean isCircuitBreakerUsed() {
+        return circuitBreakerUsed;
+    }
+
+    /**
+     * Gives a circuit breaker to each physical connection, that is, to each pair of a gateway and an event loop. A
+     * connection whose recent requests mostly timed out, failed or were slow is skipped at once, instead of until the
+     * next health check, and a few probe requests decide when it is used again.
+     *
+     * @param circuitBreakerUsed true to use circuit breakers
+     */
+    public void setCircuitBreakerUsed(boolean circuitBreakerUsed) {
+        this.circuitBreakerUsed = circuitBreakerUsed;
+    }
+
+    public int getCircuitBreakerFailureRatePercent() {
+        return circuitBreakerFailureRatePercent;
+    }
+
+    /**
+     * @param circuitBreakerFailureRatePercent the rate of failed or slow requests in percent that opens a circuit
+     */
+    public void setCircuitBreakerFailureRatePercent(int circuitBreakerFailureRatePercent) {
+        this.circuitBreakerFailureRatePercent = circuitBreakerFailureRatePercent;
+    }
+
+    public int getCircuitBreakerSlowCallMillis() {
+        return circuitBreakerSlowCallMillis;
+    }
+
+    /**
+     * @param circuitBreakerSlowCallMillis a request slower than this counts as a failure, 0 to count only timeouts
+     *            and connection errors
+     */
+    public void setCircuitBreakerSlowCallMillis(int circuitBreakerSlowCallMillis) {
+        this.circuitBreakerSlowCallMillis = circuitBreakerSlowCallMillis;
+    }
+
+    public int getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    /**
+     * @param circuitBreakerOpenMillis the time that a circuit stays open before probe requests are sent
+     */
+    public void setCircuitBreakerOpenMillis(int circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
     public int getEventLoopThreadCount() {
         return eventLoopThreadCount;
     }
@@ -405,6 +583,90 @@ public class GatewayConfig {
         this.eventLoopThreadCount = eventLoopThreadCount;
     }
 
+    public boolean isNearCacheUsed() {
+        return nearCacheUsed;
+    }
+
+    /**
+     * Caches get, hget and slget replies in the client. A cached reply may be stale for up to
+     * nearCacheTtlMillis if the key is written by another client.
+     *
+     * @param nearCacheUsed true to use the near cache
+     */
+    public void setNearCacheUsed(boolean nearCacheUsed) {
+        this.nearCacheUsed = nearCacheUsed;
+    }
+
+    public long getNearCacheMaxSize() {
+        return nearCacheMaxSize;
+    }
+
+    public void setNearCacheMaxSize(long nearCacheMaxSize) {
+        this.nearCacheMaxSize = nearCacheMaxSize;
+    }
+
+    public long getNearCacheTtlMillis() {
+        return nearCacheTtlMillis;
+    }
+
+    public void setNearCacheTtlMillis(long nearCacheTtlMillis) {
+        this.nearCacheTtlMillis = nearCacheTtlMillis;
+    }
+
+    public String getNearCacheKeyPrefixes() {
+        return nearCacheKeyPrefixes;
+    }
+
+    /**
+     * Sets the key prefixes to cache.
+     *
+     * @param nearCacheKeyPrefixes [prefix,...] e.g. "user:,item:", null caches every key
+     */
+    public void setNearCacheKeyPrefixes(String nearCacheKeyPrefixes) {
+        this.nearCacheKeyPrefixes = nearCacheKeyPrefixes;
+    }
+
+    public boolean isSingleFlightUsed() {
+        return singleFlightUsed;
+    }
+
+    /**
+     * Shares one in-flight request among concurrent identical read commands. A reply may be up to one round trip
+     * older than the read that joined it.
+     *
+     * @param singleFlightUsed true to coalesce identical reads
+     */
+    public void setSingleFlightUsed(boolean singleFlightUsed) {
+        this.singleFlightUsed = singleFlightUsed;
+    }
+
+    public boolean isHedgedReadUsed() {
+        return hedgedReadUsed;
+    }
+
+    /**
+     * Sends a duplicate of a slow read command to another gateway and takes the first reply. At most 10% of reads
+     * are duplicated.
+     *
+     * @param hedgedReadUsed true to hedge reads
+     */
+    public void setHedgedReadUsed(boolean hedgedReadUsed) {
+        this.hedgedReadUsed = hedgedReadUsed;
+    }
+
+    public int getHedgedReadDelayMillis() {
+        return hedgedReadDelayMillis;
+    }
+
+    /**
+     * Sets the delay before a duplicate read is sent.
+     *
+     * @param hedgedReadDelayMillis delay in milliseconds, 0 to use the 95th percentile of recent read latencies
+     */
+    public void setHedgedReadDelayMillis(int hedgedReadDelayMillis) {
+        this.hedgedReadDelayMillis = hedgedReadDelayMillis;
+    }
+
     /**
      * Trim <i>all</i> whitespace from the given String: leading, trailing, and
      * inbetween characters.
@@ -469,6 +731,48 @@ public class GatewayConfig {
         builder.append(zkSessionTimeout);
         builder.append(", zkConnectTimeout=");
         builder.append(zkConnectTimeout);
+        builder.append(", physicalConnectionReconnectInterval=");
+        builder.append(physicalConnectionReconnectInterval);
+        builder.append(", physicalConnectionReconnectMaxInterval=");
+        builder.append(physicalConnectionReconnectMaxInterval);
+        builder.append(", standbyConnectionUsed=");
+        builder.append(standbyConnectionUsed);
+        builder.append(", epollUsed=");
+        builder.append(epollUsed);
+        if (epollUsed) {
+            builder.append(", epollEdgeTriggered=");
+            builder.append(epollEdgeTriggered);
+            builder.append(", epollQuickAck=");
+            builder.append(epollQuickAck);
+        }
+        builder.append(", circuitBreakerUsed=");
+        builder.append(circuitBreakerUsed);
+        if (circuitBreakerUsed) {
+            builder.append(", circuitBreakerFailureRatePercent=");
+            builder.append(circuitBreakerFailureRatePercent);
+            builder.append(", circuitBreakerSlowCallMillis=");
+            builder.append(circuitBreakerSlowCallMillis);
+            builder.append(", circuitBreakerOpenMillis=");
+            builder.append(circuitBreakerOpenMillis);
+        }
+        builder.append(", nearCacheUsed=");
+        builder.append(nearCacheUsed);
+        if (nearCacheUsed) {
+            builder.append(", nearCacheMaxSize=");
+            builder.append(nearCacheMaxSize);
+            builder.append(", nearCacheTtlMillis=");
+            builder.append(nearCacheTtlMillis);
+            builder.append(", nearCacheKeyPrefixes=");
+            builder.append(nearCacheKeyPrefixes);
+        }
+        builder.append(", singleFlightUsed=");
+        builder.append(singleFlightUsed);
+        builder.append(", hedgedReadUsed=");
+        builder.append(hedgedReadUsed);
+        if (hedgedReadUsed) {
+            builder.append(", hedgedReadDelayMillis=");
+            builder.append(hedgedReadDelayMillis);
+        }
         builder.append("}");
         return builder.toString();
     }
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.gateway;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.navercorp.redis.cluster.connection.RedisCommandListener;
+import com.navercorp.redis.cluster.connection.RedisProtocol;
+import com.navercorp.redis.cluster.connection.RedisProtocol.Command;
+
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Bounded-staleness client side cache for hot read keys.
+ * <p>
+ * Entries are grouped by redis key and expire {@link GatewayConfig#getNearCacheTtlMillis()} after the key was cached,
+ * so values written by other clients are visible after at most one TTL. Writes sent through the same client
+ * invalidate the key when the command is sent and once more when the reply arrives.
+ * <p>
+ * When the cache is full, a key is admitted only if a TinyLFU frequency sketch has seen it often enough, which keeps
+ * one-hit keys from evicting hot ones.
+ */
+public class NearCache implements RedisCommandListener {
+
+    private final Logger log = LoggerFactory.getLogger(NearCache.class);
+
+    /**
+     * Returned by {@link Slot#get()} when the value is not cached.
+     */
+    static final Object MISS = new Object();
+
+    private static final Object NULL_VALUE = new Object();
+    private static final int ADMIT_FREQUENCY = 2;
+    private static final int STAMP_STRIPES = 1024;
+
+    private static final Set<Command> MULTI_KEY_COMMANDS = EnumSet.of(Command.DEL, Command.MSET, Command.MSETNX,
+            Command.RENAME, Command.RENAMENX, Command.RENAMEX, Command.SMOVE, Command.RPOPLPUSH, Command.BRPOPLPUSH,
+            Command.SINTERSTORE, Command.SUNIONSTORE, Command.SDIFFSTORE, Command.ZUNIONSTORE, Command.ZINTERSTORE,
+            Command.EVAL, Command.EVALSHA);
+
+    private final Cache<Key, ConcurrentMap<Key, Object>> cache;
+    private final long maxSize;
+    private final byte[][] prefixes;
+    private final FrequencySketch sketch;
+
+    /**
+     * Bumped on every invalidation, striped by key hash, so that a read that raced with a write is not cached.
+     */
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    /**
+     * Keys written by the current thread whose replies have not been received yet.
+     */
+    private final ThreadLocal<List<Key>> pendingWrites = new ThreadLocal<List<Key>>() {
+        @Override
+        protected List<Key> initialValue() {
+            return new ArrayList<Key>();
+        }
+    };
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public NearCache(final GatewayConfig config) {
+        this(config.getNearCacheMaxSize(), config.getNearCacheTtlMillis(), config.getNearCacheKeyPrefixes());
+    }
+
+    /**
+     * @param maxSize     the maximum number of cached keys
+     * @param ttlMillis   the time a key stays cached
+     * @param keyPrefixes comma separated key prefixes to cache, or null to cache every key
+     */
+    public NearCache(final long maxSize, final long ttlMillis, final String keyPrefixes) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive. maxSize=" + maxSize);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive. ttlMillis=" + ttlMillis);
+        }
+
+        this.maxSize = maxSize;
+        this.prefixes = toPrefixes(keyPrefixes);
+        this.sketch = new FrequencySketch(maxSize);
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        log.info("[NearCache] Created {maxSize={}, ttlMillis={}, keyPrefixes={}}",
+                new Object[] { maxSize, ttlMillis, keyPrefixes });
+    }
+
+    private static byte[][] toPrefixes(final String keyPrefixes) {
+        if (keyPrefixes == null || keyPrefixes.trim().length() == 0) {
+            return null;
+        }
+
+        final List<byte[]> list = new ArrayList<byte[]>();
+        for (String prefix : keyPrefixes.split(",")) {
+            prefix = prefix.trim();
+            if (prefix.length() > 0) {
+                list.add(SafeEncoder.encode(prefix));
+            }
+        }
+        return list.toArray(new byte[list.size()][]);
+    }
+
+    public boolean isCacheable(final byte[] key) {
+        if (key == null) {
+            return false;
+        }
+        if (prefixes == null) {
+            return true;
+        }
+
+        for (byte[] prefix : prefixes) {
+            if (startsWith(key, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(final byte[] key, final byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up a cached reply. The returned slot must be used to store the reply on a miss.
+     *
+     * @param key  the redis key
+     * @param name the command name, distinct per reply type
+     * @param args the command arguments following the key
+     */
+    Slot slot(final byte[] key, final String name, final byte[]... args) {
+        final Key k = new Key(key);
+        sketch.increment(k.hash);
+        return new Slot(k, subKey(name, args), stamps.get(stripe(k)));
+    }
+
+    private static Key subKey(final String name, final byte[]... args) {
+        final byte[] bname = SafeEncoder.encode(name);
+        int length = bname.length;
+        for (byte[] arg : args) {
+            length += 4 + arg.length;
+        }
+
+        final byte[] data = new byte[length];
+        System.arraycopy(bname, 0, data, 0, bname.length);
+        int pos = bname.length;
+        for (byte[] arg : args) {
+            data[pos++] = (byte) (arg.length >>> 24);
+            data[pos++] = (byte) (arg.length >>> 16);
+            data[pos++] = (byte) (arg.length >>> 8);
+            data[pos++] = (byte) arg.length;
+            System.arraycopy(arg, 0, data, pos, arg.length);
+            pos += arg.length;
+        }
+        return new Key(data);
+    }
+
+    public void invalidate(final byte[] key) {
+        invalidate(new Key(key));
+    }
+
+    private void invalidate(final Key k) {
+        // The stamp goes first; a reader that stores after this point sees it changed and backs out.
+        stamps.incrementAndGet(stripe(k));
+        cache.invalidate(k);
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    /*
+     * @see RedisCommandListener#onCommand(Command, byte[][])
+     */
+    public void onCommand(final Command cmd, final byte[]... args) {
+        if (RedisProtocol.isReadOnly(cmd)) {
+            return;
+        }
+
+        if (cmd == Command.FLUSHALL || cmd == Command.FLUSHDB) {
+            invalidateAll();
+            return;
+        }
+
+        if (args.length == 0) {
+            return;
+        }
+
+        if (cmd.name().startsWith("S3")) {
+            // keyspace, key, ...
+            if (args.length > 1) {
+                write(args[1]);
+            }
+        } else if (MULTI_KEY_COMMANDS.contains(cmd)) {
+            for (byte[] arg : args) {
+                write(arg);
+            }
+        } else {
+            write(args[0]);
+        }
+    }
+
+    private void write(final byte[] key) {
+        if (!isCacheable(key)) {
+            return;
+        }
+
+        final Key k = new Key(key);
+        invalidate(k);
+        pendingWrites.get().add(k);
+    }
+
+    /**
+     * Invalidates again the keys written by the current thread. Called after their replies are received, so that a
+     * read served between sending a write and applying it cannot stay cached.
+     */
+    public void afterExecute() {
+        final List<Key> keys = pendingWrites.get();
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        for (Key k : keys) {
+            invalidate(k);
+        }
+        keys.clear();
+    }
+
+    private boolean admit(final Key k) {
+        return cache.size() < maxSize || sketch.frequency(k.hash) >= ADMIT_FREQUENCY;
+    }
+
+    private static int stripe(final Key k) {
+        return (k.hash & 0x7fffffff) % STAMP_STRIPES;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns copies of mutable replies so that callers never share a cached instance.
+     */
+    @SuppressWarnings("unchecked")
+    static Object copyOf(final Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof List) {
+            final List<Object> list = new ArrayList<Object>(((List<Object>) value).size());
+            for (Object o : (List<Object>) value) {
+                list.add(o instanceof byte[] ? ((byte[]) o).clone() : o);
+            }
+            return list;
+        }
+        return value;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        sb.append("size=").append(cache.size()).append(", ");
+        sb.append("maxSize=").append(maxSize).append(", ");
+        sb.append("hit=").append(hitCount).append(", ");
+        sb.append("miss=").append(missCount);
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * A single lookup, remembering the invalidation stamp seen before the read was sent.
+     */
+    class Slot {
+        private final Key key;
+        private final Key subKey;
+        private final long stamp;
+
+        private Slot(final Key key, final Key subKey, final long stamp) {
+            this.key = key;
+            this.subKey = subKey;
+            this.stamp = stamp;
+        }
+
+        Object get() {
+            final ConcurrentMap<Key, Object> entries = cache.getIfPresent(key);
+            final Object value = entries == null ? null : entries.get(subKey);
+            if (value == null) {
+                missCount.incrementAndGet();
+                return MISS;
+            }
+
+            hitCount.incrementAndGet();
+            return value == NULL_VALUE ? null : copyOf(value);
+        }
+
+        void set(final Object value) {
+            final int stripe = stripe(key);
+            if (stamps.get(stripe) != stamp) {
+                return;
+            }
+
+            ConcurrentMap<Key, Object> entries = cache.getIfPresent(key);
+            if (entries == null) {
+                if (!admit(key)) {
+                    return;
+                }
+                entries = new ConcurrentHashMap<Key, Object>(4);
+                final ConcurrentMap<Key, Object> prev = cache.asMap().putIfAbsent(key, entries);
+                if (prev != null) {
+                    entries = prev;
+                }
+            }
+            entries.put(subKey, value == null ? NULL_VALUE : copyOf(value));
+
+            if (stamps.get(stripe) != stamp) {
+                entries.remove(subKey);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final byte[] data;
+        private final int hash;
+
+        private Key(final byte[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            return Arrays.equals(data, ((Key) other).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 rows, four times as wide as the cache, with counters saturating at 15. Every counter is
+     * halved once the number of increments reaches ten times the width, so old popularity fades away. Updates are not
+     * synchronized; the estimate only needs to be approximate.
+     */
+    static class FrequencySketch {
+        private static final int[] SEEDS = { 0x97cb3127, 0xb9b8b0b5, 0x8c1e0fd5, 0xe8b4a4e5 };
+        private static final int MAX_COUNT = 15;
+
+        private final int[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(final long maxSize) {
+            int width = 64;
+            while (width < maxSize * 4 && width < (1 << 24)) {
+                width <<= 1;
+            }
+
+            this.table = new int[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        void increment(final int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final int[] row = table[i];
+                final int index = index(hash, i);
+                if (row[index] < MAX_COUNT) {
+                    row[index]++;
+                    added = true;
+                }
+            }
+
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(final int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, table[i][index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(final int hash, final int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            additions = 0;
+            for (int[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+        }
+    }
+}
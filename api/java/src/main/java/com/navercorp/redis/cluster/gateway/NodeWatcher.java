@@ -158,16 +158,16 @@ public class NodeWatcher implements Watcher {
     }
 
     public GatewayAffinity getGatewayAffinity() throws KeeperException, InterruptedException, IOException {
-        final GatewayAffinity gatewayAffinity = new GatewayAffinity();
+        final GatewayAffinity.Builder builder = new GatewayAffinity.Builder();
         final String path = buildAffinityPath();
         if (zk.exists(path, false) == null) {
             log.info("[NodeWatcher] Not found affinity info {path={}}", path);
-            return gatewayAffinity;
+            return builder.build();
         }
 
         final byte[] data = zk.getData(path, this, null);
         if (data == null) {
-            return gatewayAffinity;
+            return builder.build();
         }
         log.debug("[NodeWatcher] Gateway affinity from CM. {path={}, data={}}", path, new String(data));
 
@@ -177,13 +177,13 @@ public class NodeWatcher implements Watcher {
                 Map jsonObject = (Map) value;
                 final int id = (Integer) jsonObject.get(KEY_GW_ID);
                 final String affinity = (String) jsonObject.get(KEY_AFFINITY);
-                gatewayAffinity.put(id, affinity);
+                builder.put(id, affinity);
             }
         } catch (Exception e) {
             log.error("[NodeWatcher] Invalid gateway address format. data=" + new String(data), e);
         }
 
-        return gatewayAffinity;
+        return builder.build();
     }
 
     public void stop() {
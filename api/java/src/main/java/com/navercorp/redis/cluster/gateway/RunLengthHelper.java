@@ -16,9 +16,6 @@
 
 package com.navercorp.redis.cluster.gateway;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * RLE(Run Length Encode)
  * <p>
@@ -27,26 +24,69 @@ import java.util.regex.Pattern;
  * @author jaehong.kim
  */
 public class RunLengthHelper {
+
+    /**
+     * Receives the runs of an RLE string in order.
+     */
+    public interface RunHandler {
+        /**
+         * @param mark   the repeated character
+         * @param start  the index of the first character of the run in the decoded string
+         * @param length the number of repetitions, may be 0
+         */
+        void run(char mark, int start, int length);
+    }
+
     public static String decode(final String source) {
+        final StringBuilder sb = new StringBuilder();
+        decode(source, new RunHandler() {
+            public void run(char mark, int start, int length) {
+                for (int i = 0; i < length; i++) {
+                    sb.append(mark);
+                }
+            }
+        });
+
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the runs without expanding them.
+     *
+     * @return the length of the decoded string
+     */
+    public static int decode(final String source, final RunHandler handler) {
         if (source == null || source.length() < 2) {
             throw new IllegalArgumentException("source must not be empty. source=" + source);
         }
 
-        final StringBuilder sb = new StringBuilder();
-        final Pattern pattern = Pattern.compile("[A|R|W|N]|[0-9]+");
-        final Matcher matcher = pattern.matcher(source);
+        int position = 0;
+        int i = 0;
+        while (i < source.length()) {
+            final char mark = source.charAt(i++);
+            if (mark != 'A' && mark != 'R' && mark != 'W' && mark != 'N') {
+                throw new IllegalArgumentException("invalid source format. source=" + source);
+            }
 
-        while (matcher.find()) {
-            final String mark = matcher.group();
-            if (!matcher.find()) {
+            long number = 0;
+            final int digitsStart = i;
+            while (i < source.length() && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+                number = number * 10 + (source.charAt(i++) - '0');
+                if (number > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("invalid source format. source=" + source);
+                }
+            }
+            if (i == digitsStart) {
                 throw new IllegalArgumentException("invalid source format. source=" + source);
             }
-            int number = Integer.parseInt(matcher.group());
-            for (int i = 0; i < number; i++) {
-                sb.append(mark);
+
+            if (position + number > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid source format. source=" + source);
             }
+            handler.run(mark, position, (int) number);
+            position += number;
         }
 
-        return sb.toString();
+        return position;
     }
 }
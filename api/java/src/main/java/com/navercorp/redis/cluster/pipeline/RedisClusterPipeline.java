@@ -32,6 +32,7 @@ import com.navercorp.redis.cluster.gateway.Gateway;
 import com.navercorp.redis.cluster.gateway.GatewayException;
 import com.navercorp.redis.cluster.gateway.GatewayPartitionNumber;
 import com.navercorp.redis.cluster.gateway.GatewayServer;
+import com.navercorp.redis.cluster.gateway.NearCache;
 import com.navercorp.redis.cluster.gateway.RedisClusterCallback;
 
 import org.slf4j.Logger;
@@ -82,6 +83,7 @@ public class RedisClusterPipeline extends Queable {
         this.server = server;
         this.redis = server.getResource();
         this.client = redis.getClient();
+        this.client.setCommandListener(gateway.getNearCache());
         this.keyspace = redis.getKeyspace();
         if (this.timeoutMillisec != -1) {
             this.client.commitActiveTimeout(this.timeoutMillisec);
@@ -108,6 +110,8 @@ public class RedisClusterPipeline extends Queable {
         } catch (Exception e) {
             this.brokenResource = true;
             throw new GatewayException("gateway=" + this.server + ", connect=" + this.redis.connectInfo(), e);
+        } finally {
+            afterSync();
         }
 
         if (unformatted == null) {
@@ -144,6 +148,8 @@ public class RedisClusterPipeline extends Queable {
         } catch (Exception e) {
             this.brokenResource = true;
             throw new GatewayException("gateway=" + this.server + ", connect=" + this.redis.connectInfo(), e);
+        } finally {
+            afterSync();
         }
 
         if (unformatted == null) {
@@ -161,6 +167,13 @@ public class RedisClusterPipeline extends Queable {
         return formatted;
     }
 
+    private void afterSync() {
+        final NearCache nearCache = gateway.getNearCache();
+        if (nearCache != null) {
+            nearCache.afterExecute();
+        }
+    }
+
     public void close() {
         if (this.closed) {
             return;
@@ -1,10 +1,23 @@
 package com.navercorp.redis.cluster.util;
 
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.navercorp.redis.cluster.gateway.GatewayClient;
+import com.navercorp.redis.cluster.gateway.GatewayException;
 
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
@@ -17,6 +30,14 @@ public class ScanIteratorFactory {
         ScanResult<T> scan(byte[] cursor, ScanParams params);
     }
 
+    interface ClusterScanner {
+        int partitionCount();
+
+        String digest();
+
+        ScanResult<byte[]> scan(int partitionID, byte[] cursor, ScanParams params);
+    }
+
     public static class ScanIterator<T> {
         private final ScanParams params;
         private final Scanner<T> scanner;
@@ -139,4 +160,227 @@ public class ScanIteratorFactory {
         return new ScanIterator<byte[]>(options, scanner);
     }
 
+
+    public static ClusterScanIterator createClusterScanIterator(
+            final GatewayClient client, final ScanParams options, final int parallelism) {
+
+        ClusterScanner scanner = new ClusterScanner() {
+            @Override
+            public int partitionCount() {
+                return client.cscanlen().intValue();
+            }
+
+            @Override
+            public String digest() {
+                return client.cscandigest();
+            }
+
+            @Override
+            public ScanResult<byte[]> scan(int partitionID, byte[] cursor, ScanParams params) {
+                return client.cscan(partitionID, cursor, params);
+            }
+        };
+
+        return new ClusterScanIterator(options, scanner, parallelism, ClusterScanIterator.DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Scans every partition of the cluster with CSCAN on a pool of worker threads and hands the keys to a single
+     * consumer through a bounded queue, so a slow consumer holds the workers back.
+     * <p>
+     * A partition is scanned again if CSCANDIGEST changed while it was scanned, because keys may have moved to or
+     * from the partition during a migration. Keys can therefore be returned more than once, as with SCAN.
+     * <p>
+     * The iterator should be closed if it is not consumed to the end. The workers only hold a weak reference to it,
+     * so an iterator that is abandoned without being closed stops its workers once it is garbage collected.
+     */
+    public static class ClusterScanIterator implements Iterator<byte[]>, Closeable {
+        static final int DEFAULT_QUEUE_SIZE = 64;
+        static final int MAX_RESCAN = 3;
+
+        private final Workers workers;
+
+        private List<byte[]> batch = Collections.emptyList();
+        private int batchIndex;
+        private boolean finished;
+        private long position;
+
+        ClusterScanIterator(ScanParams options, ClusterScanner scanner, int parallelism, int queueSize) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism must be positive. parallelism=" + parallelism);
+            }
+            this.workers = new Workers(this, options, scanner, parallelism, queueSize);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean hasNext() {
+            while (batchIndex >= batch.size()) {
+                if (finished) {
+                    return false;
+                }
+
+                final Object o;
+                try {
+                    o = workers.queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new GatewayException("Interrupted while waiting for scan results", e);
+                }
+
+                if (o == Workers.END) {
+                    finished = true;
+                } else if (o instanceof RuntimeException) {
+                    close();
+                    throw (RuntimeException) o;
+                } else {
+                    batch = (List<byte[]>) o;
+                    batchIndex = 0;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements available.");
+            }
+
+            position++;
+            return batch.get(batchIndex++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the number of times a partition was scanned again because of a migration
+         */
+        public long getRescanCount() {
+            return workers.rescanCount.get();
+        }
+
+        /**
+         * Stops the workers. Keys already queued are discarded.
+         */
+        @Override
+        public void close() {
+            finished = true;
+            batch = Collections.emptyList();
+            workers.close();
+        }
+    }
+
+    /**
+     * The producer side of a {@link ClusterScanIterator}. It must not refer to the iterator strongly, so that an
+     * abandoned iterator can be collected while the workers wait on a full queue.
+     */
+    private static class Workers {
+        private static final Object END = new Object();
+        private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+        private final WeakReference<ClusterScanIterator> owner;
+        private final ClusterScanner scanner;
+        private final ScanParams params;
+        private final int partitionCount;
+        private final BlockingQueue<Object> queue;
+        private final AtomicInteger nextPartition = new AtomicInteger();
+        private final AtomicInteger runningWorkers;
+        private final AtomicLong rescanCount = new AtomicLong();
+        private final ExecutorService executor;
+        private volatile boolean closed;
+
+        Workers(ClusterScanIterator owner, ScanParams params, ClusterScanner scanner, int parallelism,
+                int queueSize) {
+            this.owner = new WeakReference<ClusterScanIterator>(owner);
+            this.scanner = scanner;
+            this.params = params;
+            this.partitionCount = scanner.partitionCount();
+            this.queue = new ArrayBlockingQueue<Object>(queueSize);
+
+            final int workers = Math.max(1, Math.min(parallelism, partitionCount));
+            this.runningWorkers = new AtomicInteger(workers);
+            this.executor = Executors.newFixedThreadPool(workers,
+                    new DaemonThreadFactory("nbase-arc-cluster-scan-", true));
+            for (int i = 0; i < workers; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                });
+            }
+            executor.shutdown();
+        }
+
+        private void work() {
+            try {
+                int partitionID;
+                while (!closed && (partitionID = nextPartition.getAndIncrement()) < partitionCount) {
+                    scanPartition(partitionID);
+                }
+            } catch (RuntimeException e) {
+                put(e);
+            } finally {
+                if (runningWorkers.decrementAndGet() == 0) {
+                    put(END);
+                }
+            }
+        }
+
+        private void scanPartition(int partitionID) {
+            for (int rescan = 0; ; rescan++) {
+                final String digest = scanner.digest();
+
+                byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+                do {
+                    final ScanResult<byte[]> result = scanner.scan(partitionID, cursor, params);
+                    if (!result.getResult().isEmpty()) {
+                        put(result.getResult());
+                    }
+                    cursor = result.getCursorAsBytes();
+                } while (!closed && !Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+
+                if (closed || digest.equals(scanner.digest())) {
+                    return;
+                }
+                if (rescan == MAX_RESCAN) {
+                    throw new GatewayException("Partition is still migrating after " + MAX_RESCAN
+                            + " rescans. partitionID=" + partitionID);
+                }
+                rescanCount.incrementAndGet();
+            }
+        }
+
+        private void put(Object o) {
+            try {
+                while (!closed) {
+                    if (queue.offer(o, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                    if (owner.get() == null) {
+                        closed = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+            executor.shutdownNow();
+        }
+    }
+
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.navercorp.nbasearc.gcp.CircuitBreaker.State.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.gateway.AffinityState;
+
+public class CircuitBreakerTest {
+
+    static final byte[] PING = "PING\r\n".getBytes();
+
+    final LinkedBlockingQueue<Socket> silentSockets = new LinkedBlockingQueue<Socket>();
+
+    @Test
+    public void opensOnFailureRate() {
+        CircuitBreaker cb = new CircuitBreaker(50, 0, 1000);
+
+        // Not enough calls to judge
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS - 1; i++) {
+            cb.record(StatusCode.TIMEOUT, 0, 0);
+        }
+        assertEquals(CLOSED, cb.getState());
+
+        cb.record(StatusCode.CONNECTION_ERROR, 0, 0);
+        assertEquals(OPEN, cb.getState());
+        assertFalse(cb.isAvailable(999));
+        assertFalse(cb.tryAcquire(999));
+        assertTrue(cb.isOpen(999));
+    }
+
+    @Test
+    public void staysClosedUnderThreshold() {
+        CircuitBreaker cb = new CircuitBreaker(50, 0, 1000);
+        for (int i = 0; i < CircuitBreaker.WINDOW_SIZE * 5; i++) {
+            cb.record(i % 3 == 0 ? StatusCode.TIMEOUT : StatusCode.OK, 0, 0);
+        }
+        assertEquals(CLOSED, cb.getState());
+
+        // Errors that are not a fault of the gateway are not counted.
+        for (int i = 0; i < CircuitBreaker.WINDOW_SIZE; i++) {
+            cb.record(StatusCode.NO_AVAILABLE_CONNECTION, 0, 0);
+            cb.record(StatusCode.INTERNAL_ERROR, 0, 0);
+        }
+        assertEquals(CLOSED, cb.getState());
+    }
+
+    @Test
+    public void slowCalls() {
+        CircuitBreaker cb = new CircuitBreaker(50, 100, 1000);
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            cb.record(StatusCode.OK, 99, 0);
+        }
+        assertEquals(CLOSED, cb.getState());
+
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            cb.record(StatusCode.OK, 100, 0);
+        }
+        assertEquals(OPEN, cb.getState());
+    }
+
+    @Test
+    public void halfOpenCloses() {
+        CircuitBreaker cb = open(new CircuitBreaker(50, 0, 1000), 0);
+
+        // Checking availability does not change the state.
+        assertTrue(cb.isAvailable(1000));
+        assertEquals(OPEN, cb.getState());
+        assertFalse(cb.isOpen(1000));
+
+        // Only probes are let through.
+        for (int i = 0; i < CircuitBreaker.PROBES; i++) {
+            assertTrue(cb.tryAcquire(1000));
+            assertEquals(HALF_OPEN, cb.getState());
+        }
+        assertFalse(cb.tryAcquire(1000));
+        assertFalse(cb.isAvailable(1000));
+
+        for (int i = 0; i < CircuitBreaker.PROBES; i++) {
+            cb.record(StatusCode.OK, 0, 1001);
+        }
+        assertEquals(CLOSED, cb.getState());
+        assertTrue(cb.tryAcquire(1001));
+
+        // The window starts over.
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS - 1; i++) {
+            cb.record(StatusCode.TIMEOUT, 0, 1001);
+        }
+        assertEquals(CLOSED, cb.getState());
+    }
+
+    @Test
+    public void probePerPermit() {
+        CircuitBreaker cb = open(new CircuitBreaker(50, 0, 1000), 0);
+
+        // A virtual connection with a permit sends many requests.
+        assertTrue(cb.tryAcquire(1000));
+        for (int i = 0; i < CircuitBreaker.PROBES * 2; i++) {
+            cb.record(StatusCode.OK, 0, 1001);
+        }
+        assertEquals(HALF_OPEN, cb.getState());
+
+        for (int i = 1; i < CircuitBreaker.PROBES; i++) {
+            assertTrue(cb.tryAcquire(1001));
+            cb.record(StatusCode.OK, 0, 1002);
+        }
+        assertEquals(CLOSED, cb.getState());
+    }
+
+    @Test
+    public void halfOpenReopens() {
+        CircuitBreaker cb = open(new CircuitBreaker(50, 0, 1000), 0);
+
+        assertTrue(cb.tryAcquire(1000));
+        cb.record(StatusCode.OK, 0, 1000);
+        cb.record(StatusCode.TIMEOUT, 0, 1500);
+        assertEquals(OPEN, cb.getState());
+        assertFalse(cb.isAvailable(2499));
+        assertTrue(cb.isAvailable(2500));
+    }
+
+    @Test
+    public void unusedProbesAreRenewed() {
+        CircuitBreaker cb = open(new CircuitBreaker(50, 0, 1000), 0);
+        for (int i = 0; i < CircuitBreaker.PROBES; i++) {
+            assertTrue(cb.tryAcquire(1000));
+        }
+        // Probes that never responded do not keep the circuit half-open forever.
+        assertFalse(cb.isAvailable(1999));
+        assertTrue(cb.isAvailable(2000));
+        assertTrue(cb.tryAcquire(2000));
+        assertEquals(HALF_OPEN, cb.getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFailureRate() {
+        new CircuitBreaker(0, 0, 1000);
+    }
+
+    @Test
+    public void skipsOpenGateway() throws Exception {
+        ServerSocket good = listen(true);
+        ServerSocket silent = listen(false);
+        GatewayConnectionPool gcp = new GatewayConnectionPool(1, false);
+        gcp.enableCircuitBreaker(50, 0, 60000);
+        try {
+            gcp.addGw(1, "127.0.0.1", good.getLocalPort(), 1, 1000).get(3000, TimeUnit.MILLISECONDS);
+            gcp.addGw(2, "127.0.0.1", silent.getLocalPort(), 1, 1000).get(3000, TimeUnit.MILLISECONDS);
+
+            // Requests to the silent gateway time out until its circuit opens.
+            final AtomicInteger timeouts = new AtomicInteger();
+            for (int i = 0; i < CircuitBreaker.MIN_CALLS * 4; i++) {
+                VirtualConnection vc = gcp.newVc(512);
+                vc.allocPc(0, AffinityState.READ, false);
+                vc.request(PING, 100, new RequestCallback() {
+                    @Override
+                    public void onResponse(byte[] response, StatusCode statusCode) {
+                        if (statusCode == StatusCode.TIMEOUT) {
+                            timeouts.incrementAndGet();
+                        }
+                    }
+                });
+                vc.freePc();
+                vc.close();
+            }
+            await().atMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return timeouts.get() >= CircuitBreaker.MIN_CALLS;
+                }
+            });
+
+            // Every request goes to the good gateway from now on.
+            final int count = 100;
+            final AtomicInteger ok = new AtomicInteger();
+            for (int i = 0; i < count; i++) {
+                VirtualConnection vc = gcp.newVc(512);
+                vc.allocPc(0, AffinityState.READ, false);
+                vc.request(PING, 3000, new RequestCallback() {
+                    @Override
+                    public void onResponse(byte[] response, StatusCode statusCode) {
+                        if (statusCode == StatusCode.OK) {
+                            ok.incrementAndGet();
+                        }
+                    }
+                });
+                vc.freePc();
+                vc.close();
+            }
+            await().atMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return ok.get() == count;
+                }
+            });
+        } finally {
+            // Requests that were never answered keep a connection from closing.
+            for (Socket s : silentSockets) {
+                s.close();
+            }
+            gcp.close().get(5000, TimeUnit.MILLISECONDS);
+            good.close();
+            silent.close();
+        }
+    }
+
+    private CircuitBreaker open(CircuitBreaker cb, long now) {
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            cb.record(StatusCode.TIMEOUT, 0, now);
+        }
+        assertEquals(OPEN, cb.getState());
+        return cb;
+    }
+
+    /**
+     * @param reply true to reply +PONG, false to accept connections and never reply
+     */
+    private ServerSocket listen(final boolean reply) throws IOException {
+        final ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        if (reply) {
+                            TransportTest.pong(socket);
+                        } else {
+                            silentSockets.add(socket);
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.gcp.SingleFlightTest.Reply;
+import com.navercorp.redis.cluster.gateway.AffinityState;
+
+public class HedgedReadTest {
+
+    @Test
+    public void firstReplyWins() {
+        HedgedRead hr = budgeted(new HedgedRead(5));
+        Reply reply = new Reply();
+
+        HedgedRead.Hedge hedge = hr.newHedge(reply, 0, AffinityState.READ, null);
+        assertTrue(hedge.tryHedge());
+        hedge.secondary.onResponse("fast".getBytes(), StatusCode.OK);
+        hedge.primary.onResponse("slow".getBytes(), StatusCode.OK);
+
+        assertEquals(1, reply.responses.size());
+        assertArrayEquals("fast".getBytes(), reply.responses.get(0));
+        assertFalse(hedge.tryHedge());
+    }
+
+    @Test
+    public void errorWaitsForOther() {
+        HedgedRead hr = budgeted(new HedgedRead(5));
+        Reply reply = new Reply();
+
+        HedgedRead.Hedge hedge = hr.newHedge(reply, 0, AffinityState.READ, null);
+        assertTrue(hedge.tryHedge());
+        hedge.primary.onResponse(null, StatusCode.TIMEOUT);
+        assertTrue(reply.responses.isEmpty());
+        hedge.secondary.onResponse("ok".getBytes(), StatusCode.OK);
+        assertEquals(StatusCode.OK, reply.statusCodes.get(0));
+
+        reply = new Reply();
+        hedge = hr.newHedge(reply, 0, AffinityState.READ, null);
+        assertTrue(hedge.tryHedge());
+        hedge.primary.onResponse(null, StatusCode.TIMEOUT);
+        hedge.secondary.onResponse(null, StatusCode.CONNECTION_ERROR);
+        assertEquals(1, reply.statusCodes.size());
+        assertEquals(StatusCode.CONNECTION_ERROR, reply.statusCodes.get(0));
+    }
+
+    @Test
+    public void routingCapturedAtSend() {
+        HedgedRead hr = new HedgedRead(5);
+        HedgedRead.Hedge hedge = hr.newHedge(new Reply(), 1234, AffinityState.ALL, null);
+        assertEquals(1234, hedge.hash);
+        assertEquals(AffinityState.ALL, hedge.affinity);
+    }
+
+    @Test
+    public void budget() {
+        HedgedRead hr = new HedgedRead(5);
+
+        int hedged = 0;
+        for (int i = 0; i < 1000; i++) {
+            HedgedRead.Hedge hedge = hr.newHedge(new Reply(), 0, AffinityState.READ, null);
+            if (hedge.tryHedge()) {
+                hedged++;
+            }
+        }
+        assertEquals(1000 / HedgedRead.BUDGET_RATIO, hedged);
+        assertEquals(hedged, hr.getHedgedCount());
+    }
+
+    @Test
+    public void trackedDelay() {
+        HedgedRead fixed = new HedgedRead(5);
+        assertEquals(5, fixed.delayMillis());
+
+        HedgedRead hr = new HedgedRead(0);
+        assertEquals(HedgedRead.INITIAL_DELAY_MILLIS, hr.delayMillis());
+        for (int i = 0; i < HedgedRead.SAMPLE_SIZE; i++) {
+            hr.record(i % 100 < 96 ? 2 : 50);
+        }
+        assertEquals(2, hr.delayMillis());
+
+        for (int i = 0; i < HedgedRead.SAMPLE_SIZE * 3; i++) {
+            hr.record(30);
+        }
+        assertEquals(30, hr.delayMillis());
+    }
+
+    private static HedgedRead budgeted(HedgedRead hr) {
+        for (int i = 0; i < HedgedRead.BUDGET_RATIO * 2; i++) {
+            hr.newHedge(new Reply(), 0, AffinityState.READ, null);
+        }
+        return hr;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ReconnectBackoffTest {
+
+    @Test
+    public void exponential() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000, new Random(0));
+
+        long ceiling = 100;
+        for (int i = 0; i < 10; i++) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue("delay: " + delay + ", ceiling: " + ceiling, delay >= ceiling / 2 && delay <= ceiling);
+            ceiling = Math.min(ceiling * 2, 1000);
+        }
+        assertEquals(10, backoff.getAttempts());
+
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+
+    @Test
+    public void jitter() {
+        // Clients that lost a gateway together reconnect at different times.
+        Set<Long> delays = new HashSet<Long>();
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            delays.add(new ReconnectBackoff(2000, 16000, random).nextDelayMillis());
+        }
+        assertTrue(delays.size() > 50);
+    }
+
+    @Test
+    public void maxSmallerThanBase() {
+        ReconnectBackoff backoff = new ReconnectBackoff(1000, 0, new Random(0));
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative() {
+        new ReconnectBackoff(-1, 1000, new Random(0));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    SingleFlight sf = new SingleFlight();
+
+    @Test
+    public void share() {
+        Reply r1 = new Reply();
+        Reply r2 = new Reply();
+        Reply other = new Reply();
+
+        RequestCallback flight = sf.join(1, cmd("GET foo"), r1);
+        assertNotNull(flight);
+        assertNull(sf.join(1, cmd("GET foo"), r2));
+        assertNotNull(sf.join(1, cmd("GET bar"), other));
+        assertEquals(2, sf.getInFlightCount());
+
+        flight.onResponse("bar".getBytes(), StatusCode.OK);
+        assertEquals(1, sf.getInFlightCount());
+        assertEquals(1, sf.getSharedCount());
+        assertArrayEquals("bar".getBytes(), r1.responses.get(0));
+        assertArrayEquals("bar".getBytes(), r2.responses.get(0));
+        assertTrue(other.responses.isEmpty());
+
+        // a completed request is not joined.
+        assertNotNull(sf.join(1, cmd("GET foo"), new Reply()));
+    }
+
+    @Test
+    public void shareError() {
+        Reply r1 = new Reply();
+        Reply r2 = new Reply();
+
+        RequestCallback flight = sf.join(1, cmd("GET foo"), r1);
+        sf.join(1, cmd("GET foo"), r2);
+        flight.onResponse(null, StatusCode.TIMEOUT);
+
+        assertEquals(StatusCode.TIMEOUT, r1.statusCodes.get(0));
+        assertEquals(StatusCode.TIMEOUT, r2.statusCodes.get(0));
+    }
+
+    @Test
+    public void notSharedAfterWrite() {
+        Reply before = new Reply();
+        Reply after = new Reply();
+
+        RequestCallback flight = sf.join(1, cmd("GET foo"), before);
+        RequestCallback write = sf.write(1, new Reply());
+
+        RequestCallback newFlight = sf.join(1, cmd("GET foo"), after);
+        assertNotNull(newFlight);
+        flight.onResponse("old".getBytes(), StatusCode.OK);
+
+        // a write to another partition does not matter.
+        sf.write(2, new Reply());
+        assertNull(sf.join(1, cmd("GET foo"), new Reply()));
+        assertTrue(after.responses.isEmpty());
+
+        // the write has been sent but not yet applied when a new read was sent.
+        write.onResponse("+OK".getBytes(), StatusCode.OK);
+        assertNotNull(sf.join(1, cmd("GET foo"), new Reply()));
+
+        newFlight.onResponse("new".getBytes(), StatusCode.OK);
+        assertArrayEquals("old".getBytes(), before.responses.get(0));
+        assertArrayEquals("new".getBytes(), after.responses.get(0));
+    }
+
+    private static byte[] cmd(String cmd) {
+        return cmd.getBytes();
+    }
+
+    static class Reply implements RequestCallback {
+        List<byte[]> responses = new ArrayList<byte[]>();
+        List<StatusCode> statusCodes = new ArrayList<StatusCode>();
+
+        @Override
+        public void onResponse(byte[] response, StatusCode statusCode) {
+            responses.add(response);
+            statusCodes.add(statusCode);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StandbyConnectionTest {
+
+    ServerSocket server;
+    LinkedBlockingQueue<Socket> accepted = new LinkedBlockingQueue<Socket>();
+    SingleThreadEventLoopTrunk eventLoopTrunk;
+
+    @Before
+    public void before() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        accepted.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        eventLoopTrunk = new SingleThreadEventLoopTrunk(1);
+    }
+
+    @After
+    public void after() throws Exception {
+        server.close();
+        for (Socket s : accepted) {
+            s.close();
+        }
+        eventLoopTrunk.close().get(3000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void swap() throws Exception {
+        final Gateway gw = new Gateway(1, "127.0.0.1", server.getLocalPort(), 1);
+        gw.init(eventLoopTrunk, 1000, 2000, true, null).get(3000, TimeUnit.MILLISECONDS);
+        awaitActive(gw, 2);
+        assertNotNull(gw.getStandby());
+
+        // Close the oldest connection until the one in use is lost.
+        boolean swapped = false;
+        for (int i = 0; i < 3 && !swapped; i++) {
+            final PhysicalConnection inUse = gw.getConnections()[0];
+            accepted.take().close();
+
+            // The connection in use is always connected, without waiting for a reconnect.
+            await().atMost(3, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return gw.getConnections()[0].getState() == PhysicalConnection.State.CONNECTED
+                            && gw.getActive() == 1;
+                }
+            });
+            if (gw.getConnections()[0] != inUse) {
+                swapped = true;
+                assertSame(inUse, gw.getStandby());
+            }
+
+            // The lost connection reconnects and becomes a standby.
+            awaitActive(gw, 2);
+        }
+        assertTrue(swapped);
+
+        gw.unuse(Collections.<VirtualConnection> emptySet()).get(3000, TimeUnit.MILLISECONDS);
+        assertTrue(gw.isSafeToAbandone());
+    }
+
+    @Test
+    public void noStandby() throws Exception {
+        final Gateway gw = new Gateway(1, "127.0.0.1", server.getLocalPort(), 2);
+        gw.init(eventLoopTrunk, 1000, 2000, false, null).get(3000, TimeUnit.MILLISECONDS);
+        awaitActive(gw, 2);
+        assertNull(gw.getStandby());
+
+        final PhysicalConnection[] cons = gw.getConnections();
+        accepted.take().close();
+        awaitActive(gw, 1);
+        awaitActive(gw, 2);
+        assertSame(cons, gw.getConnections());
+
+        gw.unuse(Collections.<VirtualConnection> emptySet()).get(3000, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitActive(final Gateway gw, final int active) {
+        await().atMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return gw.getActive() == active;
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.gateway.AffinityState;
+
+/**
+ * Compares the throughput and the client CPU time of the NIO and epoll transports against a gateway.
+ * <p>
+ * Run it with a gateway at -Dgateway.host (127.0.0.1) and -Dgateway.port (6000).
+ */
+public class TransportBenchmark {
+
+    final String HOST = System.getProperty("gateway.host", "127.0.0.1");
+    final int PORT = Integer.getInteger("gateway.port", 6000);
+    final int THREADS = 8;
+    final int REQUESTS = 1000000;
+    final byte[] CMD = "*2\r\n$3\r\nget\r\n$6\r\nhaha00\r\n".getBytes();
+
+    @Ignore
+    @Test
+    public void compare() throws Exception {
+        // Warm up, then measure each transport.
+        run(Transport.NIO);
+        run(Transport.epoll(true, false));
+
+        report(Transport.NIO, run(Transport.NIO));
+        report(Transport.epoll(true, false), run(Transport.epoll(true, false)));
+        report(Transport.epoll(false, false), run(Transport.epoll(false, false)));
+        report(Transport.epoll(true, true), run(Transport.epoll(true, true)));
+    }
+
+    private long[] run(Transport transport) throws Exception {
+        final GatewayConnectionPool gcp = new GatewayConnectionPool(2, false, false, transport);
+        gcp.addGw(1, HOST, PORT, 2, 1000).get(1000, TimeUnit.MILLISECONDS);
+
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final long cpu = processCpuTime();
+        final long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        VirtualConnection vc = gcp.newVc(512);
+                        vc.allocPc(0, AffinityState.READ, true);
+                        final CountDownLatch replies = new CountDownLatch(REQUESTS / THREADS);
+                        for (int i = 0; i < REQUESTS / THREADS; i++) {
+                            vc.request(CMD, 10000, new RequestCallback() {
+                                @Override
+                                public void onResponse(byte[] response, StatusCode statusCode) {
+                                    replies.countDown();
+                                }
+                            });
+                        }
+                        replies.await();
+                        vc.close().get();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+
+        final long[] result = new long[] {System.nanoTime() - start, processCpuTime() - cpu};
+        gcp.close().get();
+        return result;
+    }
+
+    private void report(Transport transport, long[] result) {
+        System.out.println(String.format("%-45s ops/s: %10d, cpu ms: %6d", transport,
+                REQUESTS * TimeUnit.SECONDS.toNanos(1) / result[0], TimeUnit.NANOSECONDS.toMillis(result[1])));
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+}
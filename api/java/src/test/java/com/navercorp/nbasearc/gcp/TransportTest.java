@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.nbasearc.gcp;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.gateway.AffinityState;
+
+import io.netty.channel.epoll.Epoll;
+
+public class TransportTest {
+
+    static final byte[] PING = "PING\r\n".getBytes();
+
+    ServerSocket server;
+
+    @Before
+    public void before() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        pong(server.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void nio() throws Exception {
+        assertFalse(Transport.NIO.isEpoll());
+        ping(Transport.NIO);
+    }
+
+    @Test
+    public void epoll() throws Exception {
+        Assume.assumeTrue(Epoll.isAvailable());
+
+        Transport transport = Transport.epoll(true, true);
+        assertTrue(transport.isEpoll());
+        ping(transport);
+        ping(Transport.epoll(false, false));
+    }
+
+    private void ping(Transport transport) throws Exception {
+        GatewayConnectionPool gcp = new GatewayConnectionPool(1, false, false, transport);
+        try {
+            gcp.addGw(1, "127.0.0.1", server.getLocalPort(), 1, 1000).get(3000, TimeUnit.MILLISECONDS);
+
+            VirtualConnection vc = gcp.newVc(512);
+            vc.allocPc(0, AffinityState.READ, true);
+
+            final int count = 1000;
+            final AtomicInteger ok = new AtomicInteger();
+            for (int i = 0; i < count; i++) {
+                vc.request(PING, 3000, new RequestCallback() {
+                    @Override
+                    public void onResponse(byte[] response, StatusCode statusCode) {
+                        if (statusCode == StatusCode.OK) {
+                            ok.incrementAndGet();
+                        }
+                    }
+                });
+            }
+
+            await().atMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return ok.get() == count;
+                }
+            });
+            vc.close().get(3000, TimeUnit.MILLISECONDS);
+        } finally {
+            gcp.close().get(3000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replies +PONG to each line.
+     */
+    static void pong(final Socket socket) {
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    byte[] buf = new byte[65536];
+                    byte[] reply = new byte[0];
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        int lines = 0;
+                        for (int i = 0; i < n; i++) {
+                            if (buf[i] == '\n') {
+                                lines++;
+                            }
+                        }
+                        if (reply.length < lines * 7) {
+                            reply = new byte[lines * 7];
+                            for (int i = 0; i < reply.length; i += 7) {
+                                System.arraycopy("+PONG\r\n".getBytes(), 0, reply, i, 7);
+                            }
+                        }
+                        out.write(reply, 0, lines * 7);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // closed
+                } finally {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                    }
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -18,6 +18,7 @@ package com.navercorp.redis.cluster.gateway;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -29,11 +30,10 @@ public class GatewayAffinityTest {
 
     @Test
     public void put() {
-        GatewayAffinity affinity = new GatewayAffinity();
-
-        affinity.put(1, 1, AffinityState.READ);
-        affinity.put(2, 2, AffinityState.WRITE);
-
+        GatewayAffinity affinity = new GatewayAffinity.Builder()
+                .put(1, 1, AffinityState.READ)
+                .put(2, 2, AffinityState.WRITE)
+                .build();
 
         List<Integer> result = affinity.get(1, AffinityState.READ);
         assertEquals(1, result.size());
@@ -45,5 +45,46 @@ public class GatewayAffinityTest {
         assertEquals(0, result.size());
     }
 
+    @Test
+    public void putAffinityCode() {
+        GatewayAffinity affinity = new GatewayAffinity.Builder()
+                .put(1, "A4R4N8")
+                .put(2, "N2W4R2N8")
+                .build();
+
+        assertEquals(Arrays.asList(1), affinity.get(0, AffinityState.WRITE));
+        assertEquals(Arrays.asList(1, 2), affinity.get(2, AffinityState.WRITE));
+        assertEquals(Arrays.asList(2), affinity.get(4, AffinityState.WRITE));
+        assertEquals(Arrays.asList(1, 2), affinity.get(5, AffinityState.READ));
+        assertEquals(0, affinity.get(6, AffinityState.WRITE).size());
+        assertEquals(Arrays.asList(1, 2), affinity.get(7, AffinityState.READ));
+        assertEquals(0, affinity.get(8, AffinityState.READ).size());
+        assertEquals(0, affinity.get(16, AffinityState.READ).size());
+        assertEquals(0, affinity.get(-1, AffinityState.READ).size());
+
+        // partitions with the same gateways share one AffinityInfo.
+        assertEquals(4, affinity.getInfoCount());
+        assertSame(affinity.get(4, AffinityState.READ), affinity.get(5, AffinityState.READ));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        GatewayAffinity affinity = new GatewayAffinity.Builder().put(1, "A8192").build();
+        affinity.get(0, AffinityState.READ).add(2);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void deprecatedPut() {
+        GatewayAffinity affinity = new GatewayAffinity();
+        affinity.put(1, "A4R4N8");
+        affinity.put(2, 2, AffinityState.WRITE);
+
+        assertEquals(Arrays.asList(1, 2), affinity.get(2, AffinityState.WRITE));
+        assertEquals(Arrays.asList(1), affinity.get(4, AffinityState.READ));
+        assertEquals(8, affinity.getTable().size());
+        assertEquals(Arrays.asList(1), affinity.getTable().get(0).get(AffinityState.WRITE));
+    }
+
 
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.gateway;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.connection.RedisProtocol.Command;
+
+import redis.clients.util.SafeEncoder;
+
+public class NearCacheTest {
+
+    private static byte[] b(String s) {
+        return SafeEncoder.encode(s);
+    }
+
+    @Test
+    public void getAndSet() {
+        NearCache cache = new NearCache(100, 10000, null);
+
+        NearCache.Slot slot = cache.slot(b("foo"), "get");
+        assertSame(NearCache.MISS, slot.get());
+        slot.set("bar");
+
+        assertEquals("bar", cache.slot(b("foo"), "get").get());
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "hget", b("field")).get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void cacheNull() {
+        NearCache cache = new NearCache(100, 10000, null);
+
+        cache.slot(b("foo"), "get").set(null);
+        assertNull(cache.slot(b("foo"), "get").get());
+    }
+
+    @Test
+    public void copyMutableValue() {
+        NearCache cache = new NearCache(100, 10000, null);
+
+        List<byte[]> values = new ArrayList<byte[]>();
+        values.add(b("v1"));
+        cache.slot(b("foo"), "slgetBinary", b("field"), b("name")).set(values);
+        values.get(0)[0] = 'x';
+
+        @SuppressWarnings("unchecked")
+        List<byte[]> cached = (List<byte[]>) cache.slot(b("foo"), "slgetBinary", b("field"), b("name")).get();
+        assertArrayEquals(b("v1"), cached.get(0));
+    }
+
+    @Test
+    public void invalidateByWrite() {
+        NearCache cache = new NearCache(100, 10000, null);
+
+        cache.slot(b("foo"), "get").set("bar");
+        cache.slot(b("foo"), "hget", b("field")).set("value");
+
+        cache.onCommand(Command.GET, b("foo"));
+        assertEquals("bar", cache.slot(b("foo"), "get").get());
+
+        cache.onCommand(Command.SET, b("foo"), b("new"));
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "get").get());
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "hget", b("field")).get());
+
+        cache.slot(b("triple"), "slget", b("field"), b("name")).set(new ArrayList<String>());
+        cache.onCommand(Command.S3LADD, b("keyspace"), b("triple"), b("field"), b("name"), b("value"));
+        assertSame(NearCache.MISS, cache.slot(b("triple"), "slget", b("field"), b("name")).get());
+
+        cache.slot(b("k1"), "get").set("v1");
+        cache.slot(b("k2"), "get").set("v2");
+        cache.onCommand(Command.DEL, b("k0"), b("k2"));
+        assertEquals("v1", cache.slot(b("k1"), "get").get());
+        assertSame(NearCache.MISS, cache.slot(b("k2"), "get").get());
+
+        cache.onCommand(Command.FLUSHALL);
+        assertSame(NearCache.MISS, cache.slot(b("k1"), "get").get());
+        cache.afterExecute();
+    }
+
+    @Test
+    public void raceWithWrite() {
+        NearCache cache = new NearCache(100, 10000, null);
+
+        // read sent, then a write is sent before the read reply arrives.
+        NearCache.Slot slot = cache.slot(b("foo"), "get");
+        cache.onCommand(Command.SET, b("foo"), b("new"));
+        slot.set("old");
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "get").get());
+
+        // read sent after the write was sent, but served before the write was applied.
+        slot = cache.slot(b("foo"), "get");
+        slot.set("old");
+        cache.afterExecute();
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "get").get());
+    }
+
+    @Test
+    public void keyPrefixes() {
+        NearCache cache = new NearCache(100, 10000, "user:, item:");
+
+        assertTrue(cache.isCacheable(b("user:1")));
+        assertTrue(cache.isCacheable(b("item:1")));
+        assertFalse(cache.isCacheable(b("order:1")));
+        assertFalse(cache.isCacheable(b("use")));
+    }
+
+    @Test
+    public void expire() throws InterruptedException {
+        NearCache cache = new NearCache(100, 50, null);
+
+        cache.slot(b("foo"), "get").set("bar");
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertSame(NearCache.MISS, cache.slot(b("foo"), "get").get());
+    }
+
+    @Test
+    public void admission() {
+        NearCache cache = new NearCache(16, 10000, null);
+        for (int i = 0; i < 32; i++) {
+            cache.slot(b("hot" + i), "get");
+            cache.slot(b("hot" + i), "get").set("v");
+        }
+        assertEquals(16, cache.size());
+
+        // a key seen once does not replace a cached one.
+        cache.slot(b("cold"), "get").set("v");
+        assertSame(NearCache.MISS, cache.slot(b("cold"), "get").get());
+
+        // a key seen repeatedly is admitted.
+        cache.slot(b("warm"), "get");
+        cache.slot(b("warm"), "get");
+        cache.slot(b("warm"), "get").set("v");
+        assertEquals("v", cache.slot(b("warm"), "get").get());
+    }
+}
@@ -38,4 +38,26 @@ public class RunLengthHelperTest {
     public void invalid() {
         assertEquals("NNN", RunLengthHelper.decode("U3"));
     }
+
+    @Test
+    public void runs() {
+        final StringBuilder sb = new StringBuilder();
+        int length = RunLengthHelper.decode("A11R2N0W3", new RunLengthHelper.RunHandler() {
+            public void run(char mark, int start, int length) {
+                sb.append(mark).append(start).append(":").append(length).append(" ");
+            }
+        });
+        assertEquals(16, length);
+        assertEquals("A0:11 R11:2 N13:0 W13:3 ", sb.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingLength() {
+        RunLengthHelper.decode("A1R");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonAsciiDigit() {
+        RunLengthHelper.decode("A1R\u0662");
+    }
 }
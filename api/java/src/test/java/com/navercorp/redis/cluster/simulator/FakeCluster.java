@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.navercorp.redis.cluster.gateway.GatewayConfig;
+
+/**
+ * Gateways that share a {@link FakeKeyspace}, published by a {@link FakeZookeeper} as a cluster, for tests and
+ * benchmarks of the client without a real cluster.
+ * 
+ * <pre>
+ * FakeCluster cluster = new FakeCluster("fake", 3).start();
+ * GatewayClient client = new GatewayClient(cluster.newConfig());
+ * cluster.getGateway(1).setSlowCalls(0.01, 200);
+ * ...
+ * client.destroy();
+ * cluster.stop();
+ * </pre>
+ */
+public class FakeCluster {
+
+    private final String clusterName;
+    private final FakeKeyspace keyspace = new FakeKeyspace();
+    private final FakeZookeeper zookeeper = new FakeZookeeper();
+    private final List<FakeGateway> gateways = new ArrayList<FakeGateway>();
+
+    /**
+     * @param gatewayCount the number of gateways, whose ids start from 1
+     */
+    public FakeCluster(String clusterName, int gatewayCount) {
+        this.clusterName = clusterName;
+        for (int i = 0; i < gatewayCount; i++) {
+            gateways.add(new FakeGateway(keyspace));
+        }
+    }
+
+    public FakeCluster start() throws Exception {
+        zookeeper.start();
+        for (int i = 0; i < gateways.size(); i++) {
+            gateways.get(i).start();
+            publish(i + 1);
+        }
+        return this;
+    }
+
+    public void stop() throws InterruptedException {
+        for (FakeGateway gw : gateways) {
+            gw.stop();
+        }
+        zookeeper.stop();
+    }
+
+    /**
+     * @return a config of a client that finds the gateways of this cluster through the fake zookeeper
+     */
+    public GatewayConfig newConfig() {
+        final GatewayConfig config = new GatewayConfig();
+        config.setZkAddress(zookeeper.getAddress());
+        config.setClusterName(clusterName);
+        return config;
+    }
+
+    /**
+     * Starts a new gateway and publishes it.
+     *
+     * @return the id of the gateway
+     */
+    public int addGateway() throws Exception {
+        final FakeGateway gw = new FakeGateway(keyspace).start();
+        gateways.add(gw);
+        publish(gateways.size());
+        return gateways.size();
+    }
+
+    /**
+     * Removes a gateway from the zookeeper. The gateway keeps serving connections until it is stopped.
+     */
+    public void unpublish(int id) throws Exception {
+        zookeeper.removeGateway(clusterName, id);
+    }
+
+    public void publish(int id) throws Exception {
+        final FakeGateway gw = getGateway(id);
+        zookeeper.addGateway(clusterName, id, gw.getHost(), gw.getPort());
+    }
+
+    public FakeGateway getGateway(int id) {
+        return gateways.get(id - 1);
+    }
+
+    public List<FakeGateway> getGateways() {
+        return gateways;
+    }
+
+    public FakeKeyspace getKeyspace() {
+        return keyspace;
+    }
+
+    public FakeZookeeper getZookeeper() {
+        return zookeeper;
+    }
+
+    public String getClusterName() {
+        return clusterName;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.gateway.GatewayClient;
+import com.navercorp.redis.cluster.gateway.GatewayException;
+
+public class FakeClusterTest {
+
+    FakeCluster cluster;
+    GatewayClient client;
+
+    @Before
+    public void before() throws Exception {
+        cluster = new FakeCluster("fake_cluster", 2).start();
+        client = new GatewayClient(cluster.newConfig());
+    }
+
+    @After
+    public void after() throws Exception {
+        client.destroy();
+        cluster.stop();
+    }
+
+    @Test
+    public void commands() {
+        assertEquals("OK", client.set("key", "value"));
+        assertEquals("value", client.get("key"));
+        assertNull(client.get("nokey"));
+        assertEquals(Long.valueOf(1), client.incr("counter"));
+        assertEquals(Long.valueOf(2), client.incr("counter"));
+
+        assertEquals(Long.valueOf(1), client.hset("hash", "field", "v"));
+        assertEquals("v", client.hget("hash", "field"));
+        assertEquals(Long.valueOf(2), client.lpush("list", "b", "a"));
+        assertEquals(Arrays.asList("a", "b"), client.lrange("list", 0, -1));
+        assertEquals(Long.valueOf(2), client.sadd("set", "x", "y"));
+        assertEquals(new HashSet<String>(Arrays.asList("x", "y")), client.smembers("set"));
+
+        assertEquals(Long.valueOf(1), client.expire("key", 100));
+        assertTrue(client.ttl("key") > 0);
+        assertEquals(Long.valueOf(1), client.del("key"));
+        assertEquals(Boolean.FALSE, client.exists("key"));
+        assertEquals(4, cluster.getKeyspace().size());
+
+        try {
+            client.incr("hash");
+            fail();
+        } catch (GatewayException e) {
+            // WRONGTYPE
+        }
+    }
+
+    @Test
+    public void latency() {
+        client.set("key", "value");
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.setLatency(100, 20);
+        }
+
+        final long start = System.currentTimeMillis();
+        assertEquals("value", client.get("key"));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.reset();
+        }
+    }
+
+    @Test
+    public void errors() {
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.setErrorRate(1);
+        }
+        try {
+            client.set("key", "value");
+            fail();
+        } catch (GatewayException e) {
+            assertTrue(e.getMessage(), e.getCause().getMessage().contains("injected"));
+        }
+
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.setErrorRate(0);
+        }
+        assertEquals("OK", client.set("key", "value"));
+    }
+
+    @Test
+    public void disconnect() {
+        client.set("key", "value");
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.disconnectAll();
+        }
+
+        // The client reconnects.
+        await().atMost(10, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    return "value".equals(client.get("key"));
+                } catch (GatewayException e) {
+                    return false;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void zookeeper() throws Exception {
+        final FakeGateway first = cluster.getGateway(1);
+        assertTrue(first.getConnectionCount() > 0);
+
+        // A gateway that is published later gets connections.
+        final FakeGateway added = cluster.getGateway(cluster.addGateway());
+        await().atMost(10, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return added.getConnectionCount() > 0;
+            }
+        });
+
+        // A gateway that is unpublished is closed by the client.
+        cluster.unpublish(1);
+        await().atMost(10, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return first.getConnectionCount() == 0;
+            }
+        });
+        final long requests = first.getRequestCount();
+        for (int i = 0; i < 100; i++) {
+            client.set("key" + i, "value");
+        }
+        assertEquals(requests, first.getRequestCount());
+    }
+}
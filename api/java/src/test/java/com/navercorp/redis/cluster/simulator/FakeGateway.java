@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * An in-process gateway that speaks RESP on top of a {@link FakeKeyspace}, with faults that can be injected while it
+ * runs: latency and jitter, slow calls, a slowdown of the whole gateway, error replies and disconnects.
+ * <p>
+ * Replies of a connection are sent in the order of its requests, so that a slow reply delays the ones behind it as
+ * it does on a real gateway.
+ */
+public class FakeGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeGateway.class);
+
+    private static final byte[] INJECTED_ERROR = FakeKeyspace.error("ERR injected error");
+
+    private final FakeKeyspace keyspace;
+    private final int threads;
+    private final AtomicLong requests = new AtomicLong();
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ChannelGroup channels;
+    private Channel serverChannel;
+
+    private volatile int latencyMillis;
+    private volatile int jitterMillis;
+    private volatile double slowCallRate;
+    private volatile int slowCallMillis;
+    private volatile double errorRate;
+    private volatile double disconnectRate;
+    private volatile long slowdownUntil;
+    private volatile int slowdownMillis;
+
+    public FakeGateway(FakeKeyspace keyspace) {
+        this(keyspace, 1);
+    }
+
+    /**
+     * @param threads the number of event loop threads that serve connections
+     */
+    public FakeGateway(FakeKeyspace keyspace, int threads) {
+        this.keyspace = keyspace;
+        this.threads = threads;
+    }
+
+    /**
+     * Listens on an ephemeral port of 127.0.0.1.
+     */
+    public FakeGateway start() throws InterruptedException {
+        return start(0);
+    }
+
+    public FakeGateway start(int port) throws InterruptedException {
+        bossGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup(threads);
+        channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+        final ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+            .channel(NioServerSocketChannel.class)
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    channels.add(ch);
+                    ch.pipeline().addLast(new RespRequestDecoder(), new RequestHandler());
+                }
+            });
+        serverChannel = b.bind(new InetSocketAddress("127.0.0.1", port)).sync().channel();
+        log.info("Fake gateway started. {}", getAddress());
+        return this;
+    }
+
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+            channels.close().syncUninterruptibly();
+            bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            serverChannel = null;
+        }
+    }
+
+    public String getHost() {
+        return "127.0.0.1";
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public String getAddress() {
+        return getHost() + ":" + getPort();
+    }
+
+    public FakeKeyspace getKeyspace() {
+        return keyspace;
+    }
+
+    /**
+     * @param latencyMillis the delay of every reply
+     * @param jitterMillis a uniformly random delay in [0, jitterMillis] that is added to each reply
+     */
+    public void setLatency(int latencyMillis, int jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Delays a fraction of replies, e.g. to reproduce the tail latency of a gateway.
+     *
+     * @param rate the fraction of requests in [0, 1] that are slow
+     * @param millis the delay that is added to a slow request
+     */
+    public void setSlowCalls(double rate, int millis) {
+        this.slowCallRate = rate;
+        this.slowCallMillis = millis;
+    }
+
+    /**
+     * Adds extraMillis to every reply for durationMillis from now, e.g. to reproduce a pause of a gateway.
+     */
+    public void slowdown(int extraMillis, int durationMillis) {
+        this.slowdownMillis = extraMillis;
+        this.slowdownUntil = System.currentTimeMillis() + durationMillis;
+    }
+
+    /**
+     * @param rate the fraction of requests in [0, 1] that get an error reply instead of being executed
+     */
+    public void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * @param rate the fraction of requests in [0, 1] whose connection is closed instead of being executed
+     */
+    public void setDisconnectRate(double rate) {
+        this.disconnectRate = rate;
+    }
+
+    /**
+     * Closes every client connection. The gateway still accepts new ones.
+     */
+    public void disconnectAll() {
+        channels.close().syncUninterruptibly();
+    }
+
+    /**
+     * Removes every injected fault.
+     */
+    public void reset() {
+        setLatency(0, 0);
+        setSlowCalls(0, 0);
+        setErrorRate(0);
+        setDisconnectRate(0);
+        slowdownUntil = 0;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    private class RequestHandler extends ChannelInboundHandlerAdapter {
+        private final Random random = new Random();
+        private long lastDueNanos; // due time of the last delayed reply, to keep the order of replies
+        private boolean pendingFlush;
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+            requests.incrementAndGet();
+
+            if (disconnectRate > 0 && random.nextDouble() < disconnectRate) {
+                ctx.close();
+                return;
+            }
+
+            final byte[] reply = errorRate > 0 && random.nextDouble() < errorRate
+                    ? INJECTED_ERROR : keyspace.execute((byte[][]) msg);
+
+            final long now = System.nanoTime();
+            final long due = Math.max(now + TimeUnit.MILLISECONDS.toNanos(delayMillis()), lastDueNanos);
+            if (due <= now) {
+                ctx.write(Unpooled.wrappedBuffer(reply));
+                pendingFlush = true;
+                return;
+            }
+
+            lastDueNanos = due;
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.writeAndFlush(Unpooled.wrappedBuffer(reply));
+                }
+            }, due - now, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            if (pendingFlush) {
+                pendingFlush = false;
+                ctx.flush();
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            if (cause instanceof IOException) {
+                log.debug("Fake gateway closes a connection. {}", cause.toString());
+            } else {
+                log.warn("Fake gateway closes a connection.", cause);
+            }
+            ctx.close();
+        }
+
+        private long delayMillis() {
+            long delay = latencyMillis;
+            if (jitterMillis > 0) {
+                delay += random.nextInt(jitterMillis + 1);
+            }
+            if (slowCallRate > 0 && random.nextDouble() < slowCallRate) {
+                delay += slowCallMillis;
+            }
+            if (System.currentTimeMillis() < slowdownUntil) {
+                delay += slowdownMillis;
+            }
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory keyspace that executes the redis commands of the client and encodes the replies in RESP. Gateways of a
+ * {@link FakeCluster} share one keyspace, as real gateways share the partition groups behind them.
+ * <p>
+ * Keys, hash fields and set members are kept as ISO-8859-1 strings, which map one to one to bytes.
+ */
+public class FakeKeyspace {
+
+    static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final byte[] OK = "+OK\r\n".getBytes(CHARSET);
+    private static final byte[] PONG = "+PONG\r\n".getBytes(CHARSET);
+    private static final byte[] NIL = "$-1\r\n".getBytes(CHARSET);
+    private static final byte[] WRONGTYPE = error("WRONGTYPE Operation against a key holding the wrong kind of value");
+    private static final byte[] NOT_INTEGER = error("ERR value is not an integer or out of range");
+    private static final byte[] SYNTAX = error("ERR syntax error");
+
+    private final Map<String, Object> data = new HashMap<String, Object>();
+    private final Map<String, Long> expireAt = new HashMap<String, Long>();
+
+    /**
+     * @param args the command name and its arguments
+     * @return the reply in RESP
+     */
+    public synchronized byte[] execute(byte[][] args) {
+        if (args.length == 0) {
+            return error("ERR empty command");
+        }
+
+        final String name = str(args[0]).toUpperCase();
+        try {
+            if (name.equals("PING")) {
+                return args.length > 1 ? bulk(args[1]) : PONG;
+            } else if (name.equals("ECHO") && args.length == 2) {
+                return bulk(args[1]);
+            } else if (name.equals("DBSIZE")) {
+                removeExpired();
+                return integer(data.size());
+            } else if (name.equals("FLUSHALL") || name.equals("FLUSHDB")) {
+                data.clear();
+                expireAt.clear();
+                return OK;
+            }
+
+            if (args.length < 2) {
+                return error("ERR wrong number of arguments for '" + name.toLowerCase() + "' command");
+            }
+            final String key = str(args[1]);
+            expireIfNeeded(key);
+
+            if (name.equals("GET")) {
+                return bulk(string(key));
+            } else if (name.equals("SET")) {
+                return set(key, args);
+            } else if (name.equals("SETEX") || name.equals("PSETEX")) {
+                final long ttl = number(args[2]);
+                data.put(key, args[3]);
+                expireAt.put(key, System.currentTimeMillis() + (name.equals("SETEX") ? ttl * 1000 : ttl));
+                return OK;
+            } else if (name.equals("SETNX")) {
+                if (data.containsKey(key)) {
+                    return integer(0);
+                }
+                data.put(key, args[2]);
+                return integer(1);
+            } else if (name.equals("GETSET")) {
+                final byte[] old = string(key);
+                data.put(key, args[2]);
+                expireAt.remove(key);
+                return bulk(old);
+            } else if (name.equals("MGET")) {
+                final List<byte[]> values = new ArrayList<byte[]>();
+                for (int i = 1; i < args.length; i++) {
+                    expireIfNeeded(str(args[i]));
+                    final Object value = data.get(str(args[i]));
+                    values.add(value instanceof byte[] ? (byte[]) value : null);
+                }
+                return array(values);
+            } else if (name.equals("MSET")) {
+                for (int i = 1; i + 1 < args.length; i += 2) {
+                    data.put(str(args[i]), args[i + 1]);
+                    expireAt.remove(str(args[i]));
+                }
+                return OK;
+            } else if (name.equals("DEL") || name.equals("EXISTS")) {
+                long count = 0;
+                for (int i = 1; i < args.length; i++) {
+                    final String k = str(args[i]);
+                    expireIfNeeded(k);
+                    if (name.equals("DEL") ? remove(k) : data.containsKey(k)) {
+                        count++;
+                    }
+                }
+                return integer(count);
+            } else if (name.equals("INCR") || name.equals("DECR") || name.equals("INCRBY")
+                    || name.equals("DECRBY")) {
+                long by = name.startsWith("INCR") ? 1 : -1;
+                if (name.endsWith("BY")) {
+                    by *= number(args[2]);
+                }
+                final byte[] old = string(key);
+                final long value = (old == null ? 0 : number(old)) + by;
+                data.put(key, String.valueOf(value).getBytes(CHARSET));
+                return integer(value);
+            } else if (name.equals("APPEND")) {
+                final byte[] old = string(key);
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (old != null) {
+                    out.write(old, 0, old.length);
+                }
+                out.write(args[2], 0, args[2].length);
+                data.put(key, out.toByteArray());
+                return integer(out.size());
+            } else if (name.equals("STRLEN")) {
+                final byte[] value = string(key);
+                return integer(value == null ? 0 : value.length);
+            } else if (name.equals("EXPIRE") || name.equals("PEXPIRE")) {
+                if (!data.containsKey(key)) {
+                    return integer(0);
+                }
+                final long ttl = number(args[2]);
+                expireAt.put(key, System.currentTimeMillis() + (name.equals("EXPIRE") ? ttl * 1000 : ttl));
+                return integer(1);
+            } else if (name.equals("TTL") || name.equals("PTTL")) {
+                if (!data.containsKey(key)) {
+                    return integer(-2);
+                }
+                final Long at = expireAt.get(key);
+                if (at == null) {
+                    return integer(-1);
+                }
+                final long millis = at - System.currentTimeMillis();
+                return integer(name.equals("TTL") ? (millis + 999) / 1000 : millis);
+            } else if (name.equals("PERSIST")) {
+                return integer(data.containsKey(key) && expireAt.remove(key) != null ? 1 : 0);
+            } else if (name.equals("TYPE")) {
+                final Object value = data.get(key);
+                return status(value == null ? "none" : value instanceof byte[] ? "string"
+                        : value instanceof Map ? "hash" : value instanceof List ? "list" : "set");
+            } else if (name.startsWith("H")) {
+                return hash(name, key, args);
+            } else if (name.equals("LPUSH") || name.equals("RPUSH") || name.equals("LPOP") || name.equals("RPOP")
+                    || name.equals("LLEN") || name.equals("LRANGE")) {
+                return list(name, key, args);
+            } else if (name.equals("SADD") || name.equals("SREM") || name.equals("SMEMBERS")
+                    || name.equals("SISMEMBER") || name.equals("SCARD")) {
+                return set(name, key, args);
+            }
+            return error("ERR unknown command '" + name.toLowerCase() + "'");
+        } catch (WrongTypeException e) {
+            return WRONGTYPE;
+        } catch (NumberFormatException e) {
+            return NOT_INTEGER;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return error("ERR wrong number of arguments for '" + name.toLowerCase() + "' command");
+        }
+    }
+
+    private byte[] set(String key, byte[][] args) {
+        boolean nx = false;
+        boolean xx = false;
+        long ttlMillis = -1;
+        for (int i = 3; i < args.length; i++) {
+            final String option = str(args[i]).toUpperCase();
+            if (option.equals("NX")) {
+                nx = true;
+            } else if (option.equals("XX")) {
+                xx = true;
+            } else if (option.equals("EX") && i + 1 < args.length) {
+                ttlMillis = number(args[++i]) * 1000;
+            } else if (option.equals("PX") && i + 1 < args.length) {
+                ttlMillis = number(args[++i]);
+            } else {
+                return SYNTAX;
+            }
+        }
+
+        final boolean exists = data.containsKey(key);
+        if ((nx && exists) || (xx && !exists)) {
+            return NIL;
+        }
+        data.put(key, args[2]);
+        if (ttlMillis >= 0) {
+            expireAt.put(key, System.currentTimeMillis() + ttlMillis);
+        } else {
+            expireAt.remove(key);
+        }
+        return OK;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] hash(String name, String key, byte[][] args) {
+        Map<String, byte[]> hash = (Map<String, byte[]>) typed(key, Map.class);
+        if (name.equals("HSET") || name.equals("HMSET")) {
+            if (args.length < 4 || args.length % 2 != 0) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            if (hash == null) {
+                hash = new LinkedHashMap<String, byte[]>();
+                data.put(key, hash);
+            }
+            long added = 0;
+            for (int i = 2; i + 1 < args.length; i += 2) {
+                if (hash.put(str(args[i]), args[i + 1]) == null) {
+                    added++;
+                }
+            }
+            return name.equals("HMSET") ? OK : integer(added);
+        } else if (name.equals("HGET")) {
+            return bulk(hash == null ? null : hash.get(str(args[2])));
+        } else if (name.equals("HMGET")) {
+            final List<byte[]> values = new ArrayList<byte[]>();
+            for (int i = 2; i < args.length; i++) {
+                values.add(hash == null ? null : hash.get(str(args[i])));
+            }
+            return array(values);
+        } else if (name.equals("HDEL")) {
+            long removed = 0;
+            for (int i = 2; hash != null && i < args.length; i++) {
+                if (hash.remove(str(args[i])) != null) {
+                    removed++;
+                }
+            }
+            removeIfEmpty(key, hash);
+            return integer(removed);
+        } else if (name.equals("HGETALL")) {
+            final List<byte[]> values = new ArrayList<byte[]>();
+            if (hash != null) {
+                for (Map.Entry<String, byte[]> e : hash.entrySet()) {
+                    values.add(e.getKey().getBytes(CHARSET));
+                    values.add(e.getValue());
+                }
+            }
+            return array(values);
+        } else if (name.equals("HEXISTS")) {
+            return integer(hash != null && hash.containsKey(str(args[2])) ? 1 : 0);
+        } else if (name.equals("HLEN")) {
+            return integer(hash == null ? 0 : hash.size());
+        } else if (name.equals("HINCRBY")) {
+            if (hash == null) {
+                hash = new LinkedHashMap<String, byte[]>();
+                data.put(key, hash);
+            }
+            final byte[] old = hash.get(str(args[2]));
+            final long value = (old == null ? 0 : number(old)) + number(args[3]);
+            hash.put(str(args[2]), String.valueOf(value).getBytes(CHARSET));
+            return integer(value);
+        }
+        return error("ERR unknown command '" + name.toLowerCase() + "'");
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] list(String name, String key, byte[][] args) {
+        LinkedList<byte[]> list = (LinkedList<byte[]>) typed(key, List.class);
+        if (name.equals("LPUSH") || name.equals("RPUSH")) {
+            if (args.length < 3) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            if (list == null) {
+                list = new LinkedList<byte[]>();
+                data.put(key, list);
+            }
+            for (int i = 2; i < args.length; i++) {
+                if (name.equals("LPUSH")) {
+                    list.addFirst(args[i]);
+                } else {
+                    list.addLast(args[i]);
+                }
+            }
+            return integer(list.size());
+        } else if (name.equals("LPOP") || name.equals("RPOP")) {
+            if (list == null) {
+                return NIL;
+            }
+            final byte[] value = name.equals("LPOP") ? list.removeFirst() : list.removeLast();
+            removeIfEmpty(key, list);
+            return bulk(value);
+        } else if (name.equals("LLEN")) {
+            return integer(list == null ? 0 : list.size());
+        } else {
+            final List<byte[]> values = new ArrayList<byte[]>();
+            if (list != null) {
+                int start = (int) number(args[2]);
+                int stop = (int) number(args[3]);
+                start = Math.max(start < 0 ? list.size() + start : start, 0);
+                stop = Math.min(stop < 0 ? list.size() + stop : stop, list.size() - 1);
+                for (int i = start; i <= stop; i++) {
+                    values.add(list.get(i));
+                }
+            }
+            return array(values);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] set(String name, String key, byte[][] args) {
+        Set<String> set = (Set<String>) typed(key, Set.class);
+        if (name.equals("SADD")) {
+            if (args.length < 3) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            if (set == null) {
+                set = new LinkedHashSet<String>();
+                data.put(key, set);
+            }
+            long added = 0;
+            for (int i = 2; i < args.length; i++) {
+                if (set.add(str(args[i]))) {
+                    added++;
+                }
+            }
+            return integer(added);
+        } else if (name.equals("SREM")) {
+            long removed = 0;
+            for (int i = 2; set != null && i < args.length; i++) {
+                if (set.remove(str(args[i]))) {
+                    removed++;
+                }
+            }
+            removeIfEmpty(key, set);
+            return integer(removed);
+        } else if (name.equals("SMEMBERS")) {
+            final List<byte[]> values = new ArrayList<byte[]>();
+            if (set != null) {
+                for (String member : set) {
+                    values.add(member.getBytes(CHARSET));
+                }
+            }
+            return array(values);
+        } else if (name.equals("SISMEMBER")) {
+            return integer(set != null && set.contains(str(args[2])) ? 1 : 0);
+        } else {
+            return integer(set == null ? 0 : set.size());
+        }
+    }
+
+    public synchronized int size() {
+        removeExpired();
+        return data.size();
+    }
+
+    private Object typed(String key, Class<?> type) {
+        final Object value = data.get(key);
+        if (value != null && !type.isInstance(value)) {
+            throw new WrongTypeException();
+        }
+        return value;
+    }
+
+    private byte[] string(String key) {
+        return (byte[]) typed(key, byte[].class);
+    }
+
+    private boolean remove(String key) {
+        expireAt.remove(key);
+        return data.remove(key) != null;
+    }
+
+    private void removeIfEmpty(String key, Object collection) {
+        if (collection != null && ((collection instanceof Map && ((Map<?, ?>) collection).isEmpty())
+                || (collection instanceof Collection && ((Collection<?>) collection).isEmpty()))) {
+            remove(key);
+        }
+    }
+
+    private void expireIfNeeded(String key) {
+        final Long at = expireAt.get(key);
+        if (at != null && at <= System.currentTimeMillis()) {
+            remove(key);
+        }
+    }
+
+    private void removeExpired() {
+        final long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Long>> it = expireAt.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Long> e = it.next();
+            if (e.getValue() <= now) {
+                data.remove(e.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    static String str(byte[] bytes) {
+        return new String(bytes, CHARSET);
+    }
+
+    private static long number(byte[] bytes) {
+        return Long.parseLong(str(bytes));
+    }
+
+    static byte[] status(String status) {
+        return ("+" + status + "\r\n").getBytes(CHARSET);
+    }
+
+    static byte[] error(String message) {
+        return ("-" + message + "\r\n").getBytes(CHARSET);
+    }
+
+    static byte[] integer(long value) {
+        return (":" + value + "\r\n").getBytes(CHARSET);
+    }
+
+    static byte[] bulk(byte[] value) {
+        if (value == null) {
+            return NIL;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 16);
+        writeBulk(out, value);
+        return out.toByteArray();
+    }
+
+    static byte[] array(List<byte[]> values) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] header = ("*" + values.size() + "\r\n").getBytes(CHARSET);
+        out.write(header, 0, header.length);
+        for (byte[] value : values) {
+            if (value == null) {
+                out.write(NIL, 0, NIL.length);
+            } else {
+                writeBulk(out, value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeBulk(ByteArrayOutputStream out, byte[] value) {
+        final byte[] header = ("$" + value.length + "\r\n").getBytes(CHARSET);
+        out.write(header, 0, header.length);
+        out.write(value, 0, value.length);
+        out.write('\r');
+        out.write('\n');
+    }
+
+    @SuppressWarnings("serial")
+    private static class WrongTypeException extends RuntimeException {
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.NIOServerCnxn;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * An in-process ZooKeeper that publishes gateways and their affinity under /RC/NOTIFICATION/CLUSTER/{cluster} as the
+ * configuration master does, so that a client with zkAddress and clusterName finds {@link FakeGateway}s.
+ */
+public class FakeZookeeper {
+
+    private static final String ZK_CLUSTER_PATH = "/RC/NOTIFICATION/CLUSTER";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private File dataDir;
+    private NIOServerCnxn.Factory factory;
+    private ZooKeeper zk;
+
+    public FakeZookeeper start() throws IOException, InterruptedException {
+        dataDir = File.createTempFile("fake-zookeeper", "");
+        if (!dataDir.delete() || !dataDir.mkdir()) {
+            throw new IOException("Failed to create " + dataDir);
+        }
+
+        factory = new NIOServerCnxn.Factory(new InetSocketAddress("127.0.0.1", 0));
+        factory.startup(new ZooKeeperServer(dataDir, dataDir, 2000));
+
+        final CountDownLatch connected = new CountDownLatch(1);
+        zk = new ZooKeeper(getAddress(), 10000, new Watcher() {
+            @Override
+            public void process(WatchedEvent event) {
+                if (event.getState() == Event.KeeperState.SyncConnected) {
+                    connected.countDown();
+                }
+            }
+        });
+        if (!connected.await(10, TimeUnit.SECONDS)) {
+            stop();
+            throw new IOException("Failed to connect to the fake zookeeper. " + getAddress());
+        }
+        return this;
+    }
+
+    public void stop() throws InterruptedException {
+        if (zk != null) {
+            zk.close();
+            zk = null;
+        }
+        if (factory != null) {
+            factory.shutdown();
+            factory = null;
+        }
+        if (dataDir != null) {
+            delete(dataDir);
+            dataDir = null;
+        }
+    }
+
+    public String getAddress() {
+        return "127.0.0.1:" + factory.getLocalPort();
+    }
+
+    /**
+     * Publishes a gateway, or updates its address, under /RC/NOTIFICATION/CLUSTER/{cluster}/GW/{id}.
+     */
+    public void addGateway(String cluster, int id, String ip, int port) throws Exception {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("ip", ip);
+        data.put("port", port);
+
+        final String path = gatewayPath(cluster) + "/" + id;
+        createParents(path);
+        if (zk.exists(path, false) == null) {
+            zk.create(path, objectMapper.writeValueAsBytes(data), Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } else {
+            zk.setData(path, objectMapper.writeValueAsBytes(data), -1);
+        }
+    }
+
+    public void removeGateway(String cluster, int id) throws KeeperException, InterruptedException {
+        try {
+            zk.delete(gatewayPath(cluster) + "/" + id, -1);
+        } catch (KeeperException.NoNodeException e) {
+            // already removed
+        }
+    }
+
+    /**
+     * Publishes /RC/NOTIFICATION/CLUSTER/{cluster}/AFFINITY.
+     *
+     * @param affinity the run length encoded affinity of each gateway by its id, e.g. "A8192" for every partition
+     */
+    public void setAffinity(String cluster, Map<Integer, String> affinity) throws Exception {
+        final List<Map<String, Object>> data = new ArrayList<Map<String, Object>>();
+        for (Map.Entry<Integer, String> e : affinity.entrySet()) {
+            final Map<String, Object> gw = new HashMap<String, Object>();
+            gw.put("gw_id", e.getKey());
+            gw.put("affinity", e.getValue());
+            data.add(gw);
+        }
+
+        final String path = ZK_CLUSTER_PATH + "/" + cluster + "/AFFINITY";
+        createParents(path);
+        if (zk.exists(path, false) == null) {
+            zk.create(path, objectMapper.writeValueAsBytes(data), Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } else {
+            zk.setData(path, objectMapper.writeValueAsBytes(data), -1);
+        }
+    }
+
+    private String gatewayPath(String cluster) {
+        return ZK_CLUSTER_PATH + "/" + cluster + "/GW";
+    }
+
+    private void createParents(String path) throws KeeperException, InterruptedException {
+        int i = 0;
+        while ((i = path.indexOf('/', i + 1)) != -1) {
+            final String parent = path.substring(0, i);
+            if (zk.exists(parent, false) != null) {
+                continue;
+            }
+            try {
+                zk.create(parent, new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException e) {
+                // created concurrently
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
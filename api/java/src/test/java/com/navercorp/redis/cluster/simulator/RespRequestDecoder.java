@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+/**
+ * Decodes RESP requests, multi-bulk or inline, into arrays of arguments.
+ */
+class RespRequestDecoder extends ByteToMessageDecoder {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            in.markReaderIndex();
+            final byte[][] args = in.getByte(in.readerIndex()) == '*' ? multiBulk(in) : inline(in);
+            if (args == null) {
+                in.resetReaderIndex();
+                return;
+            }
+            if (args.length > 0) {
+                out.add(args);
+            }
+        }
+    }
+
+    private byte[][] multiBulk(ByteBuf in) {
+        in.skipBytes(1);
+        final String count = readLine(in);
+        if (count == null) {
+            return null;
+        }
+
+        final byte[][] args = new byte[Integer.parseInt(count)][];
+        for (int i = 0; i < args.length; i++) {
+            if (!in.isReadable()) {
+                return null;
+            }
+            if (in.readByte() != '$') {
+                throw new IllegalStateException("Protocol error, expected '$'");
+            }
+            final String length = readLine(in);
+            if (length == null) {
+                return null;
+            }
+            final int n = Integer.parseInt(length);
+            if (in.readableBytes() < n + 2) {
+                return null;
+            }
+            args[i] = new byte[n];
+            in.readBytes(args[i]);
+            in.skipBytes(2);
+        }
+        return args;
+    }
+
+    private byte[][] inline(ByteBuf in) {
+        final String line = readLine(in);
+        if (line == null) {
+            return null;
+        }
+
+        final List<byte[]> args = new ArrayList<byte[]>();
+        for (String token : line.trim().split(" +")) {
+            if (token.length() > 0) {
+                args.add(token.getBytes(FakeKeyspace.CHARSET));
+            }
+        }
+        return args.toArray(new byte[args.size()][]);
+    }
+
+    /**
+     * @return the line without CRLF, or null if the line is not complete
+     */
+    private String readLine(ByteBuf in) {
+        final int eol = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+        if (eol == -1) {
+            return null;
+        }
+        final int end = eol > in.readerIndex() && in.getByte(eol - 1) == '\r' ? eol - 1 : eol;
+        final String line = in.toString(in.readerIndex(), end - in.readerIndex(), FakeKeyspace.CHARSET);
+        in.readerIndex(eol + 1);
+        return line;
+    }
+}
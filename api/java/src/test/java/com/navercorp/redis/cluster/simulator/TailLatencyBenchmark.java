@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.navercorp.redis.cluster.simulator;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.navercorp.redis.cluster.gateway.GatewayClient;
+import com.navercorp.redis.cluster.gateway.GatewayConfig;
+import com.navercorp.redis.cluster.gateway.GatewayException;
+
+/**
+ * Reports the latency percentiles of reads from a {@link FakeCluster} in which one of three gateways has a slow tail
+ * or pauses, with and without the client features that mitigate it.
+ */
+public class TailLatencyBenchmark {
+
+    final int THREADS = 8;
+    final int REQUESTS = 20000; // per thread
+    final int KEYS = 1000;
+
+    FakeCluster cluster;
+
+    @Before
+    public void before() throws Exception {
+        cluster = new FakeCluster("tail_latency", 3).start();
+    }
+
+    @After
+    public void after() throws Exception {
+        cluster.stop();
+    }
+
+    @Ignore
+    @Test
+    public void slowTail() throws Exception {
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.setLatency(0, 1);
+        }
+        cluster.getGateway(1).setSlowCalls(0.02, 100);
+
+        report("slow tail", run(cluster.newConfig(), null));
+
+        final GatewayConfig hedged = cluster.newConfig();
+        hedged.setHedgedReadUsed(true);
+        hedged.setHedgedReadDelayMillis(10);
+        report("slow tail, hedged read", run(hedged, null));
+    }
+
+    @Ignore
+    @Test
+    public void pause() throws Exception {
+        for (FakeGateway gw : cluster.getGateways()) {
+            gw.setLatency(0, 1);
+        }
+        final Runnable pause = new Runnable() {
+            @Override
+            public void run() {
+                cluster.getGateway(1).slowdown(300, 3000);
+            }
+        };
+
+        report("pause", run(cluster.newConfig(), pause));
+
+        final GatewayConfig breaker = cluster.newConfig();
+        breaker.setCircuitBreakerUsed(true);
+        breaker.setCircuitBreakerSlowCallMillis(50);
+        report("pause, circuit breaker", run(breaker, pause));
+    }
+
+    /**
+     * @param fault injected when a quarter of the requests are done, null for none
+     * @return latencies in microseconds
+     */
+    private long[] run(GatewayConfig config, final Runnable fault) throws Exception {
+        final GatewayClient client = new GatewayClient(config);
+        for (int i = 0; i < KEYS; i++) {
+            client.set("key" + i, "value" + i);
+        }
+
+        final long[] latencies = new long[THREADS * REQUESTS];
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * REQUESTS;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < REQUESTS; i++) {
+                            if (fault != null && offset == 0 && i == REQUESTS / 4) {
+                                fault.run();
+                            }
+                            final long start = System.nanoTime();
+                            try {
+                                client.get("key" + (i % KEYS));
+                            } catch (GatewayException e) {
+                                // counted by its latency
+                            }
+                            latencies[offset + i] = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+
+        client.destroy();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void report(String name, long[] latencies) {
+        System.out.println(String.format("%-25s p50: %7d us, p99: %7d us, p99.9: %7d us, max: %7d us", name,
+                percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9),
+                latencies[latencies.length - 1]));
+    }
+
+    private long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * p / 100) - 1)];
+    }
+}
@@ -4,13 +4,17 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -25,6 +29,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import com.navercorp.redis.cluster.gateway.GatewayClient;
 import com.navercorp.redis.cluster.gateway.GatewayConfig;
 import com.navercorp.redis.cluster.gateway.GatewayException;
+import com.navercorp.redis.cluster.util.ScanIteratorFactory.ClusterScanIterator;
 import com.navercorp.redis.cluster.util.ScanIteratorFactory.ScanIterator;
 
 import redis.clients.jedis.ScanParams;
@@ -300,6 +305,113 @@ public class ScanIteratorFactoryTest {
         }
     }
 
+    @Test
+    public void clusterScanIterator() {
+        String[] keys = { "test:string:scan1", "test:string:scan2", "test:string:scan3" };
+        for (int i = 0; i < keys.length; i++) {
+            gatewayClient.del(keys[i]);
+            gatewayClient.setrange(keys[i], 5, keys[i]);
+        }
+
+        Set<String> scanResults = new HashSet<String>();
+        ClusterScanIterator iterator = gatewayClient.clusterScan(
+                new ScanParams().count(2).match("test:string:scan*"), 4);
+        while (iterator.hasNext()) {
+            scanResults.add(SafeEncoder.encode(iterator.next()));
+        }
+
+        assertEquals(keys.length, scanResults.size());
+        for (String key : keys) {
+            assertTrue(key + " isn't scaned", scanResults.contains(key));
+        }
+    }
+
+    @Test
+    public void clusterScanIteratorRescanOnMigration() {
+        final AtomicInteger digestCalls = new AtomicInteger();
+        StubClusterScanner scanner = new StubClusterScanner(16) {
+            @Override
+            public String digest() {
+                // the digest changes while the first partition is scanned
+                return digestCalls.incrementAndGet() == 1 ? "before" : "after";
+            }
+        };
+
+        ClusterScanIterator iterator = new ClusterScanIterator(new ScanParams(), scanner, 4, 2);
+        Set<String> scanResults = new HashSet<String>();
+        long count = 0;
+        while (iterator.hasNext()) {
+            scanResults.add(SafeEncoder.encode(iterator.next()));
+            count++;
+        }
+
+        assertEquals(16 * 4, scanResults.size());
+        assertEquals(16 * 4 + 4, count);
+        assertEquals(count, iterator.getPosition());
+        assertEquals(1, iterator.getRescanCount());
+    }
+
+    @Test(expected = GatewayException.class)
+    public void clusterScanIteratorError() {
+        StubClusterScanner scanner = new StubClusterScanner(16) {
+            @Override
+            public ScanResult<byte[]> scan(int partitionID, byte[] cursor, ScanParams params) {
+                if (partitionID == 7) {
+                    throw new GatewayException("failed");
+                }
+                return super.scan(partitionID, cursor, params);
+            }
+        };
+
+        ClusterScanIterator iterator = new ClusterScanIterator(new ScanParams(), scanner, 4, 2);
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+    }
+
+    @Test
+    public void clusterScanIteratorClose() {
+        ClusterScanIterator iterator = new ClusterScanIterator(new ScanParams(), new StubClusterScanner(1024), 4, 2);
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void clusterScanIteratorAbandoned() throws InterruptedException {
+        final Set<Thread> workers = Collections.synchronizedSet(new HashSet<Thread>());
+        StubClusterScanner scanner = new StubClusterScanner(1024) {
+            @Override
+            public ScanResult<byte[]> scan(int partitionID, byte[] cursor, ScanParams params) {
+                workers.add(Thread.currentThread());
+                return super.scan(partitionID, cursor, params);
+            }
+        };
+
+        ClusterScanIterator iterator = new ClusterScanIterator(new ScanParams(), scanner, 4, 2);
+        assertTrue(iterator.hasNext());
+        iterator = null;
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline && anyAlive(workers)) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertFalse("workers of an abandoned iterator are still running", anyAlive(workers));
+    }
+
+    private static boolean anyAlive(Set<Thread> threads) {
+        synchronized (threads) {
+            for (Thread t : threads) {
+                if (t.isAlive()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Ignore this test until a bug in the Gateway is fixed.
      * When the scan command contains an invalid option value,
@@ -360,4 +472,34 @@ public class ScanIteratorFactoryTest {
         return new ScanIterator<String>(new ScanParams(), scanner);
     }
 
+    /**
+     * Every partition has 4 keys, returned 2 per CSCAN.
+     */
+    static class StubClusterScanner implements ScanIteratorFactory.ClusterScanner {
+        private final int partitionCount;
+
+        StubClusterScanner(int partitionCount) {
+            this.partitionCount = partitionCount;
+        }
+
+        @Override
+        public int partitionCount() {
+            return partitionCount;
+        }
+
+        @Override
+        public String digest() {
+            return "digest";
+        }
+
+        @Override
+        public ScanResult<byte[]> scan(int partitionID, byte[] cursor, ScanParams params) {
+            boolean first = Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY);
+            List<byte[]> keys = new ArrayList<byte[]>();
+            keys.add(SafeEncoder.encode(partitionID + ":" + (first ? 0 : 2)));
+            keys.add(SafeEncoder.encode(partitionID + ":" + (first ? 1 : 3)));
+            return new ScanResult<byte[]>(SafeEncoder.encode(first ? "1" : "0"), keys);
+        }
+    }
+
 }
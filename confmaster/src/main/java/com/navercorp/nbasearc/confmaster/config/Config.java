@@ -53,6 +53,8 @@ public class Config {
     private Integer serverJobWorkflowLogMax;
     @Value("${confmaster.server.workflow.pg.reconfig.delay}")
     private Long serverJobWorkflowPgReconfigDelay;
+    @Value("${confmaster.server.workflow.role.timeout:5000}")
+    private Long serverJobWorkflowRoleTimeout;
     @Value("${confmaster.server.command.rolechange.logcatch.timeout}")
     private Long serverCommandRolechangeLogcatchTimeout;
     @Value("${confmaster.server.command.rolechange.lconn.timeout}")
@@ -63,6 +65,12 @@ public class Config {
     private Integer serverCommandPgsdelMaxretry;
     @Value("${confmaster.server.command.mig2pc.catchup.timeout}")
     private Long serverCommandMig2pcCatchupTimeout;
+    @Value("${confmaster.server.command.mig2pc.delay.window:100}")
+    private Long serverCommandMig2pcDelayWindow;
+    @Value("${confmaster.server.command.mig2pc.predelay.timeout:1000}")
+    private Long serverCommandMig2pcPredelayTimeout;
+    @Value("${confmaster.server.command.gw.broadcast.timeout:5000}")
+    private Long serverCommandGwBroadcastTimeout;
     
     @Value("${confmaster.heartbeat.timeout}")
     private Long heartbeatTimeout;
@@ -76,6 +84,14 @@ public class Config {
     private Long heartbeatNioSelectionTimeout;
     @Value("${confmaster.heartbeat.nio.slowloop}")
     private Long heartbeatNioSlowloop;
+    @Value("${confmaster.heartbeat.opinion.binary:false}")
+    private Boolean heartbeatOpinionBinary;
+    @Value("${confmaster.heartbeat.phi.threshold:8.0}")
+    private Double heartbeatPhiThreshold;
+    @Value("${confmaster.heartbeat.phi.min.stddev:100}")
+    private Long heartbeatPhiMinStdDeviation;
+    @Value("${confmaster.heartbeat.phi.acceptable.pause:1100}")
+    private Long heartbeatPhiAcceptablePause;
     
     @Value("${confmaster.statistics.interval}")
     private Long statisticsInterval;
@@ -152,6 +168,18 @@ public class Config {
         return serverCommandMig2pcCatchupTimeout;
     }
 
+    public Long getServerCommandMig2pcDelayWindow() {
+        return serverCommandMig2pcDelayWindow;
+    }
+
+    public Long getServerCommandMig2pcPredelayTimeout() {
+        return serverCommandMig2pcPredelayTimeout;
+    }
+
+    public Long getServerCommandGwBroadcastTimeout() {
+        return serverCommandGwBroadcastTimeout;
+    }
+
     public Long getHeartbeatTimeout() {
         return heartbeatTimeout;
     }
@@ -175,6 +203,22 @@ public class Config {
     public Long getHeartbeatNioSlowloop() {
         return heartbeatNioSlowloop;
     }
+
+    public Boolean getHeartbeatOpinionBinary() {
+        return heartbeatOpinionBinary;
+    }
+
+    public Double getHeartbeatPhiThreshold() {
+        return heartbeatPhiThreshold;
+    }
+
+    public Long getHeartbeatPhiMinStdDeviation() {
+        return heartbeatPhiMinStdDeviation;
+    }
+
+    public Long getHeartbeatPhiAcceptablePause() {
+        return heartbeatPhiAcceptablePause;
+    }
     
     public Long getStatisticsInterval() {
         return statisticsInterval;
@@ -184,4 +228,8 @@ public class Config {
         return serverJobWorkflowPgReconfigDelay;
     }
 
+    public Long getServerJobWorkflowRoleTimeout() {
+        return serverJobWorkflowRoleTimeout;
+    }
+
 }
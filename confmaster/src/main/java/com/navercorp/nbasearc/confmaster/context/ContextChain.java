@@ -36,6 +36,13 @@ public class ContextChain {
         ReservedCall rcall = new ReservedCall(call, delay, timeUnit);
         ThreadLocalVariableHolder.getReservedCallHolder().setCall(rcall);
     }
+
+    public static void setNextJob(Callable<Object> call, long delay,
+            TimeUnit timeUnit, ReservedCall.Scheduler scheduler)
+            throws MgmtDuplicatedReservedCallException  {
+        ReservedCall rcall = new ReservedCall(call, delay, timeUnit, scheduler);
+        ThreadLocalVariableHolder.getReservedCallHolder().setCall(rcall);
+    }
     
     public static boolean hasNextJob() {
         return ThreadLocalVariableHolder.getReservedCallHolder().hasNextCall();
@@ -53,7 +53,11 @@ public class ExecutionContext<T> implements Context<T> {
                 ReservedCall call = ContextChain.pollNextJob();                
                 ExecutionContext<Object> ec = new ExecutionContext<Object>(call.getCall(), type, pool);
                 ec.setLogHistory(Logger.popLogHistory());
-                pool.performDelayed(ec, call.getDelay(), call.getTimeUnit());
+                if (call.getScheduler() != null) {
+                    call.getScheduler().schedule(ec, call.getDelay(), call.getTimeUnit());
+                } else {
+                    pool.performDelayed(ec, call.getDelay(), call.getTimeUnit());
+                }
             }
         }
         
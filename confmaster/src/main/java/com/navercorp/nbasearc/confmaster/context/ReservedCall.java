@@ -21,14 +21,28 @@ import java.util.concurrent.TimeUnit;
 
 public class ReservedCall {
     
+    /**
+     * Runs a reserved call in place of the thread pool.
+     */
+    public interface Scheduler {
+        void schedule(Context<Object> c, long delay, TimeUnit timeUnit);
+    }
+    
     private final Callable<Object> call;
     private final long delay;
     private final TimeUnit timeUnit;
+    private final Scheduler scheduler;
 
     public ReservedCall(Callable<Object> call, long delay, TimeUnit timeUnit) {
+        this(call, delay, timeUnit, null);
+    }
+
+    public ReservedCall(Callable<Object> call, long delay, TimeUnit timeUnit,
+            Scheduler scheduler) {
         this.call = call;
         this.delay = delay;
         this.timeUnit = timeUnit;
+        this.scheduler = scheduler;
     }
 
     public Callable<Object> getCall() {
@@ -42,5 +56,12 @@ public class ReservedCall {
     public TimeUnit getTimeUnit() {
         return timeUnit;
     }
+
+    /**
+     * @return the scheduler of this call, or null to run it on the thread pool.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
     
 }
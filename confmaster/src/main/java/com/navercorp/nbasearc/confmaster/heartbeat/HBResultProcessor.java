@@ -31,7 +31,6 @@ import com.navercorp.nbasearc.confmaster.Constant;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
 import com.navercorp.nbasearc.confmaster.config.Config;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
-import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
 import com.navercorp.nbasearc.confmaster.server.cluster.HeartbeatTarget;
 import com.navercorp.nbasearc.confmaster.server.cluster.Opinion;
 import com.navercorp.nbasearc.confmaster.server.cluster.Opinion.OpinionData;
@@ -45,15 +44,15 @@ public class HBResultProcessor {
     @Autowired
     private Config config;
     
-    @Autowired
-    private ZooKeeperHolder zk;
-    
     @Autowired
     private Opinion opinion;
 
     @Autowired 
     private WorkflowExecutor workflowExecutor;
     
+    @Autowired
+    private OpinionPublisher opinionPublisher;
+    
     public static String OPINION_FORMAT = 
             "{\"name\":\"{}\",\"opinion\":\"{}\",\"version\":{},\"state_timestamp\":{},\"creation_time\":{}}";
 
@@ -162,7 +161,7 @@ public class HBResultProcessor {
         byte[] data = makeDataOfMyOpinion(refData, stateTimestamp, result, newState);
         
         try {
-            zk.createEphemeralZNode(path, data);
+            opinionPublisher.create(path, data);
         } catch (NodeExistsException e) {
             Logger.error("Put my opinion fail. path: {}, opinion: {}", 
                     path, makeStringOfMyOpinion(refData, stateTimestamp, newState), e);
@@ -184,7 +183,7 @@ public class HBResultProcessor {
             String newView) throws MgmtZooKeeperException {
         String path = makePathOfMyOpinion(result.getTarget().getPath());
 
-        zk.deleteZNode(path, -1);
+        opinionPublisher.delete(path);
 
         refData.setSubmitMyOpinion(false);
     }
@@ -196,6 +195,16 @@ public class HBResultProcessor {
 
     private byte[] makeDataOfMyOpinion(HBState data, long stateTimestamp,
             HBResult result, String newState) {
+        if (config.getHeartbeatOpinionBinary()) {
+            OpinionData op = new OpinionData();
+            op.setName(config.getIp() + ":" + config.getPort());
+            op.setOpinion(newState);
+            op.setVersion(data.getZkData().version);
+            op.setStatetimestamp(stateTimestamp);
+            op.setCreationTime(System.currentTimeMillis());
+            return Opinion.encode(op);
+        }
+        
         String jsonData = makeStringOfMyOpinion(data, stateTimestamp, newState);
         try {
             return jsonData.getBytes(config.getCharset());
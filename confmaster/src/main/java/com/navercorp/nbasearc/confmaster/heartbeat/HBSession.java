@@ -29,6 +29,7 @@ import com.navercorp.nbasearc.confmaster.io.ClientSession;
 import com.navercorp.nbasearc.confmaster.io.EventSelector;
 import com.navercorp.nbasearc.confmaster.io.SessionIDGenerator;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.cluster.HeartbeatTarget;
 import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor;
 
@@ -83,7 +84,11 @@ public class HBSession {
                 config.getHeartbeatTimeout(),
                 config.getHeartbeatInterval(), 
                 context.getBean(HBResultProcessor.class),
-                config.getHeartbeatSlowlog());
+                config.getHeartbeatSlowlog(),
+                new PhiAccrualDetector(config.getHeartbeatPhiMinStdDeviation(),
+                        config.getHeartbeatPhiAcceptablePause()),
+                config.getHeartbeatPhiThreshold(),
+                context.getBean(ClusterComponentContainer.class));
         handler.setSession(session);
         handler.setTarget(target);
         
@@ -129,6 +134,7 @@ public class HBSession {
         
         HBSessionHandler handler = (HBSessionHandler) session.getHandler();
         handler.initializeHBCState(0);
+        handler.resetPhi();
         
         session.disconnect();
 
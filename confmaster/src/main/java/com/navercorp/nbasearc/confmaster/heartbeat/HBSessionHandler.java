@@ -35,6 +35,8 @@ import com.navercorp.nbasearc.confmaster.io.Session;
 import com.navercorp.nbasearc.confmaster.io.SessionHandler;
 import com.navercorp.nbasearc.confmaster.io.SessionState;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
+import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.cluster.HeartbeatTarget;
 import com.navercorp.nbasearc.confmaster.statistics.Statistics;
 
@@ -56,19 +58,31 @@ public class HBSessionHandler implements SessionHandler {
     private long requestTime = 0L;
     private long requestCompletionTime = 0L;
     private boolean sentRequest = false;
+    /* moving average of ping-pong durations, -1 before the first pong */
+    private volatile long pingpongLatency = -1L;
     private AtomicBoolean urgent = new AtomicBoolean(false);
+    /* whether the ping in progress was sent ahead of the interval */
+    private boolean urgentRequest = false;
+    private long lastLoopTime = 0L;
+    private boolean loopLate = false;
     private HBCSessionState state = HBCSessionState.HBC_DONE;
     
     private long timeout;
     private long interval;
     private long slowHeartbeat;
+    
+    private final PhiAccrualDetector phiDetector;
+    private final double defaultPhiThreshold;
+    private final ClusterComponentContainer container;
 
     private HeartbeatTarget target;
     private HBResultProcessor hbcProc;
     
     public HBSessionHandler(int bufferSize, CharsetEncoder encoder,
             CharsetDecoder decoder, long timeout, long interval,
-            HBResultProcessor hbcProc, long slowHeartbeat) {
+            HBResultProcessor hbcProc, long slowHeartbeat,
+            PhiAccrualDetector phiDetector, double defaultPhiThreshold,
+            ClusterComponentContainer container) {
         this.recvBuffer = ByteBuffer.allocate(bufferSize);
         this.encoder = encoder;
         this.reader = new LineReader(decoder);
@@ -76,6 +90,9 @@ public class HBSessionHandler implements SessionHandler {
         this.interval = interval;
         this.hbcProc = hbcProc;
         this.slowHeartbeat = slowHeartbeat;
+        this.phiDetector = phiDetector;
+        this.defaultPhiThreshold = defaultPhiThreshold;
+        this.container = container;
     }
 
     public void setPingMsg(String ping) {
@@ -93,10 +110,34 @@ public class HBSessionHandler implements SessionHandler {
             logTimeout(curTime);
             return true;
         }
+        
+        // A late loop of confmaster itself says nothing about the target.
+        final double threshold = getPhiThreshold();
+        if (threshold > 0 && !loopLate) {
+            final double phi = phiDetector.phi(curTime);
+            if (phi >= threshold) {
+                Logger.warn("suspected(phi=" + phi + ", threshold=" + threshold
+                        + ", sessionID=" + session.getID() + ", IP="
+                        + target.getIP() + ", Port=" + target.getPort());
+                return true;
+            }
+        }
 
         return false;
     }
     
+    /*
+     * A threshold of a cluster overrides the default of confmaster,
+     * and 0 turns off the phi accrual failure detection.
+     */
+    private double getPhiThreshold() {
+        final Cluster cluster = container.getCluster(target.getClusterName());
+        if (cluster != null && cluster.getHbPhiThreshold() != null) {
+            return cluster.getHbPhiThreshold();
+        }
+        return defaultPhiThreshold;
+    }
+    
     private void logTimeout(final long curTime) {
         Logger.warn(
                 "timeout(curTime=" + curTime + ", oldNextTime="
@@ -184,8 +225,10 @@ public class HBSessionHandler implements SessionHandler {
 
     @Override
     public void callbackOnLoop(long timeMillis) {
-        if ((getNextTime() >= timeMillis)
-                && !(this.getUrgent() && getState() == HBCSessionState.HBC_DONE)) {
+        checkLoopLate(timeMillis);
+        
+        final boolean early = getNextTime() >= timeMillis;
+        if (early && !(this.getUrgent() && getState() == HBCSessionState.HBC_DONE)) {
             return;
         }
 
@@ -195,11 +238,25 @@ public class HBSessionHandler implements SessionHandler {
             break;
 
         case HBC_DONE:
+            urgentRequest = early;
             resetState();
             break;
         }
     }
 
+    /*
+     * The loop runs every select timeout. If it did not run for a whole
+     * heartbeat interval, confmaster was stalled, e.g. by a GC pause, and
+     * the stall is not counted against the target.
+     */
+    private void checkLoopLate(long timeMillis) {
+        loopLate = lastLoopTime > 0 && timeMillis - lastLoopTime > interval;
+        if (loopLate) {
+            phiDetector.pause(lastLoopTime, timeMillis);
+        }
+        lastLoopTime = timeMillis;
+    }
+
     @Override
     public void callbackConnect(SelectionKey key, long timeMillis) {
     }
@@ -207,6 +264,7 @@ public class HBSessionHandler implements SessionHandler {
     @Override
     public void callbackDisconnected() {
         recvBuffer.clear();
+        resetPhi();
         handleResult(Constant.SERVER_STATE_FAILURE, "");
     }
 
@@ -268,9 +326,12 @@ public class HBSessionHandler implements SessionHandler {
                 }
 
                 if (result) {
+                    final long curTime = System.currentTimeMillis();
+                    final long duration = curTime - requestTime;
+                    phiDetector.heartbeat(curTime, !urgentRequest);
+                    updatePingpongLatency(duration);
                     Statistics.updateMaxPingpongDuration(
-                            System.currentTimeMillis() - requestTime,
-                            target, session, slowHeartbeat);
+                            duration, target, session, slowHeartbeat);
                     handleResult(Constant.SERVER_STATE_NORMAL, response);
                 } else {
                     session.close();
@@ -325,6 +386,31 @@ public class HBSessionHandler implements SessionHandler {
         this.session = (ClientSession) session;
     }
 
+    private void updatePingpongLatency(long duration) {
+        final long avg = pingpongLatency;
+        pingpongLatency = avg < 0 ? duration : (avg * 7 + duration) / 8;
+    }
+
+    /**
+     * @return a moving average of recent ping-pong durations in milliseconds,
+     *         or -1 if no pong is received yet.
+     */
+    public long getPingpongLatency() {
+        return pingpongLatency;
+    }
+
+    /**
+     * @return the suspicion level of the target by the phi accrual failure
+     *         detector, or 0 if it is not known yet.
+     */
+    public double getPhi() {
+        return phiDetector.phi(System.currentTimeMillis());
+    }
+
+    public void resetPhi() {
+        phiDetector.disconnected();
+    }
+
     public HeartbeatTarget getTarget() {
         return target;
     }
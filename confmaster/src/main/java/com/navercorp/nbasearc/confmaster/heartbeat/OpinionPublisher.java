@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.heartbeat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.KeeperException.NodeExistsException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
+import com.navercorp.nbasearc.confmaster.ThreadLocalVariableHolder;
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
+import com.navercorp.nbasearc.confmaster.server.lock.LockType;
+
+/**
+ * Writes the opinions of this confmaster into ZooKeeper. 
+ * 
+ * Opinions that are submitted by other workflows while a write is in flight
+ * are merged into one ZooKeeper multi, so a heartbeat round that changes the
+ * opinions of many targets costs a few round trips instead of one per target.
+ * If a multi fails, each opinion is written on its own, which reports errors
+ * just like a write without batching.
+ */
+@Component
+public class OpinionPublisher {
+
+    @Autowired
+    private ZooKeeperHolder zk;
+
+    private final Object writeLock = new Object();
+    private List<Request> pending = new ArrayList<Request>();
+    private long batchCount = 0;
+    private long batchedOpinionCount = 0;
+
+    public void create(String path, byte[] data)
+            throws MgmtZooKeeperException, NodeExistsException {
+        submit(new Request(path, data));
+    }
+
+    public void delete(String path) throws MgmtZooKeeperException {
+        try {
+            submit(new Request(path, null));
+        } catch (NodeExistsException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void submit(Request request) throws MgmtZooKeeperException,
+            NodeExistsException {
+        ThreadLocalVariableHolder.checkPermission(request.path, LockType.WRITE);
+
+        synchronized (this) {
+            pending.add(request);
+        }
+
+        synchronized (writeLock) {
+            // Another thread may have written it while this one was waiting.
+            if (!request.written) {
+                List<Request> batch;
+                synchronized (this) {
+                    batch = pending;
+                    pending = new ArrayList<Request>();
+                }
+                if (batch.size() > 1) {
+                    write(batch);
+                }
+            }
+        }
+
+        if (!request.written) {
+            request.writeAlone();
+        }
+    }
+
+    private void write(List<Request> batch) {
+        List<Op> ops = new ArrayList<Op>(batch.size());
+        for (Request request : batch) {
+            ops.add(request.toOp());
+        }
+
+        try {
+            zk.getZooKeeper().multi(ops);
+        } catch (KeeperException e) {
+            Logger.info("Publish opinions in a batch fail, publish them one by one. size: {}, {}",
+                    batch.size(), e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Logger.info("Publish opinions in a batch fail, publish them one by one. size: {}",
+                    batch.size(), e);
+            return;
+        }
+
+        for (Request request : batch) {
+            request.written = true;
+        }
+        batchCount++;
+        batchedOpinionCount += batch.size();
+        Logger.debug("Publish opinions in a batch. size: {}", batch.size());
+    }
+
+    /**
+     * @return the number of multis and the number of opinions written by them.
+     */
+    public long[] getBatchStatistics() {
+        synchronized (writeLock) {
+            return new long[] {batchCount, batchedOpinionCount};
+        }
+    }
+
+    private class Request {
+        private final String path;
+        private final byte[] data;
+        private boolean written = false;
+
+        private Request(String path, byte[] data) {
+            this.path = path;
+            this.data = data;
+        }
+
+        private Op toOp() {
+            if (data == null) {
+                return Op.delete(path, -1);
+            } else {
+                return Op.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                        CreateMode.EPHEMERAL);
+            }
+        }
+
+        private void writeAlone() throws MgmtZooKeeperException,
+                NodeExistsException {
+            if (data == null) {
+                zk.deleteZNode(path, -1);
+            } else {
+                zk.createEphemeralZNode(path, data);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.nbasearc.confmaster.heartbeat;
+
+import java.util.Map;
+
+/**
+ * Phi accrual failure detector of a heartbeat target.
+ * <p>
+ * It keeps recent intervals between heartbeat replies and tells how unlikely
+ * it is that the next reply is still to come, as phi = -log10(P), where P is
+ * the probability that a reply arrives later than now. The intervals are
+ * assumed to be normally distributed. A phi of 1 means a 10% chance of a
+ * false suspicion, 2 means 1%, and so on. A reply covers both the heartbeat
+ * interval and the round trip, so a slow network raises the mean and the
+ * deviation and the detector becomes patient on its own.
+ * <p>
+ * A target is never suspected within an acceptable pause after its last
+ * reply, which is about a heartbeat interval plus the minimum deviation, so
+ * that a single late reply is not a failure. A stall of confmaster itself is
+ * not counted against a target, see {@link #pause(long, long)}.
+ */
+public class PhiAccrualDetector {
+
+    static final int WINDOW_SIZE = 100;
+    static final int MIN_SAMPLES = 5;
+    static final double MAX_PHI = 100.0;
+
+    private final long[] intervals = new long[WINDOW_SIZE];
+    private final long minStdDeviation;
+    private final long acceptablePause;
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0.0;
+    private double squaredSum = 0.0;
+    private long lastArrival = -1L;
+
+    /**
+     * @param minStdDeviation the lower bound of the deviation in milliseconds,
+     *        so that a very regular target is not suspected by a small jitter.
+     * @param acceptablePause the time in milliseconds after the last reply
+     *        in which a target is not suspected at all.
+     */
+    public PhiAccrualDetector(long minStdDeviation, long acceptablePause) {
+        this.minStdDeviation = minStdDeviation;
+        this.acceptablePause = acceptablePause;
+    }
+
+    public synchronized void heartbeat(long timeMillis) {
+        heartbeat(timeMillis, true);
+    }
+
+    /**
+     * @param regular false for a reply to a ping sent ahead of the interval,
+     *        which tells that the target is alive but is not an interval.
+     */
+    public synchronized void heartbeat(long timeMillis, boolean regular) {
+        if (lastArrival >= 0 && regular) {
+            add(timeMillis - lastArrival);
+        }
+        lastArrival = timeMillis;
+    }
+
+    /**
+     * Does not count a stall of the local event loop against a target. The
+     * time from the start to the end of the stall is neither a part of the
+     * elapsed time nor of the next interval.
+     */
+    public synchronized void pause(long fromMillis, long toMillis) {
+        if (lastArrival >= 0 && lastArrival < fromMillis && fromMillis < toMillis) {
+            lastArrival = Math.min(lastArrival + toMillis - fromMillis, toMillis);
+        }
+    }
+
+    /**
+     * Forgets the last reply, so that the time a target is disconnected is
+     * not taken as an interval. Recent intervals are kept.
+     */
+    public synchronized void disconnected() {
+        lastArrival = -1L;
+    }
+
+    /**
+     * @return the suspicion level of a target at the given time, or 0 if it
+     *         is not known yet.
+     */
+    public synchronized double phi(long timeMillis) {
+        if (lastArrival < 0 || count < MIN_SAMPLES) {
+            return 0.0;
+        }
+
+        final long elapsed = timeMillis - lastArrival;
+        if (elapsed < acceptablePause) {
+            return 0.0;
+        }
+
+        final double mean = sum / count;
+        final double variance = Math.max(squaredSum / count - mean * mean, 0.0);
+        final double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviation);
+
+        // A logistic approximation of the cumulative normal distribution.
+        final double y = (elapsed - mean) / stdDeviation;
+        final double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        final double phi;
+        if (elapsed > mean) {
+            phi = -Math.log10(e / (1.0 + e));
+        } else {
+            phi = -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+        return Math.min(Math.max(phi, 0.0), MAX_PHI);
+    }
+
+    /**
+     * @return a JSON object with a "hb_Phi" field, rounded to 2 decimal places.
+     */
+    public static String appendToJson(String json, double phi) {
+        return json.substring(0, json.lastIndexOf('}')) + ",\"hb_Phi\":"
+                + Math.round(phi * 100) / 100.0 + "}";
+    }
+
+    /**
+     * @return a JSON object with a "hb_Phi" object of the levels of targets
+     *         by their names, rounded to 2 decimal places.
+     */
+    public static String appendToJson(String json, Map<String, Double> phis) {
+        final StringBuilder sb = new StringBuilder(json.substring(0, json.lastIndexOf('}')));
+        sb.append(",\"hb_Phi\":{");
+        for (Map.Entry<String, Double> e : phis.entrySet()) {
+            sb.append("\"").append(e.getKey()).append("\":")
+                    .append(Math.round(e.getValue() * 100) / 100.0).append(",");
+        }
+        if (!phis.isEmpty()) {
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        return sb.append("}}").toString();
+    }
+
+    private void add(long interval) {
+        if (count == WINDOW_SIZE) {
+            final long old = intervals[next];
+            sum -= old;
+            squaredSum -= (double) old * old;
+        } else {
+            count++;
+        }
+        intervals[next] = interval;
+        next = (next + 1) % WINDOW_SIZE;
+        sum += interval;
+        squaredSum += (double) interval * interval;
+    }
+
+}
@@ -22,7 +22,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
@@ -36,65 +35,80 @@ import com.navercorp.nbasearc.confmaster.server.ThreadPool;
 import com.navercorp.nbasearc.confmaster.server.cluster.Gateway;
 
 public class MultipleGatewayInvocator {
+    
+    private final long timeoutMillis;
+    
+    /**
+     * @param timeoutMillis the deadline of a request for all gateways
+     */
+    public MultipleGatewayInvocator(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
 
     /**
-     * @return if succeeded then return S2C_OK, otherwise return an error message 
+     * Sends a command to all gateways at once and waits, with one deadline
+     * for all of them, until every gateway replies as expected, or until one
+     * of them fails. Gateways that are not contacted by then are skipped,
+     * and the commands already sent are waited for until the deadline.
+     * 
+     * @return if succeeded then return null, otherwise return an error message 
      */
     public String request(String clusterName, List<Gateway> gateways, 
             String cmd, String expectedRes, ThreadPool executor) {
-        List<Future<Result>> futures = new ArrayList<Future<Result>>();
-        List<Gateway> failedGatewayList = new ArrayList<Gateway>();
-        Map<Gateway, Result> results = new HashMap<Gateway, Result>();
+        final int quorum = gateways.size();
+        final Broadcast broadcast = new Broadcast(gateways.size(), quorum);
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
         
         for (Gateway gw : gateways) {
             SingleGatewayInvocator job = 
-                    new SingleGatewayInvocator(clusterName, gw, cmd, expectedRes);
+                    new SingleGatewayInvocator(clusterName, gw, cmd, expectedRes, broadcast);
             ExecutionContextPar<Result> executionContext = 
                     new ExecutionContextPar<Result>(job, ContextType.GW, Logger.getLogHistory());
             
             futures.add(executor.perform(executionContext));
-            
-            results.put(gw, null);
         }
         
-        for (int i = 0; i < gateways.size(); i++) {
-            Gateway gw = gateways.get(i);
-            Future<Result> future = futures.get(i);
-            
-            try {
-                Result result = future.get();
-                results.put(result.getGateway(), result);
-            } catch (Exception e) {
-                results.put(gw, new Result(e));
-                
-            }
+        boolean succeeded;
+        try {
+            succeeded = broadcast.await(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            succeeded = false;
         }
+        final Map<Gateway, Result> results = broadcast.getResults();
         
-        for (Entry<Gateway, Result> entry : results.entrySet()) {
-            Gateway gw = entry.getKey();
-            Result result = entry.getValue();
-            
-            if (result.getException() != null) {
-                failedGatewayList.add(result.getGateway());
-                
-                Logger.error("Send gateway command fail. {} {}:{}, cmd: \"{}\"", 
-                         new Object[]{gw, gw.getIP(), gw.getPort(), cmd}, 
-                         result.getException());
+        // Gateways that are not contacted yet are no longer needed. Commands
+        // already sent are waited for until the deadline, so that a rollback
+        // or the next command of the caller does not race them, and a hung
+        // gateway does not hold the caller beyond it.
+        for (Future<Result> future : futures) {
+            future.cancel(false);
+        }
+        if (!broadcast.abort(deadline)) {
+            Logger.warn("Gateway commands are still running after the deadline. cmd: \"{}\", timeout: {}ms",
+                    cmd, timeoutMillis);
+        }
+        
+        final List<Gateway> failedGatewayList = new ArrayList<Gateway>();
+        long maxLatency = 0;
+        for (Gateway gw : gateways) {
+            Result result = results.get(gw);
+            if (result == null) {
+                failedGatewayList.add(gw);
+                Logger.error("Send gateway command timeout. {} {}:{}, cmd: \"{}\", timeout: {}ms", 
+                        new Object[]{gw, gw.getIP(), gw.getPort(), cmd, timeoutMillis});
+            } else if (!result.isSuccess()) {
+                failedGatewayList.add(gw);
             } else {
-                if (!result.getResult().equals(Constant.S2C_OK)) {
-                    failedGatewayList.add(result.getGateway());
-
-                    Logger.error("Send gateway command fail. {} {}:{}, cmd: \"{}\"", 
-                             new Object[]{gw, gw.getIP(), gw.getPort(), cmd}, 
-                             result.getException());
-                } else {
-                    Logger.info("Send gateway command success. {} {}:{}, cmd: \"{}\"", 
-                            new Object[]{gw, gw.getIP(), gw.getPort(), cmd});
-                }
+                maxLatency = Math.max(maxLatency, result.getLatencyMillis());
             }
         }
         
-        if (!failedGatewayList.isEmpty()) {
+        Logger.info("Send gateway command to {} gateways, cmd: \"{}\", succeeded: {}, quorum: {}, max latency: {}ms", 
+                new Object[]{gateways.size(), cmd, gateways.size() - failedGatewayList.size(), quorum, maxLatency});
+        
+        if (!succeeded) {
             return MessageFormatter.format(
                     "-ERR failed to forward cmd to gateway. cluster:{}, unavailable gateways list:{}", 
                     clusterName, makeGatewayListString(failedGatewayList));
@@ -130,41 +144,62 @@ public class MultipleGatewayInvocator {
         private Gateway gw;
         private String command;
         private String expectedResponse;
+        private Broadcast broadcast;
         
         public SingleGatewayInvocator(String clusterName, Gateway gw,
-                String command, String expectedResponse) {
+                String command, String expectedResponse, Broadcast broadcast) {
             this.clusterName = clusterName;
             this.setGateway(gw);
             this.command = command;
             this.expectedResponse = expectedResponse;
+            this.broadcast = broadcast;
         }
         
         @Override
         public Result call() {
+            if (!broadcast.start()) {
+                return new Result(gw, Constant.ERROR, 0);
+            }
+            
+            final long start = System.currentTimeMillis();
+            Result result = null;
+            try {
+                result = execute(start);
+                return result;
+            } finally {
+                if (result == null) {
+                    result = new Result(gw, Constant.ERROR, System.currentTimeMillis() - start);
+                }
+                broadcast.done(result);
+                broadcast.finish();
+            }
+        }
+        
+        private Result execute(long start) {
             if (getGateway() == null) {
                 Logger.error(
                     "Send gateway command fail. Gateay variable is null. cluster: {}, command: \"{}\"",
                     clusterName, command);
-                return new Result(gw, Constant.ERROR);
+                return new Result(gw, Constant.ERROR, 0);
             }
             
             try {
                 String reply = getGateway().executeQuery(command);
+                long latency = System.currentTimeMillis() - start;
                 if (!reply.equals(expectedResponse)) {
-                    Logger.error("Send gateway command fail. {} {}:{}, cmd: \"{}\", reply: \"{}\"", 
-                            new Object[]{gw, gw.getIP(), gw.getPort(), command, reply});
-                    return new Result(gw, Constant.ERROR);
+                    Logger.error("Send gateway command fail. {} {}:{}, cmd: \"{}\", reply: \"{}\", latency: {}ms", 
+                            new Object[]{gw, gw.getIP(), gw.getPort(), command, reply, latency});
+                    return new Result(gw, Constant.ERROR, latency);
                 } else {
-                    Logger.info("Send gateway command success. {} {}:{}, cmd: \"{}\", reply: \"{}\"", 
-                            new Object[]{gw, gw.getIP(), gw.getPort(), command, reply});
+                    Logger.info("Send gateway command success. {} {}:{}, cmd: \"{}\", reply: \"{}\", latency: {}ms", 
+                            new Object[]{gw, gw.getIP(), gw.getPort(), command, reply, latency});
                 }
+                return new Result(gw, Constant.S2C_OK, latency);
             } catch (IOException e) {
                 Logger.error("Send gateway command fail. {} {}:{}, cmd: \"{}\"", 
                         new Object[]{gw, gw.getIP(), gw.getPort(), command}, e);
-                return new Result(gw, Constant.ERROR);
+                return new Result(gw, Constant.ERROR, System.currentTimeMillis() - start);
             }
-
-            return new Result(gw, Constant.S2C_OK);
         }
         
         public Gateway getGateway() {
@@ -176,18 +211,110 @@ public class MultipleGatewayInvocator {
         }
     }
     
-    public class Result {
+    /**
+     * Collects the results of a broadcast as they arrive, and keeps track of
+     * the jobs that are still sending a command.
+     */
+    static class Broadcast {
+        private final int total;
+        private final int quorum;
+        private final Map<Gateway, Result> results = new HashMap<Gateway, Result>();
+        private int succeeded = 0;
+        private int failed = 0;
+        private int running = 0;
+        private boolean aborted = false;
+        
+        Broadcast(int total, int quorum) {
+            if (quorum < 0 || quorum > total) {
+                throw new IllegalArgumentException("Invalid quorum. quorum: " + quorum + ", total: " + total);
+            }
+            this.total = total;
+            this.quorum = quorum;
+        }
+        
+        /**
+         * @return false if the broadcast is over and the command must not be sent
+         */
+        synchronized boolean start() {
+            if (aborted) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+        
+        synchronized void finish() {
+            running--;
+            notifyAll();
+        }
+        
+        /**
+         * Keeps the jobs that have not started from sending the command and
+         * waits until the running ones finish or the deadline passes.
+         * 
+         * @return false if a job is still running at the deadline
+         */
+        synchronized boolean abort(long deadline) {
+            aborted = true;
+            boolean interrupted = false;
+            while (running > 0) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return running == 0;
+        }
+        
+        synchronized void done(Result result) {
+            results.put(result.getGateway(), result);
+            if (result.isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+            notifyAll();
+        }
+        
+        /**
+         * @return true if the quorum is reached before the deadline
+         */
+        synchronized boolean await(long deadline) throws InterruptedException {
+            while (succeeded < quorum) {
+                if (failed > total - quorum) {
+                    return false;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+        
+        synchronized Map<Gateway, Result> getResults() {
+            return new HashMap<Gateway, Result>(results);
+        }
+    }
+    
+    public static class Result {
         private Gateway gateway;
         private String result;
-        private Exception exception = null;
+        private long latencyMillis;
         
-        public Result(Gateway gateway, String result) {
+        public Result(Gateway gateway, String result, long latencyMillis) {
             this.setGateway(gateway);
             this.setResult(result);
-        }
-        
-        public Result(Exception e) {
-            this.exception = e;
+            this.latencyMillis = latencyMillis;
         }
 
         public Gateway getGateway() {
@@ -205,13 +332,13 @@ public class MultipleGatewayInvocator {
         public void setResult(String result) {
             this.result = result;
         }
-
-        public Exception getException() {
-            return exception;
+        
+        public boolean isSuccess() {
+            return Constant.S2C_OK.equals(result);
         }
 
-        public void setException(Exception exception) {
-            this.exception = exception;
+        public long getLatencyMillis() {
+            return latencyMillis;
         }
     }
 
@@ -0,0 +1,552 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.nbasearc.confmaster.io;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+
+/**
+ * A non-blocking connection on an {@link EventSelector}, that pipelines
+ * requests and matches replies to them in order.
+ * <p>
+ * {@link #submit(String)} returns at once with a handle of a reply, so that
+ * a thread can send requests to many servers and then wait for all of them.
+ * {@link #execute(String)} waits for a reply like {@link BlockingSocketImpl}.
+ * All I/O is done by the thread of the selector. When a request times out,
+ * the connection is closed along with the other requests on the wire, since
+ * replies can no longer be matched.
+ */
+public class PipelinedSocket implements BlockingSocket, SessionHandler {
+
+    private final EventSelector selector;
+    private final ClientSession session;
+    private final String ip;
+    private final int port;
+    private final String delim;
+    private final int timeout;
+    private final Charset charset;
+
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<Request>();
+    private final Queue<Request> inFlight = new LinkedList<Request>();
+    private final Queue<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+    private final ByteBuffer recvBuffer = ByteBuffer.allocate(8192);
+    private LineReader reader;
+
+    private Handshaker handshaker = null;
+    private boolean handshaking = false;
+    private long handshakeDeadline = 0L;
+    private long connectDeadline = 0L;
+    private boolean closeRequested = false;
+
+    /**
+     * @param timeout milliseconds to wait for a connection or a reply
+     */
+    public PipelinedSocket(EventSelector selector, String ip, int port,
+            int timeout, String delim, String charset) {
+        this.selector = selector;
+        this.ip = ip;
+        this.port = port;
+        this.timeout = timeout;
+        this.delim = delim;
+        this.charset = Charset.forName(charset);
+        this.reader = new LineReader(this.charset.newDecoder());
+
+        session = new ClientSession();
+        session.setSessionID(SessionIDGenerator.gen());
+        session.setHandler(this);
+        session.setSelector(selector.getSelector());
+        session.setRemoteHostIP(ip).setRemoteHostPort(port);
+    }
+
+    public void setHandshaker(Handshaker handshaker) {
+        this.handshaker = handshaker;
+    }
+
+    public Request submit(String query) {
+        return submit(query, 1);
+    }
+
+    public Request submit(String query, int replyCount) {
+        Request request = new Request(query, replyCount,
+                System.currentTimeMillis() + timeout);
+        pending.add(request);
+        selector.addSession(session);
+        selector.getSelector().wakeup();
+        return request;
+    }
+
+    @Override
+    public String execute(String query, int retryCount) throws IOException {
+        String result = null;
+        for (int i = 0; i <= retryCount; i++) {
+            try {
+                result = execute(query);
+                break;
+            } catch (IOException e) {
+                if (i >= retryCount) {
+                    throw e;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String execute(String query) throws IOException {
+        return submit(query).await().get(0);
+    }
+
+    @Override
+    public List<String> executeAndMultiReply(String query, int replyCount)
+            throws IOException {
+        return submit(query, replyCount).await();
+    }
+
+    /**
+     * Not supported, since a reply is matched to its request.
+     */
+    @Override
+    public void send(String query) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, since a reply is matched to its request.
+     */
+    @Override
+    public String recvLine() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the connection. It is reopened by the next request.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closeRequested = true;
+        }
+        if (handshaker != null) {
+            handshaker.disconnected();
+        }
+        selector.getSelector().wakeup();
+    }
+
+    @Override
+    public void callbackOnLoop(long timeMillis) {
+        synchronized (this) {
+            if (closeRequested) {
+                closeRequested = false;
+                if (session.getState() != SessionState.DISCONNECTED) {
+                    session.close();
+                }
+            }
+
+            switch (session.getState()) {
+            case DISCONNECTED:
+                if (pending.isEmpty()) {
+                    selector.removeSession(session.getID());
+                    // A request could be submitted just before the removal.
+                    if (!pending.isEmpty()) {
+                        selector.addSession(session);
+                    }
+                    return;
+                }
+                connect(timeMillis);
+                break;
+
+            case WAIT_CONNECTION:
+                if (timeMillis >= connectDeadline) {
+                    Logger.info(String.format("Server %s:%d is not connectable. timeout:%d", ip, port, timeout));
+                    session.close();
+                    failPending(new SocketTimeoutException("connect timeout. " + ip + ":" + port));
+                }
+                break;
+
+            case CONNECTED:
+                if (checkTimeout(timeMillis)) {
+                    failInFlight(new SocketTimeoutException("Server " + ip + ":" + port
+                            + " does not respond. timeout: " + timeout));
+                    session.close();
+                } else if (!handshaking) {
+                    flush();
+                }
+                break;
+            }
+
+            expirePending(timeMillis);
+        }
+    }
+
+    private void connect(long timeMillis) {
+        connectDeadline = timeMillis + timeout;
+        try {
+            if (session.getChannel() == null) {
+                session.createChannel();
+            }
+            session.connect();
+        } catch (Exception e) {
+            Logger.info(String.format("Server %s:%d is not connectable", ip, port));
+            session.disconnect();
+            failPending(new IOException("Server " + ip + ":" + port + " is not connectable. " + e.getMessage()));
+        }
+    }
+
+    /**
+     * @return true if a request on the wire or a handshake is not replied in time
+     */
+    private boolean checkTimeout(long timeMillis) {
+        if (handshaking && timeMillis >= handshakeDeadline) {
+            Logger.info(String.format("Handshake with %s:%d timeout. timeout:%d", ip, port, timeout));
+            return true;
+        }
+        for (Request request : inFlight) {
+            if (timeMillis >= request.deadline) {
+                Logger.info(String.format("Server %s:%d does not respond. timeout:%d, query:%s",
+                        ip, port, timeout, request.query));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void expirePending(long timeMillis) {
+        Iterator<Request> iter = pending.iterator();
+        while (iter.hasNext()) {
+            Request request = iter.next();
+            if (timeMillis >= request.deadline) {
+                iter.remove();
+                request.fail(new SocketTimeoutException("timeout. " + ip + ":" + port
+                        + ", query: " + request.query + ", timeout: " + timeout));
+            }
+        }
+    }
+
+    private void flush() {
+        Request request;
+        boolean written = false;
+        while ((request = pending.poll()) != null) {
+            inFlight.add(request);
+            writeQueue.add(encode(request.query));
+            written = true;
+        }
+        if (written) {
+            session.getSelectionKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private ByteBuffer encode(String line) {
+        try {
+            return charset.newEncoder().encode(CharBuffer.wrap(line + delim));
+        } catch (CharacterCodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public void callbackConnect(SelectionKey key, long timeMillis) {
+        Logger.debug("Connection to {}:{} was established.", ip, port);
+        key.interestOps(SelectionKey.OP_READ);
+        if (handshaker == null) {
+            return;
+        }
+
+        try {
+            String cmd = handshaker.next(null);
+            if (cmd != null) {
+                handshaking = true;
+                handshakeDeadline = timeMillis + timeout;
+                writeQueue.add(encode(cmd));
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            session.close();
+            failPending(e);
+        }
+    }
+
+    @Override
+    public void callbackConnectError() {
+        failPending(new IOException("Server " + ip + ":" + port + " is not connectable."));
+    }
+
+    @Override
+    public void callbackRead(SelectionKey key, long timeMillis) {
+        String[] lines;
+        try {
+            int recvedLen = ((SocketChannel) key.channel()).read(recvBuffer);
+            if (recvedLen == -1) {
+                Logger.info(String.format("The end of the stream has been reached. %s:%d", ip, port));
+                session.close();
+                return;
+            }
+            recvBuffer.flip();
+            lines = reader.readLines(recvBuffer);
+        } catch (IOException e) {
+            Logger.info(String.format("Server %s:%d does not respond", ip, port));
+            Logger.debug(e.getMessage(), e);
+            session.close();
+            return;
+        }
+
+        for (String line : lines) {
+            if (handshaking) {
+                handshake(key, line, timeMillis);
+                continue;
+            }
+
+            Request request = inFlight.peek();
+            if (request == null) {
+                Logger.warn("Unexpected reply from {}:{}, reply: \"{}\"",
+                        new Object[]{ip, port, line});
+                continue;
+            }
+            if (request.reply(line)) {
+                inFlight.poll();
+            }
+        }
+    }
+
+    private void handshake(SelectionKey key, String reply, long timeMillis) {
+        try {
+            String cmd = handshaker.next(reply);
+            if (cmd != null) {
+                handshakeDeadline = timeMillis + timeout;
+                writeQueue.add(encode(cmd));
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else {
+                handshaking = false;
+                flush();
+            }
+        } catch (IOException e) {
+            session.close();
+            failPending(e);
+        }
+    }
+
+    @Override
+    public void callbackWrite(SelectionKey key, long timeMillis) {
+        try {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                ((SocketChannel) key.channel()).write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            Logger.info(String.format("Server %s:%d does not respond", ip, port));
+            Logger.debug(e.getMessage(), e);
+            session.close();
+        }
+    }
+
+    /**
+     * Fails requests on the wire, which are never replied by a new connection.
+     */
+    @Override
+    public void callbackDisconnected() {
+        Logger.debug("Connection to {}:{} was closed.", ip, port);
+        failInFlight(new IOException("Connection to " + ip + ":" + port + " was closed."));
+        writeQueue.clear();
+        recvBuffer.clear();
+        reader = new LineReader(charset.newDecoder());
+        handshaking = false;
+        if (handshaker != null) {
+            handshaker.disconnected();
+        }
+    }
+
+    private void failInFlight(IOException e) {
+        Request request;
+        while ((request = inFlight.poll()) != null) {
+            request.fail(e);
+        }
+    }
+
+    private void failPending(IOException e) {
+        Request request;
+        while ((request = pending.poll()) != null) {
+            request.fail(e);
+        }
+    }
+
+    @Override
+    public void callbackAccept(SelectionKey key, long timeMillis) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setSession(Session session) {
+    }
+
+    @Override
+    public void setLastUpdatedTime(long timeMillis) {
+    }
+
+    @Override
+    public long getLastUpdatedTime() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelinedSocket[" + ip + ":" + port + "]";
+    }
+
+    /**
+     * Commands sent on every new connection before any request.
+     */
+    public interface Handshaker {
+        /**
+         * @param reply the reply of the previous command, or null on a new connection
+         * @return the next command, or null if the handshake is done
+         * @throws IOException to close the connection
+         */
+        String next(String reply) throws IOException;
+
+        void disconnected();
+    }
+
+    /**
+     * A handle of a reply.
+     */
+    public static class Request implements Future<String> {
+        private final String query;
+        private final int replyCount;
+        private final long deadline;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final List<String> lines;
+        private volatile IOException exception;
+
+        private Request(String query, int replyCount, long deadline) {
+            this.query = query;
+            this.replyCount = replyCount;
+            this.deadline = deadline;
+            this.lines = new ArrayList<String>(replyCount);
+        }
+
+        /**
+         * @return a request that is already replied, for a connection that is not pipelined.
+         */
+        public static Request replied(String query, String reply) {
+            Request request = new Request(query, 1, 0L);
+            request.reply(reply);
+            return request;
+        }
+
+        public static Request failed(String query, IOException e) {
+            Request request = new Request(query, 1, 0L);
+            request.fail(e);
+            return request;
+        }
+
+        /**
+         * @return true if all replies are received
+         */
+        private boolean reply(String line) {
+            lines.add(line);
+            if (lines.size() < replyCount) {
+                return false;
+            }
+            latch.countDown();
+            return true;
+        }
+
+        private void fail(IOException e) {
+            exception = e;
+            latch.countDown();
+        }
+
+        /**
+         * Waits until the request is replied or fails. The deadline of the
+         * request is applied by the connection.
+         */
+        public List<String> await() throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a reply. query: " + query);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            return lines;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        @Override
+        public String get() throws InterruptedException, ExecutionException {
+            latch.await();
+            return result();
+        }
+
+        @Override
+        public String get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException("query: " + query);
+            }
+            return result();
+        }
+
+        private String result() throws ExecutionException {
+            if (exception != null) {
+                throw new ExecutionException(exception);
+            }
+            return lines.get(0);
+        }
+    }
+
+}
@@ -19,42 +19,121 @@ package com.navercorp.nbasearc.confmaster.logger;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.Array;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Level;
+import org.slf4j.helpers.MessageFormatter;
 
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+
+/**
+ * A log that is formatted when it is written, not when it is made.
+ * 
+ * Arguments are kept as they are, except that collections, maps and arrays
+ * are copied, so that a log shows their elements at the moment it was made.
+ * No argument is converted to a string until the log is read or written.
+ */
 public class Log {
     
-    private static final DateFormat df = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSS");
+    private static final ThreadLocal<DateFormat> df = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSS");
+        }
+    };
     private final Level level;
-    private final Date time;
-    private final String msg;
+    private final long time;
+    private final ContextType type;
+    private final MsgDecorator decorator;
+    private final String format;
+    private final Object[] args;
     private final Throwable e;
 
     public Log(Level level, Date time, String msg) {
-        this.level = level;
-        this.time = time;
-        this.msg = msg;
-        this.e = null;
+        this(level, time.getTime(), null, null, msg, null, null);
     }
 
     public Log(Level level, Date time, String msg, Throwable e) {
+        this(level, time.getTime(), null, null, msg, null, e);
+    }
+
+    Log(Level level, long time, ContextType type, MsgDecorator decorator,
+            String format, Object[] args, Throwable e) {
         this.level = level;
         this.time = time;
-        this.msg = msg;
+        this.type = type;
+        this.decorator = decorator;
+        this.format = format;
+        this.args = snapshot(args);
         this.e = e;
     }
+    
+    private static Object[] snapshot(Object[] args) {
+        Object[] result = args;
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                Object copy = copy(args[i]);
+                if (copy != args[i]) {
+                    if (result == args) {
+                        result = args.clone();
+                    }
+                    result[i] = copy;
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static Object copy(Object o) {
+        if (o instanceof List) {
+            return new ArrayList<Object>((List<?>) o);
+        } else if (o instanceof Set) {
+            return new LinkedHashSet<Object>((Set<?>) o);
+        } else if (o instanceof Map) {
+            return new LinkedHashMap<Object, Object>((Map<?, ?>) o);
+        } else if (o instanceof Collection) {
+            return new ArrayList<Object>((Collection<?>) o);
+        } else if (o != null && o.getClass().isArray()) {
+            int length = Array.getLength(o);
+            Object array = Array.newInstance(o.getClass().getComponentType(), length);
+            System.arraycopy(o, 0, array, 0, length);
+            return array;
+        }
+        return o;
+    }
+    
+    public String getMessage() {
+        String msg = (args == null) ? format : MessageFormatter.arrayFormat(format, args);
+        if (decorator != null) {
+            msg = decorator.decorateMessage(msg);
+        }
+        if (type != null) {
+            msg = type.toString() + " " + msg;
+        }
+        return msg;
+    }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         
-        sb.append(
-            String.format("%s %s %03d %s", 
-                df.format(time), getLevel().toString().substring(0, 3), 
-                Thread.currentThread().getId(), msg));
+        long threadId = Thread.currentThread().getId();
+        sb.append(df.get().format(new Date(time))).append(' ')
+                .append(getLevel().toString().substring(0, 3)).append(' ');
+        if (threadId < 100) {
+            sb.append(threadId < 10 ? "00" : "0");
+        }
+        sb.append(threadId).append(' ').append(getMessage());
         if (e != null) {
             sb.append(" ").append(getStackTrace(e));
         }
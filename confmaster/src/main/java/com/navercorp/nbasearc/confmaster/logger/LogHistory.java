@@ -19,7 +19,6 @@ package com.navercorp.nbasearc.confmaster.logger;
 import static org.apache.log4j.Level.*;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 import org.apache.log4j.Level;
@@ -27,40 +26,62 @@ import org.apache.log4j.Logger;
 
 import com.navercorp.nbasearc.confmaster.context.ContextType;
 
+/**
+ * Logs of a thread are kept in a preallocated buffer and written to log4j
+ * when they are flushed or the buffer is full. Logs are formatted only when
+ * they are written, so logs that are filtered out by a level are never formatted.
+ */
 public class LogHistory {
     
+    public static final int CAPACITY = 100;
+    
     private ContextType type = ContextType.CC;
     private MsgDecorator decorator = null;
     
     private final Logger logger = Logger.getLogger("confmasterLogger");
-    private final List<Log> logs = new ArrayList<Log>();
+    private final Log[] logs = new Log[CAPACITY];
+    private int size = 0;
     
     public void log(Level level, String msg) {
-        add(level, msg, null);
+        add(level, msg, null, null);
     }
     
     public void log(Level level, String msg, Throwable e) {
-        add(level, msg, e);
+        add(level, msg, null, e);
+    }
+    
+    public void log(Level level, String format, Object[] args, Throwable e) {
+        add(level, format, args, e);
     }
     
     public void add(Level level, String msg, Throwable e) {
-        logs.add(new Log(level, new Date(), decorateMessage(msg), e));
-        
-        // TODO : don't use magic number!
-        if (logs.size() >= 100) {
+        add(level, msg, null, e);
+    }
+    
+    private void add(Level level, String format, Object[] args, Throwable e) {
+        add(new Log(level, System.currentTimeMillis(), type, decorator, format, args, e));
+    }
+    
+    private void add(Log log) {
+        logs[size++] = log;
+        if (size == CAPACITY) {
             flush(DEBUG);
         }
     }
     
     public void flush(Level level) {
-        if (logs.isEmpty()) {
+        if (size == 0) {
             return;
         }
         
-        StringBuilder sb = new StringBuilder();
         try {
+            if (!logger.isInfoEnabled()) {
+                return;
+            }
             
-            for (Log log : logs) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                Log log = logs[i];
                 if (!log.getLevel().isGreaterOrEqual(level)) {
                     continue;
                 }
@@ -74,7 +95,6 @@ public class LogHistory {
                     sb.append(System.getProperty("line.separator"));
                 }
             }
-            logs.clear();
             
             if (sb.length() > 0) {
                 logger.info(
@@ -83,21 +103,33 @@ public class LogHistory {
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            clear();
+        }
+    }
+    
+    private void clear() {
+        for (int i = 0; i < size; i++) {
+            logs[i] = null;
         }
+        size = 0;
     }
 
     public void log(LogHistory prevLogHistory) {
-        for (Log log : prevLogHistory.logs) {
-            logs.add(log);
+        for (int i = 0; i < prevLogHistory.size; i++) {
+            add(prevLogHistory.logs[i]);
         }
     }
     
-    private String decorateMessage(String msg) {
-        if (decorator == null) {
-            return String.format("%s %s", type.toString(), msg);
-        } else {
-            return String.format("%s %s", type.toString(), decorator.decorateMessage(msg));
+    /**
+     * @return logs that are not flushed yet.
+     */
+    public List<Log> getLogs() {
+        List<Log> result = new ArrayList<Log>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(logs[i]);
         }
+        return result;
     }
 
     public void setContextType(ContextType type) {
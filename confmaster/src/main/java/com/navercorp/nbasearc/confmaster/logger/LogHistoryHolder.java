@@ -65,6 +65,17 @@ public class LogHistoryHolder {
         }
     }
     
+    public void log(Level level, String format, Object[] args, Throwable e) {
+        try {
+            logHistory.log(level, format, args, e);
+        } catch (Exception exception) {
+            if (logHistory == null) {
+                logHistory = new LogHistory();
+            }
+            logHistory.log(ERROR, "Exception occur while logging.", exception);
+        }
+    }
+    
     public void flush(Level level) {
         try {
             logHistory.flush(level);
@@ -22,7 +22,6 @@ import static org.apache.log4j.Level.INFO;
 import static org.apache.log4j.Level.WARN;
 
 import org.apache.log4j.Level;
-import org.slf4j.helpers.MessageFormatter;
 
 import com.navercorp.nbasearc.confmaster.ThreadLocalVariableHolder;
 import com.navercorp.nbasearc.confmaster.context.ContextType;
@@ -44,18 +43,15 @@ public class Logger {
     }
 
     public static void error(String format, Object arg1) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, new Object[] {arg1}, null);
     }
 
     public static void error(String format, Object arg1, Object arg2) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, new Object[] {arg1, arg2}, null);
     }
 
     public static void error(String format, Object[] argArray) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, argArray, null);
     }
     
     public static void error(String msg, Throwable e) {
@@ -63,18 +59,15 @@ public class Logger {
     }
 
     public static void error(String format, Object arg1, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, new Object[] {arg1}, e);
     }
 
     public static void error(String format, Object arg1, Object arg2, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, new Object[] {arg1, arg2}, e);
     }
 
     public static void error(String format, Object[] argArray, Throwable e) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(ERROR, format, argArray, e);
     }
 
     public static void warn(String msg) {        
@@ -82,18 +75,15 @@ public class Logger {
     }
 
     public static void warn(String format, Object arg1) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, new Object[] {arg1}, null);
     }
 
     public static void warn(String format, Object arg1, Object arg2) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, new Object[] {arg1, arg2}, null);
     }
 
     public static void warn(String format, Object[] argArray) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, argArray, null);
     }
     
     public static void warn(String msg, Throwable e) {
@@ -101,18 +91,15 @@ public class Logger {
     }
 
     public static void warn(String format, Object arg1, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, new Object[] {arg1}, e);
     }
 
     public static void warn(String format, Object arg1, Object arg2, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, new Object[] {arg1, arg2}, e);
     }
 
     public static void warn(String format, Object[] argArray, Throwable e) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(WARN, format, argArray, e);
     }
 
     public static void info(String msg) {        
@@ -120,18 +107,15 @@ public class Logger {
     }
 
     public static void info(String format, Object arg1) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, new Object[] {arg1}, null);
     }
 
     public static void info(String format, Object arg1, Object arg2) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, new Object[] {arg1, arg2}, null);
     }
 
     public static void info(String format, Object[] argArray) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, argArray, null);
     }
     
     public static void info(String msg, Throwable e) {
@@ -139,18 +123,15 @@ public class Logger {
     }
 
     public static void info(String format, Object arg1, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, new Object[] {arg1}, e);
     }
 
     public static void info(String format, Object arg1, Object arg2, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, new Object[] {arg1, arg2}, e);
     }
 
     public static void info(String format, Object[] argArray, Throwable e) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(INFO, format, argArray, e);
     }
 
     public static void debug(String msg) {        
@@ -158,18 +139,15 @@ public class Logger {
     }
 
     public static void debug(String format, Object arg1) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, new Object[] {arg1}, null);
     }
 
     public static void debug(String format, Object arg1, Object arg2) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, new Object[] {arg1, arg2}, null);
     }
 
     public static void debug(String format, Object[] argArray) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, argArray, null);
     }
     
     public static void debug(String msg, Throwable e) {
@@ -177,18 +155,15 @@ public class Logger {
     }
 
     public static void debug(String format, Object arg1, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, new Object[] {arg1}, e);
     }
 
     public static void debug(String format, Object arg1, Object arg2, Throwable e) {
-        String msgStr = MessageFormatter.format(format, arg1, arg2);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, new Object[] {arg1, arg2}, e);
     }
 
     public static void debug(String format, Object[] argArray, Throwable e) {
-        String msgStr = MessageFormatter.arrayFormat(format, argArray);
-        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, msgStr, e);
+        ThreadLocalVariableHolder.getLogHistoryHolder().log(DEBUG, format, argArray, e);
     }
 
     public static void flush(Level level) {
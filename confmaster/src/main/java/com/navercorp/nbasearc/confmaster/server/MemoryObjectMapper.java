@@ -18,6 +18,7 @@ package com.navercorp.nbasearc.confmaster.server;
 
 import java.io.IOException;
 
+import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
@@ -93,4 +94,8 @@ public class MemoryObjectMapper {
         }
     }
 
+    public JsonFactory getJsonFactory() {
+        return mapper.getJsonFactory();
+    }
+
 }
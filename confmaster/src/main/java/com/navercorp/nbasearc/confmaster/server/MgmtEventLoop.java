@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.nbasearc.confmaster.server;
+
+import static org.apache.log4j.Level.INFO;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Component;
+
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+import com.navercorp.nbasearc.confmaster.io.EventSelector;
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+
+/**
+ * The thread that does I/O of management connections to SMRs, which are
+ * {@link com.navercorp.nbasearc.confmaster.io.PipelinedSocket}s.
+ */
+@Component
+public class MgmtEventLoop {
+    
+    static final long SELECT_TIMEOUT_MILLIS = 10L;
+    
+    private final EventSelector eventSelector;
+    
+    public MgmtEventLoop() throws IOException {
+        eventSelector = new EventSelector(SELECT_TIMEOUT_MILLIS);
+        
+        Thread thread = new Thread("MgmtEventLoop") {
+            @Override
+            public void run() {
+                Logger.setContextType(ContextType.PS);
+                while (true) {
+                    eventSelector.process();
+                    Logger.flush(INFO);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public EventSelector getEventSelector() {
+        return eventSelector;
+    }
+
+}
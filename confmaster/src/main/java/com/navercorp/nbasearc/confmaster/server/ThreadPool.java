@@ -58,6 +58,14 @@ public class ThreadPool {
         return workerPool.schedule(call, delay, unit);
     }
     
+    public void execute(Runnable job) {
+        workerPool.execute(job);
+    }
+    
+    public void executeDelayed(Runnable job, long delay, TimeUnit unit) {
+        workerPool.schedule(job, delay, unit);
+    }
+    
     public long getCompletedTaskCount() {
         return workerPool.getCompletedTaskCount();
     }
@@ -44,6 +44,7 @@ import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponent;
 import com.navercorp.nbasearc.confmaster.server.cluster.Gateway;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
+import com.navercorp.nbasearc.confmaster.server.cluster.Opinion;
 import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroup;
 import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer;
 import com.navercorp.nbasearc.confmaster.server.cluster.PathUtil;
@@ -63,6 +64,8 @@ public class WatchEventHandler implements Watcher {
     
     private final ClusterComponentContainer container;
     
+    private final Opinion opinion;
+    
     public boolean awaitConnection(final int milliSec) throws InterruptedException {
         return connWait.await(milliSec, TimeUnit.MILLISECONDS);
     }
@@ -73,6 +76,7 @@ public class WatchEventHandler implements Watcher {
         this.workflowExecutor = context.getBean(WorkflowExecutor.class);
         this.lockHelper = new HierarchicalLockHelper(context);
         this.container = context.getBean(ClusterComponentContainer.class);
+        this.opinion = context.getBean(Opinion.class);
     }
     
     @Override
@@ -94,6 +98,8 @@ public class WatchEventHandler implements Watcher {
         } else if (event.getType() == Event.EventType.NodeChildrenChanged
                 || event.getType() == Event.EventType.NodeDataChanged) {
             processChildrenOrDataChangedEvent(event);
+        } else if (event.getType() == Event.EventType.NodeDeleted) {
+            opinion.removeView(event.getPath());
         }
     }
     
@@ -344,7 +350,7 @@ public class WatchEventHandler implements Watcher {
 
     public void onChildEventGw(PathUtil.WatchTarget wt, WatchedEvent event)
             throws MgmtZooKeeperException {
-        zk.registerChildEventWatcher(event.getPath());
+        opinion.setChildren(event.getPath(), zk.registerChildEventWatcher(event.getPath()));
 
         Gateway gw = (Gateway) container.get(event.getPath());
 
@@ -472,7 +478,7 @@ public class WatchEventHandler implements Watcher {
 
     public void onChildEventPgs(PathUtil.WatchTarget wt, WatchedEvent event)
             throws MgmtZooKeeperException {
-        zk.registerChildEventWatcher(event.getPath());
+        opinion.setChildren(event.getPath(), zk.registerChildEventWatcher(event.getPath()));
 
         PartitionGroupServer pgs = (PartitionGroupServer) container.get(event.getPath());
 
@@ -567,7 +573,7 @@ public class WatchEventHandler implements Watcher {
     }
     public void onChildEventRs(PathUtil.WatchTarget wt, WatchedEvent event)
             throws MgmtZooKeeperException {
-        zk.registerChildEventWatcher(event.getPath());
+        opinion.setChildren(event.getPath(), zk.registerChildEventWatcher(event.getPath()));
 
         RedisServer rs = (RedisServer) container.get(event.getPath());
 
@@ -250,12 +250,16 @@ public class ZooKeeperHolder {
         }
     }
 
-    public void registerChildEventWatcher(final String path) throws MgmtZooKeeperException {
+    /**
+     * @return the children of the znode, or null if it does not exist.
+     */
+    public List<String> registerChildEventWatcher(final String path) throws MgmtZooKeeperException {
         try {
-            zk.getChildren(path, true);
+            return zk.getChildren(path, true);
         } catch (KeeperException.NoNodeException e) {
             Logger.warn("Register child event watcher fail. path: {}", path, e);
             // ignore
+            return null;
         } catch (KeeperException e) {
             Logger.error("Register child event watcher fail. path: {}", path, e);
             throw new MgmtZooKeeperException(e);
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -34,6 +35,7 @@ import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.annotate.JsonPropertyOrder;
 import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.springframework.context.ApplicationContext;
 
 import com.navercorp.nbasearc.confmaster.Constant;
@@ -46,6 +48,12 @@ import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor;
 
 public class Cluster implements Comparable<Cluster>, ClusterComponent {
     
+    /*
+     * Generations are taken from one sequence, so that a cluster that is
+     * deleted and created again never repeats a generation.
+     */
+    private static final AtomicLong generationSeq = new AtomicLong();
+    
     private final ReentrantReadWriteLock pgRWLock = new ReentrantReadWriteLock();
     private final ReentrantReadWriteLock gwRWLock = new ReentrantReadWriteLock();
     private final ReentrantReadWriteLock pgsListRWLock = new ReentrantReadWriteLock();
@@ -61,6 +69,7 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
     private String path;
     private String name;
     private ClusterData persistentData;
+    private volatile long generation = generationSeq.incrementAndGet();
 
     public Cluster(ApplicationContext context, String clusterName,
 			List<Integer> quorumPolicyAsList, List<Integer> pnPgMap,
@@ -115,6 +124,27 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
         return gwAffinityList;
     }
     
+    /**
+     * @return a number that changes whenever a job that modified this cluster
+     *         releases its locks.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return a JSON object with a "generation" field, so that a reply served
+     *         from QuerySnapshot tells which version of this cluster it shows.
+     */
+    public String appendGenerationToJson(String json) {
+        return json.substring(0, json.lastIndexOf('}')) + ",\"generation\":"
+                + generation + "}";
+    }
+
+    public void increaseGeneration() {
+        generation = generationSeq.incrementAndGet();
+    }
+
     public void performUpdateGwAff() {
         wfExecutor.perform(UPDATE_GATEWAY_AFFINITY, this, gwAffVer.incrementAndGet());
     }
@@ -327,7 +357,7 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 	@JsonIgnoreProperties(
 	        ignoreUnknown=true)
 	@JsonPropertyOrder(
-	        { "key_Space_Size", "quorum_Policy", "pn_PG_Map", "phase", "mode" })
+	        { "key_Space_Size", "quorum_Policy", "pn_PG_Map", "phase", "mode", "hb_Phi_Threshold" })
 	public static class ClusterData implements Cloneable {
 	    
 	    @JsonProperty("key_Space_Size")
@@ -335,11 +365,15 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 	    @JsonProperty("quorum_Policy")
 	    private List<Integer> quorumPolicy = new ArrayList<Integer>();
 	    @JsonProperty("pn_PG_Map")
-	    private List<Integer> pnPgMap = new ArrayList<Integer>();
+	    private SlotMap pnPgMap = SlotMap.valueOf(new int[0]);
 	    @JsonProperty("phase")
 	    public String phase = CLUSTER_PHASE_INIT;
 	    @JsonProperty("mode")
 	    public int mode = CLUSTER_ON;
+	    /* null if the default of confmaster is used */
+	    @JsonProperty("hb_Phi_Threshold")
+	    @JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+	    public Double hbPhiThreshold;
 	    
 	    @JsonIgnore
 	    private final MemoryObjectMapper mapper = new MemoryObjectMapper();
@@ -350,7 +384,7 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 				List<Integer> pnPgMap, int mode) {
 	    	this.keySpaceSize = KEY_SPACE_SIZE;
 	    	this.quorumPolicy = quorumPolicy;
-	    	this.pnPgMap = pnPgMap;
+	    	this.pnPgMap = SlotMap.valueOf(pnPgMap);
 	    	this.mode = mode;
 		}
 
@@ -362,28 +396,16 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 	        quorumPolicy = quorum_Policy;
 	    }
 	
-	    public List<Integer> getPnPgMap() {
+	    public SlotMap getPnPgMap() {
 	        return pnPgMap;
 	    }
 	
 	    public String pNPgMapToRLS() {
-	        StringBuilder sb = new StringBuilder();
-	        int slotStart = 0;
-	
-	        /* slot pg mapping(Run Length Encoding) */
-	        for (int i = 1; i < this.pnPgMap.size(); i++) {
-	            if (!this.getPnPgMap().get(slotStart).equals(this.pnPgMap.get(i))) {
-	                sb.append(String.format("%d %d ", this.pnPgMap.get(slotStart), i - slotStart));
-	                slotStart = i;
-	            }
-	        }
-	        sb.append(String.format("%d %d", this.pnPgMap.get(slotStart),
-	                this.pnPgMap.size() - slotStart));
-	        return sb.toString();
+	        return pnPgMap.toRLE();
 	    }
 	
 	    public void setPnPgMap(List<Integer> pN_PG_Map) {
-	        pnPgMap = pN_PG_Map;
+	        pnPgMap = SlotMap.valueOf(pN_PG_Map);
 	    }
 	
 	    @Override
@@ -391,7 +413,7 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 	        try {
 	        	ClusterData obj = (ClusterData) super.clone();
 		        obj.quorumPolicy = new ArrayList<Integer>(this.quorumPolicy);
-		        obj.pnPgMap = new ArrayList<Integer>(this.pnPgMap);
+		        // pnPgMap is immutable and shared.
 		        return obj;
 	        } catch (CloneNotSupportedException e) {
 	            throw new RuntimeException(e);
@@ -426,6 +448,10 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 	        if (mode != rhs.mode) {
 	            return false;
 	        }
+	        if (hbPhiThreshold == null ? rhs.hbPhiThreshold != null
+	                : !hbPhiThreshold.equals(rhs.hbPhiThreshold)) {
+	            return false;
+	        }
 	        return true;
 	    }
 	    
@@ -450,7 +476,15 @@ public class Cluster implements Comparable<Cluster>, ClusterComponent {
 		return persistentData.mode;
 	}
 
-	public List<Integer> getPnPgMap() {
+	/**
+	 * @return the phi threshold of heartbeats of this cluster, or null if the
+	 *         default of confmaster is used.
+	 */
+	public Double getHbPhiThreshold() {
+		return persistentData.hbPhiThreshold;
+	}
+
+	public SlotMap getPnPgMap() {
 		return persistentData.getPnPgMap();
 	}
 
@@ -38,6 +38,7 @@ import com.navercorp.nbasearc.confmaster.Constant;
 import com.navercorp.nbasearc.confmaster.config.Config;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBState;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBSession;
+import com.navercorp.nbasearc.confmaster.heartbeat.HBSessionHandler;
 import com.navercorp.nbasearc.confmaster.io.BlockingSocket;
 import com.navercorp.nbasearc.confmaster.io.BlockingSocketImpl;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
@@ -124,7 +125,7 @@ public class Gateway implements HeartbeatTarget, Comparable<Gateway>, ClusterCom
     
     public static String getAffinity(String clusterName, String pmName, ClusterComponentContainer container) {
         final Cluster cluster = container.getCluster(clusterName);
-        final List<Integer> pnPgMap = cluster.getPnPgMap();
+        final SlotMap pnPgMap = cluster.getPnPgMap();
         final PhysicalMachineCluster machineInfo = container.getPmc(pmName, clusterName);
         final List<Integer> localPgsIdList;
         if (machineInfo != null) {
@@ -136,7 +137,7 @@ public class Gateway implements HeartbeatTarget, Comparable<Gateway>, ClusterCom
              */
             localPgsIdList = new ArrayList<Integer>();
         }
-        Character[] keySpace = new Character[Constant.KEY_SPACE_SIZE];
+        char[] keySpace = new char[Constant.KEY_SPACE_SIZE];
         Arrays.fill(keySpace, Constant.AFFINITY_TYPE_NONE);
 
         for (Integer pgsID : localPgsIdList) {
@@ -156,9 +157,10 @@ public class Gateway implements HeartbeatTarget, Comparable<Gateway>, ClusterCom
             }
 
             // Set affinity type for the keyspace.
-            for (int slot = 0; slot < Constant.KEY_SPACE_SIZE; slot++) {
-                if (pgs.getPgId() == pnPgMap.get(slot)) {
-                    keySpace[slot] = affinityType;
+            for (int run = 0; run < pnPgMap.getRunCount(); run++) {
+                if (pgs.getPgId() == pnPgMap.getRunPg(run)) {
+                    Arrays.fill(keySpace, pnPgMap.getRunStart(run),
+                            pnPgMap.getRunEnd(run) + 1, affinityType);
                 }
             }
         }
@@ -186,6 +188,17 @@ public class Gateway implements HeartbeatTarget, Comparable<Gateway>, ClusterCom
     public HBState getHeartbeatState() {
         return hbSession.getHeartbeatState();
     }
+    
+    /**
+     * @return the suspicion level of heartbeats, or 0 if it is unknown.
+     */
+    public double getHeartbeatPhi() {
+        final HBSessionHandler handler = hbSession.getHandler();
+        if (handler == null) {
+            return 0.0;
+        }
+        return handler.getPhi();
+    }
 
     @Override
     public UsedOpinionSet getUsedOpinions() {
@@ -201,18 +214,18 @@ public class Gateway implements HeartbeatTarget, Comparable<Gateway>, ClusterCom
     }
 
     static class RunLengthEncoder {
-        public static <T> String convertToRLE(T[] rawData) {
+        public static String convertToRLE(char[] rawData) {
             StringBuilder sb = new StringBuilder();
             int slotStart = 0;
 
             /* slot pg mapping(Run Length Encoding) */
             for (int i = 1; i < rawData.length; i++) {
                 if (rawData[slotStart] != rawData[i]) {
-                    sb.append("" + rawData[slotStart] + (i - slotStart));
+                    sb.append(rawData[slotStart]).append(i - slotStart);
                     slotStart = i;
                 }
             }
-            sb.append("" + rawData[slotStart] + (rawData.length - slotStart));
+            sb.append(rawData[slotStart]).append(rawData.length - slotStart);
             return sb.toString();
         }
     }
@@ -36,30 +36,7 @@ public class LogSequence {
     
     public void initialize() throws IOException {
         try {
-            String reply = pgs.executeQuery("getseq log");
-            Map<String, String> map = new LinkedHashMap<String, String>();
-            
-            for (String pair : reply.split(" ")) {
-                String kv[] = pair.split(":");
-                if (kv.length != 2) {
-                    continue;
-                }
-                map.put(kv[0], kv[1]);
-            }
-
-            String be_sent = map.get("be_sent");
-            if (be_sent == null) {
-                be_sent = "0";
-            }
-
-            this.min = Long.parseLong(map.get("min"));
-            this.logCommit = Long.parseLong(map.get("commit"));
-            this.max = Long.parseLong(map.get("max"));
-            this.beCommit = Long.parseLong(be_sent);
-
-            Logger.info(
-                    "Get log sequence success. {}, role: {}, reply: \"{}\"",
-                    new Object[]{pgs, pgs.getRole(), reply});
+            initialize(pgs.executeQuery("getseq log"));
         } catch (IOException e) {
             Logger.info(
                     "Get log sequence fail. {}, role: {}",
@@ -67,6 +44,35 @@ public class LogSequence {
             throw e;
         }
     }
+    
+    /**
+     * @param reply a reply of "getseq log"
+     */
+    public void initialize(String reply) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        
+        for (String pair : reply.split(" ")) {
+            String kv[] = pair.split(":");
+            if (kv.length != 2) {
+                continue;
+            }
+            map.put(kv[0], kv[1]);
+        }
+
+        String be_sent = map.get("be_sent");
+        if (be_sent == null) {
+            be_sent = "0";
+        }
+
+        this.min = Long.parseLong(map.get("min"));
+        this.logCommit = Long.parseLong(map.get("commit"));
+        this.max = Long.parseLong(map.get("max"));
+        this.beCommit = Long.parseLong(be_sent);
+
+        Logger.info(
+                "Get log sequence success. {}, role: {}, reply: \"{}\"",
+                new Object[]{pgs, pgs.getRole(), reply});
+    }
 
     public long getMin() {
         return min;
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import static com.navercorp.nbasearc.confmaster.Constant.S2C_OK;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reply of "migrate info" of a source master.
+ * 
+ * (reply example) +OK log:848339465 mig:848335460 buf:823233812 sent:823211587 acked:823211587
+ * 
+ * log and mig are sequences of the replication log, buf, sent and acked are
+ * sequences of the migration buffer.
+ */
+public class MigrateInfo {
+
+    private final long log;
+    private final long mig;
+    private final long buf;
+    private final long sent;
+    private final long acked;
+    
+    public MigrateInfo(long log, long mig, long buf, long sent, long acked) {
+        this.log = log;
+        this.mig = mig;
+        this.buf = buf;
+        this.sent = sent;
+        this.acked = acked;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the reply is not a successful reply
+     *         of "migrate info".
+     */
+    public static MigrateInfo parse(String reply) {
+        String[] tokens = reply.split(" ");
+        if (!tokens[0].equals(S2C_OK)) {
+            throw new IllegalArgumentException("unexpected reply of migrate info. reply=" + reply);
+        }
+        
+        Map<String, Long> map = new HashMap<String, Long>();
+        for (int i = 1; i < tokens.length; i++) {
+            int delim = tokens[i].indexOf(':');
+            if (delim == -1) {
+                continue;
+            }
+            try {
+                map.put(tokens[i].substring(0, delim),
+                        Long.valueOf(tokens[i].substring(delim + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("unexpected reply of migrate info. reply=" + reply);
+            }
+        }
+        
+        for (String key : new String[]{"log", "mig", "buf", "acked"}) {
+            if (!map.containsKey(key)) {
+                throw new IllegalArgumentException("unexpected reply of migrate info. reply=" + reply);
+            }
+        }
+        
+        Long sent = map.get("sent");
+        return new MigrateInfo(map.get("log"), map.get("mig"), map.get("buf"), 
+                sent == null ? map.get("acked") : sent, map.get("acked"));
+    }
+
+    public long getLog() {
+        return log;
+    }
+
+    public long getMig() {
+        return mig;
+    }
+
+    public long getBuf() {
+        return buf;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getAcked() {
+        return acked;
+    }
+    
+    @Override
+    public String toString() {
+        return "log:" + log + " mig:" + mig + " buf:" + buf + " sent:" + sent
+                + " acked:" + acked;
+    }
+
+}
@@ -1,8 +1,18 @@
 package com.navercorp.nbasearc.confmaster.server.cluster;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
@@ -22,33 +32,205 @@ public class Opinion {
     @Autowired
     private ZooKeeperHolder zk;
     
+    /*
+     * The first byte of an opinion in the binary format. An opinion in JSON
+     * begins with '{'.
+     */
+    private static final byte BINARY_FORMAT = 1;
+    
     private MemoryObjectMapper mapper = new MemoryObjectMapper();
     
+    private final ConcurrentMap<String, OpinionView> views = 
+            new ConcurrentHashMap<String, OpinionView>();
+    
     public OpinionData getOpinion(final String path)
             throws MgmtZooKeeperException, NoNodeException {
         byte data[] = zk.getData(path, null);
-        return mapper.readValue(data, OpinionData.class);
+        return decode(data);
     }
 
+    /**
+     * Returns the opinions of a heartbeat target. An opinion is read from
+     * ZooKeeper once and kept in memory until a watch on its znode reports
+     * that it was changed or deleted. The names of the opinions are listed
+     * once and then kept up to date by the child watch of the target, see
+     * {@link #setChildren}.
+     */
     public List<OpinionData> getOpinions(final String path)
             throws MgmtZooKeeperException, NoNodeException {
+        final OpinionView view = getView(path);
         List<OpinionData> opinions = new ArrayList<OpinionData>();
 
-        List<String> children;
-        children = zk.getChildren(path);
+        List<String> children = view.children;
+        if (children == null) {
+            children = loadChildren(path, view);
+        }
         
         for (String childName : children) {
             StringBuilder builder = new StringBuilder(path);
             builder.append("/").append(childName);
             String childPath = builder.toString();
 
-            byte data[] = zk.getData(childPath, null);
-            OpinionData opData = mapper.readValue(data, OpinionData.class);
+            OpinionData opData = view.opinions.get(childPath);
+            if (opData == null) {
+                final long version = view.version.get();
+                try {
+                    byte data[] = zk.getData(childPath, null, opinionWatcher);
+                    opData = decode(data);
+                } catch (NoNodeException e) {
+                    // Withdrawn, the child event will start another decision.
+                    continue;
+                }
+                view.opinions.put(childPath, opData);
+                if (view.version.get() != version) {
+                    view.opinions.remove(childPath, opData);
+                }
+            }
             opinions.add(opData);
         }
         
         return opinions;
     }
+
+    /**
+     * Encodes an opinion in the binary format, which is about a third of the size
+     * of the JSON format.
+     */
+    public static byte[] encode(OpinionData opinion) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(BINARY_FORMAT);
+            out.writeUTF(opinion.name);
+            out.writeUTF(opinion.opinion);
+            out.writeInt(opinion.version);
+            out.writeLong(opinion.stateTimestamp);
+            out.writeLong(opinion.creationTime);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes an opinion in either the binary or the JSON format.
+     */
+    public OpinionData decode(byte[] data) {
+        if (data.length == 0 || data[0] != BINARY_FORMAT) {
+            return mapper.readValue(data, OpinionData.class);
+        }
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+        OpinionData opinion = new OpinionData();
+        try {
+            opinion.name = in.readUTF();
+            opinion.opinion = in.readUTF();
+            opinion.version = in.readInt();
+            opinion.stateTimestamp = in.readLong();
+            opinion.creationTime = in.readLong();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed opinion.", e);
+        }
+        return opinion;
+    }
+
+    private List<String> loadChildren(final String path, final OpinionView view)
+            throws MgmtZooKeeperException {
+        final long version = view.version.get();
+        final List<String> children;
+        try {
+            children = zk.getChildren(path);
+        } catch (MgmtZooKeeperException e) {
+            views.remove(path, view);
+            throw e;
+        }
+        
+        synchronized (view) {
+            // A child event in the meantime has a newer list.
+            if (view.children == null && view.version.get() == version) {
+                view.children = children;
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Called with the children that the child watch of a heartbeat target
+     * reports. The view of a target whose znode is gone is removed.
+     * 
+     * @param children the names of the opinions, null if the target is deleted
+     */
+    public void setChildren(final String path, final List<String> children) {
+        if (children == null) {
+            removeView(path);
+            return;
+        }
+        
+        final OpinionView view = getView(path);
+        synchronized (view) {
+            view.version.incrementAndGet();
+            view.children = children;
+        }
+    }
+
+    /**
+     * Removes the view of a heartbeat target whose znode is deleted.
+     */
+    public void removeView(final String path) {
+        views.remove(path);
+    }
+
+    /**
+     * @return the version of the opinions of a heartbeat target, it is
+     *         increased whenever one of its opinions is changed, deleted or
+     *         added.
+     */
+    public long getVersion(final String path) {
+        return getView(path).version.get();
+    }
+
+    private OpinionView getView(final String path) {
+        OpinionView view = views.get(path);
+        if (view == null) {
+            view = new OpinionView();
+            OpinionView old = views.putIfAbsent(path, view);
+            if (old != null) {
+                view = old;
+            }
+        }
+        return view;
+    }
+
+    private void invalidate(final String opinionPath) {
+        final int idx = opinionPath.lastIndexOf('/');
+        if (idx <= 0) {
+            return;
+        }
+
+        OpinionView view = views.get(opinionPath.substring(0, idx));
+        if (view != null) {
+            // Increase the version before removing, see getOpinions().
+            view.version.incrementAndGet();
+            view.opinions.remove(opinionPath);
+        }
+    }
+
+    private final Watcher opinionWatcher = new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+            // Watches survive a reconnection, so connection events are ignored.
+            if (event.getType() != Event.EventType.None) {
+                invalidate(event.getPath());
+            }
+        }
+    };
+
+    private static class OpinionView {
+        private final AtomicLong version = new AtomicLong();
+        private volatile List<String> children;
+        private final ConcurrentMap<String, OpinionData> opinions = 
+                new ConcurrentHashMap<String, OpinionData>();
+    }
     
     @JsonAutoDetect(
             fieldVisibility=Visibility.ANY, 
@@ -25,7 +25,6 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -40,14 +39,20 @@ import org.codehaus.jackson.annotate.JsonPropertyOrder;
 import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
 import org.springframework.context.ApplicationContext;
 
+import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
 
 public class PartitionGroup implements Comparable<PartitionGroup>, ClusterComponent {
     
+    static final long LATENCY_BUCKET_MILLIS = 10L;
+    
     private String clusterName;
     
     private AtomicLong wfEpoch;
     private AtomicLong wfCnt;
+    private AtomicLong wfDone;
+    private volatile long wfLastWait;
+    private volatile long wfLastElapsed;
     
     private String path;
     private String name;
@@ -81,6 +86,7 @@ public class PartitionGroup implements Comparable<PartitionGroup>, ClusterCompon
         
         wfEpoch = new AtomicLong();
         wfCnt = new AtomicLong();
+        wfDone = new AtomicLong();
     }
 
     public String getClusterName() {
@@ -257,16 +263,50 @@ public class PartitionGroup implements Comparable<PartitionGroup>, ClusterCompon
     }
 
     /**
-     * @brief choose a master among candidates
+     * @brief choose a master among candidates. A candidate on a machine with
+     *        fewer masters is preferred, then one with a lower heartbeat
+     *        latency, and then one with more logs.
      * @return return a master
      */
-    public PartitionGroupServer chooseMasterRandomly(
+    public PartitionGroupServer chooseMaster(
             final SortedLogSeqSet logSeqMap,
-            final List<PartitionGroupServer> joinedPgsList) {
-        final int d = getD(joinedPgsList);
-        final int r = new Random(System.currentTimeMillis()).nextInt(
-                persistentData.quorum - d + 1);
-        return logSeqMap.get(r);
+            final List<PartitionGroupServer> joinedPgsList,
+            final ClusterComponentContainer container) {
+        PartitionGroupServer best = null;
+        int bestMasters = 0;
+        long bestLatency = 0;
+        
+        // logSeqMap is sorted by logs in descending order, so a tie is 
+        // broken in favor of more logs.
+        for (LogSequence logSeq : logSeqMap) {
+            final PartitionGroupServer pgs = logSeq.getPgs();
+            if (!isMasterCandidate(pgs, logSeqMap, joinedPgsList)) {
+                continue;
+            }
+            
+            final int masters = pgs.countMastersInSameMachine(container);
+            final long latency = latencyBucket(pgs.getHeartbeatLatency());
+            if (best == null || masters < bestMasters
+                    || (masters == bestMasters && latency < bestLatency)) {
+                best = pgs;
+                bestMasters = masters;
+                bestLatency = latency;
+            }
+            Logger.info("master candidate {}, masters in the machine: {}, heartbeat latency: {}ms, log: {}",
+                    new Object[] {pgs, masters, pgs.getHeartbeatLatency(), logSeq.getMax()});
+        }
+        return best;
+    }
+    
+    /**
+     * Latencies in the same bucket are regarded as equal, since a small
+     * difference is just a noise.
+     */
+    private static long latencyBucket(long latencyMillis) {
+        if (latencyMillis < 0) {
+            return Long.MAX_VALUE;
+        }
+        return latencyMillis / LATENCY_BUCKET_MILLIS;
     }
     
     @Override
@@ -278,6 +318,12 @@ public class PartitionGroup implements Comparable<PartitionGroup>, ClusterCompon
         StringBuilder sb = new StringBuilder(persistentData.toString());
         sb.insert(sb.length() - 1, ",\"wf\":");
         sb.insert(sb.length() - 1, getWfCnt());
+        sb.insert(sb.length() - 1, ",\"wf_done\":");
+        sb.insert(sb.length() - 1, getWfDone());
+        sb.insert(sb.length() - 1, ",\"wf_wait\":");
+        sb.insert(sb.length() - 1, wfLastWait);
+        sb.insert(sb.length() - 1, ",\"wf_elapsed\":");
+        sb.insert(sb.length() - 1, wfLastElapsed);
         return sb.toString();
     }
     
@@ -305,6 +351,23 @@ public class PartitionGroup implements Comparable<PartitionGroup>, ClusterCompon
         return wfCnt.get();
     }
     
+    /**
+     * Records a finished workflow, so that the progress of a recovery can be
+     * seen in pg_info.
+     * 
+     * @param waitMillis the time that the workflow waited for a worker thread and the lock
+     * @param elapsedMillis the time that the workflow ran
+     */
+    public void wfDone(long waitMillis, long elapsedMillis) {
+        wfLastWait = waitMillis;
+        wfLastElapsed = elapsedMillis;
+        wfDone.incrementAndGet();
+    }
+    
+    public long getWfDone() {
+        return wfDone.get();
+    }
+    
 
 	@JsonAutoDetect(
 	        fieldVisibility=Visibility.ANY, 
@@ -19,11 +19,10 @@ package com.navercorp.nbasearc.confmaster.server.cluster;
 import static com.navercorp.nbasearc.confmaster.Constant.*;
 import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -44,10 +43,12 @@ import com.navercorp.nbasearc.confmaster.Constant.Color;
 import com.navercorp.nbasearc.confmaster.config.Config;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBState;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBSession;
+import com.navercorp.nbasearc.confmaster.heartbeat.HBSessionHandler;
 import com.navercorp.nbasearc.confmaster.io.BlockingSocket;
-import com.navercorp.nbasearc.confmaster.io.BlockingSocketImpl;
+import com.navercorp.nbasearc.confmaster.io.PipelinedSocket;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
+import com.navercorp.nbasearc.confmaster.server.MgmtEventLoop;
 import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
 import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowLogger;
  
@@ -70,6 +71,9 @@ public class PartitionGroupServer implements HeartbeatTarget,
     private String name;
     private PartitionGroupServerData persistentData;
     private int znodeVersion;
+    
+    /* learned at the first handshake of a connection, and forgotten when it is closed. */
+    private volatile String smrVersion;
 
     public PartitionGroupServer(ApplicationContext context, byte[] d,
             String clusterName, String pgsId, int znodeVersion) {
@@ -102,44 +106,42 @@ public class PartitionGroupServer implements HeartbeatTarget,
         
         this.setZNodeVersion(znodeVersion);
         
-        BlockingSocketImpl con = new BlockingSocketImpl(persistentData.pmIp,
-                persistentData.smrMgmtPort, config.getClusterPgsTimeout(),
-                PGS_PING, config.getDelim(), config.getCharset());
-        con.setFirstHandshaker(new BlockingSocketImpl.FirstHandshaker() {
+        PipelinedSocket con = new PipelinedSocket(
+                context.getBean(MgmtEventLoop.class).getEventSelector(),
+                persistentData.pmIp, persistentData.smrMgmtPort,
+                config.getClusterPgsTimeout(), config.getDelim(), config.getCharset());
+        con.setHandshaker(new PipelinedSocket.Handshaker() {
+            private String cmd;
+            
             @Override
-            public void handshake(BufferedReader in, PrintWriter out, String delim)
-                    throws IOException {
-                String cmd = null;
-                
-                try {
+            public String next(String reply) throws IOException {
+                if (reply == null) {
                     cmd = "smrversion";
-                    out.print(cmd + delim);
-                    out.flush();
-                    
-                    final String reply = in.readLine();
-                    if (reply.equals("+OK 201") == false) {
-                        return;
-                    }
-                } catch (IOException e) {
-                    Logger.info("Singleton request to SMR fail. cmd: " + cmd);
-                    throw e;
+                    return cmd;
                 }
                 
-                try {
-                    cmd = "singleton confmaster";
-                    out.print(cmd + delim);
-                    out.flush();
-                    
-                    final String reply = in.readLine();
-                    if (reply.equals("+OK") == false) {
-                        Logger.info("Singleton request to SMR fail. cmd: " + cmd
-                                + ", reply: \"" + reply + "\"");
-                        throw new IOException("Singleton request to SMR fail. " + this);
+                if (cmd.equals("smrversion")) {
+                    final String version = parseSmrVersion(reply);
+                    smrVersion = version;
+                    if (!SMR_VERSION_201.equals(version)) {
+                        return null;
                     }
-                } catch (IOException e) {
-                    Logger.info("Singleton request to SMR fail. cmd: " + cmd);
-                    throw e;
+                    cmd = "singleton confmaster";
+                    return cmd;
                 }
+                
+                if (reply.equals("+OK") == false) {
+                    Logger.info("Singleton request to SMR fail. cmd: " + cmd
+                            + ", reply: \"" + reply + "\"");
+                    throw new IOException("Singleton request to SMR fail. " + PartitionGroupServer.this);
+                }
+                return null;
+            }
+            
+            @Override
+            public void disconnected() {
+                // SMR could be replaced with another version before reconnection.
+                smrVersion = null;
             }
         });
         connectionForCommand = con;
@@ -179,6 +181,45 @@ public class PartitionGroupServer implements HeartbeatTarget,
         }
         return false;
     }
+
+    /**
+     * @return the number of masters on the machine of this PGS, of all clusters.
+     */
+    public int countMastersInSameMachine(ClusterComponentContainer container) {
+        int count = 0;
+        for (PhysicalMachineCluster pmc : container.getPmcList(persistentData.pmName)) {
+            for (Integer id : pmc.getPgsIdList()) {
+                PartitionGroupServer pgs = container.getPgs(pmc.getName(), String.valueOf(id));
+                if (pgs != null && pgs.persistentData.role.equals(PGS_ROLE_MASTER)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a moving average of heartbeat ping-pong durations in
+     *         milliseconds, or -1 if it is unknown.
+     */
+    public long getHeartbeatLatency() {
+        final HBSessionHandler handler = hbSession.getHandler();
+        if (handler == null) {
+            return -1L;
+        }
+        return handler.getPingpongLatency();
+    }
+
+    /**
+     * @return the suspicion level of heartbeats, or 0 if it is unknown.
+     */
+    public double getHeartbeatPhi() {
+        final HBSessionHandler handler = hbSession.getHandler();
+        if (handler == null) {
+            return 0.0;
+        }
+        return handler.getPhi();
+    }
     
     public void propagateStateToHeartbeatSession() {
         hbSession.getHeartbeatState().setZkData(
@@ -210,6 +251,24 @@ public class PartitionGroupServer implements HeartbeatTarget,
     public String executeQuery(String query, int retryCount) throws IOException {
         return connectionForCommand.execute(query, retryCount);
     }
+
+    /**
+     * Sends a query without waiting for its reply, so that a thread can send
+     * queries to many PGSes at once.
+     */
+    public Future<String> executeQueryAsync(String query) {
+        final BlockingSocket con = connectionForCommand;
+        if (con instanceof PipelinedSocket) {
+            return ((PipelinedSocket) con).submit(query);
+        }
+        
+        // A connection that is not pipelined replies at once.
+        try {
+            return PipelinedSocket.Request.replied(query, con.execute(query));
+        } catch (IOException e) {
+            return PipelinedSocket.Request.failed(query, e);
+        }
+    }
     
     public long getActiveStateTimestamp() throws IOException {
         String response = executeQuery(PGS_PING);
@@ -475,28 +534,52 @@ public class PartitionGroupServer implements HeartbeatTarget,
         return logSeq;
     }
     
+    /**
+     * @return the version of SMR, that is cached until the connection to SMR is closed.
+     */
     public String smrVersion() throws MgmtSmrCommandException {
+        final String cached = smrVersion;
+        if (cached != null) {
+            return cached;
+        }
+        
         final String cmd = "smrversion";
         
         try {
-            // Send 'role master'
             String reply = executeQuery(cmd);
             
-            String []toks = reply.split(" ");
             Logger.info("get smrversion success {}, reply: \"{}\"", this, reply);
-            if (toks[0].equals(ERROR)) {
-                return SMR_VERSION_101;
-            } else if (toks[1].equals(SMR_VERSION_201)) {
-                return SMR_VERSION_201;
-            } else {
+            final String version = parseSmrVersion(reply);
+            if (version == null) {
                 throw new MgmtSmrCommandException("Get smrversion error.");
             }
+            smrVersion = version;
+            return version;
         } catch (IOException e) {
             Logger.error("get smrversion fail. {}", this);
             throw new MgmtSmrCommandException("Get smrversion error. " + e.getMessage());
         }
     }
     
+    /**
+     * @return SMR_VERSION_101 if SMR does not know 'smrversion', 
+     *         SMR_VERSION_201 for 2.x, and null for an unknown reply.
+     */
+    static String parseSmrVersion(String reply) {
+        if (reply == null) {
+            return null;
+        }
+        
+        String []toks = reply.split(" ");
+        if (toks[0].equals(ERROR)) {
+            return SMR_VERSION_101;
+        } else if (toks.length > 1 && toks[1].equals(SMR_VERSION_201)) {
+            return SMR_VERSION_201;
+        } else {
+            return null;
+        }
+    }
+    
     private void roleMasterCmdResult(String cmd, String reply, long jobID,
             WorkflowLogger workflowLogger) throws MgmtSmrCommandException {
         // Make information for logging
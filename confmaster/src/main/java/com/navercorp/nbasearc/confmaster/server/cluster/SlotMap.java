@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * An immutable slot to pg mapping, backed by an int array.
+ * 
+ * It is a read-only List<Integer> and is serialized as a json array of pg ids,
+ * so it is compatible with the format in ZooKeeper. The runs of slots that
+ * belong to the same pg are computed once, when the map is made.
+ */
+@JsonSerialize(using = SlotMap.Serializer.class)
+@JsonDeserialize(using = SlotMap.Deserializer.class)
+public final class SlotMap extends AbstractList<Integer> implements RandomAccess {
+
+    private final int[] slots;
+    
+    /* the first slot and pg of each run */
+    private final int[] runStarts;
+    private final int[] runPgs;
+    private String rle;
+    
+    public SlotMap(int size, int pgId) {
+        this(filled(size, pgId));
+    }
+    
+    private SlotMap(int[] slots) {
+        this.slots = slots;
+        
+        int runCount = slots.length == 0 ? 0 : 1;
+        for (int i = 1; i < slots.length; i++) {
+            if (slots[i] != slots[i - 1]) {
+                runCount++;
+            }
+        }
+        
+        runStarts = new int[runCount];
+        runPgs = new int[runCount];
+        for (int i = 0, run = 0; i < slots.length; i++) {
+            if (i == 0 || slots[i] != slots[i - 1]) {
+                runStarts[run] = i;
+                runPgs[run] = slots[i];
+                run++;
+            }
+        }
+    }
+    
+    private static int[] filled(int size, int pgId) {
+        int[] slots = new int[size];
+        Arrays.fill(slots, pgId);
+        return slots;
+    }
+    
+    public static SlotMap valueOf(int[] slots) {
+        return new SlotMap(slots.clone());
+    }
+    
+    public static SlotMap valueOf(List<Integer> list) {
+        if (list instanceof SlotMap) {
+            return (SlotMap) list;
+        }
+        
+        int[] slots = new int[list.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = list.get(i);
+        }
+        return new SlotMap(slots);
+    }
+    
+    /**
+     * @param rle "<pg id> <slot count> <pg id> <slot count> ..."
+     */
+    public static SlotMap fromRLE(String rle) {
+        String[] tokens = rle.trim().split(" +");
+        if (tokens.length % 2 != 0) {
+            throw new IllegalArgumentException("invalid slot map. " + rle);
+        }
+        
+        int size = 0;
+        for (int i = 1; i < tokens.length; i += 2) {
+            size += Integer.parseInt(tokens[i]);
+        }
+        
+        int[] slots = new int[size];
+        for (int i = 0, slot = 0; i < tokens.length; i += 2) {
+            int count = Integer.parseInt(tokens[i + 1]);
+            Arrays.fill(slots, slot, slot + count, Integer.parseInt(tokens[i]));
+            slot += count;
+        }
+        return new SlotMap(slots);
+    }
+
+    /**
+     * @return a new map whose slots from rangeFrom to rangeTo, inclusive, belong to pgId
+     */
+    public SlotMap set(int rangeFrom, int rangeTo, int pgId) {
+        int[] newSlots = slots.clone();
+        Arrays.fill(newSlots, rangeFrom, rangeTo + 1, pgId);
+        return new SlotMap(newSlots);
+    }
+    
+    public int pgOf(int slot) {
+        return slots[slot];
+    }
+    
+    @Override
+    public Integer get(int slot) {
+        return slots[slot];
+    }
+
+    @Override
+    public int size() {
+        return slots.length;
+    }
+    
+    public int getRunCount() {
+        return runStarts.length;
+    }
+    
+    public int getRunStart(int run) {
+        return runStarts[run];
+    }
+    
+    public int getRunEnd(int run) {
+        return run + 1 < runStarts.length ? runStarts[run + 1] - 1 : slots.length - 1;
+    }
+    
+    public int getRunPg(int run) {
+        return runPgs[run];
+    }
+    
+    /**
+     * @return "<pg id> <slot count> <pg id> <slot count> ..."
+     */
+    public String toRLE() {
+        if (rle == null) {
+            StringBuilder sb = new StringBuilder();
+            for (int run = 0; run < runStarts.length; run++) {
+                if (run > 0) {
+                    sb.append(' ');
+                }
+                sb.append(runPgs[run]).append(' ')
+                        .append(getRunEnd(run) - runStarts[run] + 1);
+            }
+            rle = sb.toString();
+        }
+        return rle;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof SlotMap) {
+            return Arrays.equals(slots, ((SlotMap) o).slots);
+        }
+        return super.equals(o);
+    }
+    
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+    
+    public static class Serializer extends JsonSerializer<SlotMap> {
+        @Override
+        public void serialize(SlotMap value, JsonGenerator jgen,
+                SerializerProvider provider) throws IOException,
+                JsonProcessingException {
+            jgen.writeStartArray();
+            for (int pgId : value.slots) {
+                jgen.writeNumber(pgId);
+            }
+            jgen.writeEndArray();
+        }
+    }
+    
+    public static class Deserializer extends JsonDeserializer<SlotMap> {
+        @Override
+        public SlotMap deserialize(JsonParser jp, DeserializationContext ctxt)
+                throws IOException, JsonProcessingException {
+            if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw ctxt.mappingException(SlotMap.class);
+            }
+            
+            int[] slots = new int[16];
+            int size = 0;
+            while (jp.nextToken() != JsonToken.END_ARRAY) {
+                if (size == slots.length) {
+                    slots = Arrays.copyOf(slots, size * 2);
+                }
+                slots[size++] = jp.getIntValue();
+            }
+            return new SlotMap(Arrays.copyOf(slots, size));
+        }
+    }
+
+}
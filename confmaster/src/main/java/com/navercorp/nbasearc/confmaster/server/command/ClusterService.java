@@ -23,12 +23,17 @@ import static com.navercorp.nbasearc.confmaster.server.mapping.ArityType.GREATER
 import static com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType.STRING_VARG;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
@@ -37,12 +42,11 @@ import org.apache.zookeeper.KeeperException.NodeExistsException;
 import org.apache.zookeeper.Op;
 import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.ZooDefs;
-import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.JsonMappingException;
-import org.codehaus.jackson.node.ArrayNode;
-import org.codehaus.jackson.node.JsonNodeFactory;
-import org.codehaus.jackson.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.scheduling.support.CronTrigger;
@@ -67,6 +71,7 @@ import com.navercorp.nbasearc.confmaster.server.cluster.ClusterBackupSchedule;
 import com.navercorp.nbasearc.confmaster.server.cluster.Gateway;
 import com.navercorp.nbasearc.confmaster.server.cluster.Gateway.GatewayData;
 import com.navercorp.nbasearc.confmaster.server.cluster.GatewayLookup;
+import com.navercorp.nbasearc.confmaster.server.cluster.MigrateInfo;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroup;
 import com.navercorp.nbasearc.confmaster.server.cluster.PathUtil;
@@ -77,6 +82,7 @@ import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer.Par
 import com.navercorp.nbasearc.confmaster.server.cluster.PhysicalMachine;
 import com.navercorp.nbasearc.confmaster.server.cluster.PhysicalMachine.PhysicalMachineData;
 import com.navercorp.nbasearc.confmaster.server.cluster.PhysicalMachineCluster;
+import com.navercorp.nbasearc.confmaster.server.cluster.SlotMap;
 import com.navercorp.nbasearc.confmaster.server.cluster.RedisServer.RedisServerData;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockHelper;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockPMList;
@@ -121,7 +127,14 @@ public class ClusterService {
     private PartitionGroupServerService pgsService;
     @Autowired
     private GatewayService gwService;
+    @Autowired
+    private QuerySnapshot querySnapshot;
 
+    private static final int CLUSTER_LOAD_OPS_PER_MULTI = 256;
+    
+    // for failure injection in tests
+    int clusterLoadOpsPerMulti = CLUSTER_LOAD_OPS_PER_MULTI;
+    
     MemoryObjectMapper mapper = new MemoryObjectMapper();
     
     @CommandMapping(
@@ -140,11 +153,8 @@ public class ClusterService {
         
         // Prapare
         List<Integer> quorumPolicyAsList = new ArrayList<Integer>();
-        List<Integer> pnPgMap = new ArrayList<Integer>(KEY_SPACE_SIZE);
+        SlotMap pnPgMap = new SlotMap(KEY_SPACE_SIZE, -1);
         
-        for (int i = 0; i < KEY_SPACE_SIZE; i++) {
-            pnPgMap.add(-1);
-        }
         for (String item : quorumPolicy.split(":")) {
             try {
                 quorumPolicyAsList.add(Integer.parseInt(item));
@@ -231,6 +241,7 @@ public class ClusterService {
 
         // In Memory
         container.delete(PathUtil.clusterPath(clusterName));
+        querySnapshot.purge(clusterName);
     }
 
     @LockMapping(name="cluster_add")
@@ -299,7 +310,8 @@ public class ClusterService {
             name="cluster_info",
             usage="cluster_info <cluster_name>",
             requiredState=ConfMaster.READY,
-            requiredMode=CLUSTER_ON|CLUSTER_OFF)
+            requiredMode=CLUSTER_ON|CLUSTER_OFF,
+            snapshot=true)
     public String clusterInfo(@ClusterHint String clusterName) throws InterruptedException,
             KeeperException, IOException {
         // Check
@@ -351,7 +363,8 @@ public class ClusterService {
             sb.append("]");
         }
         
-        sb.append(",\"wf\":").append(wf).append("}");
+        sb.append(",\"wf\":").append(wf);
+        sb.append(",\"generation\":").append(cluster.getGeneration()).append("}");
         
         return sb.toString();
     }
@@ -409,22 +422,12 @@ public class ClusterService {
         
         // Prepare
         StringBuilder sb = new StringBuilder();
-        List<Integer> slotMap;
-        int slotStart;
         
         /* cluster slot size */
         sb.append(cluster.getKeySpaceSize()).append("\r\n");
 
         /* slot pg mapping(Run Length Encoding) */
-        slotMap = cluster.getPnPgMap();
-        slotStart = 0;
-        for (int i = 1; i < slotMap.size(); i++) {
-            if (!slotMap.get(slotStart).equals(slotMap.get(i))) {
-                sb.append(String.format("%d %d ", slotMap.get(slotStart), i - slotStart));
-                slotStart = i;
-            }
-        }
-        sb.append(String.format("%d %d\r\n", slotMap.get(slotStart), slotMap.size() - slotStart));
+        sb.append(cluster.getPnPgMap().toRLE()).append("\r\n");
 
         /* pg pgs mapping */
         for (PartitionGroup pg : pgList) {
@@ -698,9 +701,9 @@ public class ClusterService {
             return "-ERR Migration error, source master is not exist";
         }
         
-        List<Integer> slotMap = cluster.getPnPgMap();
+        SlotMap slotMap = cluster.getPnPgMap();
         for (int slot = rangeFrom; slot <= rangeTo; slot++) {
-            int owner_pgId = slotMap.get(slot);
+            int owner_pgId = slotMap.pgOf(slot);
             try {
                 if (owner_pgId != Integer.parseInt(srcPgId)) {
                     String errMsg = "-ERR pg does not have a slot. PG:"
@@ -723,12 +726,59 @@ public class ClusterService {
             return ret;
         }
 
-        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator();
+        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout());
         ret = broadcast.request(clusterName, gwList, GW_PING, GW_PONG, executor);
         if (null != ret) {
             return ret;
         }
 
+        /*
+         * Wait until the remaining data of the migration is predicted to be
+         * sent within the delay window, so that clients are delayed as short
+         * as possible. If it does not converge within its own timeout, which
+         * is separate from the catch-up timeout below, delay clients anyway.
+         */
+        MigrationCatchup catchup = new MigrationCatchup();
+        long startTick = System.currentTimeMillis();
+        long endTick = startTick + config.getServerCommandMig2pcPredelayTimeout();
+        String errMsg = null;
+        do {
+            MigrateInfo info;
+            try {
+                info = MigrateInfo.parse(srcMaster.executeQuery("migrate info"));
+            } catch (IOException e) {
+                errMsg = "Migration error. check srcMaster`s state";
+                workflowLog(SEVERITY_MODERATE, errMsg, clusterName,
+                        srcPgId, destPgId, rangeFrom, rangeTo);
+                return "-ERR " + errMsg;
+            } catch (IllegalArgumentException e) {
+                errMsg = "Migration error. " + e.getMessage();
+                workflowLog(SEVERITY_MODERATE, errMsg, clusterName,
+                        srcPgId, destPgId, rangeFrom, rangeTo);
+                return "-ERR " + errMsg;
+            }
+            
+            long now = System.currentTimeMillis();
+            catchup.update(info, now);
+            long predicted = catchup.predict(info, info.getLog(), info.getBuf());
+            if (predicted <= config.getServerCommandMig2pcDelayWindow()) {
+                break;
+            }
+            if (now > endTick) {
+                Logger.info("Migration does not fit the delay window. predicted: {}ms, {}",
+                        predicted == MigrationCatchup.UNKNOWN ? "unknown" : predicted, info);
+                break;
+            }
+            
+            try {
+                Thread.sleep(catchup.pollInterval(info, info.getLog(), info.getBuf()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "-ERR Migration error. interrupted.";
+            }
+        } while (true);
+
         /* send delay command to all gateways */
         String cmd = String.format("delay %d %d", rangeFrom, rangeTo);
         ret = broadcast.request(clusterName, gwList, cmd, GW_RESPONSE_OK, executor);
@@ -737,47 +787,29 @@ public class ClusterService {
         }
 
         /* catchup checking loop */
-        long startTick = System.currentTimeMillis();
-        long endTick = startTick + config.getServerCommandMig2pcCatchupTimeout();
+        startTick = System.currentTimeMillis();
+        endTick = startTick + config.getServerCommandMig2pcCatchupTimeout();
         boolean rollback = false;
-        String errMsg = null;
         
-        long mig, logSeq, buf, acked;
         long minMigSeq = -1;
         long minBuf = -1;
         do {
-            /* 
-             * (reply example) +OK 
-             * Logger:848339465 
-             * mig:848335460 
-             * buf:823233812 
-             * sent:823211587 
-             * acked:823211587 
-             * */
-            String reply = "";
-            String[] tokens;
+            MigrateInfo info;
             try {
-                reply = srcMaster.executeQuery("migrate info");
+                info = MigrateInfo.parse(srcMaster.executeQuery("migrate info"));
             } catch (IOException e) {
                 rollback = true;
                 errMsg = "Migration error. check srcMaster`s state";
                 workflowLog(SEVERITY_MODERATE, errMsg, clusterName,
                         srcPgId, destPgId, rangeFrom, rangeTo);
                 break;
-            }
-
-            tokens = reply.split(" ");
-            if (!tokens[0].equals(S2C_OK)) {
+            } catch (IllegalArgumentException e) {
                 rollback = true;
-                errMsg = "Migration error. unexpected reply from smrMaster, reply=" + reply;
+                errMsg = "Migration error. " + e.getMessage();
                 workflowLog(SEVERITY_MODERATE, errMsg, clusterName,
                         srcPgId, destPgId, rangeFrom, rangeTo);
                 break;
             }
-            logSeq = Long.parseLong(tokens[1].split(":")[1]);
-            mig = Long.parseLong(tokens[2].split(":")[1]);
-            buf = Long.parseLong(tokens[3].split(":")[1]);
-            acked = Long.parseLong(tokens[5].split(":")[1]);
             
             /*
              * Save first return value of logSeq as minMigSeq. No more data
@@ -785,28 +817,42 @@ public class ClusterService {
              * already delayed.
              */
             if (minMigSeq == -1) {
-                minMigSeq = logSeq;
+                minMigSeq = info.getLog();
             }
 
             /* When mig sequence exceeds minMigSeq, all migration data is copied to buf. */
-            if (mig >= minMigSeq) {
+            if (info.getMig() >= minMigSeq) {
                 /* Check if data in buf is succesfully sent and acked. 
                  * 1. Save first return value of buf sequence as minBuf
                  * 2. wait until acked sequence exceeds minBuf */
                 if (minBuf == -1) {
-                    minBuf = buf;
+                    minBuf = info.getBuf();
                 }
 
-                if (acked >= minBuf) {
+                if (info.getAcked() >= minBuf) {
                     break;
                 }
             }
             
-            if (System.currentTimeMillis() > endTick) {
+            long now = System.currentTimeMillis();
+            if (now > endTick) {
                 rollback = true;
                 errMsg = "Timeout";
                 break;
             }
+            
+            /* Poll again when the rest is predicted to be half done. */
+            catchup.update(info, now);
+            long interval = catchup.pollInterval(info, minMigSeq, 
+                    minBuf == -1 ? info.getBuf() : minBuf);
+            try {
+                Thread.sleep(Math.min(interval, endTick - now + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rollback = true;
+                errMsg = "Interrupted";
+                break;
+            }
         } while (true);
 
         if (rollback) {
@@ -907,22 +953,15 @@ public class ClusterService {
         // In Memory
         Cluster cluster = container.getCluster(clusterName);
         
-        List<Integer> slotMap;
-        int slotMapSize;
-        
-        slotMapSize = cluster.getKeySpaceSize();
-        slotMap = cluster.getPnPgMap();
+        int slotMapSize = cluster.getKeySpaceSize();
 
         if (rangeStart < 0 || rangeEnd < rangeStart || rangeEnd >= slotMapSize) {
             return "-ERR bad pg range:" + rangeStart + ":" + rangeEnd + " (try to slot_set_pg)";
         }
 
-        for (int i = rangeStart; i <= rangeEnd; i++) {
-            slotMap.set(i, pgid);
-        }
-        
+        // The new map is applied in memory only after it is written to ZooKeeper.
         Cluster.ClusterData clusterM = cluster.clonePersistentData();
-        clusterM.setPnPgMap(slotMap);
+        clusterM.setPnPgMap(cluster.getPnPgMap().set(rangeStart, rangeEnd, pgid));
 
         List<Op> ops = new ArrayList<Op>();
             
@@ -959,6 +998,63 @@ public class ClusterService {
         lockHelper.root(READ).cluster(WRITE, clusterName).pgList(READ)
                 .pgsList(READ).pg(WRITE, String.valueOf(pgid)).gwList(READ);
     }
+
+    @CommandMapping(
+            name="slot_rebalance_plan",
+            arityType=GREATER,
+            usage="slot_rebalance_plan <cluster_name> <max_slots_per_step> <pgid>:<weight> [<pgid>:<weight> ...]\r\n" +
+                    "plan mig2pc steps that distribute slots to pgs in proportion to their weights. " +
+                    "slots of pgs that are not given are moved to other pgs.\r\n" +
+                    "Ex) slot_rebalance_plan cluster1 1024 0:1 1:1 2:2",
+            requiredState=ConfMaster.READY,
+            requiredMode=CLUSTER_ON)
+    public String slotRebalancePlan(@ClusterHint String clusterName, Integer maxSlots,
+            @Param(type = STRING_VARG) String... weightArgs) {
+        Cluster cluster = container.getCluster(clusterName);
+        if (null == cluster) {
+            return EXCEPTIONMSG_CLUSTER_DOES_NOT_EXIST;
+        }
+        
+        Map<Integer, Integer> weights = new TreeMap<Integer, Integer>();
+        for (String arg : weightArgs) {
+            String[] kv = arg.split(":");
+            try {
+                if (kv.length != 2) {
+                    throw new NumberFormatException();
+                }
+                if (container.getPg(clusterName, kv[0]) == null) {
+                    return EXCEPTIONMSG_PARTITION_GROUP_DOES_NOT_EXIST + PartitionGroup.fullName(clusterName, kv[0]);
+                }
+                weights.put(Integer.valueOf(kv[0]), Integer.valueOf(kv[1]));
+            } catch (NumberFormatException e) {
+                return "-ERR invalid weight. " + arg;
+            }
+        }
+        
+        List<SlotRebalancePlanner.Step> steps;
+        try {
+            steps = new SlotRebalancePlanner(cluster.getPnPgMap(), weights, maxSlots).plan();
+        } catch (IllegalArgumentException e) {
+            return "-ERR " + e.getMessage();
+        }
+        
+        int movedSlots = 0;
+        StringBuilder sb = new StringBuilder("{\"steps\":[");
+        for (SlotRebalancePlanner.Step step : steps) {
+            if (movedSlots > 0) {
+                sb.append(",");
+            }
+            sb.append(step);
+            movedSlots += step.size();
+        }
+        sb.append("],\"moved_slots\":").append(movedSlots).append("}");
+        return sb.toString();
+    }
+    
+    @LockMapping(name="slot_rebalance_plan")
+    public void slotRebalancePlanLock(HierarchicalLockHelper lockHelper, String clusterName) {
+        lockHelper.root(READ).cluster(READ, clusterName).pgList(READ);
+    }
     
     @CommandMapping(
             name="cluster_on",
@@ -1044,6 +1140,55 @@ public class ClusterService {
         lockHelper.root(READ).cluster(WRITE, clusterName);
     }
     
+    @CommandMapping(
+            name="cluster_hb_phi",
+            usage="cluster_hb_phi <cluster_name> <threshold|default>\r\n" +
+                    "set the phi threshold of heartbeats of a cluster, 0 to use the heartbeat timeout only",
+            requiredState=ConfMaster.RUNNING,
+            requiredMode=CLUSTER_ON|CLUSTER_OFF)
+    public String clusterHbPhi(@ClusterHint String clusterName, String threshold) {
+        // In Memory
+        Cluster cluster = container.getCluster(clusterName);
+        if (cluster == null) {
+            throw new IllegalArgumentException(
+                    EXCEPTIONMSG_CLUSTER_DOES_NOT_EXIST
+                            + Cluster.fullName(clusterName));
+        }
+        
+        // Check
+        Double phiThreshold = null;
+        if (!threshold.equals("default")) {
+            try {
+                phiThreshold = Double.valueOf(threshold);
+            } catch (NumberFormatException e) {
+                return "-ERR threshold must be a number or default. threshold: " + threshold;
+            }
+            if (phiThreshold.isNaN() || phiThreshold < 0) {
+                return "-ERR threshold must not be negative. threshold: " + threshold;
+            }
+        }
+        
+        Logger.info("cluster_hb_phi {} {}", Cluster.fullName(clusterName), threshold);
+        
+        // Do
+        Cluster.ClusterData clusterM = cluster.clonePersistentData();
+        clusterM.hbPhiThreshold = phiThreshold;
+        try {
+            zk.setData(cluster.getPath(), clusterM.toBytes(), -1);
+        } catch (MgmtZooKeeperException e) {
+            return "-ERR Failed to cluster_hb_phi. zookeeper error. " + e.getMessage();
+        }
+        cluster.setPersistentData(clusterM);
+        
+        return S2C_OK;
+    }
+    
+    @LockMapping(name="cluster_hb_phi")
+    public void clusterHbPhiLock(HierarchicalLockHelper lockHelper,
+            String clusterName) {
+        lockHelper.root(READ).cluster(WRITE, clusterName);
+    }
+    
     @CommandMapping(
             name="cluster_purge",
             usage="cluster_purge <cluster_name>\r\n",
@@ -1098,54 +1243,63 @@ public class ClusterService {
             return EXCEPTIONMSG_CLUSTER_DOES_NOT_EXIST;
         }
         
-        ObjectNode cdj = JsonNodeFactory.instance.objectNode(); 
-        cdj.put("clusterName", clusterName);
-        cdj.put("clusterData", cluster.persistentDataToString());
+        // Write the dump directly, without building a json tree.
+        StringWriter out = new StringWriter();
+        JsonGenerator gen = mapper.getJsonFactory().createJsonGenerator(out);
+        gen.writeStartObject();
+        gen.writeStringField("clusterName", clusterName);
+        gen.writeStringField("clusterData", cluster.persistentDataToString());
 
         // PG
-        ArrayNode pgl = cdj.putArray("pgList");
+        gen.writeArrayFieldStart("pgList");
         for (PartitionGroup pg : container.getPgList(clusterName)) {
             PartitionGroupData pgd = pg.clonePersistentData();
             pgd.cleanPgsId();
             
-            ObjectNode pgj = JsonNodeFactory.instance.objectNode();
-            pgj.put("pgId", pg.getName());
-            pgj.put("pgData", pgd.toString()); 
-            pgl.add(pgj);
+            gen.writeStartObject();
+            gen.writeStringField("pgId", pg.getName());
+            gen.writeStringField("pgData", pgd.toString());
+            gen.writeEndObject();
         }
+        gen.writeEndArray();
         
         // PGS
-        ArrayNode pgsl = cdj.putArray("pgsList");
+        gen.writeArrayFieldStart("pgsList");
         for (PartitionGroupServer pgs : container.getPgsList(clusterName)) {
             RedisServer rs = container.getRs(clusterName, pgs.getName());
-            ObjectNode pgsj = JsonNodeFactory.instance.objectNode();
-            pgsj.put("pgsId", pgs.getName());
-            pgsj.put("pgsData", pgs.persistentDataToString()); 
-            pgsj.put("rsData", rs.persistentDataToString());
-            pgsl.add(pgsj);
+            gen.writeStartObject();
+            gen.writeStringField("pgsId", pgs.getName());
+            gen.writeStringField("pgsData", pgs.persistentDataToString());
+            gen.writeStringField("rsData", rs.persistentDataToString());
+            gen.writeEndObject();
             pmList.add(pgs.getPmName());
         }
+        gen.writeEndArray();
 
         // GW
-        ArrayNode gwl = cdj.putArray("gwList");
+        gen.writeArrayFieldStart("gwList");
         for (Gateway gw : container.getGwList(clusterName)) {
-            ObjectNode gwj = JsonNodeFactory.instance.objectNode();
-            gwj.put("gwId", gw.getName());
-            gwj.put("gwData", gw.persistentDataToString()); 
-            gwl.add(gwj);
+            gen.writeStartObject();
+            gen.writeStringField("gwId", gw.getName());
+            gen.writeStringField("gwData", gw.persistentDataToString());
+            gen.writeEndObject();
             pmList.add(gw.getPmName());
         }
+        gen.writeEndArray();
 
         // PM
-        ArrayNode pml = cdj.putArray("pmList");
+        gen.writeArrayFieldStart("pmList");
         for (String pmName : pmList) {
-            ObjectNode pmj = JsonNodeFactory.instance.objectNode();
-            pmj.put("pmName", pmName);
-            pmj.put("pmData", container.getPm(pmName).persistentDataToString());
-            pml.add(pmj);
+            gen.writeStartObject();
+            gen.writeStringField("pmName", pmName);
+            gen.writeStringField("pmData", container.getPm(pmName).persistentDataToString());
+            gen.writeEndObject();
         }
+        gen.writeEndArray();
         
-        return mapper.writeValueAsString(cdj);
+        gen.writeEndObject();
+        gen.close();
+        return out.toString();
     }
     
     @LockMapping(name="cluster_dump")
@@ -1161,81 +1315,271 @@ public class ClusterService {
     public String clusterLoad(String data) throws NodeExistsException,
             NoNodeException, MgmtZooKeeperException,
             MgmtZNodeAlreayExistsException, MgmtZNodeDoesNotExistException, JsonParseException, JsonMappingException, IOException {
-        JsonNode cdj = mapper.readTree(data);
-
-        // Cluster
-        String clusterName = cdj.get("clusterName").getValueAsText();
-        if (container.getCluster(clusterName) != null) {
-            return EXCEPTIONMSG_DUPLICATED_CLUSTER;
+        String clusterName = null;
+        ClusterData clusterData = null;
+        Map<String, PartitionGroupData> pgDataMap = new LinkedHashMap<String, PartitionGroupData>();
+        Map<String, PartitionGroupServerData> pgsDataMap = new LinkedHashMap<String, PartitionGroupServerData>();
+        Map<String, RedisServerData> rsDataMap = new HashMap<String, RedisServerData>();
+        Map<String, GatewayData> gwDataMap = new LinkedHashMap<String, GatewayData>();
+        Map<String, PhysicalMachineData> pmDataMap = new LinkedHashMap<String, PhysicalMachineData>();
+
+        // Read the dump item by item, without building a json tree.
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(data);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return "-ERR invalid cluster dump";
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                
+                if (field.equals("clusterName")) {
+                    clusterName = parser.getText();
+                    if (container.getCluster(clusterName) != null) {
+                        return EXCEPTIONMSG_DUPLICATED_CLUSTER;
+                    }
+                } else if (field.equals("clusterData")) {
+                    clusterData = mapper.readValue(parser.getText(), ClusterData.class);
+                } else if (field.equals("pgList")) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, String> pgj = readDumpItem(parser);
+                        pgDataMap.put(pgj.get("pgId"), mapper.readValue(
+                                pgj.get("pgData"), PartitionGroupData.class));
+                    }
+                } else if (field.equals("pgsList")) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, String> pgsj = readDumpItem(parser);
+                        pgsDataMap.put(pgsj.get("pgsId"), mapper.readValue(
+                                pgsj.get("pgsData"), PartitionGroupServerData.class));
+                        rsDataMap.put(pgsj.get("pgsId"), mapper.readValue(
+                                pgsj.get("rsData"), RedisServerData.class));
+                    }
+                } else if (field.equals("gwList")) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, String> gwj = readDumpItem(parser);
+                        gwDataMap.put(gwj.get("gwId"), mapper.readValue(
+                                gwj.get("gwData"), GatewayData.class));
+                    }
+                } else if (field.equals("pmList")) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, String> pmj = readDumpItem(parser);
+                        pmDataMap.put(pmj.get("pmName"), mapper.readValue(
+                                pmj.get("pmData"), PhysicalMachineData.class));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        
+        if (clusterName == null || clusterData == null) {
+            return "-ERR invalid cluster dump";
         }
-        ClusterData clusterData = mapper.readValue(
-                cdj.get("clusterData").getValueAsText(), ClusterData.class);
 
+        // Cluster
         Cluster cluster = new Cluster(context, clusterData, clusterName);
         createClusterZooKeeperZnodes(clusterName, cluster);
         
-        // PM
-        JsonNode pmjs = cdj.get("pmList");
-        for (JsonNode pmj : pmjs) {
-            String pmName = pmj.get("pmName").getValueAsText();
-            if (container.getPm(pmName) == null) {
-                PhysicalMachineData pmData = mapper.readValue(
-                        pmj.get("pmData").getValueAsText(),
-                        PhysicalMachineData.class);
-                PhysicalMachine pm = new PhysicalMachine(context, pmData, pmName); 
-                pmService.createPmZooKeeperZnode(pm);
+        // Batches are committed one by one, so if any step fails, the znodes
+        // and objects created so far are removed along with the cluster.
+        List<String> createdPaths = new ArrayList<String>();
+        boolean loaded = false;
+        try {
+            loadClusterObjects(cluster, pgDataMap, pgsDataMap, rsDataMap,
+                    gwDataMap, pmDataMap, createdPaths);
+            loaded = true;
+        } finally {
+            if (!loaded) {
+                rollbackClusterLoad(clusterName, createdPaths);
             }
         }
 
-        // PG
-        JsonNode pgjs = cdj.get("pgList");
-        for (JsonNode pgj : pgjs) {
-            String pgId = pgj.get("pgId").getValueAsText();
-            PartitionGroupData pgData = mapper.readValue(pgj.get("pgData")
-                    .getValueAsText(), PartitionGroupData.class);
-            PartitionGroup pg = new PartitionGroup(context, pgId, clusterName, pgData); 
-            pgService.createPgObject(pg);
+        return S2C_OK;
+    }
+    
+    private void loadClusterObjects(Cluster cluster,
+            Map<String, PartitionGroupData> pgDataMap,
+            Map<String, PartitionGroupServerData> pgsDataMap,
+            Map<String, RedisServerData> rsDataMap,
+            Map<String, GatewayData> gwDataMap,
+            Map<String, PhysicalMachineData> pmDataMap,
+            List<String> createdPaths) throws MgmtZooKeeperException,
+            MgmtZNodeAlreayExistsException, MgmtZNodeDoesNotExistException {
+        final String clusterName = cluster.getName();
+        
+        // The rest of the znodes are created in batched multis, 
+        // with their final data, so that no znode is written twice.
+        List<Op> ops = new ArrayList<Op>();
+        
+        // PM
+        List<PhysicalMachine> pmList = new ArrayList<PhysicalMachine>();
+        for (Map.Entry<String, PhysicalMachineData> e : pmDataMap.entrySet()) {
+            if (container.getPm(e.getKey()) == null) {
+                PhysicalMachine pm = new PhysicalMachine(context, e.getValue(), e.getKey());
+                ops.add(Op.create(pm.getPath(), pm.persistentDataToBytes(),
+                        ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+                pmList.add(pm);
+            }
         }
-
+        
         // PGS
-        JsonNode pgsjs = cdj.get("pgsList");
-        for (JsonNode pgsj : pgsjs) {
-            String pgsId = pgsj.get("pgsId").getValueAsText();
-            
-            PartitionGroupServerData pgsData = mapper.readValue(
-                    pgsj.get("pgsData").getValueAsText(),
-                    PartitionGroupServerData.class);
+        Map<String, PhysicalMachineCluster> pmcMap = new LinkedHashMap<String, PhysicalMachineCluster>();
+        List<PartitionGroupServer> pgsList = new ArrayList<PartitionGroupServer>();
+        List<RedisServer> rsList = new ArrayList<RedisServer>();
+        for (Map.Entry<String, PartitionGroupServerData> e : pgsDataMap.entrySet()) {
+            String pgsId = e.getKey();
+            PartitionGroupServerData pgsData = e.getValue();
             PartitionGroupServer pgs = new PartitionGroupServer(context, pgsData, clusterName, pgsId, 0);
+            RedisServer rs = new RedisServer(context, rsDataMap.get(pgsId), clusterName, pgsId, pgsData.pgId, 0);
+            ops.add(Op.create(pgs.getPath(), pgs.persistentDataToBytes(),
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            ops.add(Op.create(rs.getPath(), rs.persistentDataToBytes(),
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            pgsList.add(pgs);
+            rsList.add(rs);
             
-            RedisServerData rsData = mapper.readValue(pgsj.get("rsData")
-                    .getValueAsText(), RedisServerData.class); 
-            RedisServer rs = new RedisServer(context, rsData, clusterName, pgsId, pgsData.pgId, 0);
-            
-            PartitionGroup pg = container.getPg(clusterName, String.valueOf(pgsData.pgId));
-            pgsService.createPgsObject(cluster, pg, pgs, rs);
+            PartitionGroupData pgData = pgDataMap.get(String.valueOf(pgsData.pgId));
+            if (pgData == null) {
+                throw new IllegalArgumentException(
+                        EXCEPTIONMSG_PARTITION_GROUP_DOES_NOT_EXIST
+                                + PartitionGroup.fullName(clusterName,
+                                        String.valueOf(pgsData.pgId)));
+            }
+            pgData.addPgsId(Integer.valueOf(pgsId));
+            pmcOf(pmcMap, clusterName, pgs.getPmName()).addPgsId(Integer.valueOf(pgsId));
+        }
+        
+        // PG, with the ids of its PGSes
+        List<PartitionGroup> pgList = new ArrayList<PartitionGroup>();
+        for (Map.Entry<String, PartitionGroupData> e : pgDataMap.entrySet()) {
+            PartitionGroup pg = new PartitionGroup(context, e.getKey(), clusterName, e.getValue());
+            ops.add(Op.create(pg.getPath(), pg.persistentDataToBytes(),
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            pgList.add(pg);
         }
         
         // GW
+        List<Gateway> gwList = new ArrayList<Gateway>();
+        for (Map.Entry<String, GatewayData> e : gwDataMap.entrySet()) {
+            Gateway gw = new Gateway(context, clusterName, e.getKey(), e.getValue(), 0);
+            ops.add(Op.create(gw.getPath(), gw.persistentDataToBytes(),
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            gwList.add(gw);
+            pmcOf(pmcMap, clusterName, gw.getPmName()).addGwId(Integer.valueOf(e.getKey()));
+        }
+        
+        // PM cluster
+        for (PhysicalMachineCluster pmc : pmcMap.values()) {
+            ops.add(Op.create(pmc.getPath(), pmc.persistentDataToBytes(),
+                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+        }
+        
+        multiInBatches(ops, createdPaths);
+        
+        // In memory
+        for (PhysicalMachine pm : pmList) {
+            container.put(pm.getPath(), pm);
+        }
+        for (PartitionGroup pg : pgList) {
+            container.put(pg.getPath(), pg);
+        }
+        for (int i = 0; i < pgsList.size(); i++) {
+            PartitionGroupServer pgs = pgsList.get(i);
+            RedisServer rs = rsList.get(i);
+            
+            zk.registerChangedEventWatcher(pgs.getPath());
+            zk.registerChildEventWatcher(pgs.getPath());
+            zk.registerChangedEventWatcher(rs.getPath());
+            zk.registerChildEventWatcher(rs.getPath());
+            
+            container.put(pgs.getPath(), pgs);
+            container.put(rs.getPath(), rs);
+        }
         List<Op> gwLookupAndaffinityOps = new ArrayList<Op>();
-        JsonNode gwjs = cdj.get("gwList");
-        for (JsonNode gwj : gwjs) {
-            String gwId = gwj.get("gwId").getValueAsText();
-            GatewayData gwData = mapper.readValue(gwj.get("gwData")
-                    .getValueAsText(), GatewayData.class);
-            Gateway gw = new Gateway(context, clusterName, gwId, gwData, 0);
-            gwService.createGwZooKeeperZnode(cluster, gw);
+        for (Gateway gw : gwList) {
+            container.put(gw.getPath(), gw);
+            zk.registerChangedEventWatcher(gw.getPath());
+            zk.registerChildEventWatcher(gw.getPath());
 
             // GW lookup
             gwInfoNoti.addCreateGatewayOp(gwLookupAndaffinityOps,
-                    gw.getClusterName(), gwId, gw.getPmIp(),
+                    gw.getClusterName(), gw.getName(), gw.getPmIp(),
                     gw.getPort());
         }
+        for (PhysicalMachineCluster pmc : pmcMap.values()) {
+            container.put(pmc.getPath(), pmc);
+        }
         
         // Affinity
+        cluster.performUpdateGwAff();
         gwLookupAndaffinityOps.add(gwInfoNoti.createGatewayAffinityUpdateOperation(cluster));
-        zk.handleResultsOfMulti(zk.multi(gwLookupAndaffinityOps));
-
-        return S2C_OK;
+        multiInBatches(gwLookupAndaffinityOps, createdPaths);
+    }
+    
+    /**
+     * Removes what a failed cluster_load has created, newest first, and
+     * then the cluster itself, so that the load can be retried.
+     */
+    private void rollbackClusterLoad(String clusterName, List<String> createdPaths) {
+        try {
+            List<Op> ops = new ArrayList<Op>();
+            for (int i = createdPaths.size() - 1; i >= 0; i--) {
+                ops.add(Op.delete(createdPaths.get(i), -1));
+            }
+            multiInBatches(ops, null);
+            
+            for (String path : createdPaths) {
+                if (container.get(path) != null) {
+                    container.delete(path);
+                }
+            }
+            deleteClusterobject(clusterName);
+        } catch (Exception e) {
+            Logger.error("Rollback of cluster_load failed. cluster: {}", clusterName, e);
+        }
+    }
+    
+    private Map<String, String> readDumpItem(JsonParser parser) throws IOException {
+        Map<String, String> item = new HashMap<String, String>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            item.put(field, parser.getText());
+        }
+        return item;
+    }
+    
+    private PhysicalMachineCluster pmcOf(Map<String, PhysicalMachineCluster> pmcMap,
+            String clusterName, String pmName) {
+        PhysicalMachineCluster pmc = pmcMap.get(pmName);
+        if (pmc == null) {
+            pmc = new PhysicalMachineCluster(clusterName, pmName);
+            pmcMap.put(pmName, pmc);
+        }
+        return pmc;
+    }
+    
+    /**
+     * @param createdPaths if not null, the paths of the znodes created by
+     *        each committed batch are added to it.
+     */
+    private void multiInBatches(List<Op> ops, List<String> createdPaths) 
+            throws MgmtZooKeeperException {
+        for (int i = 0; i < ops.size(); i += clusterLoadOpsPerMulti) {
+            List<Op> batch = ops.subList(i, Math.min(i + clusterLoadOpsPerMulti, ops.size()));
+            zk.handleResultsOfMulti(zk.multi(batch));
+            
+            if (createdPaths != null) {
+                for (Op op : batch) {
+                    if (op.getType() == ZooDefs.OpCode.create) {
+                        createdPaths.add(op.getPath());
+                    }
+                }
+            }
+        }
     }
     
     @LockMapping(name="cluster_load")
@@ -39,6 +39,8 @@ import com.navercorp.nbasearc.confmaster.server.JobResult;
 import com.navercorp.nbasearc.confmaster.server.ThreadPool;
 import com.navercorp.nbasearc.confmaster.server.mapping.CommandCaller;
 import com.navercorp.nbasearc.confmaster.server.mapping.CommandMapping;
+import com.navercorp.nbasearc.confmaster.server.mapping.LiveCaller;
+import com.navercorp.nbasearc.confmaster.server.mapping.LiveMapping;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockCaller;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockMapping;
 
@@ -56,6 +58,7 @@ public class CommandExecutor {
     
     private Map<String, CommandCaller> commandMethods = new HashMap<String, CommandCaller>();
     private Map<String, LockCaller> lockMethods = new HashMap<String, LockCaller>();
+    private Map<String, LiveCaller> liveMethods = new HashMap<String, LiveCaller>();
     
     public CommandExecutor() {
     }
@@ -79,6 +82,13 @@ public class CommandExecutor {
                         lockMapping.name(),
                         new LockCaller(serviceInstance, method, ANY));
                 }
+                
+                LiveMapping liveMapping = method.getAnnotation(LiveMapping.class);
+                if (liveMapping != null) {
+                    liveMethods.put(
+                        liveMapping.name(),
+                        new LiveCaller(serviceInstance, method, ANY));
+                }
             }
         }
         
@@ -115,7 +125,7 @@ public class CommandExecutor {
     
     public Future<JobResult> perform(final String request, final CommandCallback callback) {
         CommandTemplate ct = new CommandTemplate(
-                request, callback, context, commandMethods, lockMethods, confMaster);
+                request, callback, context, commandMethods, lockMethods, liveMethods, confMaster);
         ExecutionContext<JobResult> ec = new ExecutionContext<JobResult>(ct, ContextType.CM, executor);
         return executor.perform(ec);
     }
@@ -34,7 +34,6 @@ import java.util.concurrent.Callable;
 
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
-import org.springframework.core.convert.support.DefaultConversionService;
 
 import com.navercorp.nbasearc.confmaster.ConfMaster;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtCommandNotFoundException;
@@ -46,32 +45,41 @@ import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.leaderelection.LeaderState;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockHelper;
+import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockHelper.LockUnavailableException;
 import com.navercorp.nbasearc.confmaster.server.mapping.CommandCaller;
+import com.navercorp.nbasearc.confmaster.server.mapping.LiveCaller;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockCaller;
 import com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType;
 
 public class CommandTemplate implements Callable<JobResult> {
     
+    private static final Set<String> COMMANDS_FOR_FOLLOWER = new HashSet<String>(
+            Arrays.asList(new String[] {"ping", "pgs_info_all", "pgs_sync"}));
+
     private final String request;
     private final CommandCallback callback;
     private final ApplicationContext context;
     private final Map<String, CommandCaller> commandMethods;
     private final Map<String, LockCaller> lockMethods;
+    private final Map<String, LiveCaller> liveMethods;
     
-    private final DefaultConversionService cs = new DefaultConversionService();
     private final ConfMaster confMaster;
     private final ClusterComponentContainer container;
+    private final QuerySnapshot querySnapshot;
     
     public CommandTemplate(String request, CommandCallback callback, 
             ApplicationContext context, Map<String, CommandCaller> commandMethods, 
-            Map<String, LockCaller> lockMethods, ConfMaster confMaster) {
+            Map<String, LockCaller> lockMethods, Map<String, LiveCaller> liveMethods,
+            ConfMaster confMaster) {
         this.request = request;
         this.callback = callback;
         this.context = context;
         this.commandMethods = commandMethods;
         this.lockMethods = lockMethods;
+        this.liveMethods = liveMethods;
         this.confMaster = confMaster;
         this.container = context.getBean(ClusterComponentContainer.class);
+        this.querySnapshot = context.getBean(QuerySnapshot.class);
     }
     
     @Override
@@ -86,12 +94,43 @@ public class CommandTemplate implements Callable<JobResult> {
             args[0] = args[0].toLowerCase();
             
             validRequest(args);
-            lock(args, lockHelper);
+            
+            final Cluster snapshotCluster = getSnapshotCluster(args);
+            final String snapshotKey = snapshotCluster == null ? null : snapshotKey(args);
+            long generation = 0;
+            boolean locked = false;
+            if (snapshotCluster != null) {
+                String snapshot = querySnapshot.get(snapshotKey, snapshotCluster);
+                if (snapshot != null && checkMode(args)) {
+                    reply = live(args, snapshot);
+                    return result;
+                }
+                generation = snapshotCluster.getGeneration();
+                
+                // Do not wait for a job that is writing the cluster; its last reply is stale but consistent.
+                snapshot = querySnapshot.getStale(snapshotKey, snapshotCluster);
+                if (snapshot != null) {
+                    locked = tryLock(args, lockHelper);
+                    if (!locked && checkMode(args)) {
+                        reply = live(args, snapshot);
+                        return result;
+                    }
+                }
+            }
+            
+            if (!locked) {
+                lock(args, lockHelper);
+            }
             if (checkMode(args) == false) {
                 result.addMessage(REQUIRED_MODE_NOT_SATISFIED);
                 return result;
             }
-            reply = execute(args);
+            final String executed = execute(args);
+            
+            if (snapshotCluster != null) {
+                querySnapshot.put(snapshotKey, snapshotCluster, generation, executed);
+            }
+            reply = live(args, executed);
         } catch (InvocationTargetException e) {
             String smaple = request.substring(0, Math.min(1024, request.length()));
             Logger.error("Exception occur while handle request. length: {}, message: \"{}\"...", 
@@ -153,10 +192,7 @@ public class CommandTemplate implements Callable<JobResult> {
                 throw new MgmtCommandNotFoundException();
             }
         } else {
-            Set<String> commandForFollower = new HashSet<String>(
-                    Arrays.asList(new String[] {"ping", "pgs_info_all", "pgs_sync"}));
-            
-            if (!commandForFollower.contains(command)) {
+            if (!COMMANDS_FOR_FOLLOWER.contains(command)) {
                 Logger.error("Command[" + command + "] not found,");
                 throw new MgmtCommandNotFoundException();
             }
@@ -205,14 +241,34 @@ public class CommandTemplate implements Callable<JobResult> {
             params[0] = lockHelper;
             
             for (int i = 1; i < lock.getParamLength(); i ++) {
-                Class<?> paramType = lock.getParamType(i);
-                params[i] = cs.convert(args[i], paramType);
+                params[i] = lock.convert(i, args[i]);
             }
         }
         
         lock.invoke(params);
     }
     
+    /**
+     * @return false if a lock is held by another job, with no lock taken
+     */
+    private boolean tryLock(String[] args, HierarchicalLockHelper lockHelper)
+            throws IllegalArgumentException, IllegalAccessException,
+            InvocationTargetException {
+        lockHelper.setTryOnly(true);
+        try {
+            lock(args, lockHelper);
+            return true;
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof LockUnavailableException) {
+                releaseLock(lockHelper);
+                return false;
+            }
+            throw e;
+        } finally {
+            lockHelper.setTryOnly(false);
+        }
+    }
+    
     private boolean checkMode(String[] args) {
         final CommandCaller command = commandMethods.get(args[0]);
         final Integer requiredMode = command.getRequiredMode();
@@ -235,6 +291,25 @@ public class CommandTemplate implements Callable<JobResult> {
         return false;
     }
     
+    private Cluster getSnapshotCluster(String[] args) {
+        final CommandCaller command = commandMethods.get(args[0]);
+        if (!command.isSnapshot()) {
+            return null;
+        }
+        return container.getCluster(command.getClusterName(args, 1));
+    }
+    
+    /**
+     * @return the request with its command in lower case, without joining the arguments again
+     */
+    private String snapshotKey(String[] args) {
+        final int space = request.indexOf(' ');
+        if (space == -1) {
+            return args[0];
+        }
+        return args[0] + request.substring(space);
+    }
+    
     private String execute(String[] args) throws IllegalArgumentException,
             IllegalAccessException, InvocationTargetException {
         CommandCaller command = commandMethods.get(args[0]);
@@ -250,20 +325,19 @@ public class CommandTemplate implements Callable<JobResult> {
         Object[] params = new Object[command.getParamLength()];
         
         for (int i = 0; i < command.getParamLength(); i ++) {
-            Class<?> paramType = command.getParamType(i);
-            ArgType type = command.getArgType(paramType);
+            ArgType type = command.getArgType(i);
             
             if (type == null) {
-                params[i] = cs.convert(args[i + 1], paramType);
+                params[i] = command.convert(i, args[i + 1]);
             } else if (type == STRING_VARG) {
                 String o[] = new String[args.length - i - 1];
                 for (int j = 0; j < args.length - i - 1; j++) {
                     o[j] = args[j + i + 1];
                 }
-                params[i] = cs.convert(o, paramType);
+                params[i] = command.convert(i, o);
             } else if (type == NULLABLE) {
                 if (args.length > i+1) {
-                    params[i] = cs.convert(args[i + 1], paramType);
+                    params[i] = command.convert(i, args[i + 1]);
                 } else {
                     params[i] = null;
                 }
@@ -273,6 +347,24 @@ public class CommandTemplate implements Callable<JobResult> {
         return params;
     }
     
+    /**
+     * @return the reply with the live fields of its command, which are not a part of a snapshot
+     */
+    private String live(String[] args, String reply) throws IllegalArgumentException,
+            IllegalAccessException, InvocationTargetException {
+        final LiveCaller live = liveMethods.get(args[0]);
+        if (live == null || reply == null) {
+            return reply;
+        }
+        
+        Object[] params = new Object[live.getParamLength()];
+        params[0] = reply;
+        for (int i = 1; i < live.getParamLength(); i ++) {
+            params[i] = live.convert(i, args[i]);
+        }
+        return (String) live.invoke(params);
+    }
+    
     private void releaseLock(HierarchicalLockHelper lockHelper) {
         lockHelper.releaseAllLock();
     }
@@ -189,6 +189,8 @@ public class ConfmasterService {
     }
     
     public void release() throws MgmtZooKeeperException {
+        workflowLogger.waitForPersistence();
+        
         final String path = PathUtil.fdRootPath() + "/" + config.getIp() + ":" + config.getPort();
         zk.deleteZNode(path, -1);
         container.relase();
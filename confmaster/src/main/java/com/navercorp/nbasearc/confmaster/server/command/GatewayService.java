@@ -22,7 +22,9 @@ import static com.navercorp.nbasearc.confmaster.server.lock.LockType.WRITE;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
@@ -38,6 +40,7 @@ import com.navercorp.nbasearc.confmaster.ConfMaster;
 import com.navercorp.nbasearc.confmaster.ConfMasterException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZNodeDoesNotExistException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
+import com.navercorp.nbasearc.confmaster.heartbeat.PhiAccrualDetector;
 import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
 import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
 import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
@@ -50,6 +53,7 @@ import com.navercorp.nbasearc.confmaster.server.cluster.PhysicalMachineCluster;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockHelper;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockPMList;
 import com.navercorp.nbasearc.confmaster.server.mapping.CommandMapping;
+import com.navercorp.nbasearc.confmaster.server.mapping.LiveMapping;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockMapping;
 import com.navercorp.nbasearc.confmaster.server.mapping.ClusterHint;
 import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowLogger;
@@ -293,7 +297,8 @@ public class GatewayService {
             usage="gw_info <cluster_name> <gw_id>\r\n" +
                     "get information of a Gateway",
             requiredState=ConfMaster.READY,
-            requiredMode=CLUSTER_ON|CLUSTER_OFF)
+            requiredMode=CLUSTER_ON|CLUSTER_OFF,
+            snapshot=true)
     public String gwInfo(@ClusterHint String clusterName, String gwid)
             throws KeeperException, InterruptedException, IOException {
         Cluster cluster = container.getCluster(clusterName);
@@ -328,7 +333,7 @@ public class GatewayService {
             sb.append("]}");
         }
         
-        return sb.toString();
+        return cluster.appendGenerationToJson(sb.toString());
     }
     
     private String gatewayInfo(Cluster cluster, String gwid) {
@@ -338,7 +343,7 @@ public class GatewayService {
         }
 
         try {
-            return gw.persistentDataToString();
+            return cluster.appendGenerationToJson(gw.persistentDataToString());
         } catch (RuntimeException e) {
             return "-ERR internal data of pgs is not correct.";
         }
@@ -349,6 +354,27 @@ public class GatewayService {
         lockHelper.root(READ).cluster(READ, clusterName).gwList(READ).gw(READ, gwid);
     }
     
+    @LiveMapping(name="gw_info")
+    public String gwInfoLive(String reply, String clusterName, String gwid) {
+        if (!reply.startsWith("{")) {
+            return reply;
+        }
+        
+        if (gwid.equals(ALL)) {
+            Map<String, Double> phis = new LinkedHashMap<String, Double>();
+            for (Gateway gw : container.getGwList(clusterName)) {
+                phis.put(gw.getName(), gw.getHeartbeatPhi());
+            }
+            return PhiAccrualDetector.appendToJson(reply, phis);
+        }
+        
+        Gateway gw = container.getGw(clusterName, gwid);
+        if (null == gw) {
+            return reply;
+        }
+        return PhiAccrualDetector.appendToJson(reply, gw.getHeartbeatPhi());
+    }
+    
     @CommandMapping(
             name="gw_ls",
             usage="gw_ls <cluster_name>\r\n" +
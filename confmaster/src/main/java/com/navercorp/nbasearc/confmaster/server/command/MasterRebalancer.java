@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import static com.navercorp.nbasearc.confmaster.Constant.*;
+import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
+import static org.apache.log4j.Level.INFO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.JobIDGenerator;
+import com.navercorp.nbasearc.confmaster.server.JobResult;
+import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
+import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroup;
+import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer;
+import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowLogger;
+
+/**
+ * Moves masters of a cluster from machines with more masters to machines
+ * with fewer masters, by role_change to a slave of the same PG.
+ * 
+ * Masters of all clusters on a machine are counted. A move is made only if
+ * the machine of the master has at least 2 more masters than the machine of
+ * the slave, so that a move never makes the skew worse. Masters are moved
+ * one at a time in the background, and the next move is planned again from
+ * the current roles after a move is done.
+ */
+@Component
+public class MasterRebalancer {
+    
+    @Autowired
+    private ClusterComponentContainer container;
+    
+    @Autowired
+    private CommandExecutor commandExecutor;
+    
+    @Autowired
+    private WorkflowLogger workflowLogger;
+    
+    @Autowired
+    private Config config;
+    
+    private final Set<String> rebalancingClusters = new HashSet<String>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MasterRebalancer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    
+    /**
+     * Plans moves now and starts them in the background.
+     * 
+     * @return moves planned now, or null if the cluster is already being rebalanced
+     */
+    public List<Move> start(final String clusterName, final int maxMoves) {
+        final List<Move> moves = plan(placements(clusterName), maxMoves);
+        if (moves.isEmpty()) {
+            return moves;
+        }
+        
+        synchronized (rebalancingClusters) {
+            if (!rebalancingClusters.add(clusterName)) {
+                return null;
+            }
+        }
+        
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebalance(clusterName, maxMoves);
+                } finally {
+                    synchronized (rebalancingClusters) {
+                        rebalancingClusters.remove(clusterName);
+                    }
+                    Logger.flush(INFO);
+                }
+            }
+        });
+        return moves;
+    }
+    
+    private void rebalance(String clusterName, int maxMoves) {
+        final long jobID = JobIDGenerator.getInstance().getID();
+        
+        for (int i = 0; i < maxMoves; i++) {
+            final List<Move> moves = plan(placements(clusterName), 1);
+            if (moves.isEmpty()) {
+                break;
+            }
+            
+            final Move move = moves.get(0);
+            String reply;
+            try {
+                JobResult result = commandExecutor.perform(
+                        "role_change " + clusterName + " " + move.toPgs, null).get();
+                reply = result.getMessages().isEmpty() ? 
+                        String.valueOf(result.getExceptions()) : result.getMessages().get(0);
+            } catch (Exception e) {
+                reply = "-ERR " + e.getMessage();
+            }
+            
+            workflowLogger.log(jobID, SEVERITY_MODERATE, "MasterRebalance",
+                    LOG_TYPE_WORKFLOW, clusterName, "move master. {}, reply: {}",
+                    move, reply);
+            Logger.flush(INFO);
+            if (!reply.startsWith("{")) {
+                break;
+            }
+            
+            try {
+                TimeUnit.MILLISECONDS.sleep(config.getServerJobWorkflowPgReconfigDelay());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+    
+    private List<Placement> placements(String clusterName) {
+        final List<Placement> placements = new ArrayList<Placement>();
+        final Map<String, Integer> masters = new HashMap<String, Integer>();
+        
+        for (PartitionGroup pg : container.getPgList(clusterName)) {
+            final List<PartitionGroupServer> joinedPgsList = pg.getJoinedPgsList(
+                    container.getPgsList(clusterName, pg.getName()));
+            final PartitionGroupServer master = pg.getMaster(joinedPgsList);
+            if (master == null) {
+                continue;
+            }
+            
+            final Placement placement = new Placement(pg.getName(), 
+                    master.getName(), machineOf(master, masters));
+            for (PartitionGroupServer pgs : joinedPgsList) {
+                if (pgs.getRole().equals(PGS_ROLE_SLAVE) && pgs.getColor() == GREEN) {
+                    placement.addSlave(pgs.getName(), machineOf(pgs, masters));
+                }
+            }
+            placements.add(placement);
+        }
+        return placements;
+    }
+    
+    private Machine machineOf(PartitionGroupServer pgs, Map<String, Integer> masters) {
+        final String pmName = pgs.getPmName();
+        Integer count = masters.get(pmName);
+        if (count == null) {
+            count = pgs.countMastersInSameMachine(container);
+            masters.put(pmName, count);
+        }
+        return new Machine(pmName, count);
+    }
+    
+    /**
+     * @return moves that make masters even across machines, 
+     *         in which a PG appears at most once.
+     */
+    static List<Move> plan(List<Placement> placements, int maxMoves) {
+        final Map<String, Integer> masters = new HashMap<String, Integer>();
+        for (Placement p : placements) {
+            masters.put(p.masterMachine.name, p.masterMachine.masters);
+            for (Machine m : p.slaves.values()) {
+                masters.put(m.name, m.masters);
+            }
+        }
+        
+        final List<Move> moves = new ArrayList<Move>();
+        final Set<String> moved = new HashSet<String>();
+        while (moves.size() < maxMoves) {
+            Move best = null;
+            int bestGap = 1;
+            for (Placement p : placements) {
+                if (moved.contains(p.pgId)) {
+                    continue;
+                }
+                for (Map.Entry<String, Machine> slave : p.slaves.entrySet()) {
+                    final int gap = masters.get(p.masterMachine.name) - masters.get(slave.getValue().name);
+                    if (gap > bestGap) {
+                        bestGap = gap;
+                        best = new Move(p.pgId, p.masterPgs, p.masterMachine.name,
+                                slave.getKey(), slave.getValue().name);
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            
+            moves.add(best);
+            moved.add(best.pgId);
+            masters.put(best.fromPm, masters.get(best.fromPm) - 1);
+            masters.put(best.toPm, masters.get(best.toPm) + 1);
+        }
+        return Collections.unmodifiableList(moves);
+    }
+    
+    static class Machine {
+        final String name;
+        final int masters;
+        
+        Machine(String name, int masters) {
+            this.name = name;
+            this.masters = masters;
+        }
+    }
+    
+    static class Placement {
+        final String pgId;
+        final String masterPgs;
+        final Machine masterMachine;
+        final Map<String, Machine> slaves = new TreeMap<String, Machine>();
+        
+        Placement(String pgId, String masterPgs, Machine masterMachine) {
+            this.pgId = pgId;
+            this.masterPgs = masterPgs;
+            this.masterMachine = masterMachine;
+        }
+        
+        Placement addSlave(String pgsId, Machine machine) {
+            slaves.put(pgsId, machine);
+            return this;
+        }
+    }
+    
+    public static class Move {
+        final String pgId;
+        final String fromPgs;
+        final String fromPm;
+        final String toPgs;
+        final String toPm;
+        
+        Move(String pgId, String fromPgs, String fromPm, String toPgs, String toPm) {
+            this.pgId = pgId;
+            this.fromPgs = fromPgs;
+            this.fromPm = fromPm;
+            this.toPgs = toPgs;
+            this.toPm = toPm;
+        }
+        
+        @Override
+        public String toString() {
+            return "{\"pg\":" + pgId + ",\"from\":{\"pgs\":" + fromPgs 
+                    + ",\"pm\":\"" + fromPm + "\"},\"to\":{\"pgs\":" + toPgs
+                    + ",\"pm\":\"" + toPm + "\"}}";
+        }
+    }
+    
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import com.navercorp.nbasearc.confmaster.server.cluster.MigrateInfo;
+
+/**
+ * Tracks the progress of a migration from successive replies of
+ * "migrate info" and predicts how long it takes to catch up.
+ * 
+ * Migration is a pipeline of two stages, scanning the replication log into
+ * the migration buffer (mig) and sending the buffer to the destination
+ * (acked). The rate of each stage is measured separately, because the log
+ * and the buffer are counted in different units.
+ */
+class MigrationCatchup {
+    
+    static final long MIN_POLL_INTERVAL = 1L;
+    static final long MAX_POLL_INTERVAL = 50L;
+    static final long UNKNOWN = Long.MAX_VALUE;
+    
+    private MigrateInfo last;
+    private long lastTime;
+    
+    /* bytes per millisecond, -1 until measured */
+    private double migRate = -1;
+    private double ackRate = -1;
+    
+    public void update(MigrateInfo info, long now) {
+        if (last != null && now > lastTime) {
+            final long elapsed = now - lastTime;
+            migRate = average(migRate, (double) (info.getMig() - last.getMig()) / elapsed);
+            ackRate = average(ackRate, (double) (info.getAcked() - last.getAcked()) / elapsed);
+        }
+        last = info;
+        lastTime = now;
+    }
+    
+    private static double average(double avg, double sample) {
+        return avg < 0 ? sample : avg * 0.5 + sample * 0.5;
+    }
+
+    /**
+     * @param logSeq the log sequence up to which the log must be scanned
+     * @param bufSeq the buffer sequence up to which the buffer must be acked
+     * @return predicted milliseconds until the destination acks all data up to
+     *         logSeq, or UNKNOWN if the migration makes no progress.
+     */
+    public long predict(MigrateInfo info, long logSeq, long bufSeq) {
+        final long migLag = Math.max(logSeq - info.getMig(), 0);
+        final long bufLag = Math.max(bufSeq - info.getAcked(), 0);
+        
+        final long migTime = time(migLag, migRate);
+        final long bufTime = time(bufLag, ackRate);
+        if (migTime == UNKNOWN || bufTime == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return migTime + bufTime;
+    }
+    
+    private static long time(long lag, double rate) {
+        if (lag == 0) {
+            return 0;
+        } else if (rate <= 0) {
+            return UNKNOWN;
+        }
+        return (long) Math.ceil(lag / rate);
+    }
+    
+    /**
+     * @return an interval to the next poll, half the predicted time so that a
+     *         prediction that is too optimistic is corrected soon.
+     */
+    public long pollInterval(MigrateInfo info, long logSeq, long bufSeq) {
+        final long predicted = predict(info, logSeq, bufSeq);
+        if (predicted == UNKNOWN) {
+            return MAX_POLL_INTERVAL;
+        }
+        return Math.min(Math.max(predicted / 2, MIN_POLL_INTERVAL), MAX_POLL_INTERVAL);
+    }
+    
+}
@@ -45,6 +45,7 @@ import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtInvalidQuorumPo
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtNoAvaliablePgsException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
 import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.heartbeat.PhiAccrualDetector;
 import com.navercorp.nbasearc.confmaster.io.MultipleGatewayInvocator;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
@@ -64,6 +65,7 @@ import com.navercorp.nbasearc.confmaster.server.leaderelection.LeaderState;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockHelper;
 import com.navercorp.nbasearc.confmaster.server.lock.HierarchicalLockPGSList;
 import com.navercorp.nbasearc.confmaster.server.mapping.CommandMapping;
+import com.navercorp.nbasearc.confmaster.server.mapping.LiveMapping;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockMapping;
 import com.navercorp.nbasearc.confmaster.server.mapping.Param;
 import com.navercorp.nbasearc.confmaster.server.mapping.ClusterHint;
@@ -479,7 +481,8 @@ public class PartitionGroupServerService {
             usage="pgs_info <cluster_name> <pgs_id>\r\n" +
                     "get information of a Partition Group Server",
             requiredState=ConfMaster.READY,
-            requiredMode=CLUSTER_ON|CLUSTER_OFF)
+            requiredMode=CLUSTER_ON|CLUSTER_OFF,
+            snapshot=true)
     public String pggInfo(@ClusterHint String clusterName, String pgsid) throws InterruptedException {
         // In Memory
         Cluster cluster = container.getCluster(clusterName);
@@ -496,7 +499,7 @@ public class PartitionGroupServerService {
 
         // Do
         try {
-            return pgs.persistentDataToString();
+            return cluster.appendGenerationToJson(pgs.persistentDataToString());
         } catch (RuntimeException e) {
             return "-ERR internal data of pgs is not correct.";
         }
@@ -509,6 +512,15 @@ public class PartitionGroupServerService {
                 .pgsList(READ).pg(READ, null).pgs(READ, pgsid);
     }
     
+    @LiveMapping(name="pgs_info")
+    public String pggInfoLive(String reply, String clusterName, String pgsid) {
+        PartitionGroupServer pgs = container.getPgs(clusterName, pgsid);
+        if (null == pgs || !reply.startsWith("{")) {
+            return reply;
+        }
+        return PhiAccrualDetector.appendToJson(reply, pgs.getHeartbeatPhi());
+    }
+    
     @CommandMapping(
             name="pgs_join",
             usage="pgs_join <cluster_name> <pgsid>",
@@ -558,7 +570,8 @@ public class PartitionGroupServerService {
             return reply;
         }
 
-        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(); 
+        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout()); 
         reply = broadcast.request(clusterName, gwList, GW_PING, GW_PONG, executor);
         if (null != reply) {
             Logger.error(reply);
@@ -741,7 +754,8 @@ public class PartitionGroupServerService {
             return reply;
         }
 
-        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(); 
+        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout()); 
         reply = broadcast.request(clusterName, gwList, GW_PING, GW_PONG, executor);
         if (null != reply) {
             Logger.error(reply);
@@ -34,6 +34,7 @@ import org.springframework.stereotype.Service;
 import com.navercorp.nbasearc.confmaster.ConfMaster;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtCommandWrongArgumentException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
+import com.navercorp.nbasearc.confmaster.config.Config;
 import com.navercorp.nbasearc.confmaster.io.MultipleGatewayInvocator;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.ThreadPool;
@@ -68,6 +69,8 @@ public class PartitionGroupService {
     private ThreadPool executor;
     @Autowired
     private ApplicationContext context;
+    @Autowired
+    private Config config;
 
     @Autowired
     private ClusterComponentContainer container;
@@ -78,6 +81,9 @@ public class PartitionGroupService {
     @Autowired
     private ZooKeeperHolder zk;
     
+    @Autowired
+    private MasterRebalancer masterRebalancer;
+    
     @CommandMapping(name="pg_add",
             usage="pg_add <cluster_name> <pgid>\r\n" +
                     "add a single partition group",
@@ -106,7 +112,8 @@ public class PartitionGroupService {
             return reply;
         }
 
-        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(); 
+        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout()); 
         reply = broadcast.request(clusterName, gwList, GW_PING, GW_PONG, executor);
         if (null != reply) {
             Logger.error(reply);
@@ -192,7 +199,8 @@ public class PartitionGroupService {
         }
 
         // Prepare
-        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(); 
+        MultipleGatewayInvocator broadcast = new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout()); 
         reply = broadcast.request(clusterName, gwList, GW_PING, GW_PONG, executor);
         if (null != reply) {
             Logger.error(reply);
@@ -228,10 +236,12 @@ public class PartitionGroupService {
             usage="pg_info <cluster_name> <pg_id>\r\n" +
                     "get information of a Partition Group",
             requiredState=ConfMaster.READY,
-            requiredMode=CLUSTER_ON|CLUSTER_OFF)
+            requiredMode=CLUSTER_ON|CLUSTER_OFF,
+            snapshot=true)
     public String pgInfo(@ClusterHint String clusterName, String pgid) {
         // Check
-        if (null == container.getCluster(clusterName)) {
+        Cluster cluster = container.getCluster(clusterName);
+        if (null == cluster) {
             return EXCEPTIONMSG_CLUSTER_DOES_NOT_EXIST;
         }
         
@@ -243,7 +253,7 @@ public class PartitionGroupService {
 
         // Do
         try {
-            return pg.info();
+            return cluster.appendGenerationToJson(pg.info());
         } catch (RuntimeException e) {
             return "-ERR internal data of pgs is not correct.";
         }
@@ -389,6 +399,42 @@ public class PartitionGroupService {
                 ALL_IN_PG).gwList(READ);
     }
 
+    @CommandMapping(name="master_rebalance",
+            usage="master_rebalance <cluster_name> <max_moves>\r\n" +
+                    "move masters from machines with more masters to machines with fewer masters " +
+                    "by role_change, one by one in the background. it replies the moves planned now.",
+            requiredState=ConfMaster.RUNNING,
+            requiredMode=CLUSTER_ON)
+    public String masterRebalance(@ClusterHint String clusterName, Integer maxMoves) {
+        if (container.getCluster(clusterName) == null) {
+            return EXCEPTIONMSG_CLUSTER_DOES_NOT_EXIST + Cluster.fullName(clusterName);
+        }
+        if (maxMoves <= 0) {
+            return "-ERR max_moves must be positive. max_moves: " + maxMoves;
+        }
+        
+        List<MasterRebalancer.Move> moves = masterRebalancer.start(clusterName, maxMoves);
+        if (moves == null) {
+            return "-ERR masters are being rebalanced already. " + Cluster.fullName(clusterName);
+        }
+        
+        StringBuilder sb = new StringBuilder("{\"moves\":[");
+        for (int i = 0; i < moves.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(moves.get(i));
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    @LockMapping(name="master_rebalance")
+    public void masterRebalanceLock(HierarchicalLockHelper lockHelper, String clusterName) {
+        lockHelper.root(READ).cluster(READ, clusterName).pgList(READ)
+                .pgsList(READ).pg(READ, ALL).pgs(READ, ALL);
+    }
+
     @CommandMapping(name="pg_iq",
             usage="pg_iq <cluster_name> <pg_id>",
             requiredState=ConfMaster.RUNNING,
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
+
+/**
+ * Immutable replies of read-only commands, each tagged with the generation of
+ * its cluster at the time it was made.
+ * 
+ * A job that modified a cluster increases its generation before releasing
+ * its locks, so a reply of the current generation is still up to date and is
+ * served without taking any lock. Otherwise the command tries its read locks
+ * and its reply replaces the old one. If a job holds a write lock, the old
+ * reply is served instead; it is stale but was made under the read locks, so
+ * it is consistent.
+ */
+@Component
+public class QuerySnapshot {
+    
+    private final ConcurrentMap<String, Reply> replies = 
+            new ConcurrentHashMap<String, Reply>();
+    
+    /**
+     * @return the reply if it is of the current generation of the cluster
+     */
+    public String get(String request, Cluster cluster) {
+        final Reply reply = replies.get(request);
+        if (reply == null || reply.generation != cluster.getGeneration()) {
+            return null;
+        }
+        return reply.reply;
+    }
+    
+    /**
+     * @return the last reply made for the cluster, whatever its generation
+     */
+    public String getStale(String request, Cluster cluster) {
+        final Reply reply = replies.get(request);
+        if (reply == null || reply.cluster != cluster) {
+            return null;
+        }
+        return reply.reply;
+    }
+    
+    /**
+     * @param generation the generation of the cluster, taken before the reply
+     *        was made.
+     */
+    public void put(String request, Cluster cluster, long generation, String reply) {
+        // Errors are not kept, so that requests for unknown objects do not pile up.
+        if (reply == null || reply.startsWith("-ERR")) {
+            return;
+        }
+        
+        final Reply newReply = new Reply(cluster, generation, reply);
+        while (true) {
+            final Reply old = replies.putIfAbsent(request, newReply);
+            if (old == null) {
+                return;
+            }
+            // Generations only grow, so a slower request does not overwrite a newer reply.
+            if (old.cluster == cluster && old.generation >= generation) {
+                return;
+            }
+            if (replies.replace(request, old, newReply)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Removes the replies of a deleted cluster.
+     */
+    public void purge(String clusterName) {
+        final Iterator<Reply> it = replies.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().cluster.getName().equals(clusterName)) {
+                it.remove();
+            }
+        }
+    }
+    
+    public int size() {
+        return replies.size();
+    }
+    
+    private static class Reply {
+        private final Cluster cluster;
+        private final long generation;
+        private final String reply;
+        
+        public Reply(Cluster cluster, long generation, String reply) {
+            this.cluster = cluster;
+            this.generation = generation;
+            this.reply = reply;
+        }
+    }
+    
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Computes a plan of mig2pc steps that moves a slot map to target weights of
+ * PGs, moving no more slots than necessary.
+ * 
+ * Every PG gets a number of slots proportional to its weight. Only PGs that
+ * have more slots than that give slots away, from their last slots, in ranges
+ * of at most maxSlots. Since the plan depends only on the current slot map,
+ * planning again after some steps are done gives the rest of the plan.
+ * 
+ * Steps are grouped into waves, in which a PG takes part in at most one step,
+ * so that the steps of a wave can migrate concurrently.
+ */
+class SlotRebalancePlanner {
+    
+    private final List<Integer> slotMap;
+    private final Map<Integer, Integer> weights;
+    private final int maxSlots;
+    
+    /**
+     * @param weights a weight of each PG; a PG with weight 0 is drained.
+     */
+    public SlotRebalancePlanner(List<Integer> slotMap,
+            Map<Integer, Integer> weights, int maxSlots) {
+        if (maxSlots <= 0) {
+            throw new IllegalArgumentException("max slots must be positive. max slots: " + maxSlots);
+        }
+        
+        long totalWeight = 0;
+        for (Integer weight : weights.values()) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight must not be negative. weight: " + weight);
+            }
+            totalWeight += weight;
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("total weight must be positive.");
+        }
+        
+        this.slotMap = slotMap;
+        this.weights = new TreeMap<Integer, Integer>(weights);
+        this.maxSlots = maxSlots;
+    }
+    
+    /**
+     * @return a number of slots of each PG after rebalancing
+     */
+    Map<Integer, Integer> targets() {
+        long totalWeight = 0;
+        for (Integer weight : weights.values()) {
+            totalWeight += weight;
+        }
+        
+        final Map<Integer, Integer> targets = new TreeMap<Integer, Integer>();
+        final Map<Integer, Long> remainders = new TreeMap<Integer, Long>();
+        int assigned = 0;
+        for (Map.Entry<Integer, Integer> e : weights.entrySet()) {
+            long share = (long) slotMap.size() * e.getValue();
+            targets.put(e.getKey(), (int) (share / totalWeight));
+            remainders.put(e.getKey(), share % totalWeight);
+            assigned += share / totalWeight;
+        }
+        
+        // Slots left by rounding down go to PGs with the largest remainders.
+        List<Integer> order = new ArrayList<Integer>(remainders.keySet());
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int c = remainders.get(o2).compareTo(remainders.get(o1));
+                return c != 0 ? c : o1.compareTo(o2);
+            }
+        });
+        for (int i = 0; i < slotMap.size() - assigned; i++) {
+            int pgId = order.get(i);
+            targets.put(pgId, targets.get(pgId) + 1);
+        }
+        return targets;
+    }
+    
+    public List<Step> plan() {
+        final Map<Integer, Integer> targets = targets();
+        
+        final Map<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        for (Integer pgId : slotMap) {
+            Integer count = counts.get(pgId);
+            counts.put(pgId, count == null ? 1 : count + 1);
+        }
+        
+        final Map<Integer, Integer> surplus = new TreeMap<Integer, Integer>();
+        final Map<Integer, Integer> deficit = new TreeMap<Integer, Integer>();
+        for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+            Integer target = targets.get(e.getKey());
+            int diff = e.getValue() - (target == null ? 0 : target);
+            if (diff > 0) {
+                surplus.put(e.getKey(), diff);
+            }
+        }
+        for (Map.Entry<Integer, Integer> e : targets.entrySet()) {
+            Integer count = counts.get(e.getKey());
+            int diff = e.getValue() - (count == null ? 0 : count);
+            if (diff > 0) {
+                deficit.put(e.getKey(), diff);
+            }
+        }
+        
+        final List<Step> steps = new ArrayList<Step>();
+        final List<Set<Integer>> waves = new ArrayList<Set<Integer>>();
+        
+        // Walk the slot map backward and hand the surplus slots out in ranges.
+        int slot = slotMap.size() - 1;
+        while (slot >= 0 && !deficit.isEmpty()) {
+            final int src = slotMap.get(slot);
+            final Integer srcSurplus = surplus.get(src);
+            if (srcSurplus == null) {
+                slot--;
+                continue;
+            }
+            
+            final int dest = deficit.keySet().iterator().next();
+            final int size = Math.min(Math.min(srcSurplus, deficit.get(dest)), maxSlots);
+            
+            int from = slot;
+            while (from > 0 && slot - from + 1 < size && slotMap.get(from - 1) == src) {
+                from--;
+            }
+            final int moved = slot - from + 1;
+            
+            steps.add(new Step(src, dest, from, slot, wave(waves, src, dest)));
+            decrease(surplus, src, moved);
+            decrease(deficit, dest, moved);
+            slot = from - 1;
+        }
+        
+        return steps;
+    }
+    
+    private static void decrease(Map<Integer, Integer> map, int key, int n) {
+        int value = map.get(key) - n;
+        if (value == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+    }
+    
+    private static int wave(List<Set<Integer>> waves, int src, int dest) {
+        for (int i = 0; i < waves.size(); i++) {
+            Set<Integer> wave = waves.get(i);
+            if (!wave.contains(src) && !wave.contains(dest)) {
+                wave.add(src);
+                wave.add(dest);
+                return i;
+            }
+        }
+        
+        Set<Integer> wave = new HashSet<Integer>();
+        wave.add(src);
+        wave.add(dest);
+        waves.add(wave);
+        return waves.size() - 1;
+    }
+    
+    static class Step {
+        final int srcPgId;
+        final int destPgId;
+        final int rangeFrom;
+        final int rangeTo;
+        final int wave;
+        
+        Step(int srcPgId, int destPgId, int rangeFrom, int rangeTo, int wave) {
+            this.srcPgId = srcPgId;
+            this.destPgId = destPgId;
+            this.rangeFrom = rangeFrom;
+            this.rangeTo = rangeTo;
+            this.wave = wave;
+        }
+        
+        int size() {
+            return rangeTo - rangeFrom + 1;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(
+                    "{\"src_pg_id\":%d,\"dest_pg_id\":%d,\"range_from\":%d,\"range_to\":%d,\"wave\":%d}",
+                    srcPgId, destPgId, rangeFrom, rangeTo, wave);
+        }
+    }
+    
+}
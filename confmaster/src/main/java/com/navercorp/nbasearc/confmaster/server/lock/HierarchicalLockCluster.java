@@ -59,6 +59,7 @@ public class HierarchicalLockCluster extends HierarchicalLock {
     protected void _lock() {
         ThreadLocalVariableHolder.addPermission(cluster.getPath(), getLockType());
         ThreadLocalVariableHolder.addPermission(PathUtil.pathOfGwLookupCluster(cluster.getName()), getLockType());
+        getHlh().addLockedCluster(cluster);
         switch (this.getLockType()) {
         case READ:
             getHlh().acquireLock(cluster.readLock());
@@ -17,13 +17,16 @@
 package com.navercorp.nbasearc.confmaster.server.lock;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.springframework.context.ApplicationContext;
 
 import com.navercorp.nbasearc.confmaster.ThreadLocalVariableHolder;
+import com.navercorp.nbasearc.confmaster.server.cluster.Cluster;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowLogger;
 
@@ -33,6 +36,9 @@ public class HierarchicalLockHelper {
     private static final ReentrantReadWriteLock pmRWLock = new ReentrantReadWriteLock();
     
     private final Deque<Lock> acquiredLockList = new ArrayDeque<Lock>();
+    private final List<Cluster> lockedClusters = new ArrayList<Cluster>();
+    private boolean writeLocked = false;
+    private boolean tryOnly = false;
     
     private final ClusterComponentContainer container;
     
@@ -48,12 +54,47 @@ public class HierarchicalLockHelper {
         return new HierarchicalLockPMList(this, lockType);
     }
 
+    /**
+     * In try-only mode a lock held by another thread is not waited for, and
+     * acquireLock throws LockUnavailableException instead. The locks taken so
+     * far stay held until releaseAllLock is called.
+     */
+    public void setTryOnly(boolean tryOnly) {
+        this.tryOnly = tryOnly;
+    }
+
     public void acquireLock(Lock lock) {
-        lock.lock();
+        if (!tryOnly) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            throw new LockUnavailableException();
+        }
         acquiredLockList.push(lock);
+        if (lock instanceof ReentrantReadWriteLock.WriteLock) {
+            writeLocked = true;
+        }
+    }
+
+    void addLockedCluster(Cluster cluster) {
+        lockedClusters.add(cluster);
     }
 
     public void releaseAllLock() {
+        // Invalidate query snapshots before the locks are released.
+        if (writeLocked) {
+            final List<Cluster> modified;
+            if (acquiredLockList.contains(rootWriteLock())) {
+                modified = container.getAllCluster();
+            } else {
+                modified = lockedClusters;
+            }
+            for (Cluster cluster : modified) {
+                cluster.increaseGeneration();
+            }
+        }
+        writeLocked = false;
+        lockedClusters.clear();
+        
         while (!acquiredLockList.isEmpty()) {
             acquiredLockList.pop().unlock();
         }
@@ -79,5 +120,8 @@ public class HierarchicalLockHelper {
     public ClusterComponentContainer getContainer() {
         return container;
     }
+
+    public static class LockUnavailableException extends RuntimeException {
+    }
     
 }
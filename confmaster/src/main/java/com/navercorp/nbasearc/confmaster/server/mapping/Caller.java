@@ -22,12 +22,18 @@ import static com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType.NUL
 import static com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType.STRING_VARG;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+
 import com.navercorp.nbasearc.confmaster.heartbeat.HBResult;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
 import com.navercorp.nbasearc.confmaster.server.cluster.Gateway;
@@ -37,8 +43,15 @@ import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroup;
 import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer;
 import com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType;
 
+/**
+ * Invokes a mapped method. Everything that does not depend on the arguments of a call, such as the method handle,
+ * the argument types and the arity, is prepared once when the caller is created.
+ */
 public class Caller {
 
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final ConversionService CONVERSION_SERVICE = new DefaultConversionService();
+
     private Method method;
     private Class<?>[] paramTypes;
     private Object service;
@@ -48,17 +61,124 @@ public class Caller {
     private int paramIdxClusterHint = -1;
     private Class<?> clusterHint;
 
+    private final MethodHandle invoker;
+    private final ArgType[] paramArgTypes;
+    private final Class<?>[] convertTypes;
+    private final int paramLengthWithoutNullable;
+
     public Caller(Object service, Method method, ArityType arityType) {
         this.service = service;
         this.method = method;
         this.paramTypes = method.getParameterTypes();
         this.arityType = arityType;
         this.argTypes = getArgTypes(method);
+
+        this.invoker = createInvoker(service, method);
+        this.paramArgTypes = new ArgType[paramTypes.length];
+        this.convertTypes = new Class<?>[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramArgTypes[i] = argTypes.get(paramTypes[i]);
+            convertTypes[i] = boxed(paramTypes[i]);
+        }
+
+        int nullableCount = 0;
+        for (Entry<Class<?>, ArgType> argType : argTypes.entrySet()) {
+            if (argType.getValue() == NULLABLE) {
+                nullableCount++;
+            }
+        }
+        this.paramLengthWithoutNullable = paramTypes.length - nullableCount;
     }
-    
+
+    /**
+     * @return a handle of type (Object[])Object that spreads the arguments over the parameters of the method
+     */
+    private static MethodHandle createInvoker(Object service, Method method) {
+        MethodHandle mh;
+        try {
+            mh = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                mh = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e2) {
+                throw new RuntimeException("Cannot access " + method, e2);
+            }
+        }
+
+        return mh.bindTo(service)
+                .asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        }
+        return type;
+    }
+
+    /**
+     * Invokes the method. As with {@link Method#invoke}, arguments that do not match the parameters are reported with
+     * an IllegalArgumentException and an exception thrown by the method is wrapped in an InvocationTargetException.
+     * Errors are not wrapped.
+     */
     public Object invoke(Object... args) throws IllegalArgumentException,
             IllegalAccessException, InvocationTargetException {
-        return method.invoke(service, args);
+        if (args == null) {
+            args = NO_ARGS;
+        }
+        checkArguments(args);
+
+        try {
+            return (Object) invoker.invokeExact(args);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Checks the arguments before the invocation, so that anything the handle throws comes from the method itself.
+     */
+    private void checkArguments(Object[] args) {
+        if (args.length != paramTypes.length) {
+            throw new IllegalArgumentException("wrong number of arguments. expected: "
+                    + paramTypes.length + ", actual: " + args.length);
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null ? paramTypes[i].isPrimitive() : !convertTypes[i].isInstance(args[i])) {
+                throw new IllegalArgumentException("argument type mismatch. index: " + i + ", expected: "
+                        + paramTypes[i].getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Converts an argument to the type of the i-th parameter. An argument that already has the type is passed as is.
+     */
+    public Object convert(int i, Object arg) {
+        if (arg == null || convertTypes[i].isInstance(arg)) {
+            return arg;
+        }
+        return CONVERSION_SERVICE.convert(arg, paramTypes[i]);
     }
 
     public int getParamLength() {
@@ -66,13 +186,7 @@ public class Caller {
     }
 
     public int getParamLengthWithoutNullable() {
-        int nullableCount = 0;
-        for (Entry<Class<?>, ArgType> argType : argTypes.entrySet()) {
-            if (argType.getValue() == NULLABLE) {
-                nullableCount++;
-            }
-        }
-        return paramTypes.length - nullableCount;
+        return paramLengthWithoutNullable;
     }
 
     public Class<?> getParamType(int i) {
@@ -83,6 +197,10 @@ public class Caller {
         return argTypes.get(paramType);
     }
 
+    public ArgType getArgType(int i) {
+        return paramArgTypes[i];
+    }
+
     public ArityType getArityType() {
         return arityType;
     }
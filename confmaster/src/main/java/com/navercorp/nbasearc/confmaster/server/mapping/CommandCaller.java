@@ -41,6 +41,10 @@ public class CommandCaller extends Caller {
         return command.requiredMode();
     }
     
+    public boolean isSnapshot() {
+        return command.snapshot();
+    }
+    
     @Override
     public String toString() {
         return "CommandCaller[name:" + getMethod().getName() + ", args:"
@@ -33,4 +33,13 @@ public @interface CommandMapping {
     public int requiredState();
     
     public int requiredMode() default 0;
+    
+    /**
+     * A read-only command whose reply can be served from QuerySnapshot
+     * without taking locks while its cluster is not modified. Fields that
+     * change without a modification of the cluster are added by a
+     * {@link LiveMapping} method of the same name. The reply reports the
+     * generation of the cluster it was made from.
+     */
+    public boolean snapshot() default false;
 }
@@ -38,12 +38,17 @@ public class BJRoleSlave {
     @Autowired
     protected WorkflowLogger workflowLogger;
 
+    /**
+     * Sends 'role slave' only. It is called from {@link RoleFanOut} threads.
+     */
     public void roleSlave(PartitionGroupServer pgs, PartitionGroup pg,
             LogSequence logSeq, PartitionGroupServer master, long jobID)
             throws MgmtSmrCommandException {
-        final String masterVersion = master.smrVersion();
         pgs.roleSlave(pg, logSeq, master, BLUE, jobID, workflowLogger);
+    }
 
+    public void updateZNodeAsSlave(PartitionGroupServer pgs, PartitionGroup pg,
+            String masterVersion, long jobID) throws MgmtSmrCommandException {
         Logger.info("{} {}->{} {}->{}", new Object[] { pgs,
                 pgs.getRole(), PGS_ROLE_SLAVE,
                 pgs.getColor(), GREEN });
@@ -20,6 +20,7 @@ import static com.navercorp.nbasearc.confmaster.Constant.*;
 import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
 import static com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +28,7 @@ import org.springframework.context.ApplicationContext;
 
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
 import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.JobIDGenerator;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
@@ -43,6 +45,7 @@ public class BlueJoinWorkflow extends CascadingWorkflow {
     final WorkflowLogger workflowLogger;
 
     final BJRoleSlave roleSlave;
+    final RoleFanOut fanOut;
     
     List<PartitionGroupServer> joinedPgsList;
     PartitionGroupServer master;
@@ -57,6 +60,7 @@ public class BlueJoinWorkflow extends CascadingWorkflow {
         this.workflowLogger = context.getBean(WorkflowLogger.class);
         
         this.roleSlave = context.getBean(BJRoleSlave.class);
+        this.fanOut = context.getBean(RoleFanOut.class);
     }
 
     @Override
@@ -67,14 +71,32 @@ public class BlueJoinWorkflow extends CascadingWorkflow {
             return;
         }
 
+        final List<PartitionGroupServer> slaveTargets = new ArrayList<PartitionGroupServer>();
         for (PartitionGroupServer pgs : joinedPgsList) {
             if (pgs.getColor() == BLUE
                     && pgs.getRole().equals(PGS_ROLE_LCONN)) {
-                LogSequence logSeq = pgs.getLogSeq();
-                roleSlave.roleSlave(pgs, pg, logSeq, master, jobID);
+                slaveTargets.add(pgs);
             }
         }
-        
+
+        if (!slaveTargets.isEmpty()) {
+            final String masterVersion = master.smrVersion();
+            final PartitionGroupServer m = master;
+            RoleFanOut.Group<Void> join = fanOut.execute("role slave", ContextType.BJ,
+                    slaveTargets, new RoleFanOut.Command<Void>() {
+                        @Override
+                        public Void execute(PartitionGroupServer pgs) throws Exception {
+                            LogSequence logSeq = pgs.getLogSeq();
+                            roleSlave.roleSlave(pgs, pg, logSeq, m, jobID);
+                            return null;
+                        }
+                    });
+            for (PartitionGroupServer pgs : join.getSucceeded()) {
+                roleSlave.updateZNodeAsSlave(pgs, pg, masterVersion, jobID);
+            }
+            join.checkFailure();
+        }
+
         container.getCluster(pg.getClusterName()).performUpdateGwAff();
     }
 
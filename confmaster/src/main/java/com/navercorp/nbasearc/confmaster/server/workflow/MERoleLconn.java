@@ -35,9 +35,16 @@ public class MERoleLconn {
     @Autowired
     WorkflowLogger workflowLogger;
 
+    /**
+     * Sends 'role lconn' only. It is called from {@link RoleFanOut} threads.
+     */
     public void roleLconn(PartitionGroupServer pgs, long jobID)
             throws MgmtSmrCommandException {
         pgs.roleLconn();
+    }
+
+    public void updateZNodeAsLconn(PartitionGroupServer pgs, long jobID)
+            throws MgmtSmrCommandException {
         Logger.info("{} {}->{} {}->{}", new Object[] { pgs,
                 pgs.getRole(), PGS_ROLE_LCONN,
                 pgs.getColor(), BLUE });
@@ -20,7 +20,6 @@ import static com.navercorp.nbasearc.confmaster.Constant.*;
 import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
 import static com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor.*;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +28,7 @@ import org.springframework.context.ApplicationContext;
 
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
 import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.JobIDGenerator;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
@@ -48,6 +48,7 @@ public class MasterElectionWorkflow extends CascadingWorkflow {
     
     final MERoleMaster roleMaster;
     final MERoleLconn roleLconn;
+    final RoleFanOut fanOut;
 
     final List<PartitionGroupServer> masterHints;
     
@@ -63,6 +64,7 @@ public class MasterElectionWorkflow extends CascadingWorkflow {
         
         this.roleMaster = context.getBean(MERoleMaster.class);
         this.roleLconn = context.getBean(MERoleLconn.class);
+        this.fanOut = context.getBean(RoleFanOut.class);
 
         this.masterHints = masterHints;
     }
@@ -79,13 +81,27 @@ public class MasterElectionWorkflow extends CascadingWorkflow {
             return;
         }
 
+        List<PartitionGroupServer> lconnTargets = new ArrayList<PartitionGroupServer>();
         for (PartitionGroupServer pgs : joinedPgsList) {
             Color color = pgs.getColor();
             if (color == GREEN || color == BLUE) {
-                roleLconn.roleLconn(pgs, jobID);
+                lconnTargets.add(pgs);
             }
         }
 
+        RoleFanOut.Group<Void> lconn = fanOut.execute("role lconn", ContextType.ME,
+                lconnTargets, new RoleFanOut.Command<Void>() {
+                    @Override
+                    public Void execute(PartitionGroupServer pgs) throws Exception {
+                        roleLconn.roleLconn(pgs, jobID);
+                        return null;
+                    }
+                });
+        for (PartitionGroupServer pgs : lconn.getSucceeded()) {
+            roleLconn.updateZNodeAsLconn(pgs, jobID);
+        }
+        lconn.checkFailure();
+
         List<PartitionGroupServer> greens = new ArrayList<PartitionGroupServer>();
         List<PartitionGroupServer> blues = new ArrayList<PartitionGroupServer>();
         for (PartitionGroupServer pgs : joinedPgsList) {
@@ -110,11 +126,20 @@ public class MasterElectionWorkflow extends CascadingWorkflow {
             return;
         }
 
-        SortedLogSeqSet logs;
-        try {
-            logs = pg.getLogSeq(blues);
-        } catch (IOException e1) {
-            throw new MgmtSmrCommandException("getseq log fail.");
+        RoleFanOut.Group<LogSequence> getseq = fanOut.query("getseq log",
+                blues, "getseq log", new RoleFanOut.Parser<LogSequence>() {
+                    @Override
+                    public LogSequence parse(PartitionGroupServer pgs, String reply) {
+                        LogSequence logSeq = new LogSequence(pgs);
+                        logSeq.initialize(reply);
+                        return logSeq;
+                    }
+                });
+        getseq.checkFailure();
+
+        SortedLogSeqSet logs = new SortedLogSeqSet();
+        for (PartitionGroupServer pgs : blues) {
+            logs.add(getseq.get(pgs));
         }
         for (LogSequence e : logs) {
             System.out.println(e.getPgs() + " " + e.getMax());
@@ -134,7 +159,7 @@ public class MasterElectionWorkflow extends CascadingWorkflow {
                 throw new MgmtSmrCommandException(masterHints + " has no recent logs");
             }
         } else {
-            newMaster = pg.chooseMasterRandomly(logs, joinedPgsList);
+            newMaster = pg.chooseMaster(logs, joinedPgsList, container);
             newMasterLog = logs.get(newMaster);
         }
 
@@ -21,21 +21,21 @@ import org.springframework.context.ApplicationContext;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
 import com.navercorp.nbasearc.confmaster.config.Config;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBState;
+import com.navercorp.nbasearc.confmaster.heartbeat.OpinionPublisher;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.ThreadPool;
-import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
 import com.navercorp.nbasearc.confmaster.server.cluster.HeartbeatTarget;
 
 public class OpinionDiscardWorkflow {
     
     private final HeartbeatTarget target;
     private final Config config;
-    private final ZooKeeperHolder zk;
+    private final OpinionPublisher opinionPublisher;
     
     protected OpinionDiscardWorkflow(HeartbeatTarget target, ApplicationContext context) {
         this.target = target;
         this.config = context.getBean(Config.class);
-        this.zk = context.getBean(ZooKeeperHolder.class);
+        this.opinionPublisher = context.getBean(OpinionPublisher.class);
     }
     
     public String execute(ThreadPool executor) throws MgmtZooKeeperException {
@@ -48,7 +48,7 @@ public class OpinionDiscardWorkflow {
         String path = getTarget().getPath() + "/" + config.getIp() + ":" + config.getPort();
         
         try {
-            zk.deleteZNode(path, -1);
+            opinionPublisher.delete(path);
         } catch (MgmtZooKeeperException e) {
             Logger.error("Remove opinion fail. path: {}", path, e);
             throw e;
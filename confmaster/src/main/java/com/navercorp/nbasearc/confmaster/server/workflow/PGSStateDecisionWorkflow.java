@@ -107,6 +107,13 @@ public class PGSStateDecisionWorkflow {
             return null;
         }
 
+        if (opinion.getVersion(path) != gatherOpinionsResult.opinionVersion) {
+            // The watch of the changed opinion starts another decision.
+            Logger.info("opinions changed during decision. {}", target);
+            return null;
+        }
+        markUsedOpinions(gatherOpinionsResult.opinions, makeDecisionResult);
+
         if (timestampValidation(gatherOpinionsResult.maxStateTimestamp,
                 target.getView(), makeDecisionResult.newView) == false) {
             return null;
@@ -152,12 +159,15 @@ public class PGSStateDecisionWorkflow {
         public final boolean success;
         public final List<OpinionData> opinions;
         public final long maxStateTimestamp;
+        public final long opinionVersion;
 
         public GatherOpinionsResult(final boolean success,
-                final List<OpinionData> opinions, final long maxStateTimestampy) {
+                final List<OpinionData> opinions, final long maxStateTimestampy,
+                final long opinionVersion) {
             this.success = success;
             this.opinions = opinions;
             this.maxStateTimestamp = maxStateTimestampy;
+            this.opinionVersion = opinionVersion;
         }
     }
 
@@ -168,6 +178,7 @@ public class PGSStateDecisionWorkflow {
      */
     private GatherOpinionsResult gatherOpinions() throws NoNodeException,
             MgmtZooKeeperException {
+        final long opinionVersion = opinion.getVersion(path);
         List<OpinionData> opinions;
         opinions = opinion.getOpinions(path);
         if (0 == opinions.size()) {
@@ -201,10 +212,10 @@ public class PGSStateDecisionWorkflow {
                 + availableOpinionCount + ", majority: " + majority;
         if (availableOpinionCount >= majority) {
             Logger.info("majority check success. " + log);
-            return new GatherOpinionsResult(true, opinions, maxStateTimestamp);
+            return new GatherOpinionsResult(true, opinions, maxStateTimestamp, opinionVersion);
         } else {
             Logger.info("majority check fail. " + log);
-            return new GatherOpinionsResult(false, opinions, maxStateTimestamp);
+            return new GatherOpinionsResult(false, opinions, maxStateTimestamp, opinionVersion);
         }
     }
 
@@ -280,18 +291,21 @@ public class PGSStateDecisionWorkflow {
             role = PGS_ROLE_MASTER;
         }
 
+        Logger.info(
+                "opinions converged to {}. N: {}, L: {}, S: {}, M: {}.",
+                new Object[] { role, li.get(0), li.get(1), li.get(2), li.get(3) });
+        return new MakeDecisionResult(role, maxStateTimestamp);
+    }
+
+    private void markUsedOpinions(List<OpinionData> opinions,
+            MakeDecisionResult decision) {
         UsedOpinionSet usedOpinions = target.getUsedOpinions();
         for (OpinionData data : opinions) {
-            if (data.getStatetimestamp() == maxStateTimestamp
-                    && data.getOpinion().equals(role)) {
+            if (data.getStatetimestamp() == decision.maxStateTimestamp
+                    && data.getOpinion().equals(decision.newView)) {
                 usedOpinions.add(data);
             }
         }
-
-        Logger.info(
-                "opinions converged to {}. N: {}, L: {}, S: {}, M: {}.",
-                new Object[] { role, li.get(0), li.get(1), li.get(2), li.get(3) });
-        return new MakeDecisionResult(role, maxStateTimestamp);
     }
 
     /**
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.nbasearc.confmaster.server.workflow;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import com.navercorp.nbasearc.confmaster.context.Context;
+import com.navercorp.nbasearc.confmaster.server.ThreadPool;
+
+/**
+ * Runs the workflows of a partition group one at a time, and the workflows of
+ * different partition groups in parallel.
+ * <p>
+ * Workflows of a partition group hold its write lock, so they would run one by
+ * one anyway. Without this queue, the waiting ones hold worker threads, and a
+ * partition group that is stuck can use up the whole pool. Here a partition
+ * group occupies at most one worker thread, and its next workflow is put at the
+ * end of the pool's queue, so that partition groups take turns.
+ */
+class PgWorkflowQueue {
+
+    private final ThreadPool pool;
+    
+    // The key of a partition group that has a running workflow -> waiting workflows
+    private final Map<String, LinkedList<FutureTask<Object>>> queues = 
+            new HashMap<String, LinkedList<FutureTask<Object>>>();
+    
+    PgWorkflowQueue(ThreadPool pool) {
+        this.pool = pool;
+    }
+    
+    Future<Object> perform(String key, Context<Object> c) {
+        FutureTask<Object> task = new FutureTask<Object>(c);
+        enqueue(key, task);
+        return task;
+    }
+    
+    Future<Object> performDelayed(final String key, Context<Object> c,
+            long delay, TimeUnit timeUnit) {
+        final FutureTask<Object> task = new FutureTask<Object>(c);
+        pool.executeDelayed(new Runnable() {
+            @Override
+            public void run() {
+                enqueue(key, task);
+            }
+        }, delay, timeUnit);
+        return task;
+    }
+    
+    /**
+     * @return the number of workflows of a partition group that wait for a running one
+     */
+    int getWaitingCount(String key) {
+        synchronized (queues) {
+            LinkedList<FutureTask<Object>> q = queues.get(key);
+            return q == null ? 0 : q.size();
+        }
+    }
+    
+    private void enqueue(String key, FutureTask<Object> task) {
+        synchronized (queues) {
+            LinkedList<FutureTask<Object>> q = queues.get(key);
+            if (q != null) {
+                q.add(task);
+                return;
+            }
+            queues.put(key, new LinkedList<FutureTask<Object>>());
+        }
+        dispatch(key, task);
+    }
+    
+    private void dispatch(final String key, final FutureTask<Object> task) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    next(key);
+                }
+            }
+        });
+    }
+    
+    private void next(String key) {
+        FutureTask<Object> task;
+        synchronized (queues) {
+            task = queues.get(key).poll();
+            if (task == null) {
+                queues.remove(key);
+                return;
+            }
+        }
+        dispatch(key, task);
+    }
+
+}
@@ -34,9 +34,17 @@ public class RARoleLconn {
     @Autowired
     WorkflowLogger workflowLogger;
 
+    /**
+     * Sends 'role lconn' only. The znode is updated by
+     * {@link #updateZNodeAsLconn} on the workflow thread.
+     */
     public void roleLconn(PartitionGroupServer pgs, Color color, long jobID)
             throws MgmtSmrCommandException {
         pgs.roleLconn();
+    }
+
+    public void updateZNodeAsLconn(PartitionGroupServer pgs, Color color, long jobID)
+            throws MgmtSmrCommandException {
         Logger.info("{} {}->{} {}->{}", new Object[] { pgs,
                 pgs.getRole(), PGS_ROLE_LCONN,
                 pgs.getColor(), color });
@@ -20,6 +20,7 @@ import static com.navercorp.nbasearc.confmaster.Constant.*;
 import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
 import static com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +30,7 @@ import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandExcep
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSetquorumException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtZooKeeperException;
 import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.JobIDGenerator;
 import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
@@ -46,6 +48,7 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
     final WorkflowLogger workflowLogger;
     
     final RARoleLconn roleLconn;
+    final RoleFanOut fanOut;
 
     public RoleAdjustmentWorkflow(PartitionGroup pg, boolean cascading,
             ApplicationContext context) {
@@ -58,6 +61,7 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
         this.workflowLogger = context.getBean(WorkflowLogger.class);
         
         this.roleLconn = context.getBean(RARoleLconn.class);
+        this.fanOut = context.getBean(RoleFanOut.class);
     }
 
     @Override
@@ -68,6 +72,7 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
                         container.getPgsList(pg.getClusterName(), pg.getName()));
         
         final int pgQ = pg.getQuorum();
+        final List<PartitionGroupServer> lconnTargets = new ArrayList<PartitionGroupServer>();
         for (PartitionGroupServer pgs : joinedPgsList) {
             final String role = pgs.getRole();
             final Color color = pgs.getColor();
@@ -76,7 +81,8 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
             if (role == PGS_ROLE_NONE && color != RED && pgQ - d > 0) {
                 toRed(pgs, joinedPgsList);
             } else if (role != PGS_ROLE_NONE && color == RED) {
-                toLconn(pgs);
+                // RED to YELLOW does not change d, so it is done at once after the loop.
+                lconnTargets.add(pgs);
             } else if (role == PGS_ROLE_LCONN && color == GREEN) {
                 toBlue(pgs);
             } else if ((role == PGS_ROLE_MASTER || role == PGS_ROLE_SLAVE)
@@ -84,6 +90,10 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
                 toGreen(pgs);
             }
         }
+
+        if (!lconnTargets.isEmpty()) {
+            toLconn(lconnTargets);
+        }
     }
 
     private void toRed(PartitionGroupServer pgs,
@@ -92,6 +102,7 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
         PartitionGroupServer master = pg.getMaster(joinedPgsList);
         if (master != null) {
             roleLconn.roleLconn(master, BLUE, jobID);
+            roleLconn.updateZNodeAsLconn(master, BLUE, jobID);
         }
 
         Logger.info("{} {}->{} {}->{}", new Object[] { pgs,
@@ -105,10 +116,21 @@ public class RoleAdjustmentWorkflow extends CascadingWorkflow {
         container.getCluster(pg.getClusterName()).performUpdateGwAff();
     }
 
-    private void toLconn(PartitionGroupServer pgs) throws MgmtSmrCommandException {
-        roleLconn.roleLconn(pgs, YELLOW, jobID);
+    private void toLconn(List<PartitionGroupServer> pgsList) throws MgmtSmrCommandException {
+        RoleFanOut.Group<Void> lconn = fanOut.execute("role lconn", ContextType.RA,
+                pgsList, new RoleFanOut.Command<Void>() {
+                    @Override
+                    public Void execute(PartitionGroupServer pgs) throws Exception {
+                        roleLconn.roleLconn(pgs, YELLOW, jobID);
+                        return null;
+                    }
+                });
+        for (PartitionGroupServer pgs : lconn.getSucceeded()) {
+            roleLconn.updateZNodeAsLconn(pgs, YELLOW, jobID);
+        }
 
         container.getCluster(pg.getClusterName()).performUpdateGwAff();
+        lconn.checkFailure();
     }
 
     private void toBlue(PartitionGroupServer pgs) throws MgmtZooKeeperException {
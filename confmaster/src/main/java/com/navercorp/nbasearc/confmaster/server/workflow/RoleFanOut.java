@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.workflow;
+
+import static org.apache.log4j.Level.INFO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
+import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+import com.navercorp.nbasearc.confmaster.logger.LogHistory;
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer;
+
+/**
+ * Sends an SMR command to a group of PGSes at once and waits for all of
+ * them with one deadline.
+ * <p>
+ * Only SMR commands are sent here. ZooKeeper updates of a phase are made
+ * by the workflow thread after the whole group has replied, so a reply
+ * that arrives after the deadline never changes the state of a cluster,
+ * and a phase of a workflow starts only after the previous phase ends.
+ * Logs of a command are appended to the log history of the workflow.
+ */
+@Component
+public class RoleFanOut {
+
+    @Autowired
+    private Config config;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "RoleFanOut-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    public interface Command<T> {
+        T execute(PartitionGroupServer pgs) throws Exception;
+    }
+
+    public interface Parser<T> {
+        T parse(PartitionGroupServer pgs, String reply) throws Exception;
+    }
+
+    /**
+     * Sends a query to a group of PGSes through their pipelined management
+     * connections and waits for all of them with one deadline. No thread is
+     * taken for a PGS, and replies are parsed by the calling thread.
+     */
+    public <T> Group<T> query(String name, List<PartitionGroupServer> pgsList,
+            String query, Parser<T> parser) {
+        final long timeoutMillis = config.getServerJobWorkflowRoleTimeout();
+        final Group<T> group = new Group<T>(name, pgsList.size());
+
+        final List<Future<String>> replies = new ArrayList<Future<String>>(pgsList.size());
+        for (PartitionGroupServer pgs : pgsList) {
+            replies.add(pgs.executeQueryAsync(query));
+        }
+
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (int i = 0; i < pgsList.size(); i++) {
+            final PartitionGroupServer pgs = pgsList.get(i);
+            try {
+                String reply = replies.get(i).get(
+                        Math.max(deadline - System.currentTimeMillis(), 0),
+                        TimeUnit.MILLISECONDS);
+                group.add(pgs, parser.parse(pgs, reply), null);
+            } catch (TimeoutException e) {
+                group.add(pgs, null, new MgmtSmrCommandException(
+                        name + " timeout. " + pgs + ", timeout: " + timeoutMillis + "ms"));
+            } catch (ExecutionException e) {
+                Logger.info("{} fail. {}, {}", new Object[]{name, pgs, e.getCause().getMessage()});
+                group.add(pgs, null, (Exception) e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                group.add(pgs, null, e);
+            } catch (Exception e) {
+                group.add(pgs, null, e);
+            }
+        }
+        return group;
+    }
+
+    public <T> Group<T> execute(String name, ContextType type,
+            List<PartitionGroupServer> pgsList, Command<T> command) {
+        return execute(name, type, pgsList, command,
+                config.getServerJobWorkflowRoleTimeout());
+    }
+
+    public <T> Group<T> execute(String name, ContextType type,
+            List<PartitionGroupServer> pgsList, Command<T> command,
+            long timeoutMillis) {
+        final Group<T> group = new Group<T>(name, pgsList.size());
+        if (pgsList.isEmpty()) {
+            return group;
+        }
+
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (PartitionGroupServer pgs : pgsList) {
+            Task<T> task = new Task<T>(group, pgs, type, command);
+            group.tasks.add(task);
+            executor.execute(task);
+        }
+
+        try {
+            group.latch.await(Math.max(deadline - System.currentTimeMillis(), 0),
+                    TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        group.collect(timeoutMillis);
+        return group;
+    }
+
+    /**
+     * Results of a command, in the order of the PGSes given.
+     */
+    public static class Group<T> {
+        private final String name;
+        private final List<Task<T>> tasks;
+        private final CountDownLatch latch;
+        private boolean collected = false;
+
+        private Group(String name, int size) {
+            this.name = name;
+            this.tasks = new ArrayList<Task<T>>(size);
+            this.latch = new CountDownLatch(size);
+        }
+
+        private void add(PartitionGroupServer pgs, T result, Exception exception) {
+            Task<T> task = new Task<T>(this, pgs, null, null);
+            task.result = result;
+            task.exception = exception;
+            task.done = true;
+            tasks.add(task);
+        }
+
+        private synchronized void collect(long timeoutMillis) {
+            collected = true;
+            for (Task<T> task : tasks) {
+                if (task.done) {
+                    Logger.log(task.logHistory);
+                } else {
+                    task.exception = new MgmtSmrCommandException(
+                            name + " timeout. " + task.pgs + ", timeout: " + timeoutMillis + "ms");
+                }
+            }
+        }
+
+        public List<PartitionGroupServer> getSucceeded() {
+            List<PartitionGroupServer> succeeded = new ArrayList<PartitionGroupServer>();
+            for (Task<T> task : tasks) {
+                if (task.exception == null) {
+                    succeeded.add(task.pgs);
+                }
+            }
+            return succeeded;
+        }
+
+        public T get(PartitionGroupServer pgs) {
+            for (Task<T> task : tasks) {
+                if (task.pgs == pgs) {
+                    return task.result;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Throws the first failure of the group, if there is one.
+         */
+        public void checkFailure() throws MgmtSmrCommandException {
+            for (Task<T> task : tasks) {
+                if (task.exception instanceof MgmtSmrCommandException) {
+                    throw (MgmtSmrCommandException) task.exception;
+                } else if (task.exception != null) {
+                    throw new MgmtSmrCommandException(name + " fail. "
+                            + task.pgs + ", " + task.exception.getMessage());
+                }
+            }
+        }
+    }
+
+    private static class Task<T> implements Runnable {
+        private final Group<T> group;
+        private final PartitionGroupServer pgs;
+        private final ContextType type;
+        private final Command<T> command;
+
+        private T result;
+        private Exception exception;
+        private LogHistory logHistory;
+        private boolean done = false;
+
+        private Task(Group<T> group, PartitionGroupServer pgs,
+                ContextType type, Command<T> command) {
+            this.group = group;
+            this.pgs = pgs;
+            this.type = type;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            Logger.setContextType(type);
+            T r = null;
+            Exception ex = null;
+            try {
+                r = command.execute(pgs);
+            } catch (Exception e) {
+                ex = e;
+            }
+
+            synchronized (group) {
+                if (group.collected) {
+                    // The workflow has gone on without this reply.
+                    Logger.info("{} replied after the deadline. {}", group.name, pgs);
+                    Logger.flush(INFO);
+                } else {
+                    result = r;
+                    exception = ex;
+                    logHistory = Logger.popLogHistory();
+                    done = true;
+                }
+            }
+            group.latch.countDown();
+        }
+    }
+
+}
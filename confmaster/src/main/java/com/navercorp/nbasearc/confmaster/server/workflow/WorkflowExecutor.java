@@ -20,8 +20,10 @@ import static com.navercorp.nbasearc.confmaster.server.mapping.ArityType.ANY;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -32,10 +34,14 @@ import org.springframework.stereotype.Service;
 
 import com.navercorp.nbasearc.confmaster.ConfMaster;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtDuplicatedReservedCallException;
+import com.navercorp.nbasearc.confmaster.context.Context;
 import com.navercorp.nbasearc.confmaster.context.ContextChain;
 import com.navercorp.nbasearc.confmaster.context.ContextType;
 import com.navercorp.nbasearc.confmaster.context.ExecutionContext;
+import com.navercorp.nbasearc.confmaster.context.ReservedCall;
 import com.navercorp.nbasearc.confmaster.server.ThreadPool;
+import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
+import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroup;
 import com.navercorp.nbasearc.confmaster.server.leaderelection.LeaderState;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockCaller;
 import com.navercorp.nbasearc.confmaster.server.mapping.LockMapping;
@@ -54,10 +60,17 @@ public class WorkflowExecutor {
     @Autowired
     private ConfMaster confMaster;
     
+    @Autowired
+    private ClusterComponentContainer container;
+    
     private Map<String, WorkflowCaller> workflowMethods = new HashMap<String, WorkflowCaller>();
     private Map<String, LockCaller> lockMethods = new HashMap<String, LockCaller>();
     private Map<String, ContextType> ctMap = new HashMap<String, ContextType>();
     
+    // Workflows that hold the write lock of a partition group
+    private Set<String> pgScoped = new HashSet<String>();
+    private PgWorkflowQueue pgQueue;
+    
     public WorkflowExecutor() {
         ctMap.put(COMMON_STATE_DECISION, ContextType.HB);
         ctMap.put(PGS_STATE_DECISION, ContextType.HB);
@@ -71,6 +84,14 @@ public class WorkflowExecutor {
         ctMap.put(OPINION_PUBLISH, ContextType.HB);
         ctMap.put(TOTAL_INSPECTION, ContextType.HB);
         ctMap.put(UPDATE_GATEWAY_AFFINITY, ContextType.WF);
+        
+        pgScoped.add(PGS_STATE_DECISION);
+        pgScoped.add(BLUE_JOIN);
+        pgScoped.add(MASTER_ELECTION);
+        pgScoped.add(MEMBERSHIP_GRANT);
+        pgScoped.add(ROLE_ADJUSTMENT);
+        pgScoped.add(QUORUM_ADJUSTMENT);
+        pgScoped.add(YELLOW_JOIN);
     }
     
     public static final String COMMON_STATE_DECISION = "CommonStateDecision";
@@ -87,6 +108,8 @@ public class WorkflowExecutor {
     public static final String UPDATE_GATEWAY_AFFINITY = "UpdateGatewayAffinity";
     
     public void initialize() {
+        pgQueue = new PgWorkflowQueue(executor);
+        
         Map<String, Object> servies = context.getBeansWithAnnotation(Service.class);
         
         for (Object serviceInstance : servies.values()) {
@@ -155,6 +178,10 @@ public class WorkflowExecutor {
                 workflow, objects, context, workflowMethods, lockMethods);
         ExecutionContext<Object> c = 
                 new ExecutionContext<Object>(wf, getContextType(workflow), executor);
+        final String pgKey = getPgKey(workflow, objects);
+        if (pgKey != null) {
+            return pgQueue.perform(pgKey, c);
+        }
         return executor.perform(c);
     }
     
@@ -174,8 +201,13 @@ public class WorkflowExecutor {
         }
         WorkflowTemplate wf = new WorkflowTemplate(
                 workflow, objects, context, workflowMethods, lockMethods);
+        wf.delay(timeUnit.toMillis(delay));
         ExecutionContext<Object> c = 
                 new ExecutionContext<Object>(wf, getContextType(workflow), executor);
+        final String pgKey = getPgKey(workflow, objects);
+        if (pgKey != null) {
+            return pgQueue.performDelayed(pgKey, c, delay, timeUnit);
+        }
         return executor.performDelayed(c, delay, timeUnit);
     }
 
@@ -191,7 +223,8 @@ public class WorkflowExecutor {
         }
         WorkflowTemplate wf = new WorkflowTemplate(
                 workflow, objects, context, workflowMethods, lockMethods);
-        ContextChain.setNextJob(wf, 0, TimeUnit.MILLISECONDS);
+        ContextChain.setNextJob(wf, 0, TimeUnit.MILLISECONDS,
+                getScheduler(workflow, objects));
     }
 
     public void performContextContinueDelayed(String workflow,
@@ -207,7 +240,35 @@ public class WorkflowExecutor {
         }
         WorkflowTemplate wf = new WorkflowTemplate(
                 workflow, objects, context, workflowMethods, lockMethods);
-        ContextChain.setNextJob(wf, delay, timeUnit);
+        ContextChain.setNextJob(wf, delay, timeUnit,
+                getScheduler(workflow, objects));
+    }
+    
+    /*
+     * A workflow that continues a context still waits for the other
+     * workflows of its partition group.
+     */
+    private ReservedCall.Scheduler getScheduler(String workflow, Object[] args) {
+        final String pgKey = getPgKey(workflow, args);
+        if (pgKey == null) {
+            return null;
+        }
+        
+        return new ReservedCall.Scheduler() {
+            @Override
+            public void schedule(Context<Object> c, long delay, TimeUnit timeUnit) {
+                pgQueue.performDelayed(pgKey, c, delay, timeUnit);
+            }
+        };
+    }
+    
+    private String getPgKey(String workflow, Object[] args) {
+        if (!pgScoped.contains(workflow)) {
+            return null;
+        }
+        
+        PartitionGroup pg = workflowMethods.get(workflow).getPartitionGroup(args, 0, container);
+        return pg == null ? null : pg.getPath();
     }
     
     public boolean checkPrivilege(String workflow) {
@@ -16,12 +16,17 @@
 
 package com.navercorp.nbasearc.confmaster.server.workflow;
 
+import static org.apache.log4j.Level.INFO;
+
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException.NoNodeException;
@@ -29,7 +34,6 @@ import org.apache.zookeeper.KeeperException.NodeExistsException;
 import org.apache.zookeeper.Op;
 import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.ZooDefs;
-import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
@@ -49,6 +53,12 @@ import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
 import com.navercorp.nbasearc.confmaster.server.ZooKeeperHolder;
 import com.navercorp.nbasearc.confmaster.server.cluster.PathUtil;
 
+/**
+ * Workflow logs are kept in a ring buffer in memory and written to ZooKeeper
+ * by a background thread, so that workflows do not wait for ZooKeeper to log.
+ * Logs in the ring buffer are served from memory. Logs that were written
+ * before this confmaster became the leader are read from ZooKeeper.
+ */
 @Repository
 public class WorkflowLogger {
     
@@ -66,8 +76,33 @@ public class WorkflowLogger {
 
     private final MemoryObjectMapper mapper = new MemoryObjectMapper();
     
+    /* logs from numOfFirstLogInMemory are in the ring buffer, the index of a log is logNo % ring.length. */
+    private ZkWorkflowLog[] ring = new ZkWorkflowLog[0];
+    private long numOfFirstLogInMemory = Long.MAX_VALUE;
+    
+    private List<PersistRequest> pendingRequests = new ArrayList<PersistRequest>();
+    private boolean persisting = false;
+    private final ExecutorService persister = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "WorkflowLogPersister");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    private final Runnable persistJob = new Runnable() {
+        @Override
+        public void run() {
+            persistPendingRequests();
+        }
+    };
+    
     public synchronized void initialize() throws MgmtZooKeeperException,
             NoNodeException {
+        // Logs of a previous term have to be in ZooKeeper before counting them.
+        waitForPersistence();
+        
         try {
             String zeroLogNo = "0";
             zk.createPersistentZNode(
@@ -106,33 +141,28 @@ public class WorkflowLogger {
         }
         
         numLogs = children.size();
+        
+        ring = new ZkWorkflowLog[config.getServerJobWorkflowLogMax()];
+        numOfFirstLogInMemory = getLast();
     }
     
     public synchronized void log(long jobID, String severity, String name,
             String type, String clusterName, String msg, String jsonArg) {
+        if (ring.length == 0) {
+            // There is no log number to give before initialize().
+            Logger.warn("Workflow log before initialization is not kept. {} {} {}",
+                    new Object[]{name, clusterName, msg});
+            return;
+        }
+        
         while (numLogs >= config.getServerJobWorkflowLogMax()) {
             deleteLog(getNumOfStartLog());
         }
         
-        byte[] data;
-        String path = pathOfLog(getLast());
-        List<Op> ops = new ArrayList<Op>();
         ZkWorkflowLog workflowLog = new ZkWorkflowLog(getLast(), new Date(),
                 jobID, type, severity, name, msg, clusterName, jsonArg);
-        
-        try {
-            data = mapper.writeValueAsBytes(workflowLog);
-            Long maxLogNo = getNumOfStartLog() + getNumLogs();
-            
-            ops.add(Op.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
-            ops.add(Op.setData(rootPathOfLog(), 
-                    String.valueOf(maxLogNo).getBytes(config.getCharset()), -1));
-            
-            List<OpResult> results = zk.multi(ops);
-            zk.handleResultsOfMulti(results);
-        } catch (Exception e) {
-            Logger.error(workflowLog.toString(), e);
-        }
+        ring[(int) (workflowLog.getLogID() % ring.length)] = workflowLog;
+        persist(new PersistRequest(workflowLog, -1));
         Logger.info(workflowLog.toStringWithoutInfo());
         
         increaseNumLogs();
@@ -173,6 +203,14 @@ public class WorkflowLogger {
 
     public synchronized ZkWorkflowLog getLog(long logNo)
             throws MgmtZooKeeperException {
+        if (logNo < getNumOfStartLog() || getLast() <= logNo) {
+            Logger.error("workflog log " + logNo + " is already deleted.");
+            return null;
+        }
+        if (logNo >= numOfFirstLogInMemory) {
+            return ring[(int) (logNo % ring.length)];
+        }
+        
         String path = rootPathOfLog() + "/" + String.valueOf(logNo);
         
         Stat stat = new Stat();
@@ -192,6 +230,9 @@ public class WorkflowLogger {
         if (logNo >= this.getLast()) {
             return null;
         }
+        if (logNo >= numOfFirstLogInMemory) {
+            return ring[(int) (logNo % ring.length)];
+        }
         
         String path = rootPathOfLog() + "/" + String.valueOf(logNo);
         
@@ -206,18 +247,123 @@ public class WorkflowLogger {
             return false;
         }
         
-        String path = rootPathOfLog() + "/" + String.valueOf(getNumOfStartLog());
+        long logNo = getNumOfStartLog();
+        if (logNo >= numOfFirstLogInMemory) {
+            ring[(int) (logNo % ring.length)] = null;
+        }
         increaseNumOfStartLog();
+        persist(new PersistRequest(null, logNo));
         
+        decreaseNumLogs();
+        return true;
+    }
+    
+    private void persist(PersistRequest request) {
+        pendingRequests.add(request);
+        if (!persisting) {
+            persisting = true;
+            persister.execute(persistJob);
+        }
+    }
+    
+    /**
+     * Wait until all logs and deletions are written to ZooKeeper.
+     */
+    public synchronized void waitForPersistence() {
+        while (persisting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /*
+     * Runs in the persister thread. Requests that are made while a multi is in
+     * flight are written together by the next multi.
+     */
+    private void persistPendingRequests() {
+        while (true) {
+            List<PersistRequest> requests;
+            long maxLogNo;
+            synchronized (this) {
+                if (pendingRequests.isEmpty()) {
+                    persisting = false;
+                    notifyAll();
+                    break;
+                }
+                requests = pendingRequests;
+                pendingRequests = new ArrayList<PersistRequest>();
+                // the number of the last created log
+                maxLogNo = getLast() - 1;
+            }
+            
+            List<Op> ops = new ArrayList<Op>();
+            for (PersistRequest request : requests) {
+                request.addOps(ops);
+            }
+            ops.add(maxLogNoOp(maxLogNo));
+            
+            try {
+                zk.handleResultsOfMulti(zk.multi(ops));
+            } catch (MgmtZooKeeperException e) {
+                // Write them one by one, so that a bad request fails alone.
+                for (PersistRequest request : requests) {
+                    request.persistAlone(maxLogNo);
+                }
+            }
+        }
+        Logger.flush(INFO);
+    }
+    
+    private Op maxLogNoOp(long maxLogNo) {
         try {
-            zk.deleteZNode(path, -1);
-        } catch (MgmtZooKeeperException e) {
-            Logger.error(
-                    "Delete workflow log in zookeeper fail. path: {}", path, e);
+            return Op.setData(rootPathOfLog(), 
+                    String.valueOf(maxLogNo).getBytes(config.getCharset()), -1);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(config.getCharset() + " is unknown.");
         }
+    }
+    
+    private class PersistRequest {
+        private final ZkWorkflowLog created;
+        private final long deletedLogNo;
         
-        decreaseNumLogs();
-        return true;
+        private PersistRequest(ZkWorkflowLog created, long deletedLogNo) {
+            this.created = created;
+            this.deletedLogNo = deletedLogNo;
+        }
+        
+        private void addOps(List<Op> ops) {
+            if (created != null) {
+                ops.add(Op.create(pathOfLog(created.getLogID()),
+                        mapper.writeValueAsBytes(created),
+                        ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            } else {
+                ops.add(Op.delete(pathOfLog(deletedLogNo), -1));
+            }
+        }
+        
+        private void persistAlone(long maxLogNo) {
+            try {
+                List<Op> ops = new ArrayList<Op>();
+                addOps(ops);
+                if (created != null) {
+                    ops.add(maxLogNoOp(maxLogNo));
+                }
+                List<OpResult> results = zk.multi(ops);
+                zk.handleResultsOfMulti(results);
+            } catch (Exception e) {
+                if (created != null) {
+                    Logger.error(created.toString(), e);
+                } else {
+                    Logger.error("Delete workflow log in zookeeper fail. path: {}",
+                            pathOfLog(deletedLogNo), e);
+                }
+            }
+        }
     }
 
     public synchronized int getNumLogs() {
@@ -27,7 +27,6 @@ import java.util.concurrent.Callable;
 
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
-import org.springframework.core.convert.support.DefaultConversionService;
 
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtPrivilegeViolationException;
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
@@ -52,11 +51,11 @@ public class WorkflowTemplate implements Callable<Object> {
     private final Map<String, WorkflowCaller> workflowMethods;
     private final Map<String, LockCaller> lockMethods;
     
-    private final DefaultConversionService cs = new DefaultConversionService();
     private final ClusterComponentContainer container;
     
     private boolean doneIncreasingPgWfCnt = false;
     private PartitionGroup pg;
+    private long readyTime = System.currentTimeMillis();
     
     public WorkflowTemplate(String workflow, Object[] args, 
             ApplicationContext context, Map<String, WorkflowCaller> workflowMethods, 
@@ -70,6 +69,10 @@ public class WorkflowTemplate implements Callable<Object> {
         increaseWorkflowCountOfPg();
     }
     
+    void delay(long delayMillis) {
+        readyTime += delayMillis;
+    }
+    
     @Override
     public Object call() {
         HierarchicalLockHelper lockHelper = new HierarchicalLockHelper(context);
@@ -99,7 +102,7 @@ public class WorkflowTemplate implements Callable<Object> {
                 Logger.flush(DEBUG);
             }
         } finally {
-            decreaseWorkflowCountOfPg();
+            decreaseWorkflowCountOfPg(start);
         	
             // Release lock
             try {
@@ -176,8 +179,7 @@ public class WorkflowTemplate implements Callable<Object> {
             params[0] = lockHelper;
             
             for (int i = 1; i < lock.getParamLength(); i ++) {
-                Class<?> paramType = lock.getParamType(i);
-                params[i] = cs.convert(args[i - 1], paramType);
+                params[i] = lock.convert(i, args[i - 1]);
             }
         }
         
@@ -214,11 +216,10 @@ public class WorkflowTemplate implements Callable<Object> {
         Object[] params = new Object[command.getParamLength()];
         
         for (int i = 0; i < command.getParamLength(); i ++) {
-            Class<?> paramType = command.getParamType(i);
-            ArgType type = command.getArgType(paramType);
+            ArgType type = command.getArgType(i);
             
             if (type == null) {
-                params[i] = cs.convert(args[i], paramType);
+                params[i] = command.convert(i, args[i]);
             } else if (type == STRING_VARG) {
                 Object o[] = new Object[args.length - i - 1];
                 for (int j = 0; j < args.length - i - 1; j++) {
@@ -254,16 +255,28 @@ public class WorkflowTemplate implements Callable<Object> {
         }
         pg.incWfCnt();
         doneIncreasingPgWfCnt = true;
+        increaseGenerationOfCluster();
     }
 
-    private void decreaseWorkflowCountOfPg() {
+    private void decreaseWorkflowCountOfPg(long start) {
         try {
             if (doneIncreasingPgWfCnt) {
+                pg.wfDone(Math.max(start - readyTime, 0),
+                        System.currentTimeMillis() - start);
                 pg.decWfCnt();
+                increaseGenerationOfCluster();
             }
         } catch (Exception e) {
             Logger.error("Failed to decrease workflow count of PG.", e);
         }
     }
 
+    // The workflow count is a part of cluster_info and pg_info replies.
+    private void increaseGenerationOfCluster() {
+        final Cluster cluster = container.getCluster(pg.getClusterName());
+        if (cluster != null) {
+            cluster.increaseGeneration();
+        }
+    }
+
 }
@@ -37,12 +37,18 @@ public class YJRoleSlave {
     @Autowired
     protected WorkflowLogger workflowLogger;
 
+    /**
+     * Sends 'role slave' to a PGS. It runs concurrently with the other PGSes
+     * of the PG, so it must not update ZooKeeper.
+     */
     public void roleSlave(PartitionGroupServer pgs, PartitionGroup pg,
             LogSequence logSeq, PartitionGroupServer master, long jobID)
             throws MgmtSmrCommandException {
-        final String masterVersion = master.smrVersion();
         pgs.roleSlave(pg, logSeq, master, YELLOW, jobID, workflowLogger);
+    }
 
+    public void updateZNodeAsSlave(PartitionGroupServer pgs, PartitionGroup pg,
+            String masterVersion, long jobID) throws MgmtSmrCommandException {
         Logger.info("{} {}->{} {}->{}", new Object[] { pgs,
                 pgs.getRole(), PGS_ROLE_SLAVE,
                 pgs.getColor(), YELLOW });
@@ -20,6 +20,7 @@ import static com.navercorp.nbasearc.confmaster.Constant.*;
 import static com.navercorp.nbasearc.confmaster.Constant.Color.*;
 import static com.navercorp.nbasearc.confmaster.server.workflow.WorkflowExecutor.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +28,7 @@ import org.springframework.context.ApplicationContext;
 
 import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
 import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
 import com.navercorp.nbasearc.confmaster.logger.Logger;
 import com.navercorp.nbasearc.confmaster.server.JobIDGenerator;
 import com.navercorp.nbasearc.confmaster.server.cluster.ClusterComponentContainer;
@@ -43,6 +45,7 @@ public class YellowJoinWorkflow extends CascadingWorkflow {
     final WorkflowLogger workflowLogger;
     
     final YJRoleSlave roleSlave;
+    final RoleFanOut fanOut;
 
     public YellowJoinWorkflow(PartitionGroup pg, boolean cascading,
             ApplicationContext context) {
@@ -54,6 +57,7 @@ public class YellowJoinWorkflow extends CascadingWorkflow {
         this.workflowLogger = context.getBean(WorkflowLogger.class);
         
         this.roleSlave = context.getBean(YJRoleSlave.class);
+        this.fanOut = context.getBean(RoleFanOut.class);
     }
 
     @Override
@@ -66,14 +70,31 @@ public class YellowJoinWorkflow extends CascadingWorkflow {
             return;
         }
 
+        final List<PartitionGroupServer> slaveTargets = new ArrayList<PartitionGroupServer>();
         for (PartitionGroupServer pgs : joinedPgsList) {
             if (pgs.getColor() == YELLOW
                     && pgs.getRole().equals(PGS_ROLE_LCONN)) {
-                LogSequence log = pgs.getLogSeq();
-                roleSlave.roleSlave(pgs, pg, log, master, jobID);
+                slaveTargets.add(pgs);
             }
         }
 
+        if (!slaveTargets.isEmpty()) {
+            final String masterVersion = master.smrVersion();
+            RoleFanOut.Group<Void> join = fanOut.execute("role slave", ContextType.YJ,
+                    slaveTargets, new RoleFanOut.Command<Void>() {
+                        @Override
+                        public Void execute(PartitionGroupServer pgs) throws Exception {
+                            LogSequence log = pgs.getLogSeq();
+                            roleSlave.roleSlave(pgs, pg, log, master, jobID);
+                            return null;
+                        }
+                    });
+            for (PartitionGroupServer pgs : join.getSucceeded()) {
+                roleSlave.updateZNodeAsSlave(pgs, pg, masterVersion, jobID);
+            }
+            join.checkFailure();
+        }
+
         container.getCluster(pg.getClusterName()).performUpdateGwAff();
     }
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.heartbeat;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.zookeeper.KeeperException.NodeExistsException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.navercorp.nbasearc.confmaster.BasicSetting;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:applicationContext-test.xml")
+public class OpinionPublisherTest extends BasicSetting {
+
+    @Autowired
+    OpinionPublisher publisher;
+
+    final String path = "/opinion_publisher_test";
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        BasicSetting.beforeClass();
+    }
+
+    @Override
+    @Before
+    public void before() throws Exception {
+        super.before();
+        zk.createPersistentZNode(path);
+    }
+
+    @Override
+    @After
+    public void after() throws Exception {
+        super.after();
+    }
+
+    @Test
+    public void publish() throws Exception {
+        final int count = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < count; i++) {
+                final String opinionPath = path + "/" + i;
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        publisher.create(opinionPath, new byte[] {1});
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(count, zk.getChildren(path).size());
+
+        // An error is reported to the caller of the failed write.
+        try {
+            publisher.create(path + "/0", new byte[] {1});
+            fail();
+        } catch (NodeExistsException e) {
+        }
+
+        for (int i = 0; i < count; i++) {
+            publisher.delete(path + "/" + i);
+        }
+        publisher.delete(path + "/0");
+        assertEquals(0, zk.getChildren(path).size());
+    }
+}
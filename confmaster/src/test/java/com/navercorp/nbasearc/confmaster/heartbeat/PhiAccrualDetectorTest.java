@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.navercorp.nbasearc.confmaster.heartbeat;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PhiAccrualDetectorTest {
+
+    @Test
+    public void regularHeartbeats() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 0);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+
+        assertEquals(0.0, detector.phi(now), 0.01);
+        assertTrue(detector.phi(now + 1000) < 1.0);
+        assertTrue(detector.phi(now + 1500) > 3.0);
+        assertTrue(detector.phi(now + 1500) < 8.0);
+        assertTrue(detector.phi(now + 1700) > 8.0);
+
+        // phi grows as a reply is late.
+        double prev = 0.0;
+        for (long t = now; t < now + 3000; t += 100) {
+            double phi = detector.phi(t);
+            assertTrue(phi >= prev);
+            prev = phi;
+        }
+        assertEquals(PhiAccrualDetector.MAX_PHI, detector.phi(now + 100000), 0.0);
+    }
+
+    @Test
+    public void jitteryHeartbeats() {
+        PhiAccrualDetector regular = new PhiAccrualDetector(100, 0);
+        PhiAccrualDetector jittery = new PhiAccrualDetector(100, 0);
+        long now = 0;
+        long jitteryNow = 0;
+        for (int i = 0; i < 40; i++) {
+            now += 1000;
+            jitteryNow += i % 2 == 0 ? 1300 : 700;
+            regular.heartbeat(now);
+            jittery.heartbeat(jitteryNow);
+        }
+
+        // A target of a congested network is suspected later.
+        assertTrue(jittery.phi(jitteryNow + 1700) < regular.phi(now + 1700));
+        assertTrue(jittery.phi(jitteryNow + 1700) < 8.0);
+    }
+
+    @Test
+    public void notEnoughSamples() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 0);
+        assertEquals(0.0, detector.phi(100000), 0.0);
+
+        for (int i = 1; i <= PhiAccrualDetector.MIN_SAMPLES + 1; i++) {
+            assertEquals(0.0, detector.phi(100000), 0.0);
+            detector.heartbeat(i * 1000);
+        }
+        assertTrue(detector.phi(100000) > 8.0);
+    }
+
+    @Test
+    public void disconnected() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 0);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+        detector.disconnected();
+        assertEquals(0.0, detector.phi(now + 10000), 0.0);
+
+        // The time of the disconnection is not an interval.
+        now += 60000;
+        detector.heartbeat(now);
+        assertTrue(detector.phi(now + 1700) > 8.0);
+    }
+
+    @Test
+    public void acceptablePause() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 1100);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+
+        // A single late reply is not suspected.
+        assertEquals(0.0, detector.phi(now + 1099), 0.0);
+        assertTrue(detector.phi(now + 1100) < 1.0);
+    }
+
+    @Test
+    public void suspectedBeforeTimeout() {
+        final long heartbeatTimeout = 4000;
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 1100);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+
+        // Pongs stop, and the target is suspected long before the fixed timeout.
+        long suspected = now;
+        while (detector.phi(suspected) < 8.0) {
+            suspected += 47;
+        }
+        assertTrue(suspected - now < heartbeatTimeout / 2);
+    }
+
+    @Test
+    public void urgentHeartbeats() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 0);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+            // A reply to an urgent ping right after a regular one.
+            detector.heartbeat(now + 10, false);
+            now += 10;
+        }
+
+        // Urgent replies are not intervals, but they are replies.
+        assertEquals(0.0, detector.phi(now), 0.01);
+        assertTrue(detector.phi(now + 1000) < 1.0);
+        assertTrue(detector.phi(now + 1700) > 8.0);
+    }
+
+    @Test
+    public void localPause() {
+        PhiAccrualDetector detector = new PhiAccrualDetector(100, 0);
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            now += 1000;
+            detector.heartbeat(now);
+        }
+
+        // The local loop stalls for 3 seconds in the middle of an interval.
+        long stallStart = now + 500;
+        long stallEnd = stallStart + 3000;
+        assertTrue(detector.phi(stallEnd) > 8.0);
+        detector.pause(stallStart, stallEnd);
+        assertTrue(detector.phi(stallEnd) < 1.0);
+        assertTrue(detector.phi(stallEnd + 1200) > 8.0);
+
+        // The reply after the stall is a regular interval.
+        detector.heartbeat(stallEnd + 500);
+        assertTrue(detector.phi(stallEnd + 1500) < 1.0);
+
+        // A reply read after the stall has begun is kept as it is.
+        now = stallEnd + 1500;
+        detector.heartbeat(now);
+        detector.pause(now - 100, now + 3000);
+        assertTrue(detector.phi(now + 3000) > 8.0);
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.io;
+
+import static com.navercorp.nbasearc.confmaster.Constant.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.confmaster.io.MultipleGatewayInvocator.Broadcast;
+import com.navercorp.nbasearc.confmaster.io.MultipleGatewayInvocator.Result;
+import com.navercorp.nbasearc.confmaster.server.cluster.Gateway;
+
+public class MultipleGatewayInvocatorTest {
+    
+    final long deadline = System.currentTimeMillis() + 10000L;
+    
+    @Test
+    public void all() throws Exception {
+        Broadcast broadcast = new Broadcast(3, 3);
+        broadcast.done(new Result(null, S2C_OK, 1));
+        broadcast.done(new Result(null, S2C_OK, 1));
+        broadcast.done(new Result(null, S2C_OK, 1));
+        assertTrue(broadcast.await(deadline));
+        
+        // The first failure aborts without waiting for the others.
+        broadcast = new Broadcast(3, 3);
+        broadcast.done(new Result(null, ERROR, 1));
+        assertFalse(broadcast.await(deadline));
+    }
+    
+    @Test
+    public void quorum() throws Exception {
+        Broadcast broadcast = new Broadcast(3, 2);
+        broadcast.done(new Result(null, ERROR, 1));
+        broadcast.done(new Result(null, S2C_OK, 1));
+        broadcast.done(new Result(null, S2C_OK, 1));
+        assertTrue(broadcast.await(deadline));
+        
+        broadcast = new Broadcast(3, 1);
+        broadcast.done(new Result(null, S2C_OK, 1));
+        assertTrue(broadcast.await(deadline));
+        
+        broadcast = new Broadcast(3, 2);
+        broadcast.done(new Result(null, ERROR, 1));
+        broadcast.done(new Result(null, ERROR, 1));
+        assertFalse(broadcast.await(deadline));
+        
+        assertTrue(new Broadcast(0, 0).await(deadline));
+    }
+    
+    @Test
+    public void deadline() throws Exception {
+        final Broadcast broadcast = new Broadcast(2, 2);
+        broadcast.done(new Result(null, S2C_OK, 1));
+        
+        long start = System.currentTimeMillis();
+        assertFalse(broadcast.await(start + 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        
+        Thread late = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                }
+                broadcast.done(new Result(null, S2C_OK, 100));
+            }
+        };
+        late.start();
+        assertTrue(broadcast.await(deadline));
+        late.join();
+    }
+    
+    @Test
+    public void slowGatewayFinishesBeforeRollback() throws Exception {
+        final Broadcast broadcast = new Broadcast(3, 1);
+        final AtomicBoolean slowFinished = new AtomicBoolean();
+        
+        assertTrue(broadcast.start());
+        broadcast.done(new Result(null, S2C_OK, 1));
+        broadcast.finish();
+        
+        // A slow gateway is still running its command after the quorum.
+        assertTrue(broadcast.start());
+        Thread slow = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                }
+                slowFinished.set(true);
+                broadcast.done(new Result(null, S2C_OK, 300));
+                broadcast.finish();
+            }
+        };
+        slow.start();
+        assertTrue(broadcast.await(deadline));
+        
+        // The caller starts its rollback only after the slow gateway is done,
+        // and a gateway that has not started yet is skipped.
+        assertTrue(broadcast.abort(deadline));
+        assertTrue(slowFinished.get());
+        assertFalse(broadcast.start());
+        slow.join();
+    }
+    
+    @Test
+    public void hungGatewayDoesNotHoldAbort() throws Exception {
+        final Broadcast broadcast = new Broadcast(2, 2);
+        
+        // A gateway never replies, and the other one is skipped.
+        assertTrue(broadcast.start());
+        final Map<Gateway, Result> results = broadcast.getResults();
+        
+        final long start = System.currentTimeMillis();
+        assertFalse(broadcast.abort(start + 200));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertFalse(broadcast.start());
+        
+        // Its late result does not reach the results taken by the caller.
+        broadcast.done(new Result(null, S2C_OK, 1000));
+        broadcast.finish();
+        assertTrue(results.isEmpty());
+    }
+    
+}
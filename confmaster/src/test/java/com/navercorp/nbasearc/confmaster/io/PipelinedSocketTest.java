@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.io;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelinedSocketTest {
+
+    EventSelector selector;
+    Thread loop;
+    volatile boolean shutdown = false;
+    
+    ServerSocket server;
+    final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+    final AtomicInteger connections = new AtomicInteger();
+
+    @Before
+    public void before() throws Exception {
+        selector = new EventSelector(10);
+        loop = new Thread() {
+            public void run() {
+                while (!shutdown) {
+                    selector.process();
+                }
+            }
+        };
+        loop.start();
+
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket s = server.accept();
+                        connections.incrementAndGet();
+                        new Thread() {
+                            public void run() {
+                                serve(s);
+                            }
+                        }.start();
+                    }
+                } catch (IOException e) {
+                    // Closed.
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        server.close();
+        shutdown = true;
+        loop.join();
+        selector.shutdown();
+    }
+
+    /*
+     * Replies "+OK <line>" in order, except "slow" that is replied after 2
+     * seconds and "hold" that is replied along with the next line.
+     */
+    private void serve(Socket s) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            String line;
+            String held = null;
+            while ((line = in.readLine()) != null) {
+                received.add(line);
+                if (line.equals("slow")) {
+                    Thread.sleep(2000);
+                } else if (line.equals("hold")) {
+                    held = line;
+                    continue;
+                }
+                
+                if (held != null) {
+                    out.print("+OK " + held + "\r\n");
+                    held = null;
+                }
+                out.print("+OK " + line + "\r\n");
+                out.flush();
+            }
+            s.close();
+        } catch (IOException e) {
+            // Closed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PipelinedSocket socket(int timeout) {
+        return new PipelinedSocket(selector, "127.0.0.1", server.getLocalPort(),
+                timeout, "\r\n", "UTF-8");
+    }
+
+    @Test
+    public void pipeline() throws Exception {
+        PipelinedSocket socket = socket(3000);
+
+        // "hold" is replied only after "release" is sent.
+        Future<String> hold = socket.submit("hold");
+        Future<String> release = socket.submit("release");
+        assertEquals("+OK hold", hold.get(3000, TimeUnit.MILLISECONDS));
+        assertEquals("+OK release", release.get(3000, TimeUnit.MILLISECONDS));
+
+        List<Future<String>> replies = new ArrayList<Future<String>>();
+        for (int i = 0; i < 100; i++) {
+            replies.add(socket.submit("q" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("+OK q" + i, replies.get(i).get(3000, TimeUnit.MILLISECONDS));
+        }
+        assertEquals("+OK sync", socket.execute("sync"));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void handshake() throws Exception {
+        PipelinedSocket socket = socket(3000);
+        final AtomicInteger disconnected = new AtomicInteger();
+        socket.setHandshaker(new PipelinedSocket.Handshaker() {
+            @Override
+            public String next(String reply) throws IOException {
+                if (reply == null) {
+                    return "hello";
+                }
+                assertEquals("+OK hello", reply);
+                return null;
+            }
+
+            @Override
+            public void disconnected() {
+                disconnected.incrementAndGet();
+            }
+        });
+
+        assertEquals("+OK q", socket.execute("q"));
+        assertEquals("hello", received.get(0));
+        assertEquals("q", received.get(1));
+
+        socket.close();
+        assertTrue(disconnected.get() > 0);
+        assertEquals("+OK q", socket.execute("q"));
+        assertEquals(2, connections.get());
+        assertEquals("hello", received.get(2));
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        PipelinedSocket socket = socket(300);
+
+        Future<String> slow = socket.submit("slow");
+        Future<String> next = socket.submit("next");
+        try {
+            slow.get(3000, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        // The connection is closed, since replies can no longer be matched.
+        try {
+            next.get(3000, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals("+OK q", socket.execute("q"));
+        assertTrue(connections.get() >= 2);
+    }
+
+    @Test
+    public void notConnectable() throws Exception {
+        PipelinedSocket socket = new PipelinedSocket(selector, "127.0.0.1", 1,
+                3000, "\r\n", "UTF-8");
+
+        long start = System.currentTimeMillis();
+        try {
+            socket.execute("q");
+            fail();
+        } catch (IOException e) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+}
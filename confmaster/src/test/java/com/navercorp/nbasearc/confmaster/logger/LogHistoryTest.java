@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.logger;
+
+import static org.apache.log4j.Level.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+
+public class LogHistoryTest {
+
+    @Test
+    public void format() {
+        LogHistory history = new LogHistory();
+        history.setContextType(ContextType.CC);
+        history.setMsgDecorator(new EpochMsgDecorator(7));
+        history.log(INFO, "{} and {}", new Object[] {1, "two"}, null);
+        
+        List<Log> logs = history.getLogs();
+        assertEquals(1, logs.size());
+        assertEquals("CC 7 1 and two", logs.get(0).getMessage());
+        assertTrue(logs.get(0).toString().endsWith(" INF "
+                + String.format("%03d", Thread.currentThread().getId())
+                + " CC 7 1 and two"));
+    }
+
+    @Test
+    public void argumentSnapshot() {
+        LogHistory history = new LogHistory();
+        List<String> state = new ArrayList<String>();
+        state.add("before");
+        Object[] args = new Object[] {state};
+        
+        history.log(INFO, "state {}", args, null);
+        state.set(0, "after");
+        
+        assertEquals("CC state [before]", history.getLogs().get(0).getMessage());
+        assertSame(state, args[0]);
+    }
+
+    @Test
+    public void formatLazily() {
+        LogHistory history = new LogHistory();
+        final int[] formatted = new int[1];
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                formatted[0]++;
+                return "arg";
+            }
+        };
+        
+        history.log(INFO, "{} {} {}", new Object[] {arg, 1, "two"}, null);
+        assertEquals(0, formatted[0]);
+        
+        assertEquals("CC arg 1 two", history.getLogs().get(0).getMessage());
+        assertEquals(1, formatted[0]);
+    }
+
+    @Test
+    public void flushWhenFull() {
+        LogHistory history = new LogHistory();
+        for (int i = 0; i < LogHistory.CAPACITY - 1; i++) {
+            history.log(DEBUG, "log");
+        }
+        assertEquals(LogHistory.CAPACITY - 1, history.getLogs().size());
+        
+        history.log(DEBUG, "log");
+        assertTrue(history.getLogs().isEmpty());
+        
+        LogHistory prev = new LogHistory();
+        prev.log(INFO, "prev");
+        history.log(prev);
+        assertEquals(1, history.getLogs().size());
+        
+        history.flush(INFO);
+        assertTrue(history.getLogs().isEmpty());
+    }
+
+}
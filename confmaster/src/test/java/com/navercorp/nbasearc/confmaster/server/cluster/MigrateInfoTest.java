@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MigrateInfoTest {
+
+    @Test
+    public void parse() {
+        MigrateInfo info = MigrateInfo.parse(
+                "+OK log:848339465 mig:848335460 buf:823233812 sent:823211587 acked:823211580");
+        assertEquals(848339465L, info.getLog());
+        assertEquals(848335460L, info.getMig());
+        assertEquals(823233812L, info.getBuf());
+        assertEquals(823211587L, info.getSent());
+        assertEquals(823211580L, info.getAcked());
+        
+        // The order of fields does not matter.
+        info = MigrateInfo.parse("+OK acked:4 buf:3 mig:2 log:1");
+        assertEquals(1L, info.getLog());
+        assertEquals(4L, info.getSent());
+    }
+    
+    @Test
+    public void parseError() {
+        String[] replies = new String[] {
+                "-ERR migration is not started", 
+                "+OK log:1 mig:2 buf:3", 
+                "+OK log:1 mig:x buf:3 sent:4 acked:5"};
+        for (String reply : replies) {
+            try {
+                MigrateInfo.parse(reply);
+                fail(reply);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import static com.navercorp.nbasearc.confmaster.Constant.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.navercorp.nbasearc.confmaster.BasicSetting;
+import com.navercorp.nbasearc.confmaster.server.cluster.Opinion.OpinionData;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:applicationContext-test.xml")
+public class OpinionTest extends BasicSetting {
+
+    @Autowired
+    Opinion opinion;
+
+    final String path = "/opinion_test";
+    final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        BasicSetting.beforeClass();
+    }
+
+    @Override
+    @Before
+    public void before() throws Exception {
+        super.before();
+        zk.createPersistentZNode(path);
+        // No child watch is on the path to remove the view of the previous test.
+        opinion.removeView(path);
+    }
+
+    @Override
+    @After
+    public void after() throws Exception {
+        super.after();
+    }
+
+    @Test
+    public void watchedOpinions() throws Exception {
+        putOpinion("127.0.0.1:1122", PGS_ROLE_MASTER);
+        putOpinion("127.0.0.1:1123", PGS_ROLE_MASTER);
+
+        final long version = opinion.getVersion(path);
+        assertEquals(2, opinion.getOpinions(path).size());
+        assertEquals(version, opinion.getVersion(path));
+
+        // A withdrawn opinion increases the version and is evicted.
+        zk.deleteZNode(path + "/127.0.0.1:1123", -1);
+        for (int i = 0; i < 100 && opinion.getVersion(path) == version; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(opinion.getVersion(path) > version);
+
+        putOpinion("127.0.0.1:1123", PGS_ROLE_NONE);
+        List<OpinionData> opinions = opinion.getOpinions(path);
+        assertEquals(2, opinions.size());
+        for (OpinionData o : opinions) {
+            if (o.getName().equals("127.0.0.1:1123")) {
+                assertEquals(PGS_ROLE_NONE, o.getOpinion());
+            } else {
+                assertEquals(PGS_ROLE_MASTER, o.getOpinion());
+            }
+        }
+    }
+
+    @Test
+    public void childrenFromChildWatch() throws Exception {
+        putOpinion("127.0.0.1:1122", PGS_ROLE_MASTER);
+        assertEquals(1, opinion.getOpinions(path).size());
+        
+        // A decision does not list the opinions again, the child watch does.
+        putOpinion("127.0.0.1:1123", PGS_ROLE_MASTER);
+        assertEquals(1, opinion.getOpinions(path).size());
+        
+        final long version = opinion.getVersion(path);
+        opinion.setChildren(path, zk.getChildren(path));
+        assertTrue(opinion.getVersion(path) > version);
+        assertEquals(2, opinion.getOpinions(path).size());
+        
+        // The view of a deleted target is removed.
+        opinion.setChildren(path, null);
+        assertEquals(0, opinion.getVersion(path));
+    }
+
+    @Test
+    public void encode() throws Exception {
+        OpinionData o = new OpinionData();
+        o.setName("127.0.0.1:1122");
+        o.setOpinion(PGS_ROLE_SLAVE);
+        o.setVersion(3);
+        o.setStatetimestamp(100);
+        o.setCreationTime(System.currentTimeMillis());
+
+        byte[] binary = Opinion.encode(o);
+        byte[] json = mapper.writeValueAsBytes(o);
+        assertTrue(binary.length < json.length / 2);
+        assertEquals(o, opinion.decode(binary));
+        assertEquals(3, opinion.decode(binary).getVersion());
+        assertEquals(o, opinion.decode(json));
+    }
+
+    private void putOpinion(String name, String role) throws Exception {
+        OpinionData o = new OpinionData();
+        o.setName(name);
+        o.setOpinion(role);
+        o.setStatetimestamp(1);
+        zk.createEphemeralZNode(path + "/" + name, mapper.writeValueAsBytes(o));
+    }
+}
@@ -57,7 +57,8 @@ public class PGSJoinLeaveSetting {
     }
 
     public void pgsJoin(PartitionGroupServer pgs, RedisServer rs, ClusterComponentMock mock) throws Exception {
-        MultipleGatewayInvocator broadcast = spy(new MultipleGatewayInvocator());
+        MultipleGatewayInvocator broadcast = spy(new MultipleGatewayInvocator(
+                config.getServerCommandGwBroadcastTimeout()));
         
         // Prepare expected data
         PartitionGroupServerData pgsModified = pgs.clonePersistentData();
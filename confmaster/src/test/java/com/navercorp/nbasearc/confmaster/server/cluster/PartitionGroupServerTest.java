@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import static com.navercorp.nbasearc.confmaster.Constant.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.navercorp.nbasearc.confmaster.BasicSetting;
+import com.navercorp.nbasearc.confmaster.ConfMaster;
+import com.navercorp.nbasearc.confmaster.server.leaderelection.LeaderState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:applicationContext-test.xml")
+public class PartitionGroupServerTest extends BasicSetting {
+
+    @Autowired
+    ConfMaster confMaster;
+
+    @Autowired
+    ApplicationContext context;
+
+    ServerSocket smr;
+    final AtomicInteger smrVersionQueries = new AtomicInteger();
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        LeaderState.setLeader();
+        BasicSetting.beforeClass();
+    }
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+        confMaster.setState(ConfMaster.RUNNING);
+        createCluster();
+
+        smr = new ServerSocket(0);
+        Thread acceptor = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        serve(smr.accept());
+                    }
+                } catch (IOException e) {
+                    // Closed.
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        smr.close();
+        super.after();
+    }
+
+    private void serve(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+        PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(PGS_PING)) {
+                out.print("+OK 1 0\r\n");
+            } else if (line.equals("smrversion")) {
+                smrVersionQueries.incrementAndGet();
+                out.print("+OK 201\r\n");
+            } else {
+                out.print(S2C_OK + "\r\n");
+            }
+            out.flush();
+        }
+        s.close();
+    }
+
+    @Test
+    public void parseSmrVersion() {
+        assertEquals(SMR_VERSION_201, PartitionGroupServer.parseSmrVersion("+OK 201"));
+        assertEquals(SMR_VERSION_101,
+                PartitionGroupServer.parseSmrVersion("-ERR bad request: unsupported cmd smrversion"));
+        assertNull(PartitionGroupServer.parseSmrVersion("+OK"));
+        assertNull(PartitionGroupServer.parseSmrVersion(null));
+    }
+
+    @Test
+    public void smrVersionCache() throws Exception {
+        PartitionGroupServer pgs = new PartitionGroupServer(context, clusterName, "0",
+                String.valueOf(pgName), pmName, "127.0.0.1", smr.getLocalPort() - 3,
+                smr.getLocalPort() + 6, 0);
+
+        // The first handshake learns the version.
+        assertEquals(S2C_OK, pgs.executeQuery("role lconn"));
+        assertEquals(1, smrVersionQueries.get());
+        assertEquals(SMR_VERSION_201, pgs.smrVersion());
+        assertEquals(SMR_VERSION_201, pgs.smrVersion());
+        assertEquals(1, smrVersionQueries.get());
+
+        // It is forgotten with the connection.
+        pgs.connectionForCommand.close();
+        assertEquals(SMR_VERSION_201, pgs.smrVersion());
+        assertEquals(3, smrVersionQueries.get());
+        assertEquals(SMR_VERSION_201, pgs.smrVersion());
+        assertEquals(3, smrVersionQueries.get());
+    }
+
+    @Test
+    public void executeQueryAsync() throws Exception {
+        PartitionGroupServer pgs = new PartitionGroupServer(context, clusterName, "0",
+                String.valueOf(pgName), pmName, "127.0.0.1", smr.getLocalPort() - 3,
+                smr.getLocalPort() + 6, 0);
+
+        List<Future<String>> replies = new ArrayList<Future<String>>();
+        for (int i = 0; i < 10; i++) {
+            replies.add(pgs.executeQueryAsync(i % 2 == 0 ? PGS_PING : "role lconn"));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 2 == 0 ? "+OK 1 0" : S2C_OK,
+                    replies.get(i).get(3000, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(1, smrVersionQueries.get());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.cluster;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+public class SlotMapTest {
+
+    @Test
+    public void rangeUpdate() {
+        SlotMap m = new SlotMap(8192, 0);
+        assertEquals("0 8192", m.toRLE());
+        assertEquals(1, m.getRunCount());
+        
+        SlotMap m2 = m.set(4096, 8191, 1).set(100, 199, 2);
+        assertEquals("0 100 2 100 0 3896 1 4096", m2.toRLE());
+        assertEquals(4, m2.getRunCount());
+        assertEquals(100, m2.getRunStart(1));
+        assertEquals(199, m2.getRunEnd(1));
+        assertEquals(2, m2.getRunPg(1));
+        assertEquals(8191, m2.getRunEnd(3));
+        assertEquals(2, m2.pgOf(150));
+        assertEquals(1, m2.pgOf(8191));
+        
+        // the original map is not changed.
+        assertEquals("0 8192", m.toRLE());
+        
+        try {
+            m2.set(0, 1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void rle() {
+        SlotMap m = SlotMap.fromRLE("-1 10 3 5 -1 1");
+        assertEquals(16, m.size());
+        assertEquals(-1, m.pgOf(0));
+        assertEquals(3, m.pgOf(14));
+        assertEquals(-1, m.pgOf(15));
+        assertEquals("-1 10 3 5 -1 1", m.toRLE());
+    }
+
+    @Test
+    public void equalsList() {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 8; i++) {
+            list.add(i < 4 ? 0 : 1);
+        }
+        
+        SlotMap m = SlotMap.valueOf(list);
+        assertEquals(list, m);
+        assertEquals(m, list);
+        assertEquals(list.hashCode(), m.hashCode());
+        assertEquals(m, SlotMap.fromRLE("0 4 1 4"));
+        assertNotEquals(m, SlotMap.fromRLE("0 3 1 5"));
+    }
+
+    @Test
+    public void json() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        SlotMap m = SlotMap.fromRLE("0 3 1 2");
+        
+        String json = mapper.writeValueAsString(m);
+        assertEquals("[0,0,0,1,1]", json);
+        assertEquals(m, mapper.readValue(json, SlotMap.class));
+        assertEquals(Arrays.asList(0, 0, 0, 1, 1), mapper.readValue(json, SlotMap.class));
+    }
+
+}
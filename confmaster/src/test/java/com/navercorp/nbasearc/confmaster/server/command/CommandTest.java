@@ -54,6 +54,7 @@ import com.navercorp.nbasearc.confmaster.BasicSetting.RoleColorValidator;
 import com.navercorp.nbasearc.confmaster.BasicSetting.SlaveFinder;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBState;
 import com.navercorp.nbasearc.confmaster.heartbeat.HBSessionHandler;
+import com.navercorp.nbasearc.confmaster.heartbeat.PhiAccrualDetector;
 import com.navercorp.nbasearc.confmaster.io.BlockingSocketImpl;
 import com.navercorp.nbasearc.confmaster.server.JobResult;
 import com.navercorp.nbasearc.confmaster.server.MemoryObjectMapper;
@@ -69,6 +70,7 @@ import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer.Par
 import com.navercorp.nbasearc.confmaster.server.mimic.IInjector;
 import com.navercorp.nbasearc.confmaster.server.mimic.MimicSMR;
 import com.navercorp.nbasearc.confmaster.server.cluster.PhysicalMachine;
+import com.navercorp.nbasearc.confmaster.server.workflow.WorkflowLogger;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("classpath:applicationContext-test.xml")
@@ -77,6 +79,12 @@ public class CommandTest extends BasicSetting {
     @Autowired
     ConfMaster confMaster;
     
+    @Autowired
+    QuerySnapshot querySnapshot;
+    
+    @Autowired
+    ClusterService clusterService;
+    
     @BeforeClass
     public static void beforeClass() throws Exception {
         BasicSetting.beforeClass();
@@ -347,6 +355,131 @@ public class CommandTest extends BasicSetting {
                         + clusterName + "\"}\r\n", formatReply(result, null));
     }
     
+    @Test
+    public void clusterInfoSnapshot() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        
+        String first = doCommand("cluster_info " + clusterName).getMessages().get(0);
+        assertTrue(querySnapshot.size() > 0);
+        
+        HashMap<String, Object> info = mapper.readValue(first, 
+                new TypeReference<HashMap<String,Object>>() {});
+        long generation = ((Number) info.get("generation")).longValue();
+        assertEquals(1, ((List<?>) info.get("pg_list")).size());
+        
+        // A mutation invalidates the snapshot
+        JobResult result = doCommand("pg_add " + clusterName + " 1");
+        assertEquals("check result of pg_add", ok, result.getMessages().get(0));
+        
+        info = mapper.readValue(doCommand("cluster_info " + clusterName).getMessages().get(0), 
+                new TypeReference<HashMap<String,Object>>() {});
+        assertTrue(((Number) info.get("generation")).longValue() > generation);
+        assertEquals(2, ((List<?>) info.get("pg_list")).size());
+        
+        result = doCommand("pg_del " + clusterName + " 1");
+        assertEquals("check result of pg_del", ok, result.getMessages().get(0));
+    }
+    
+    @Test
+    public void clusterInfoSnapshotWhileWriteLocked() throws Exception {
+        final String request = "cluster_info " + clusterName;
+        String first = doCommand(request).getMessages().get(0);
+        
+        // A job that changed the cluster still holds its write lock
+        Cluster cluster = container.getCluster(clusterName);
+        cluster.writeLock().lock();
+        try {
+            cluster.increaseGeneration();
+            assertEquals(first, doCommand(request).getMessages().get(0));
+        } finally {
+            cluster.writeLock().unlock();
+        }
+        
+        assertFalse(first.equals(doCommand(request).getMessages().get(0)));
+        
+        querySnapshot.purge(clusterName);
+        assertNull(querySnapshot.getStale(request, cluster));
+    }
+    
+    @Test
+    public void pgsInfoSnapshotWithLivePhi() throws Exception {
+        final String request = "pgs_info " + clusterName + " 0";
+        PartitionGroupServerData pgsData = new PartitionGroupServerData("0", pmName, pmData.ip, 8100, 8109);
+        Cluster cluster = container.getCluster(clusterName);
+        String persistent = cluster.appendGenerationToJson(pgsData.toString());
+        String expected = PhiAccrualDetector.appendToJson(persistent, 0.0);
+        assertEquals(expected, doCommand(request).getMessages().get(0));
+        
+        // The snapshot keeps the persistent data only, and the live level is added to each reply.
+        assertEquals(persistent, querySnapshot.get(request, cluster));
+        assertEquals(expected, doCommand(request).getMessages().get(0));
+        
+        String gwList = doCommand("gw_info " + clusterName + " all").getMessages().get(0);
+        assertTrue(gwList, gwList.startsWith("{\"gw_list\":["));
+        assertTrue(gwList, gwList.contains("],\"generation\":" + cluster.getGeneration() + ",\"hb_Phi\":{"));
+    }
+    
+    @Test
+    public void slotRebalancePlan() throws Exception {
+        JobResult result = doCommand("slot_rebalance_plan " + clusterName + " 8192 0:1");
+        assertEquals("{\"steps\":[],\"moved_slots\":0}", result.getMessages().get(0));
+        
+        result = doCommand("pg_add " + clusterName + " 1");
+        assertEquals("check result of pg_add", ok, result.getMessages().get(0));
+        
+        result = doCommand("slot_rebalance_plan " + clusterName + " 8192 0:1 1:1");
+        assertEquals("{\"steps\":[{\"src_pg_id\":0,\"dest_pg_id\":1,\"range_from\":4096,\"range_to\":8191,\"wave\":0}],\"moved_slots\":4096}", 
+                result.getMessages().get(0));
+        
+        result = doCommand("slot_rebalance_plan " + clusterName + " 4096 1:1");
+        assertEquals("{\"steps\":[{\"src_pg_id\":0,\"dest_pg_id\":1,\"range_from\":4096,\"range_to\":8191,\"wave\":0},"
+                + "{\"src_pg_id\":0,\"dest_pg_id\":1,\"range_from\":0,\"range_to\":4095,\"wave\":1}],\"moved_slots\":8192}", 
+                result.getMessages().get(0));
+        
+        result = doCommand("slot_rebalance_plan " + clusterName + " 8192 2:1");
+        assertEquals("-ERR pg does not exist. " + clusterName + "/pg:2", result.getMessages().get(0));
+        
+        result = doCommand("pg_del " + clusterName + " 1");
+        assertEquals("check result of pg_del", ok, result.getMessages().get(0));
+    }
+    
+    @Test
+    public void masterRebalance() throws Exception {
+        JobResult result = doCommand("master_rebalance " + clusterName + " 0");
+        assertEquals("-ERR max_moves must be positive. max_moves: 0", result.getMessages().get(0));
+        
+        // There is no master to move.
+        result = doCommand("master_rebalance " + clusterName + " 3");
+        assertEquals("{\"moves\":[]}", result.getMessages().get(0));
+    }
+    
+    @Test
+    public void clusterHbPhi() throws Exception {
+        Cluster cluster = container.getCluster(clusterName);
+        assertNull(cluster.getHbPhiThreshold());
+        
+        JobResult result = doCommand("cluster_hb_phi " + clusterName + " 2.5");
+        assertEquals("check result of cluster_hb_phi", ok, result.getMessages().get(0));
+        assertEquals(Double.valueOf(2.5), cluster.getHbPhiThreshold());
+        
+        Cluster.ClusterData data = new MemoryObjectMapper().readValue(
+                zk.getData(cluster.getPath(), null), Cluster.ClusterData.class);
+        assertEquals(Double.valueOf(2.5), data.hbPhiThreshold);
+        
+        result = doCommand("cluster_hb_phi " + clusterName + " default");
+        assertEquals("check result of cluster_hb_phi", ok, result.getMessages().get(0));
+        assertNull(cluster.getHbPhiThreshold());
+        assertFalse(cluster.persistentDataToString().contains("hb_Phi_Threshold"));
+        
+        // Fail
+        result = doCommand("cluster_hb_phi " + clusterName + " -1");
+        assertEquals("-ERR threshold must not be negative. threshold: -1", 
+                result.getMessages().get(0));
+        result = doCommand("cluster_hb_phi " + clusterName + " abc");
+        assertEquals("-ERR threshold must be a number or default. threshold: abc", 
+                result.getMessages().get(0));
+    }
+    
     @Test
     public void clusterList() throws Exception {
         JobResult result = doCommand("cluster_ls");
@@ -463,7 +596,10 @@ public class CommandTest extends BasicSetting {
         result = doCommand("gw_info " + clusterName + " 10");
         
         GatewayData gwData = new GatewayData(pmName, pmData.ip, 6000);
-        assertEquals("check result of gw_info", gwData.toString(), result.getMessages().get(0));
+        Cluster cluster = container.getCluster(clusterName);
+        assertEquals("check result of gw_info", 
+                PhiAccrualDetector.appendToJson(cluster.appendGenerationToJson(gwData.toString()), 0.0),
+                result.getMessages().get(0));
         
         // Usage
         result = doCommand("gw_info");
@@ -601,8 +737,9 @@ public class CommandTest extends BasicSetting {
 
         result = doCommand("pg_info " + clusterName + " 10");
         
-        assertEquals("check result of pg_info", container.getPg(clusterName, "10")
-                .info(), result.getMessages().get(0));
+        assertEquals("check result of pg_info", container.getCluster(clusterName)
+                .appendGenerationToJson(container.getPg(clusterName, "10").info()),
+                result.getMessages().get(0));
         
         // Usage
         result = doCommand("pg_info");
@@ -661,7 +798,10 @@ public class CommandTest extends BasicSetting {
     public void pgsInfo() throws Exception {
         JobResult result = doCommand("pgs_info " + clusterName + " 0");
         PartitionGroupServerData pgsData = new PartitionGroupServerData("0", pmName, pmData.ip, 8100, 8109);
-        assertEquals("check result of pgs_info", pgsData.toString(), result.getMessages().get(0));
+        Cluster cluster = container.getCluster(clusterName);
+        assertEquals("check result of pgs_info", 
+                PhiAccrualDetector.appendToJson(cluster.appendGenerationToJson(pgsData.toString()), 0.0),
+                result.getMessages().get(0));
 
         // Usage
         result = doCommand("pgs_info");
@@ -821,6 +961,38 @@ public class CommandTest extends BasicSetting {
                 + "get workflow logs\r\n", formatReply(result, null));
     }
 
+    @Test
+    public void worklogInMemory() throws Exception {
+        final long first = workflowLogger.getLast();
+        for (int i = 0; i < 10; i++) {
+            workflowLogger.log(0, SEVERITY_MINOR, "test", LOG_TYPE_COMMAND,
+                    clusterName, "log {}", i, null);
+        }
+        
+        // Served from memory, whether it is written or not.
+        JobResult result = doCommand("worklog_get " + first + " " + (first + 9));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(result.getMessages().get(0).contains("\"log " + i + "\""));
+        }
+        
+        workflowLogger.waitForPersistence();
+        for (long no = first; no < first + 10; no++) {
+            assertNotNull(zk.getData(WorkflowLogger.pathOfLog(no), null));
+        }
+        assertEquals(String.valueOf(first + 9),
+                new String(zk.getData(WorkflowLogger.rootPathOfLog(), null)));
+        
+        // Deletions are written too.
+        result = doCommand("worklog_del " + (first + 4));
+        assertEquals(ok, result.getMessages().get(0));
+        workflowLogger.waitForPersistence();
+        assertEquals(first + 5, workflowLogger.getNumOfStartLog());
+        assertNull(workflowLogger.getLog(first + 4));
+        List<String> children = zk.getChildren(WorkflowLogger.rootPathOfLog());
+        assertFalse(children.contains(String.valueOf(first + 4)));
+        assertTrue(children.contains(String.valueOf(first + 5)));
+    }
+    
     @Test
     public void worklogHead() throws Exception {
         JobResult result = doCommand("worklog_head 1");
@@ -908,6 +1080,14 @@ public class CommandTest extends BasicSetting {
         assertNotNull(container.getPgs(cname, "1"));
         assertNotNull(container.getPgs(cname, "2"));
         assertNotNull(container.getPm("test02.arc"));        
+        assertEquals(container.getPg(clusterName, "0").getPgsIdList(),
+                container.getPg(cname, "0").getPgsIdList());
+        assertEquals(container.getPmc(pmName, clusterName).getPgsIdList(),
+                container.getPmc("test02.arc", cname).getPgsIdList());
+        
+        // A dump of the loaded cluster is the same as the loaded dump
+        result = doCommand("cluster_dump " + cname);
+        assertEquals(dump, result.getMessages().get(0));
 
         // Usage
         result = doCommand("cluster_load");
@@ -915,6 +1095,36 @@ public class CommandTest extends BasicSetting {
                 formatReply(result, null));
     }
     
+    @Test
+    public void clusterLoadRollback() throws Exception {
+        final String cname = "test_cluster_1";
+        String dump = doCommand("cluster_dump " + clusterName).getMessages().get(0)
+                .replace(clusterName, cname);
+        
+        // The last batch fails after the earlier ones are committed.
+        final String pmcPath = PathUtil.pmClusterPath(cname, pmName);
+        zk.createPersistentZNode(pmcPath);
+        clusterService.clusterLoadOpsPerMulti = 2;
+        try {
+            JobResult result = doCommand("cluster_load " + dump);
+            assertFalse(result.getExceptions().isEmpty());
+        } finally {
+            clusterService.clusterLoadOpsPerMulti = 256;
+        }
+        
+        assertNull(container.getCluster(cname));
+        assertNull(container.getPgs(cname, "0"));
+        assertFalse(zk.isExists(PathUtil.clusterPath(cname)));
+        assertFalse(zk.isExists(PathUtil.pgsPath("0", cname)));
+        assertFalse(zk.isExists(PathUtil.pathOfGwLookupCluster(cname)));
+        
+        // A retry succeeds
+        zk.deleteZNode(pmcPath, -1);
+        JobResult result = doCommand("cluster_load " + dump);
+        assertEquals(ok, result.getMessages().get(0));
+        assertNotNull(container.getPgs(cname, "0"));
+    }
+    
     @Test
     public void clusterLifeCycle() throws Exception {
         final int MAX_THREAD = 3;
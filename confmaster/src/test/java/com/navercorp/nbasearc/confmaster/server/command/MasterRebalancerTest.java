@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.confmaster.server.command.MasterRebalancer.Machine;
+import com.navercorp.nbasearc.confmaster.server.command.MasterRebalancer.Move;
+import com.navercorp.nbasearc.confmaster.server.command.MasterRebalancer.Placement;
+
+public class MasterRebalancerTest {
+
+    @Test
+    public void spread() {
+        Machine pm1 = new Machine("pm1", 3);
+        Machine pm2 = new Machine("pm2", 0);
+        Machine pm3 = new Machine("pm3", 0);
+        
+        List<Placement> placements = new ArrayList<Placement>();
+        placements.add(new Placement("0", "0", pm1).addSlave("1", pm2).addSlave("2", pm3));
+        placements.add(new Placement("1", "3", pm1).addSlave("4", pm2).addSlave("5", pm3));
+        placements.add(new Placement("2", "6", pm1).addSlave("7", pm2).addSlave("8", pm3));
+        
+        List<Move> moves = MasterRebalancer.plan(placements, 10);
+        assertEquals(2, moves.size());
+        assertMove(moves.get(0), "0", "0", "pm1", "1", "pm2");
+        assertMove(moves.get(1), "1", "3", "pm1", "5", "pm3");
+        assertEquals("{\"pg\":0,\"from\":{\"pgs\":0,\"pm\":\"pm1\"},\"to\":{\"pgs\":1,\"pm\":\"pm2\"}}",
+                moves.get(0).toString());
+        
+        assertEquals(1, MasterRebalancer.plan(placements, 1).size());
+    }
+    
+    @Test
+    public void balanced() {
+        Machine pm1 = new Machine("pm1", 1);
+        Machine pm2 = new Machine("pm2", 1);
+        Machine pm3 = new Machine("pm3", 0);
+        
+        // A gap of 1 is not worth a role change.
+        List<Placement> placements = new ArrayList<Placement>();
+        placements.add(new Placement("0", "0", pm1).addSlave("1", pm2).addSlave("2", pm3));
+        placements.add(new Placement("1", "3", pm2).addSlave("4", pm1).addSlave("5", pm3));
+        assertTrue(MasterRebalancer.plan(placements, 10).isEmpty());
+    }
+    
+    @Test
+    public void mastersOfOtherClusters() {
+        // pm2 has 2 masters of another cluster.
+        Machine pm1 = new Machine("pm1", 2);
+        Machine pm2 = new Machine("pm2", 2);
+        Machine pm3 = new Machine("pm3", 0);
+        
+        List<Placement> placements = new ArrayList<Placement>();
+        placements.add(new Placement("0", "0", pm1).addSlave("1", pm2).addSlave("2", pm3));
+        placements.add(new Placement("1", "3", pm1).addSlave("4", pm2).addSlave("5", pm3));
+        
+        List<Move> moves = MasterRebalancer.plan(placements, 10);
+        assertEquals(1, moves.size());
+        assertMove(moves.get(0), "0", "0", "pm1", "2", "pm3");
+    }
+    
+    private void assertMove(Move move, String pgId, String fromPgs,
+            String fromPm, String toPgs, String toPm) {
+        assertEquals(pgId, move.pgId);
+        assertEquals(fromPgs, move.fromPgs);
+        assertEquals(fromPm, move.fromPm);
+        assertEquals(toPgs, move.toPgs);
+        assertEquals(toPm, move.toPm);
+    }
+
+}
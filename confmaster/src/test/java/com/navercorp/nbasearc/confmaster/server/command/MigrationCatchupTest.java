@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import static com.navercorp.nbasearc.confmaster.server.command.MigrationCatchup.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.confmaster.server.cluster.MigrateInfo;
+
+public class MigrationCatchupTest {
+
+    @Test
+    public void predict() {
+        MigrationCatchup catchup = new MigrationCatchup();
+        
+        MigrateInfo info = new MigrateInfo(1000, 0, 0, 0, 0);
+        catchup.update(info, 0);
+        assertEquals(UNKNOWN, catchup.predict(info, 1000, 0));
+        assertEquals(MAX_POLL_INTERVAL, catchup.pollInterval(info, 1000, 0));
+        
+        // mig: 10 bytes/ms, acked: 5 bytes/ms
+        info = new MigrateInfo(1000, 100, 50, 50, 50);
+        catchup.update(info, 10);
+        assertEquals(90 + 0, catchup.predict(info, 1000, 50));
+        assertEquals(90 + 10, catchup.predict(info, 1000, 100));
+        assertEquals(45, catchup.pollInterval(info, 1000, 50));
+        
+        // Caught up
+        info = new MigrateInfo(1000, 1000, 500, 500, 500);
+        assertEquals(0, catchup.predict(info, 1000, 500));
+        assertEquals(MIN_POLL_INTERVAL, catchup.pollInterval(info, 1000, 500));
+        
+        // A stall halves the measured rate of each poll
+        info = new MigrateInfo(1000, 1000, 500, 50, 50);
+        catchup.update(info, 20);
+        catchup.update(info, 30);
+        assertEquals(450 * 4 / 5, catchup.predict(info, 1000, 500));
+    }
+
+}
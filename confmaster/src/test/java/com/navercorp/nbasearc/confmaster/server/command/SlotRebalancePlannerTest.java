@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.command;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.navercorp.nbasearc.confmaster.server.command.SlotRebalancePlanner.Step;
+
+public class SlotRebalancePlannerTest {
+
+    @Test
+    public void addPg() {
+        List<Integer> slotMap = slotMap(0, 8192);
+        Map<Integer, Integer> weights = weights(0, 1, 1, 1, 2, 2);
+
+        List<Step> steps = new SlotRebalancePlanner(slotMap, weights, 1024).plan();
+        apply(slotMap, steps);
+        
+        assertEquals(2048, count(slotMap, 0));
+        assertEquals(2048, count(slotMap, 1));
+        assertEquals(4096, count(slotMap, 2));
+        assertEquals(6144, moved(steps));
+        for (Step step : steps) {
+            assertTrue(step.size() <= 1024);
+        }
+        
+        // Planning again after all steps are done gives nothing to do.
+        assertTrue(new SlotRebalancePlanner(slotMap, weights, 1024).plan().isEmpty());
+    }
+    
+    @Test
+    public void minimalMovement() {
+        // 0:3000, 1:3000, 2:2192 -> 2731, 2731, 2730
+        List<Integer> slotMap = slotMap(0, 3000);
+        slotMap.addAll(slotMap(1, 3000));
+        slotMap.addAll(slotMap(2, 2192));
+        
+        List<Step> steps = new SlotRebalancePlanner(slotMap, weights(0, 1, 1, 1, 2, 1), 8192).plan();
+        assertEquals(3000 - 2731 + 3000 - 2731, moved(steps));
+        apply(slotMap, steps);
+        assertEquals(2731, count(slotMap, 0));
+        assertEquals(2731, count(slotMap, 1));
+        assertEquals(2730, count(slotMap, 2));
+    }
+    
+    @Test
+    public void drainAndWaves() {
+        List<Integer> slotMap = new ArrayList<Integer>();
+        for (int i = 0; i < 8192; i++) {
+            slotMap.add(i % 4);
+        }
+        
+        List<Step> steps = new SlotRebalancePlanner(slotMap, weights(0, 1, 1, 1, 2, 0, 3, 0), 8192).plan();
+        apply(slotMap, steps);
+        assertEquals(4096, count(slotMap, 0));
+        assertEquals(4096, count(slotMap, 1));
+        
+        // A pg takes part in at most one step of a wave.
+        Map<Integer, Set<Integer>> waves = new HashMap<Integer, Set<Integer>>();
+        for (Step step : steps) {
+            if (!waves.containsKey(step.wave)) {
+                waves.put(step.wave, new HashSet<Integer>());
+            }
+            assertTrue(waves.get(step.wave).add(step.srcPgId));
+            assertTrue(waves.get(step.wave).add(step.destPgId));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWeight() {
+        new SlotRebalancePlanner(slotMap(0, 8192), weights(0, 0), 1024);
+    }
+
+    private static List<Integer> slotMap(int pgId, int size) {
+        List<Integer> slotMap = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            slotMap.add(pgId);
+        }
+        return slotMap;
+    }
+    
+    private static Map<Integer, Integer> weights(int... pgWeights) {
+        Map<Integer, Integer> weights = new HashMap<Integer, Integer>();
+        for (int i = 0; i < pgWeights.length; i += 2) {
+            weights.put(pgWeights[i], pgWeights[i + 1]);
+        }
+        return weights;
+    }
+    
+    private static void apply(List<Integer> slotMap, List<Step> steps) {
+        for (Step step : steps) {
+            for (int slot = step.rangeFrom; slot <= step.rangeTo; slot++) {
+                assertEquals(step.srcPgId, (int) slotMap.get(slot));
+                slotMap.set(slot, step.destPgId);
+            }
+        }
+    }
+    
+    private static int count(List<Integer> slotMap, int pgId) {
+        int count = 0;
+        for (Integer owner : slotMap) {
+            if (owner == pgId) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static int moved(List<Step> steps) {
+        int moved = 0;
+        for (Step step : steps) {
+            moved += step.size();
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.mapping;
+
+import static com.navercorp.nbasearc.confmaster.server.mapping.Param.ArgType.NULLABLE;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class CallerTest {
+
+    public static class Service {
+        public String join(String name, int count, @Param(type = NULLABLE) Long option) {
+            return name + count + option;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+
+        public void error() {
+            throw new AssertionError("error");
+        }
+    }
+
+    private Caller caller(String name) {
+        for (Method method : Service.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return new Caller(new Service(), method, ArityType.EQUAL);
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    @Test
+    public void invoke() throws Exception {
+        Caller caller = caller("join");
+        assertEquals(3, caller.getParamLength());
+        assertEquals(2, caller.getParamLengthWithoutNullable());
+        assertNull(caller.getArgType(0));
+        assertEquals(NULLABLE, caller.getArgType(2));
+
+        Object[] params = new Object[] {
+                caller.convert(0, "pg"), caller.convert(1, "3"), caller.convert(2, null) };
+        assertEquals("pg3null", caller.invoke(params));
+        assertEquals("pg4" + 5L, caller.invoke("pg", 4, caller.convert(2, "5")));
+    }
+
+    @Test
+    public void invokeException() throws Exception {
+        try {
+            caller("fail").invoke();
+            fail();
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getTargetException() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = AssertionError.class)
+    public void invokeError() throws Exception {
+        caller("error").invoke();
+    }
+
+    @Test
+    public void invokeArgumentMismatch() throws Exception {
+        Caller caller = caller("join");
+        try {
+            caller.invoke("pg", "not a number", null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            caller.invoke("pg", null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            caller.invoke("pg", 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.workflow;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.navercorp.nbasearc.confmaster.BasicSetting;
+import com.navercorp.nbasearc.confmaster.config.Config;
+import com.navercorp.nbasearc.confmaster.context.Context;
+import com.navercorp.nbasearc.confmaster.context.ContextChain;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+import com.navercorp.nbasearc.confmaster.context.ExecutionContext;
+import com.navercorp.nbasearc.confmaster.context.ReservedCall;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:applicationContext-test.xml")
+public class PgWorkflowQueueTest extends BasicSetting {
+
+    @Autowired
+    Config config;
+
+    PgWorkflowQueue queue;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        BasicSetting.beforeClass();
+    }
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+        queue = new PgWorkflowQueue(executor);
+    }
+
+    @After
+    public void after() throws Exception {
+        super.after();
+    }
+
+    @Test
+    public void serialPerPg() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+        // More workflows than worker threads for a stuck partition group.
+        final int count = config.getServerJobThreadMax() * 2;
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < count; i++) {
+            final int seq = i;
+            futures.add(queue.perform("pg1", job(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                    release.await();
+                    order.add(seq);
+                    running.decrementAndGet();
+                    return null;
+                }
+            })));
+        }
+        assertEquals(count - 1, queue.getWaitingCount("pg1"));
+
+        // Another partition group is not starved.
+        Future<Object> other = queue.perform("pg2", job(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return "done";
+            }
+        }));
+        other.get(3000, TimeUnit.MILLISECONDS);
+        assertTrue(order.isEmpty());
+
+        release.countDown();
+        for (Future<Object> f : futures) {
+            f.get(3000, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+        assertEquals(0, queue.getWaitingCount("pg1"));
+    }
+
+    @Test
+    public void delayed() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        Future<Object> delayed = queue.performDelayed("pg1", job(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                order.add("delayed");
+                return null;
+            }
+        }), 100, TimeUnit.MILLISECONDS);
+        Future<Object> running = queue.perform("pg1", job(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                release.await();
+                order.add("running");
+                return null;
+            }
+        }));
+
+        // A delayed workflow waits for the running one of its partition group.
+        Thread.sleep(300);
+        assertFalse(delayed.isDone());
+        assertEquals(1, queue.getWaitingCount("pg1"));
+
+        release.countDown();
+        running.get(3000, TimeUnit.MILLISECONDS);
+        delayed.get(3000, TimeUnit.MILLISECONDS);
+        assertEquals("running", order.get(0));
+        assertEquals("delayed", order.get(1));
+    }
+
+    @Test
+    public void contextContinue() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch continued = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final ReservedCall.Scheduler scheduler = new ReservedCall.Scheduler() {
+            @Override
+            public void schedule(Context<Object> c, long delay, TimeUnit timeUnit) {
+                queue.performDelayed("pg1", c, delay, timeUnit);
+            }
+        };
+
+        Future<Object> running = queue.perform("pg1", job(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                ContextChain.setNextJob(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        order.add("continued");
+                        continued.countDown();
+                        return null;
+                    }
+                }, 0, TimeUnit.MILLISECONDS, scheduler);
+                release.await();
+                order.add("running");
+                return null;
+            }
+        }));
+        Future<Object> waiting = queue.perform("pg1", job(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                order.add("waiting");
+                return null;
+            }
+        }));
+
+        // The next job of a context waits in the queue of its partition group.
+        release.countDown();
+        running.get(3000, TimeUnit.MILLISECONDS);
+        waiting.get(3000, TimeUnit.MILLISECONDS);
+        assertTrue(continued.await(3000, TimeUnit.MILLISECONDS));
+        assertEquals("running", order.get(0));
+        assertEquals("waiting", order.get(1));
+        assertEquals("continued", order.get(2));
+    }
+
+    private ExecutionContext<Object> job(Callable<Object> callable) {
+        return new ExecutionContext<Object>(callable, ContextType.WF, executor);
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.workflow;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.navercorp.nbasearc.confmaster.BasicSetting;
+import com.navercorp.nbasearc.confmaster.ConfMaster;
+import com.navercorp.nbasearc.confmaster.ConfMasterException.MgmtSmrCommandException;
+import com.navercorp.nbasearc.confmaster.context.ContextType;
+import com.navercorp.nbasearc.confmaster.logger.Log;
+import com.navercorp.nbasearc.confmaster.logger.Logger;
+import com.navercorp.nbasearc.confmaster.server.cluster.PartitionGroupServer;
+import com.navercorp.nbasearc.confmaster.server.leaderelection.LeaderState;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:applicationContext-test.xml")
+public class RoleFanOutTest extends BasicSetting {
+
+    @Autowired
+    ConfMaster confMaster;
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    RoleFanOut fanOut;
+
+    PartitionGroupServer p1, p2, p3;
+    List<PartitionGroupServer> pgsList;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        LeaderState.setLeader();
+        BasicSetting.beforeClass();
+    }
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+        confMaster.setState(ConfMaster.RUNNING);
+        createCluster();
+        p1 = newPgs(1);
+        p2 = newPgs(2);
+        p3 = newPgs(3);
+        pgsList = Arrays.asList(p1, p2, p3);
+    }
+
+    @After
+    public void after() throws Exception {
+        super.after();
+    }
+
+    private PartitionGroupServer newPgs(int id) {
+        return new PartitionGroupServer(context, clusterName, String.valueOf(id),
+                String.valueOf(pgName), pmName, pmData.ip, 10000 + id * 10, 10009 + id * 10, 0);
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        // Every command waits for the others, so it passes only if they run at once.
+        final CountDownLatch all = new CountDownLatch(pgsList.size());
+        RoleFanOut.Group<Integer> group = fanOut.execute("test", ContextType.ME,
+                pgsList, new RoleFanOut.Command<Integer>() {
+                    @Override
+                    public Integer execute(PartitionGroupServer pgs) throws Exception {
+                        all.countDown();
+                        if (!all.await(5, TimeUnit.SECONDS)) {
+                            throw new MgmtSmrCommandException("not concurrent");
+                        }
+                        return pgsList.indexOf(pgs);
+                    }
+                });
+
+        group.checkFailure();
+        assertEquals(pgsList, group.getSucceeded());
+        assertEquals(Integer.valueOf(2), group.get(p3));
+    }
+
+    @Test
+    public void failure() throws Exception {
+        Logger.popLogHistory();
+        RoleFanOut.Group<Void> group = fanOut.execute("test", ContextType.ME,
+                pgsList, new RoleFanOut.Command<Void>() {
+                    @Override
+                    public Void execute(PartitionGroupServer pgs) throws Exception {
+                        Logger.info("execute {}", pgsList.indexOf(pgs));
+                        if (pgs == p2) {
+                            throw new MgmtSmrCommandException("p2 fail");
+                        }
+                        return null;
+                    }
+                }, 10000L);
+
+        assertEquals(Arrays.asList(p1, p3), group.getSucceeded());
+        try {
+            group.checkFailure();
+            fail();
+        } catch (MgmtSmrCommandException e) {
+            assertTrue(e.getMessage().endsWith("p2 fail"));
+        }
+
+        // Logs of the commands are moved to the caller in the order of the PGSes.
+        List<Log> logs = Logger.getLogHistory().getLogs();
+        assertEquals(3, logs.size());
+        for (int i = 0; i < logs.size(); i++) {
+            assertTrue(logs.get(i).getMessage().endsWith("execute " + i));
+        }
+        Logger.popLogHistory();
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        RoleFanOut.Group<Void> group = fanOut.execute("test", ContextType.ME,
+                pgsList, new RoleFanOut.Command<Void>() {
+                    @Override
+                    public Void execute(PartitionGroupServer pgs) throws Exception {
+                        if (pgs == p1) {
+                            release.await();
+                        }
+                        return null;
+                    }
+                }, 200L);
+        long elapsed = System.currentTimeMillis() - start;
+        release.countDown();
+
+        assertTrue(elapsed >= 200);
+        assertTrue(elapsed < 5000);
+        assertEquals(Arrays.asList(p2, p3), group.getSucceeded());
+        try {
+            group.checkFailure();
+            fail();
+        } catch (MgmtSmrCommandException e) {
+            assertTrue(e.getMessage().contains("test timeout."));
+        }
+
+        assertTrue(fanOut.execute("test", ContextType.ME,
+                Arrays.<PartitionGroupServer> asList(), null, 0L)
+                .getSucceeded().isEmpty());
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Naver Corp.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.nbasearc.confmaster.server.workflow;
+
+import static com.navercorp.nbasearc.confmaster.Constant.*;
+
+import org.junit.Test;
+
+public class WorkflowLoggerTest {
+
+    @Test
+    public void logBeforeInitialize() {
+        // Not kept, but must not fail.
+        new WorkflowLogger().log(0, SEVERITY_MODERATE, "WorkflowLoggerTest",
+                LOG_TYPE_COMMAND, "cluster", "log before initialize", "null");
+    }
+
+}
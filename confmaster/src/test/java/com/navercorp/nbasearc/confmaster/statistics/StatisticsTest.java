@@ -18,7 +18,6 @@ package com.navercorp.nbasearc.confmaster.statistics;
 
 import static org.junit.Assert.*;
 
-import java.lang.reflect.Field;
 import java.util.List;
 
 import org.junit.Test;
@@ -49,10 +48,7 @@ public class StatisticsTest {
             IllegalAccessException {
         Statistics.updateElapsedTimeForCommands("192.168.0.10", 10000, "ping", "pong", 2000, 1000);
         
-        Field f = Logger.getLogHistory().getClass().getDeclaredField("logs");
-        f.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<Log> logs = (List<Log>) f.get(Logger.getLogHistory());
+        List<Log> logs = Logger.getLogHistory().getLogs();
         
         boolean find = false;
         for (Log log : logs) {
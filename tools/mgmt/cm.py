@@ -627,6 +627,18 @@ def mig2pc(cluster_name, src_pg_id, dst_pg_id, range_from, range_to):
         warn("mig2pc fail. cluster:%s" % cluster_name)
         return False
 
+def slot_rebalance_plan(cluster_name, max_slots, weights):
+    cmd = 'slot_rebalance_plan %s %d %s' % (cluster_name, max_slots, 
+            ' '.join('%d:%d' % (pg_id, weight) for pg_id, weight in weights))
+    print cyan('Command : ' + cmd)
+    cm_conn.write(cmd + '\r\n')
+    ret = cm_conn.read_until('\r\n', config.TELNET_TIMEOUT)
+    json_data = json.loads(ret)
+    if json_data['state'] != 'success':
+        warn(red("%s fail. ret:\"%s\"" % (cmd, ret[:-2])))
+        return None
+    return json_data['data']
+
 def slot_set_pg(cluster_name, dst_pg_id, range_from, range_to):
     cmd = 'slot_set_pg %s %d:%d %d' % (cluster_name, range_from, range_to, dst_pg_id)
     print cyan('Command : ' + cmd)
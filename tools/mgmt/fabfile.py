@@ -2070,6 +2070,46 @@ def menu_migration():
             if call_migration(cluster_name, src_pg_id, dst_pg_id, range_from, range_to, tps) == False:
                 return False
 
+def menu_rebalance():
+    config.confirm_mode = confirm(cyan("Confirm Mode?"))
+
+    cluster_name = prompt(cyan("Cluster name"))
+
+    # Show PG info
+    show_info.menu_show_pg_list(cluster_name)
+    print ''
+
+    # Input arguments
+    s = prompt(cyan("Weights of PGs(PG_ID:WEIGHT PG_ID:WEIGHT ...)"))
+    try:
+        weights = [(int(w.split(':')[0]), int(w.split(':')[1])) for w in s.split()]
+        max_slots = int(prompt(cyan("Max slots per migration")))
+        tps = int(prompt(cyan("TPS")))
+    except ValueError:
+        warn(red('Invalid input. Aborting...'))
+        return False
+
+    # The plan is made from the current slot map, so running this again 
+    # after a failure continues the rest of the rebalancing.
+    plan = cm.slot_rebalance_plan(cluster_name, max_slots, weights)
+    if plan == None:
+        return False
+
+    steps = sorted(plan['steps'], key=lambda step: step['wave'])
+    for step in steps:
+        print yellow("wave:%d, %d -> %d, %d:%d" % (step['wave'], step['src_pg_id'], 
+                step['dest_pg_id'], step['range_from'], step['range_to']))
+    print yellow("%d slots in %d migrations" % (plan['moved_slots'], len(steps)))
+    if len(steps) == 0 or confirm(cyan('Start migration?')) == False:
+        return True
+
+    for step in steps:
+        if call_migration(cluster_name, step['src_pg_id'], step['dest_pg_id'], 
+                step['range_from'], step['range_to'], tps) == False:
+            warn(red("Rebalancing stopped. Run it again to continue."))
+            return False
+    return True
+
 def call_migration(cluster_name, src_pg_id, dst_pg_id, range_from, range_to, tps):
     # Check local binary
     if check_local_binary_exist(['cluster-util']) == False:
@@ -2397,6 +2437,7 @@ def main(config_path="config"):
                 ["Add replication", menu_add_replication],
                 ["Leave replication", menu_leave_replication],
                 ["Migration", menu_migration],
+                ["Rebalance slots", menu_rebalance],
                 ["Repair Cluster (Cluster already installed)", menu_recover_cluster],
                 ["Deploy bash_profile", menu_deploy_bash_profile],
            ]